@@ -0,0 +1,11 @@
+package pt.psoft.g1.psoftg1.authormanagement.services;
+
+import lombok.Value;
+
+/**
+ * Published when an {@code Author} is created or changed (name, bio, photo...).
+ */
+@Value
+public class AuthorChangedEvent {
+    Long authorNumber;
+}
@@ -1,6 +1,10 @@
 package pt.psoft.g1.psoftg1.authormanagement.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -11,18 +15,29 @@ import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactStore;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.TopLendingCounters;
 import pt.psoft.g1.psoftg1.shared.repositories.PhotoRepository;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@PropertySource({"classpath:config/library.properties"})
 public class AuthorServiceImpl implements AuthorService {
     private final AuthorRepository authorRepository;
     private final BookRepository bookRepository;
     private final AuthorMapper mapper;
     private final PhotoRepository photoRepository;
+    private final LendingFactStore lendingFactStore;
+    private final TopLendingCounters topLendingCounters;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${topReportsSize}")
+    private int topReportsSize;
 
     @Override
     public Iterable<Author> findAll() {
@@ -60,7 +75,9 @@ public class AuthorServiceImpl implements AuthorService {
             resource.setPhotoURI(null);
         }
         final Author author = mapper.create(resource);
-        return authorRepository.save(author);
+        final Author saved = authorRepository.save(author);
+        eventPublisher.publishEvent(new AuthorChangedEvent(saved.getAuthorNumber()));
+        return saved;
     }
 
     @Override
@@ -94,11 +111,20 @@ public class AuthorServiceImpl implements AuthorService {
         // in the meantime some other user might have changed this object on the
         // database, so concurrency control will still be applied when we try to save
         // this updated object
-        return authorRepository.save(author);
+        final Author saved = authorRepository.save(author);
+        eventPublisher.publishEvent(new AuthorChangedEvent(saved.getAuthorNumber()));
+        return saved;
     }
     @Override
+    @Cacheable(ReportCaches.TOP_AUTHORS_BY_LENDINGS)
     public List<AuthorLendingView> findTopAuthorByLendings() {
-        Pageable pageableRules = PageRequest.of(0,5);
+        final var top = topLendingCounters.findTopAuthorsByLendings(topReportsSize)
+                .or(() -> lendingFactStore.findTopAuthorsByLendings(topReportsSize));
+        if (top.isPresent())
+            return top.get().stream()
+                    .map(c -> new AuthorLendingView(c.getKey(), c.getCount()))
+                    .collect(Collectors.toList());
+        Pageable pageableRules = PageRequest.of(0,topReportsSize);
         return authorRepository.findTopAuthorByLendings(pageableRules).getContent();
     }
 
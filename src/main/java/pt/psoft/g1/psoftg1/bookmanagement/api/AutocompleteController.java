@@ -0,0 +1,28 @@
+package pt.psoft.g1.psoftg1.bookmanagement.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookService;
+import pt.psoft.g1.psoftg1.shared.api.ListResponse;
+
+@Tag(name = "Autocomplete", description = "Endpoints for completing what is typed in the catalog search box")
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/autocomplete")
+public class AutocompleteController {
+    private final BookService bookService;
+
+    private final BookViewMapper bookViewMapper;
+
+    @Operation(summary = "Completes the start of any word of an author name or book title, most lent first")
+    @GetMapping
+    public ListResponse<CatalogSuggestionView> autocomplete(@RequestParam("q") final String q,
+                                                            @RequestParam(value = "limit", defaultValue = "10") final int limit) {
+        return new ListResponse<>(bookViewMapper.toCatalogSuggestionView(bookService.autocomplete(q, limit)));
+    }
+}
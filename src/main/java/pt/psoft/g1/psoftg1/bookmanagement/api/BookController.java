@@ -15,6 +15,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookSearchResult;
 import pt.psoft.g1.psoftg1.bookmanagement.services.BookService;
 import pt.psoft.g1.psoftg1.bookmanagement.services.CreateBookRequest;
 import pt.psoft.g1.psoftg1.bookmanagement.services.SearchBooksQuery;
@@ -24,18 +25,19 @@ import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingService;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.services.ReaderService;
+import pt.psoft.g1.psoftg1.shared.api.FacetedListResponse;
 import pt.psoft.g1.psoftg1.shared.api.ListResponse;
 import pt.psoft.g1.psoftg1.shared.services.ConcurrencyService;
 import pt.psoft.g1.psoftg1.shared.services.FileStorageService;
+import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
 import pt.psoft.g1.psoftg1.shared.services.SearchRequest;
 import pt.psoft.g1.psoftg1.usermanagement.model.User;
 import pt.psoft.g1.psoftg1.usermanagement.services.UserService;
 
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Tag(name = "Books", description = "Endpoints for managing Books")
 @RestController
@@ -172,39 +174,20 @@ public class BookController {
     @GetMapping
     public ListResponse<BookView> findBooks(@RequestParam(value = "title", required = false) final String title,
                                             @RequestParam(value = "genre", required = false) final String genre,
-                                            @RequestParam(value = "authorName", required = false) final String authorName) {
+                                            @RequestParam(value = "authorName", required = false) final String authorName,
+                                            @RequestParam(value = "typoTolerant", defaultValue = "false") final boolean typoTolerant,
+                                            @Valid final Page page) {
 
         //Este método, como está, faz uma junção 'OR'.
         //Para uma junção 'AND', ver o "/search"
 
-        List<Book> booksByTitle = null;
-        if (title != null)
-            booksByTitle = bookService.findByTitle(title);
+        final PageResult<Book> books = bookService.findBooks(title, genre, authorName, typoTolerant, page);
 
-        List<Book> booksByGenre = null;
-        if (genre != null)
-            booksByGenre = bookService.findByGenre(genre);
-
-        List<Book> booksByAuthorName = null;
-        if (authorName != null)
-            booksByAuthorName = bookService.findByAuthorName(authorName);
-
-        Set<Book> bookSet = new HashSet<>();
-        if (booksByTitle!= null)
-            bookSet.addAll(booksByTitle);
-        if(booksByGenre != null)
-            bookSet.addAll(booksByGenre);
-        if(booksByAuthorName != null)
-            bookSet.addAll(booksByAuthorName);
-
-        List<Book> books = bookSet.stream()
-                .sorted(Comparator.comparing(b -> b.getTitle().toString()))
-                .collect(Collectors.toList());
-
-        if(books.isEmpty())
+        if(books.getTotal() == 0)
             throw new NotFoundException("No books found with the provided criteria");
 
-        return new ListResponse<>(bookViewMapper.toBookView(books));
+        return new ListResponse<>(bookViewMapper.toBookView(books.getItems()),
+                books.getNextCursor(), books.getTotal());
     }
 
     @Operation(summary = "Gets the top 5 books lent")
@@ -234,10 +217,19 @@ public class BookController {
     }
 
     @PostMapping("/search")
-    public ListResponse<BookView> searchBooks(
+    public FacetedListResponse<BookView> searchBooks(
             @RequestBody final SearchRequest<SearchBooksQuery> request) {
-        final var bookList = bookService.searchBooks(request.getPage(), request.getQuery());
-        return new ListResponse<>(bookViewMapper.toBookView(bookList));
+        final BookSearchResult result = bookService.searchBooks(request.getPage(), request.getQuery());
+        final List<Book> bookList = result.getBooks();
+        Map<String, Map<String, Long>> facets = null;
+        if (result.getGenres() != null) {
+            // kept in this order in the response
+            facets = new LinkedHashMap<>();
+            facets.put("genre", result.getGenres());
+            facets.put("author", result.getAuthors());
+        }
+        return new FacetedListResponse<>(bookViewMapper.toBookView(bookList),
+                result.getNextCursor(), result.getTotal(), facets);
     }
 }
 
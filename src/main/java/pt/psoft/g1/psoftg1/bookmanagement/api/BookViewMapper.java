@@ -7,6 +7,7 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import pt.psoft.g1.psoftg1.authormanagement.model.Author;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.services.BookCountDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.CatalogSuggestion;
 import pt.psoft.g1.psoftg1.shared.api.MapperInterface;
 
 import java.util.HashMap;
@@ -33,6 +34,8 @@ public abstract class BookViewMapper extends MapperInterface {
 
     public abstract BookAverageLendingDurationView toBookAverageLendingDurationView(Book book, Double averageLendingDuration);
 
+    public abstract List<CatalogSuggestionView> toCatalogSuggestionView(List<CatalogSuggestion> suggestions);
+
     protected List<String> mapAuthors(List<Author> authors) {
         return authors.stream()
                 .map(Author::getName)
@@ -0,0 +1,13 @@
+package pt.psoft.g1.psoftg1.bookmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "An author name or book title completing what was typed, with the number of lendings it was ranked by")
+public class CatalogSuggestionView {
+    private String type;
+    private String id;
+    private String text;
+    private Long lendingCount;
+}
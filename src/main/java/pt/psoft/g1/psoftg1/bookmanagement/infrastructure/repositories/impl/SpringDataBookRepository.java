@@ -13,13 +13,20 @@ import org.springframework.util.StringUtils;
 import pt.psoft.g1.psoftg1.authormanagement.model.Author;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.services.BookCountDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookSearchFieldsDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleLendingsDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookAuthorNumberDTO;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Isbn;
 import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
 import pt.psoft.g1.psoftg1.bookmanagement.services.SearchBooksQuery;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +37,12 @@ public interface SpringDataBookRepository  extends BookRepository, BookRepoCusto
             "WHERE b.isbn.isbn = :isbn")
     Optional<Book> findByIsbn(@Param("isbn") String isbn);
 
+    @Override
+    @Query("SELECT b " +
+            "FROM Book b " +
+            "WHERE b.isbn.isbn IN :isbns")
+    List<Book> findAllByIsbnIn(@Param("isbns") Collection<String> isbns);
+
     @Override
     @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookCountDTO(b, COUNT(l)) " +
                 "FROM Book b " +
@@ -39,6 +52,62 @@ public interface SpringDataBookRepository  extends BookRepository, BookRepoCusto
                 "ORDER BY COUNT(l) DESC")
     Page<BookCountDTO> findTop5BooksLent(@Param("oneYearAgo") LocalDate oneYearAgo, Pageable pageable);
 
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO(b.isbn.isbn, g.genre, a.name.name) " +
+            "FROM Book b " +
+            "JOIN b.genre g " +
+            "LEFT JOIN b.authors a")
+    List<BookGenreAuthorDTO> listGenresAndAuthors();
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO(b.isbn.isbn, g.genre, a.name.name) " +
+            "FROM Book b " +
+            "JOIN b.genre g " +
+            "LEFT JOIN b.authors a " +
+            "WHERE b.isbn.isbn IN :isbns")
+    List<BookGenreAuthorDTO> listGenresAndAuthorsByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookSearchFieldsDTO(b.isbn.isbn, b.title.title, g.genre, a.name.name) " +
+            "FROM Book b " +
+            "JOIN b.genre g " +
+            "LEFT JOIN b.authors a")
+    List<BookSearchFieldsDTO> listSearchFields();
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookSearchFieldsDTO(b.isbn.isbn, b.title.title, g.genre, a.name.name) " +
+            "FROM Book b " +
+            "JOIN b.genre g " +
+            "LEFT JOIN b.authors a " +
+            "WHERE b.isbn.isbn IN :isbns")
+    List<BookSearchFieldsDTO> listSearchFieldsByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleDTO(b.isbn.isbn, b.title.title) " +
+            "FROM Book b")
+    List<BookTitleDTO> listTitles();
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleLendingsDTO(b.isbn.isbn, b.title.title, COUNT(l.pk)) " +
+            "FROM Book b " +
+            "LEFT JOIN Lending l ON l.book.pk = b.pk " +
+            "WHERE b.isbn.isbn IN :isbns " +
+            "GROUP BY b.isbn.isbn, b.title.title")
+    List<BookTitleLendingsDTO> listTitlesAndLendingCountsByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookAuthorNumberDTO(b.isbn.isbn, a.authorNumber) " +
+            "FROM Book b " +
+            "JOIN b.authors a")
+    List<BookAuthorNumberDTO> listAuthorNumbers();
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.bookmanagement.services.BookAuthorNumberDTO(b.isbn.isbn, a.authorNumber) " +
+            "FROM Book b " +
+            "JOIN b.authors a " +
+            "WHERE b.isbn.isbn IN :isbns")
+    List<BookAuthorNumberDTO> listAuthorNumbersByIsbnIn(@Param("isbns") Collection<String> isbns);
+
 
     @Override
     @Query("SELECT b " +
@@ -75,6 +144,8 @@ public interface SpringDataBookRepository  extends BookRepository, BookRepoCusto
 
 interface BookRepoCustom {
     List<Book> searchBooks(pt.psoft.g1.psoftg1.shared.services.Page page, SearchBooksQuery query);
+    List<Book> findBooks(String title, String genre, String authorName, pt.psoft.g1.psoftg1.shared.services.Page page);
+    long countBooks(String title, String genre, String authorName);
 
 }
 
@@ -84,6 +155,84 @@ class BookRepoCustomImpl implements BookRepoCustom {
     // injection
     private final EntityManager em;
 
+    @Override
+    public List<Book> findBooks(String title, String genre, String authorName,
+                                pt.psoft.g1.psoftg1.shared.services.Page page) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Book> cq = cb.createQuery(Book.class);
+        final Root<Book> root = cq.from(Book.class);
+        cq.select(root);
+
+        final List<Predicate> where = new ArrayList<>();
+        where.add(matchesAny(cb, cq, root, title, genre, authorName));
+
+        final Path<String> titlePath = root.get("title").get("title");
+        final Path<String> isbnPath = root.get("isbn").get("isbn");
+        if (page.hasCursor()) {
+            // cursor keys: score, title, isbn; matches are not ranked, so the page starts after the title and isbn
+            final List<String> after = Cursor.decode(page.getCursor(), 3);
+            where.add(cb.or(cb.greaterThan(titlePath, after.get(1)),
+                    cb.and(cb.equal(titlePath, after.get(1)), cb.greaterThan(isbnPath, after.get(2)))));
+        }
+
+        cq.where(where.toArray(new Predicate[0]));
+        cq.orderBy(cb.asc(titlePath), cb.asc(isbnPath));
+
+        final TypedQuery<Book> q = em.createQuery(cq);
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
+        q.setMaxResults(page.getLimit());
+
+        return q.getResultList();
+    }
+
+    @Override
+    public long countBooks(String title, String genre, String authorName) {
+        final CriteriaBuilder cb = em.getCriteriaBuilder();
+        final CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        final Root<Book> root = cq.from(Book.class);
+        cq.select(cb.count(root));
+        cq.where(matchesAny(cb, cq, root, title, genre, authorName));
+        return em.createQuery(cq).getSingleResult();
+    }
+
+    private static Predicate hasAuthorIn(CriteriaBuilder cb, AbstractQuery<?> query, Root<Book> root,
+                                         Collection<String> authorNames) {
+        final Subquery<Long> byAuthor = query.subquery(Long.class);
+        final Root<Book> book = byAuthor.from(Book.class);
+        final Join<Book, Author> author = book.join("authors");
+        byAuthor.select(book.get("pk"))
+                .where(cb.equal(book, root), author.get("name").get("name").in(authorNames));
+        return cb.exists(byAuthor);
+    }
+
+    /**
+     * Books whose title or genre contains the given ones, or with an author whose name starts with the given one.
+     * The authors are matched in a subquery, so books with several authors are not repeated.
+     */
+    private static Predicate matchesAny(CriteriaBuilder cb, AbstractQuery<?> query, Root<Book> root,
+                                        String title, String genre, String authorName) {
+        final List<Predicate> any = new ArrayList<>();
+
+        if (title != null)
+            any.add(cb.like(root.get("title").get("title"), "%" + title + "%"));
+
+        if (genre != null)
+            any.add(cb.like(root.get("genre").get("genre"), "%" + genre + "%"));
+
+        if (authorName != null) {
+            final Subquery<Long> byAuthor = query.subquery(Long.class);
+            final Root<Book> book = byAuthor.from(Book.class);
+            final Join<Book, Author> author = book.join("authors");
+            byAuthor.select(book.get("pk"))
+                    .where(cb.equal(book, root), cb.like(author.get("name").get("name"), authorName + "%"));
+            any.add(cb.exists(byAuthor));
+        }
+
+        // without criteria no book matches
+        return any.isEmpty() ? cb.disjunction() : cb.or(any.toArray(new Predicate[0]));
+    }
+
     @Override
     public List<Book> searchBooks(pt.psoft.g1.psoftg1.shared.services.Page page, SearchBooksQuery query)
     {
@@ -109,11 +258,35 @@ class BookRepoCustomImpl implements BookRepoCustom {
         if (StringUtils.hasText(authorName))
             where.add(cb.like(authorJoin.get("name").get("name"), authorName + "%"));
 
+        final boolean allValues = query.getFacetOperator() == SearchBooksQuery.FacetOperator.AND;
+        if (query.getGenres() != null && !query.getGenres().isEmpty()) {
+            if (allValues)
+                query.getGenres().forEach(g -> where.add(cb.equal(genreJoin.get("genre"), g)));
+            else
+                where.add(genreJoin.get("genre").in(query.getGenres()));
+        }
+        if (query.getAuthors() != null && !query.getAuthors().isEmpty()) {
+            if (allValues)
+                query.getAuthors().forEach(a -> where.add(hasAuthorIn(cb, cq, root, List.of(a))));
+            else
+                where.add(hasAuthorIn(cb, cq, root, query.getAuthors()));
+        }
+
+        final Path<String> titlePath = root.get("title").get("title");
+        final Path<String> isbnPath = root.get("isbn").get("isbn");
+        if (page.hasCursor()) {
+            // cursor keys: score, title, isbn; matches are not ranked, so the page starts after the title and isbn
+            final List<String> after = Cursor.decode(page.getCursor(), 3);
+            where.add(cb.or(cb.greaterThan(titlePath, after.get(1)),
+                    cb.and(cb.equal(titlePath, after.get(1)), cb.greaterThan(isbnPath, after.get(2)))));
+        }
+
         cq.where(where.toArray(new Predicate[0]));
-        cq.orderBy(cb.asc(root.get("title"))); // Order by title, alphabetically
+        cq.orderBy(cb.asc(titlePath), cb.asc(isbnPath)); // Order by title, alphabetically
 
         final TypedQuery<Book> q = em.createQuery(cq);
-        q.setFirstResult((page.getNumber() - 1) * page.getLimit());
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
         q.setMaxResults(page.getLimit());
 
         return q.getResultList();
@@ -5,9 +5,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.services.BookCountDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookSearchFieldsDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookTitleLendingsDTO;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookAuthorNumberDTO;
 import pt.psoft.g1.psoftg1.bookmanagement.services.SearchBooksQuery;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,10 +28,43 @@ public interface BookRepository {
     List<Book> findByTitle(@Param("title") String title);
     List<Book> findByAuthorName(@Param("authorName") String authorName);
     Optional<Book> findByIsbn(@Param("isbn") String isbn);
+    List<Book> findAllByIsbnIn(@Param("isbns") Collection<String> isbns);
     Page<BookCountDTO> findTop5BooksLent(@Param("oneYearAgo") LocalDate oneYearAgo, Pageable pageable);
     List<Book> findBooksByAuthorNumber(Long authorNumber);
+    /**
+     * @return one row per book and author, with the genre of the book
+     */
+    List<BookGenreAuthorDTO> listGenresAndAuthors();
+    List<BookGenreAuthorDTO> listGenresAndAuthorsByIsbnIn(@Param("isbns") Collection<String> isbns);
+    /**
+     * @return one row per book and author, with the title and genre of the book
+     */
+    List<BookSearchFieldsDTO> listSearchFields();
+    List<BookSearchFieldsDTO> listSearchFieldsByIsbnIn(@Param("isbns") Collection<String> isbns);
+    /**
+     * @return the title of every book
+     */
+    List<BookTitleDTO> listTitles();
+    /**
+     * @return the title of some books, with the number of times they were lent
+     */
+    List<BookTitleLendingsDTO> listTitlesAndLendingCountsByIsbnIn(@Param("isbns") Collection<String> isbns);
+    /**
+     * @return one row per book and author
+     */
+    List<BookAuthorNumberDTO> listAuthorNumbers();
+    List<BookAuthorNumberDTO> listAuthorNumbersByIsbnIn(@Param("isbns") Collection<String> isbns);
 
     List<Book> searchBooks(pt.psoft.g1.psoftg1.shared.services.Page page, SearchBooksQuery query);
+    /**
+     * @return the requested page of the books whose title or genre contains the given ones, or with an author
+     * whose name starts with the given one, by title
+     */
+    List<Book> findBooks(String title, String genre, String authorName, pt.psoft.g1.psoftg1.shared.services.Page page);
+    /**
+     * @return the number of books {@link #findBooks} finds across every page
+     */
+    long countBooks(String title, String genre, String authorName);
 
     Book save(Book book);
     void delete(Book book);
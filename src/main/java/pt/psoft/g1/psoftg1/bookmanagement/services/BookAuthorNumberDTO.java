@@ -0,0 +1,11 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookAuthorNumberDTO {
+    private String isbn;
+    private Long authorNumber;
+}
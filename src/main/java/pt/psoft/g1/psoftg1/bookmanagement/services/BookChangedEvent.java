@@ -0,0 +1,11 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.Value;
+
+/**
+ * Published when a {@code Book} is created or changed (title, genre, authors, photo...).
+ */
+@Value
+public class BookChangedEvent {
+    String isbn;
+}
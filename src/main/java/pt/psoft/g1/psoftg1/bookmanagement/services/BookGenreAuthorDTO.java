@@ -0,0 +1,12 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookGenreAuthorDTO {
+    private String isbn;
+    private String genre;
+    private String authorName;
+}
@@ -0,0 +1,13 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookSearchFieldsDTO {
+    private String isbn;
+    private String title;
+    private String genre;
+    private String authorName;
+}
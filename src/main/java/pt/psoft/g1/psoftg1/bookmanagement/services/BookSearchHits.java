@@ -0,0 +1,33 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of the books found by the search index, with the number of them per genre and per author.
+ */
+@Value
+public class BookSearchHits {
+    /**
+     * Books of the page, best match first
+     */
+    List<String> isbns;
+    /**
+     * Number of books found
+     */
+    long total;
+    /**
+     * Cursor of the next page, or {@code null} if this page is the last one
+     */
+    String nextCursor;
+    /**
+     * Most books first
+     */
+    Map<String, Long> genres;
+    /**
+     * Most books first
+     */
+    Map<String, Long> authors;
+}
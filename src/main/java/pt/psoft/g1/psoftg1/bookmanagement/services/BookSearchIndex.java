@@ -0,0 +1,562 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.shared.model.CompressedBitmap;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+import pt.psoft.g1.psoftg1.shared.services.Page;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index of the catalog, for the book searches by title, genre and author name.
+ * <p>
+ * Titles, genres and author names are accent-folded, lower-cased and split into words. Each field maps its words
+ * to the books holding them, and the trigrams of its words to the words holding them, so a searched word is
+ * looked up in the vocabulary (words containing it, or starting with it when shorter than a trigram) instead of
+ * scanning the books. With typo tolerance, words one edit away from the searched word (two for long words) match
+ * as well. Every searched word of a field must match.
+ * <p>
+ * Hits are ranked by how well they match (whole words, then prefixes, substrings and typos; titles weigh more
+ * than authors, and authors more than genres), then by title and isbn. Paged searches do not sort every hit:
+ * they keep the best {@code offset + limit} hits in a bounded heap, and their cursors hold the rank of the last
+ * hit of the page (score, title and isbn), so the next page starts right after that rank even if the book has
+ * been renamed or removed since.
+ * <p>
+ * Books also get a dense ordinal, and every genre and author a {@link CompressedBitmap} of the ordinals of their
+ * books. Searches narrowed to some genres or authors intersect those bitmaps first, and only score and rank the
+ * books left. Their hits are then counted per genre and per author from the hit books themselves, so only the
+ * genres and authors of the hits are visited.
+ * <p>
+ * The index is used unless {@code books.search-index.enabled} is unset. It is an {@link InMemoryProjection}:
+ * loaded at startup, updated on {@link BookChangedEvent}s, and periodically reloaded to pick up the changes it is not told about (e.g. renamed
+ * authors, or books saved by other nodes). Until it is loaded every search is empty, so callers fall back to the
+ * database.
+ */
+@Component
+public class BookSearchIndex {
+    private final Logger logger = LogManager.getLogger();
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+
+    enum Field {
+        TITLE(3), AUTHOR(2), GENRE(1);
+
+        final int weight;
+
+        Field(final int weight) {
+            this.weight = weight;
+        }
+    }
+
+    // score of a searched word, by how it matched a word of the book
+    private static final int WHOLE_WORD = 8;
+    private static final int PREFIX = 4;
+    private static final int SUBSTRING = 2;
+    private static final int TYPO = 1;
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final int facetSize;
+    private final InMemoryProjection<Index> index = new InMemoryProjection<>();
+
+    public BookSearchIndex(final BookRepository bookRepository,
+                           final PlatformTransactionManager transactionManager,
+                           @Value("${books.search-index.enabled:true}")
+                           final boolean enabled,
+                           @Value("${books.search-index.facet-size:10}")
+                           final int facetSize) {
+        this.bookRepository = bookRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.enabled = enabled;
+        this.facetSize = facetSize;
+    }
+
+    /**
+     * @param title        - Words of the title, or {@code null}
+     * @param genre        - Words of the genre, or {@code null}
+     * @param authorName   - Words of the name of an author, or {@code null}
+     * @param matchAll     - Whether a book must match every given field, or any of them
+     * @param typoTolerant - Whether words with a typo match as well
+     * @return isbns of the matching books, best match first, or empty if the index is not loaded. Without any
+     * field, every book matches all of them, and none matches any of them.
+     */
+    public Optional<List<String>> search(final String title, final String genre, final String authorName,
+                                         final boolean matchAll, final boolean typoTolerant) {
+        final Map<Field, String> fields = new EnumMap<>(Field.class);
+        if (title != null && !title.isBlank())
+            fields.put(Field.TITLE, title);
+        if (genre != null && !genre.isBlank())
+            fields.put(Field.GENRE, genre);
+        if (authorName != null && !authorName.isBlank())
+            fields.put(Field.AUTHOR, authorName);
+
+        return index.read(i -> i.search(fields, matchAll, typoTolerant));
+    }
+
+    /**
+     * Finds the books matching any of the given fields.
+     * @return the requested page of the matching books, best match first, or empty if the index is not loaded.
+     * Hits are not counted per genre and author.
+     * @throws IllegalArgumentException if the cursor of the page was not issued for a book search
+     */
+    public Optional<BookSearchHits> search(final String title, final String genre, final String authorName,
+                                           final boolean typoTolerant, final Page page) {
+        final Map<Field, String> fields = new EnumMap<>(Field.class);
+        if (title != null && !title.isBlank())
+            fields.put(Field.TITLE, title);
+        if (genre != null && !genre.isBlank())
+            fields.put(Field.GENRE, genre);
+        if (authorName != null && !authorName.isBlank())
+            fields.put(Field.AUTHOR, authorName);
+        final Ranked after = after(page);
+
+        return index.read(i -> i.search(fields, typoTolerant, after, page));
+    }
+
+    /**
+     * Finds the books matching every field of a query, and within the genres and authors it is narrowed to: any
+     * of them, or all of them with {@link SearchBooksQuery.FacetOperator#AND}.
+     * @return the requested page of the matching books, best match first, and the number of them of the
+     * {@code books.search-index.facet-size} genres and authors with the most, or empty if the index is not loaded
+     * @throws IllegalArgumentException if the cursor of the page was not issued for a book search
+     */
+    public Optional<BookSearchHits> search(final SearchBooksQuery query, final Page page) {
+        final Map<Field, String> fields = new EnumMap<>(Field.class);
+        if (query.getTitle() != null && !query.getTitle().isBlank())
+            fields.put(Field.TITLE, query.getTitle());
+        if (query.getGenre() != null && !query.getGenre().isBlank())
+            fields.put(Field.GENRE, query.getGenre());
+        if (query.getAuthorName() != null && !query.getAuthorName().isBlank())
+            fields.put(Field.AUTHOR, query.getAuthorName());
+        final boolean allValues = query.getFacetOperator() == SearchBooksQuery.FacetOperator.AND;
+        final Ranked after = after(page);
+
+        return index.read(i -> i.search(fields, Boolean.TRUE.equals(query.getTypoTolerant()),
+                query.getGenres(), query.getAuthors(), allValues, facetSize, after, page));
+    }
+
+    /**
+     * @return the rank held by the cursor of a page, or {@code null} if the page has none
+     */
+    private static Ranked after(final Page page) {
+        if (!page.hasCursor())
+            return null;
+        // cursor keys: score, title, isbn
+        final List<String> after = Cursor.decode(page.getCursor(), 3);
+        return new Ranked(Cursor.parse(after.get(0), Integer::parseInt), after.get(1), after.get(2));
+    }
+
+    // books are saved outside of a transaction as well
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(final BookChangedEvent event) {
+        if (!enabled)
+            return;
+        final List<BookSearchFieldsDTO> rows = readTransaction.execute(status ->
+                bookRepository.listSearchFieldsByIsbnIn(List.of(event.getIsbn())));
+        index.apply(i -> {
+            if (rows == null || rows.isEmpty())
+                i.remove(event.getIsbn());
+            else
+                i.put(rows);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Replaces the index with a fresh copy of the catalog.
+     */
+    @Scheduled(fixedDelayString = "${books.search-index.reload-interval:PT1H}",
+            initialDelayString = "${books.search-index.reload-interval:PT1H}")
+    public void reload() {
+        if (!enabled)
+            return;
+        final Index fresh = index.reload(loaded -> {
+            final Index i = new Index();
+            readTransaction.execute(status -> bookRepository.listSearchFields()).stream()
+                    .collect(Collectors.groupingBy(BookSearchFieldsDTO::getIsbn))
+                    .values()
+                    .forEach(i::put);
+            return i;
+        });
+        logger.info("Loaded {} books into the book search index", fresh.documents.size());
+    }
+
+    /**
+     * @return accent-folded, lower-cased words of a text
+     */
+    static List<String> words(final String text) {
+        if (text == null)
+            return List.of();
+        final String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(folded)).filter(w -> !w.isEmpty()).toList();
+    }
+
+    static Set<String> grams(final String word) {
+        final Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++)
+            grams.add(word.substring(i, i + GRAM));
+        return grams;
+    }
+
+    /**
+     * @return whether two words are at most {@code maxEdits} insertions, deletions or substitutions apart
+     */
+    static boolean withinEdits(final String a, final String b, final int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits)
+            return false;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                final int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits)
+                return false;
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()] <= maxEdits;
+    }
+
+    private record Document(String isbn, String title, int ordinal, String genre, Set<String> authors,
+                            Map<Field, Set<String>> words) {}
+
+    /**
+     * Rank of a hit: best score first, then by title and isbn.
+     */
+    private record Ranked(int score, String title, String isbn) {
+        static final Comparator<Ranked> ORDER = Comparator.<Ranked>comparingInt(r -> -r.score())
+                .thenComparing(Ranked::title)
+                .thenComparing(Ranked::isbn);
+    }
+
+    private static final class FieldIndex {
+        // word -> isbns of the books holding it, sorted so the words starting with a prefix are a range
+        final NavigableMap<String, Set<String>> postings = new TreeMap<>();
+        // trigram -> words holding it
+        final Map<String, Set<String>> grams = new HashMap<>();
+
+        void add(final String word, final String isbn) {
+            postings.computeIfAbsent(word, w -> {
+                grams(w).forEach(g -> grams.computeIfAbsent(g, k -> new HashSet<>()).add(w));
+                return new HashSet<>();
+            }).add(isbn);
+        }
+
+        void remove(final String word, final String isbn) {
+            final Set<String> isbns = postings.get(word);
+            if (isbns == null || !isbns.remove(isbn) || !isbns.isEmpty())
+                return;
+            postings.remove(word);
+            for (String g : grams(word)) {
+                final Set<String> words = grams.get(g);
+                words.remove(word);
+                if (words.isEmpty())
+                    grams.remove(g);
+            }
+        }
+
+        /**
+         * @return score of each book holding a word matching the searched one
+         */
+        Map<String, Integer> match(final String searched, final boolean typoTolerant) {
+            final Map<String, Integer> words = new HashMap<>();
+            if (searched.length() < GRAM) {
+                postings.subMap(searched, true, searched + Character.MAX_VALUE, false).keySet()
+                        .forEach(w -> words.put(w, w.equals(searched) ? WHOLE_WORD : PREFIX));
+            } else {
+                final Set<String> searchedGrams = grams(searched);
+                final List<Set<String>> holders = new ArrayList<>();
+                for (String g : searchedGrams)
+                    holders.add(grams.getOrDefault(g, Set.of()));
+                holders.sort(Comparator.comparingInt(Set::size));
+                // words holding every trigram of the searched word; most of them contain it
+                for (String w : holders.get(0)) {
+                    if (w.contains(searched) && holders.stream().allMatch(h -> h.contains(w)))
+                        words.put(w, w.equals(searched) ? WHOLE_WORD : w.startsWith(searched) ? PREFIX : SUBSTRING);
+                }
+                if (typoTolerant && searched.length() > GRAM)
+                    matchTypos(searched, searchedGrams, holders, words);
+            }
+
+            final Map<String, Integer> scores = new HashMap<>();
+            words.forEach((w, score) -> postings.get(w).forEach(isbn -> scores.merge(isbn, score, Math::max)));
+            return scores;
+        }
+
+        private static void matchTypos(final String searched, final Set<String> searchedGrams,
+                                       final List<Set<String>> holders, final Map<String, Integer> words) {
+            final int maxEdits = searched.length() <= 7 ? 1 : 2;
+            // each edit changes at most GRAM trigrams, so closer words share at least this many
+            final int minShared = Math.max(1, searchedGrams.size() - GRAM * maxEdits);
+            final Map<String, Integer> shared = new HashMap<>();
+            holders.forEach(h -> h.forEach(w -> shared.merge(w, 1, Integer::sum)));
+            shared.forEach((w, count) -> {
+                if (count >= minShared && !words.containsKey(w) && withinEdits(searched, w, maxEdits))
+                    words.put(w, TYPO);
+            });
+        }
+    }
+
+    private static final class Index {
+        final Map<String, Document> documents = new HashMap<>();
+        final Map<Field, FieldIndex> fields = new EnumMap<>(Field.class);
+        // ordinals of the books, reused once their book is removed so they stay dense
+        int nextOrdinal;
+        final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        // book of each ordinal, null once removed
+        final List<Document> byOrdinal = new ArrayList<>();
+        final CompressedBitmap all = new CompressedBitmap();
+        final Map<String, CompressedBitmap> genres = new HashMap<>();
+        final Map<String, CompressedBitmap> authors = new HashMap<>();
+
+        Index() {
+            for (Field field : Field.values())
+                fields.put(field, new FieldIndex());
+        }
+
+        /**
+         * @param rows - Rows of a single book, one per author
+         */
+        void put(final List<BookSearchFieldsDTO> rows) {
+            final BookSearchFieldsDTO book = rows.get(0);
+            remove(book.getIsbn());
+
+            final Map<Field, Set<String>> words = new EnumMap<>(Field.class);
+            words.put(Field.TITLE, new HashSet<>(words(book.getTitle())));
+            words.put(Field.GENRE, new HashSet<>(words(book.getGenre())));
+            words.put(Field.AUTHOR, rows.stream().flatMap(r -> words(r.getAuthorName()).stream())
+                    .collect(Collectors.toSet()));
+            words.forEach((field, fieldWords) -> fieldWords.forEach(w -> fields.get(field).add(w, book.getIsbn())));
+
+            final int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+            final Set<String> authorNames = rows.stream().map(BookSearchFieldsDTO::getAuthorName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            all.add(ordinal);
+            genres.computeIfAbsent(book.getGenre(), g -> new CompressedBitmap()).add(ordinal);
+            authorNames.forEach(a -> authors.computeIfAbsent(a, k -> new CompressedBitmap()).add(ordinal));
+
+            final Document document =
+                    new Document(book.getIsbn(), book.getTitle(), ordinal, book.getGenre(), authorNames, words);
+            documents.put(book.getIsbn(), document);
+            if (ordinal == byOrdinal.size())
+                byOrdinal.add(document);
+            else
+                byOrdinal.set(ordinal, document);
+        }
+
+        void remove(final String isbn) {
+            final Document document = documents.remove(isbn);
+            if (document == null)
+                return;
+            document.words().forEach((field, fieldWords) ->
+                    fieldWords.forEach(w -> fields.get(field).remove(w, isbn)));
+
+            all.remove(document.ordinal());
+            removeFrom(genres, document.genre(), document.ordinal());
+            document.authors().forEach(a -> removeFrom(authors, a, document.ordinal()));
+            byOrdinal.set(document.ordinal(), null);
+            freeOrdinals.push(document.ordinal());
+        }
+
+        private static void removeFrom(final Map<String, CompressedBitmap> facet, final String value, final int ordinal) {
+            final CompressedBitmap books = facet.get(value);
+            if (books != null && books.remove(ordinal) && books.isEmpty())
+                facet.remove(value);
+        }
+
+        BookSearchHits search(final Map<Field, String> searched, final boolean typoTolerant, final Ranked after,
+                              final Page page) {
+            final Map<String, Integer> scores = score(searched, false, typoTolerant, null);
+            return hitsOf(pageOf(scores, after, page), scores.size(), page, Map.of(), Map.of());
+        }
+
+        BookSearchHits search(final Map<Field, String> searched, final boolean typoTolerant,
+                              final List<String> genreValues, final List<String> authorValues,
+                              final boolean allValues, final int facetSize, final Ranked after, final Page page) {
+            final CompressedBitmap genreFilter = filter(genres, genreValues, allValues);
+            final CompressedBitmap authorFilter = filter(authors, authorValues, allValues);
+            final CompressedBitmap within = genreFilter == null ? authorFilter
+                    : authorFilter == null ? genreFilter : genreFilter.and(authorFilter);
+
+            final Map<String, Integer> scores;
+            if (searched.isEmpty()) {
+                // every book matches, unranked, so the filters alone are the hits
+                scores = new HashMap<>();
+                (within == null ? all : within).forEach(ordinal -> scores.put(byOrdinal.get(ordinal).isbn(), 0));
+            } else {
+                scores = score(searched, true, typoTolerant, within);
+            }
+
+            final Map<String, Long> genreCounts = new HashMap<>();
+            final Map<String, Long> authorCounts = new HashMap<>();
+            scores.keySet().forEach(isbn -> {
+                final Document document = documents.get(isbn);
+                genreCounts.merge(document.genre(), 1L, Long::sum);
+                document.authors().forEach(a -> authorCounts.merge(a, 1L, Long::sum));
+            });
+            return hitsOf(pageOf(scores, after, page), scores.size(), page,
+                    top(genreCounts, facetSize), top(authorCounts, facetSize));
+        }
+
+        /**
+         * Ranks only the hits of the requested page: those after the cursor, or the best {@code offset + limit}
+         * of them, are kept in a heap with the worst one on top.
+         */
+        private List<Ranked> pageOf(final Map<String, Integer> scores, final Ranked after, final Page page) {
+            final int skip = after == null ? page.getOffset() : 0;
+            final int size = skip + page.getLimit();
+            final PriorityQueue<Ranked> best = new PriorityQueue<>(Math.min(size, scores.size()) + 1,
+                    Ranked.ORDER.reversed());
+            scores.forEach((isbn, score) -> {
+                final Ranked hit = new Ranked(score, documents.get(isbn).title(), isbn);
+                if (after != null && Ranked.ORDER.compare(hit, after) <= 0)
+                    return;
+                if (best.size() < size) {
+                    best.add(hit);
+                } else if (Ranked.ORDER.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            });
+
+            final List<Ranked> ranked = new ArrayList<>(best);
+            ranked.sort(Ranked.ORDER);
+            return ranked.subList(Math.min(skip, ranked.size()), ranked.size());
+        }
+
+        private static BookSearchHits hitsOf(final List<Ranked> hits, final long total, final Page page,
+                                             final Map<String, Long> genres, final Map<String, Long> authors) {
+            return new BookSearchHits(hits.stream().map(Ranked::isbn).toList(), total,
+                    Cursor.next(hits, page, h -> new Object[]{h.score(), h.title(), h.isbn()}), genres, authors);
+        }
+
+        /**
+         * @return the books of any (or all) of the given facet values, or {@code null} if none is given
+         */
+        private static CompressedBitmap filter(final Map<String, CompressedBitmap> facet, final List<String> values,
+                                               final boolean allValues) {
+            if (values == null || values.isEmpty())
+                return null;
+            CompressedBitmap books = null;
+            for (String value : values) {
+                final CompressedBitmap valueBooks = facet.getOrDefault(value, new CompressedBitmap());
+                if (books == null)
+                    books = valueBooks;
+                else
+                    books = allValues ? books.and(valueBooks) : books.or(valueBooks);
+            }
+            return books;
+        }
+
+        /**
+         * @return the facet values with the most books, most books first
+         */
+        private static Map<String, Long> top(final Map<String, Long> counts, final int facetSize) {
+            return counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(facetSize)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        }
+
+        List<String> search(final Map<Field, String> searched, final boolean matchAll, final boolean typoTolerant) {
+            final Map<String, Integer> ranked = score(searched, matchAll, typoTolerant, null);
+            return ranked.keySet().stream()
+                    .map(isbn -> new Ranked(ranked.get(isbn), documents.get(isbn).title(), isbn))
+                    .sorted(Ranked.ORDER)
+                    .map(Ranked::isbn)
+                    .toList();
+        }
+
+        /**
+         * @param within - Books the search is narrowed to, or {@code null}; only with {@code matchAll}
+         * @return score of each matching book
+         */
+        private Map<String, Integer> score(final Map<Field, String> searched, final boolean matchAll,
+                                           final boolean typoTolerant, final CompressedBitmap within) {
+            Map<String, Integer> scores = null;
+            for (Map.Entry<Field, String> entry : searched.entrySet()) {
+                final Map<String, Integer> fieldScores = match(entry.getKey(), entry.getValue(), typoTolerant);
+                if (scores == null) {
+                    // with matchAll, the other fields only intersect these matches
+                    scores = fieldScores;
+                    if (within != null)
+                        scores.keySet().removeIf(isbn -> !within.contains(documents.get(isbn).ordinal()));
+                } else if (matchAll) {
+                    scores = intersect(scores, fieldScores);
+                } else {
+                    scores = union(scores, fieldScores);
+                }
+            }
+            if (scores == null) {
+                scores = new HashMap<>();
+                if (matchAll)
+                    for (String isbn : documents.keySet())
+                        scores.put(isbn, 0);
+            }
+            return scores;
+        }
+
+        private Map<String, Integer> match(final Field field, final String text, final boolean typoTolerant) {
+            final FieldIndex fieldIndex = fields.get(field);
+            Map<String, Integer> scores = null;
+            for (String word : new LinkedHashSet<>(words(text))) {
+                final Map<String, Integer> wordScores = fieldIndex.match(word, typoTolerant);
+                scores = scores == null ? wordScores : intersect(scores, wordScores);
+                if (scores.isEmpty())
+                    break;
+            }
+            if (scores == null)
+                return new HashMap<>();
+            scores.replaceAll((isbn, score) -> score * field.weight);
+            return scores;
+        }
+
+        private static Map<String, Integer> union(final Map<String, Integer> a, final Map<String, Integer> b) {
+            b.forEach((isbn, score) -> a.merge(isbn, score, Integer::sum));
+            return a;
+        }
+
+        private static Map<String, Integer> intersect(final Map<String, Integer> a, final Map<String, Integer> b) {
+            final Map<String, Integer> smaller = a.size() <= b.size() ? a : b;
+            final Map<String, Integer> larger = smaller == a ? b : a;
+            final Map<String, Integer> both = new HashMap<>();
+            smaller.forEach((isbn, score) -> {
+                final Integer other = larger.get(isbn);
+                if (other != null)
+                    both.put(isbn, score + other);
+            });
+            return both;
+        }
+    }
+}
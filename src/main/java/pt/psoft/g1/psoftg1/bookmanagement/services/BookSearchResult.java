@@ -0,0 +1,20 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.Value;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of books found by {@code BookService.searchBooks}, with the cursor of the next page. The number of books
+ * and the facets are only known when the search index is loaded, and are {@code null} otherwise.
+ */
+@Value
+public class BookSearchResult {
+    List<Book> books;
+    String nextCursor;
+    Long total;
+    Map<String, Long> genres;
+    Map<String, Long> authors;
+}
@@ -3,6 +3,7 @@ package pt.psoft.g1.psoftg1.bookmanagement.services;
 
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
 
 import java.util.List;
 
@@ -17,8 +18,18 @@ public interface BookService {
     List<Book> findByGenre(String genre);
     List<Book> findByTitle(String title);
     List<Book> findByAuthorName(String authorName);
+    /**
+     * @return the requested page of the books matching any of the given criteria, best match first, and the
+     * number of matching books
+     */
+    PageResult<Book> findBooks(String title, String genre, String authorName, boolean typoTolerant, Page page);
     List<BookCountDTO> findTop5BooksLent();
     Book removeBookPhoto(String isbn, long desiredVersion);
     List<Book> getBooksSuggestionsForReader(String readerNumber);
-    List<Book> searchBooks(Page page, SearchBooksQuery query);
+    BookSearchResult searchBooks(Page page, SearchBooksQuery query);
+    /**
+     * @param prefix - Start of any word of an author name or book title
+     * @return matching author names and book titles, most lent first
+     */
+    List<CatalogSuggestion> autocomplete(String prefix, int limit);
 }
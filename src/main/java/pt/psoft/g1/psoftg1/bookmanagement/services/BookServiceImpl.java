@@ -1,10 +1,14 @@
 package pt.psoft.g1.psoftg1.bookmanagement.services;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.web.multipart.MultipartFile;
 import pt.psoft.g1.psoftg1.authormanagement.model.Author;
@@ -16,15 +20,24 @@ import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
 import pt.psoft.g1.psoftg1.exceptions.ConflictException;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCount;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactStore;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.TopLendingCounters;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
 import pt.psoft.g1.psoftg1.shared.repositories.PhotoRepository;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -36,10 +49,19 @@ public class BookServiceImpl implements BookService {
 	private final AuthorRepository authorRepository;
 	private final PhotoRepository photoRepository;
 	private final ReaderRepository readerRepository;
+	private final LendingFactStore lendingFactStore;
+	private final TopLendingCounters topLendingCounters;
+	private final BookSearchIndex bookSearchIndex;
+	private final CatalogAutocomplete catalogAutocomplete;
+	private final BookSuggestions bookSuggestions;
+	private final ApplicationEventPublisher eventPublisher;
 
 	@Value("${suggestionsLimitPerGenre}")
 	private long suggestionsLimitPerGenre;
 
+	@Value("${topReportsSize}")
+	private int topReportsSize;
+
 	@Override
 	public Book create(CreateBookRequest request, String isbn) {
 
@@ -72,7 +94,9 @@ public class BookServiceImpl implements BookService {
 
 		Book newBook = new Book(isbn, request.getTitle(), request.getDescription(), genre, authors, photoURI);
 
-        return bookRepository.save(newBook);
+		final Book saved = bookRepository.save(newBook);
+		eventPublisher.publishEvent(new BookChangedEvent(saved.getIsbn()));
+		return saved;
 	}
 
 
@@ -113,7 +137,7 @@ public class BookServiceImpl implements BookService {
         book.applyPatch(Long.parseLong(currentVersion), request);
 
 		bookRepository.save(book);
-
+		eventPublisher.publishEvent(new BookChangedEvent(book.getIsbn()));
 
 		return book;
 	}
@@ -124,9 +148,30 @@ public class BookServiceImpl implements BookService {
 	}
 
 	@Override
+	@Cacheable(ReportCaches.TOP_BOOKS_LENT)
+	@ReplicaRead
+	@Transactional(readOnly = true)
 	public List<BookCountDTO> findTop5BooksLent(){
+		final List<BookCountDTO> top5 = findTopBooksLent();
+		// cached beyond this session, so the authors shown with each book are loaded here
+		top5.forEach(c -> Hibernate.initialize(c.getBook().getAuthors()));
+		return top5;
+	}
+
+	private List<BookCountDTO> findTopBooksLent(){
 		LocalDate oneYearAgo = LocalDate.now().minusYears(1);
-		Pageable pageableRules = PageRequest.of(0,5);
+		final var top = topLendingCounters.findTopBooksLent(topReportsSize)
+				.or(() -> lendingFactStore.findTopBooksLent(oneYearAgo, topReportsSize));
+		if (top.isPresent()) {
+			final Map<String, Book> books = bookRepository.findAllByIsbnIn(
+					top.get().stream().map(LendingCount::getKey).toList()).stream()
+					.collect(Collectors.toMap(Book::getIsbn, b -> b));
+			return top.get().stream()
+					.filter(c -> books.containsKey(c.getKey()))
+					.map(c -> new BookCountDTO(books.get(c.getKey()), c.getCount()))
+					.collect(Collectors.toList());
+		}
+		Pageable pageableRules = PageRequest.of(0,topReportsSize);
 		return this.bookRepository.findTop5BooksLent(oneYearAgo, pageableRules).getContent();
 	}
 
@@ -143,21 +188,56 @@ public class BookServiceImpl implements BookService {
 		book.removePhoto(desiredVersion);
 		var updatedBook = bookRepository.save(book);
 		photoRepository.deleteByPhotoFile(photoFile);
+		eventPublisher.publishEvent(new BookChangedEvent(updatedBook.getIsbn()));
 		return updatedBook;
 	}
 
 	@Override
 	public List<Book> findByGenre(String genre) {
-		return this.bookRepository.findByGenre(genre);
+		return bookSearchIndex.search(null, genre, null, true, false)
+				.map(this::findAllInOrder)
+				.orElseGet(() -> this.bookRepository.findByGenre(genre));
 	}
 
 	public List<Book> findByTitle(String title) {
-		return bookRepository.findByTitle(title);
+		return bookSearchIndex.search(title, null, null, true, false)
+				.map(this::findAllInOrder)
+				.orElseGet(() -> bookRepository.findByTitle(title));
 	}
 
 	@Override
 	public List<Book> findByAuthorName(String authorName) {
-		return bookRepository.findByAuthorName(authorName + "%");
+		return bookSearchIndex.search(null, null, authorName, true, false)
+				.map(this::findAllInOrder)
+				.orElseGet(() -> bookRepository.findByAuthorName(authorName + "%"));
+	}
+
+	@Override
+	public PageResult<Book> findBooks(String title, String genre, String authorName, boolean typoTolerant, Page page) {
+		if (page == null) {
+			page = new Page(1, 10);
+		}
+		final var hits = bookSearchIndex.search(title, genre, authorName, typoTolerant, page);
+		if (hits.isPresent())
+			return new PageResult<>(findAllInOrder(hits.get().getIsbns()), hits.get().getTotal(),
+					hits.get().getNextCursor());
+
+		final List<Book> books = bookRepository.findBooks(title, genre, authorName, page);
+		return new PageResult<>(books, bookRepository.countBooks(title, genre, authorName), nextCursor(books, page));
+	}
+
+	/**
+	 * @return the books with the given isbns, in the same order
+	 */
+	private List<Book> findAllInOrder(List<String> isbns) {
+		if (isbns.isEmpty())
+			return new ArrayList<>();
+		final Map<String, Book> books = bookRepository.findAllByIsbnIn(isbns).stream()
+				.collect(Collectors.toMap(Book::getIsbn, b -> b));
+		return isbns.stream()
+				.filter(books::containsKey)
+				.map(books::get)
+				.collect(Collectors.toList());
 	}
 
 	public Book findByIsbn(String isbn) {
@@ -176,6 +256,11 @@ public class BookServiceImpl implements BookService {
 			throw new NotFoundException("Reader has no interests");
 		}
 
+		final var suggested = bookSuggestions.suggest(readerNumber,
+				interestList.stream().map(Genre::toString).toList(), (int) suggestionsLimitPerGenre);
+		if (suggested.isPresent())
+			return findAllInOrder(suggested.get());
+
 		for(Genre genre : interestList) {
 			List<Book> tempBooks = bookRepository.findByGenre(genre.toString());
 			if(tempBooks.isEmpty()) {
@@ -198,13 +283,48 @@ public class BookServiceImpl implements BookService {
 	}
 
 	@Override
-	public List<Book> searchBooks(Page page, SearchBooksQuery query) {
+	public BookSearchResult searchBooks(Page page, SearchBooksQuery query) {
 		if (page == null) {
 			page = new Page(1, 10);
 		}
 		if (query == null) {
-			query = new SearchBooksQuery("", "", "");
+			query = new SearchBooksQuery();
+		}
+		final var hits = bookSearchIndex.search(query, page);
+		if (hits.isEmpty()) {
+			final List<Book> books = bookRepository.searchBooks(page, query);
+			return new BookSearchResult(books, nextCursor(books, page), null, null, null);
 		}
-		return bookRepository.searchBooks(page, query);
+
+		return new BookSearchResult(findAllInOrder(hits.get().getIsbns()), hits.get().getNextCursor(),
+				hits.get().getTotal(), hits.get().getGenres(), hits.get().getAuthors());
+	}
+
+	/**
+	 * @return cursor of the page after the books found in the database, with the same keys as the cursors of the
+	 * search index (score, title, isbn); the database does not rank its matches, so they all score 0
+	 */
+	private static String nextCursor(List<Book> books, Page page) {
+		return Cursor.next(books, page, b -> new Object[]{0, b.getTitle().toString(), b.getIsbn()});
+	}
+
+	@Override
+	public List<CatalogSuggestion> autocomplete(String prefix, int limit) {
+		if (limit < 1 || limit > catalogAutocomplete.getTopK())
+			throw new IllegalArgumentException("limit must be between 1 and " + catalogAutocomplete.getTopK());
+		final var completed = catalogAutocomplete.complete(prefix, limit);
+		if (completed.isPresent())
+			return completed.get();
+
+		// not loaded yet: unranked, and titles only match from their start
+		final List<CatalogSuggestion> suggestions = new ArrayList<>();
+		authorRepository.searchByNameNameStartsWith(prefix).stream()
+				.map(a -> new CatalogSuggestion(CatalogSuggestion.Type.AUTHOR, a.getAuthorNumber().toString(), a.getName(), 0))
+				.forEach(suggestions::add);
+		bookRepository.findByTitle(prefix).stream()
+				.filter(b -> b.getTitle().toString().startsWith(prefix))
+				.map(b -> new CatalogSuggestion(CatalogSuggestion.Type.TITLE, b.getIsbn(), b.getTitle().toString(), 0))
+				.forEach(suggestions::add);
+		return suggestions.stream().limit(limit).collect(Collectors.toList());
 	}
 }
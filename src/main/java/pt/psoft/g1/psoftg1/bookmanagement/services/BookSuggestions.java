@@ -0,0 +1,207 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+import pt.psoft.g1.psoftg1.shared.model.CompressedBitmap;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Book suggestions for readers: the most lent books of their genres of interest they have not lent yet.
+ * <p>
+ * The books of every genre are kept ranked by the number of lendings started in the last
+ * {@code books.suggestions.popularity-days} days, and the books every reader ever lent are kept as a
+ * {@link CompressedBitmap} of book ordinals. A suggestion then only walks the top of the ranking of each genre,
+ * skipping the books found in the bitmap of the reader.
+ * <p>
+ * Both are an {@link InMemoryProjection}: loaded at startup and updated on {@link LendingCreatedEvent}s and
+ * {@link BookChangedEvent}s. They are periodically reloaded, which drops the lendings that fell out of the popularity window and picks up the changes
+ * made by other nodes. Until they are loaded every suggestion is empty, so callers fall back to the database.
+ */
+@Component
+public class BookSuggestions {
+    private final Logger logger = LogManager.getLogger();
+
+    private final BookRepository bookRepository;
+    private final LendingRepository lendingRepository;
+    private final TransactionTemplate readTransaction;
+    private final int popularityDays;
+    private final InMemoryProjection<Rankings> rankings = new InMemoryProjection<>();
+
+    public BookSuggestions(final BookRepository bookRepository,
+                           final LendingRepository lendingRepository,
+                           final PlatformTransactionManager transactionManager,
+                           @Value("${books.suggestions.popularity-days:90}") final int popularityDays) {
+        this.bookRepository = bookRepository;
+        this.lendingRepository = lendingRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.popularityDays = popularityDays;
+    }
+
+    /**
+     * @param readerNumber  - Reader to suggest books to
+     * @param genres        - Genres of interest of the reader
+     * @param limitPerGenre - Maximum number of books suggested per genre
+     * @return isbns of the most lent books of each genre the reader has not lent yet, genre by genre,
+     * or empty if the rankings are not loaded
+     */
+    public Optional<List<String>> suggest(final String readerNumber, final List<String> genres,
+                                          final int limitPerGenre) {
+        return rankings.read(r -> r.suggest(readerNumber, genres, limitPerGenre));
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        final boolean recent = !event.getStartDate().isBefore(windowStart());
+        rankings.apply(event.getLendingNumber(), r -> r.lent(event.getIsbn(), event.getReaderNumber(), recent));
+    }
+
+    // books are saved outside of a transaction as well
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(final BookChangedEvent event) {
+        final List<BookGenreAuthorDTO> rows = readTransaction.execute(status ->
+                bookRepository.listGenresAndAuthorsByIsbnIn(List.of(event.getIsbn())));
+        rankings.apply(r -> {
+            if (rows.isEmpty())
+                r.removeBook(event.getIsbn());
+            else
+                r.putBook(event.getIsbn(), rows.get(0).getGenre());
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Replaces the rankings with fresh ones, counted from the catalog and the lending history.
+     */
+    @Scheduled(fixedDelayString = "${books.suggestions.reload-interval:PT6H}",
+            initialDelayString = "${books.suggestions.reload-interval:PT6H}")
+    public void reload() {
+        final Rankings fresh = rankings.reload(loaded -> readTransaction.execute(status -> load(loaded)));
+        logger.info("Loaded {} books and the lendings of {} readers into the book suggestions",
+                fresh.books.size(), fresh.lentByReader.size());
+    }
+
+    /**
+     * @param loaded - Takes the number of every lending counted
+     */
+    private Rankings load(final Consumer<Object> loaded) {
+        final Rankings r = new Rankings();
+        bookRepository.listGenresAndAuthors().forEach(b -> r.putBook(b.getIsbn(), b.getGenre()));
+        final LocalDate windowStart = windowStart();
+        try (Stream<LendingFactDTO> lendings = lendingRepository.streamLendingFacts()) {
+            lendings.forEach(l -> {
+                r.lent(l.getIsbn(), l.getReaderNumber(), !l.getStartDate().isBefore(windowStart));
+                loaded.accept(l.getLendingNumber());
+            });
+        }
+        return r;
+    }
+
+    /** @return first start day of the lendings that make a book popular */
+    private LocalDate windowStart() {
+        return LocalDate.now().minusDays(popularityDays - 1L);
+    }
+
+    private static final class Candidate {
+        final String isbn;
+        final int ordinal;
+        String genre;
+        long recentLendings;
+
+        Candidate(final String isbn, final int ordinal, final String genre) {
+            this.isbn = isbn;
+            this.ordinal = ordinal;
+            this.genre = genre;
+        }
+    }
+
+    private static final class Rankings {
+        private static final Comparator<Candidate> MOST_LENT = Comparator.<Candidate>comparingLong(c -> -c.recentLendings)
+                .thenComparing(c -> c.isbn);
+        private static final CompressedBitmap NOTHING_LENT = new CompressedBitmap();
+
+        final Map<String, Candidate> books = new HashMap<>();
+        // books of each genre, most lent first; a candidate is taken out before its lendings change
+        final Map<String, NavigableSet<Candidate>> byGenre = new HashMap<>();
+        // ordinals of the books lent by each reader
+        final Map<String, CompressedBitmap> lentByReader = new HashMap<>();
+        // ordinals are not reused, so the bitmaps never point to another book; a reload renumbers the books
+        int nextOrdinal;
+
+        List<String> suggest(final String readerNumber, final List<String> genres, final int limitPerGenre) {
+            final CompressedBitmap lent = lentByReader.getOrDefault(readerNumber, NOTHING_LENT);
+            final List<String> isbns = new ArrayList<>();
+            for (String genre : new LinkedHashSet<>(genres)) {
+                int found = 0;
+                for (Iterator<Candidate> ranked = byGenre.getOrDefault(genre, Collections.emptyNavigableSet()).iterator();
+                     ranked.hasNext() && found < limitPerGenre; ) {
+                    final Candidate book = ranked.next();
+                    if (!lent.contains(book.ordinal)) {
+                        isbns.add(book.isbn);
+                        found++;
+                    }
+                }
+            }
+            return isbns;
+        }
+
+        void putBook(final String isbn, final String genre) {
+            final Candidate book = books.get(isbn);
+            if (book == null) {
+                final Candidate created = new Candidate(isbn, nextOrdinal++, genre);
+                books.put(isbn, created);
+                ranking(genre).add(created);
+            } else if (!book.genre.equals(genre)) {
+                ranking(book.genre).remove(book);
+                book.genre = genre;
+                ranking(genre).add(book);
+            }
+        }
+
+        void removeBook(final String isbn) {
+            final Candidate book = books.remove(isbn);
+            if (book != null)
+                ranking(book.genre).remove(book);
+        }
+
+        /**
+         * @param recent - Whether the lending started within the popularity window
+         */
+        void lent(final String isbn, final String readerNumber, final boolean recent) {
+            final Candidate book = books.get(isbn);
+            if (book == null)
+                return;
+            lentByReader.computeIfAbsent(readerNumber, n -> new CompressedBitmap()).add(book.ordinal);
+            if (recent) {
+                final NavigableSet<Candidate> ranking = ranking(book.genre);
+                ranking.remove(book);
+                book.recentLendings++;
+                ranking.add(book);
+            }
+        }
+
+        private NavigableSet<Candidate> ranking(final String genre) {
+            return byGenre.computeIfAbsent(genre, g -> new TreeSet<>(MOST_LENT));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BookTitleLendingsDTO {
+    private String isbn;
+    private String title;
+    private Long lendingCount;
+}
@@ -0,0 +1,403 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.authormanagement.services.AuthorChangedEvent;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prefix completion of author names and book titles, most lent first.
+ * <p>
+ * Names and titles are accent-folded and lower-cased (see {@link BookSearchIndex#words(String)}), and inserted in
+ * a trie from the start of each of their words, so "tolk" completes "J. R. R. Tolkien". Every node of the trie
+ * keeps the {@code catalog.autocomplete.top-k} most lent entries below it, so a completion only walks down the
+ * typed prefix. The children of a node are kept in sorted arrays rather than maps, to keep the trie compact.
+ * <p>
+ * Titles are weighted by the number of times their book was lent, and author names by the number of times any
+ * of their books was lent. The trie is an {@link InMemoryProjection}: loaded at startup and updated on
+ * {@link LendingCreatedEvent}s, {@link BookChangedEvent}s and {@link AuthorChangedEvent}s, only refreshing the
+ * nodes along the changed entries. It is periodically reloaded to pick up the changes made by other nodes. Until
+ * it is loaded every completion is empty, so callers fall back to the database.
+ */
+@Component
+public class CatalogAutocomplete {
+    private final Logger logger = LogManager.getLogger();
+
+    // word starts inserted per entry, so long titles do not blow up the trie
+    private static final int MAX_KEYS_PER_ENTRY = 8;
+
+    private static final Comparator<Entry> MOST_LENT = Comparator.<Entry>comparingLong(e -> -e.weight)
+            .thenComparing(e -> e.text)
+            .thenComparing(e -> e.type)
+            .thenComparing(e -> e.id);
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final LendingRepository lendingRepository;
+    private final TransactionTemplate readTransaction;
+    private final int topK;
+    private final InMemoryProjection<Trie> trie = new InMemoryProjection<>();
+
+    public CatalogAutocomplete(final BookRepository bookRepository,
+                               final AuthorRepository authorRepository,
+                               final LendingRepository lendingRepository,
+                               final PlatformTransactionManager transactionManager,
+                               @Value("${catalog.autocomplete.top-k:10}") final int topK) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.lendingRepository = lendingRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.topK = topK;
+    }
+
+    /**
+     * @return maximum number of suggestions of a completion
+     */
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * @param prefix - Start of any word of an author name or book title
+     * @param limit  - Maximum number of suggestions, up to {@link #getTopK()}
+     * @return matching author names and book titles, most lent first, or empty if the trie is not loaded
+     */
+    public Optional<List<CatalogSuggestion>> complete(final String prefix, final int limit) {
+        return trie.read(t -> t.complete(prefix, Math.min(limit, topK)));
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        trie.apply(event.getLendingNumber(), t -> t.lent(event.getIsbn()));
+    }
+
+    // books are saved outside of a transaction as well
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(final BookChangedEvent event) {
+        final List<String> isbns = List.of(event.getIsbn());
+        final var rows = readTransaction.execute(status -> Map.entry(
+                bookRepository.listTitlesAndLendingCountsByIsbnIn(isbns),
+                authorNumbersByIsbn(bookRepository.listAuthorNumbersByIsbnIn(isbns))));
+        trie.apply(t -> {
+            if (rows.getKey().isEmpty())
+                t.removeBook(event.getIsbn());
+            rows.getKey().forEach(b -> t.putBook(b, rows.getValue().getOrDefault(b.getIsbn(), List.of())));
+        });
+    }
+
+    // authors are saved outside of a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAuthorChanged(final AuthorChangedEvent event) {
+        final Optional<String> name = readTransaction.execute(status ->
+                authorRepository.findByAuthorNumber(event.getAuthorNumber()).map(Author::getName));
+        trie.apply(t -> {
+            if (name.isPresent())
+                t.putAuthor(event.getAuthorNumber(), name.get());
+            else
+                t.removeAuthor(event.getAuthorNumber());
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Replaces the trie with a fresh copy of the catalog and its lending counts.
+     */
+    @Scheduled(fixedDelayString = "${catalog.autocomplete.reload-interval:PT6H}",
+            initialDelayString = "${catalog.autocomplete.reload-interval:PT6H}")
+    public void reload() {
+        final Trie fresh = trie.reload(loaded -> readTransaction.execute(status -> load(loaded)));
+        logger.info("Loaded {} authors and {} titles into the catalog autocomplete",
+                fresh.authors.size(), fresh.books.size());
+    }
+
+    /**
+     * @param loaded - Takes the number of every lending counted
+     */
+    private Trie load(final Consumer<Object> loaded) {
+        // lendings are counted one by one, so the lendings received while loading are not counted twice
+        final Map<String, Long> lendingCounts = new HashMap<>();
+        try (Stream<LendingFactDTO> lendings = lendingRepository.streamLendingFacts()) {
+            lendings.forEach(l -> {
+                lendingCounts.merge(l.getIsbn(), 1L, Long::sum);
+                loaded.accept(l.getLendingNumber());
+            });
+        }
+
+        final Trie t = new Trie(topK);
+        // the best entries of each node are only computed once everything has been inserted
+        t.loading = true;
+        authorRepository.findAll().forEach(a -> t.putAuthor(a.getAuthorNumber(), a.getName()));
+        final Map<String, List<Long>> authorNumbers = authorNumbersByIsbn(bookRepository.listAuthorNumbers());
+        for (BookTitleDTO b : bookRepository.listTitles())
+            t.putBook(new BookTitleLendingsDTO(b.getIsbn(), b.getTitle(), lendingCounts.getOrDefault(b.getIsbn(), 0L)),
+                    authorNumbers.getOrDefault(b.getIsbn(), List.of()));
+        t.loading = false;
+        t.refreshAll(t.root);
+        return t;
+    }
+
+    private static Map<String, List<Long>> authorNumbersByIsbn(final List<BookAuthorNumberDTO> rows) {
+        return rows.stream().collect(Collectors.groupingBy(BookAuthorNumberDTO::getIsbn,
+                Collectors.mapping(BookAuthorNumberDTO::getAuthorNumber, Collectors.toList())));
+    }
+
+    /**
+     * @return the normalized text from the start of each of its words
+     */
+    static List<String> keysOf(final String text) {
+        final List<String> words = BookSearchIndex.words(text);
+        final Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < words.size() && i < MAX_KEYS_PER_ENTRY; i++)
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        return new ArrayList<>(keys);
+    }
+
+    private static final class Entry {
+        final CatalogSuggestion.Type type;
+        final String id;
+        String text;
+        long weight;
+        List<String> keys = List.of();
+
+        Entry(final CatalogSuggestion.Type type, final String id, final String text, final long weight) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.weight = weight;
+        }
+
+        CatalogSuggestion toSuggestion() {
+            return new CatalogSuggestion(type, id, text, weight);
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        // sorted
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        // entries whose key ends here
+        Entry[] entries = NO_ENTRIES;
+        // best entries of this node and its descendants
+        Entry[] top = NO_ENTRIES;
+
+        Node child(final char label) {
+            final int i = Arrays.binarySearch(labels, label);
+            return i < 0 ? null : children[i];
+        }
+
+        Node addChild(final char label) {
+            final int i = -Arrays.binarySearch(labels, label) - 1;
+            final char[] newLabels = new char[labels.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newLabels[i] = label;
+            newChildren[i] = new Node();
+            System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[i];
+        }
+
+        void removeChild(final char label) {
+            final int i = Arrays.binarySearch(labels, label);
+            final char[] newLabels = new char[labels.length - 1];
+            final Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return entries.length == 0 && children.length == 0;
+        }
+    }
+
+    private static final class Trie {
+        final int topK;
+        final Node root = new Node();
+        final Map<String, Entry> books = new HashMap<>();
+        final Map<Long, Entry> authors = new HashMap<>();
+        // author numbers per isbn
+        final Map<String, List<Long>> bookAuthors = new HashMap<>();
+        boolean loading;
+
+        Trie(final int topK) {
+            this.topK = topK;
+        }
+
+        List<CatalogSuggestion> complete(final String prefix, final int limit) {
+            final String key = String.join(" ", BookSearchIndex.words(prefix));
+            if (key.isEmpty())
+                return List.of();
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++)
+                node = node.child(key.charAt(i));
+            if (node == null)
+                return List.of();
+            return Arrays.stream(node.top).limit(limit).map(Entry::toSuggestion).toList();
+        }
+
+        void putAuthor(final Long authorNumber, final String name) {
+            final Entry author = authors.get(authorNumber);
+            if (author == null) {
+                final Entry created = new Entry(CatalogSuggestion.Type.AUTHOR, authorNumber.toString(), name, 0);
+                authors.put(authorNumber, created);
+                insert(created);
+            } else if (!author.text.equals(name)) {
+                remove(author);
+                author.text = name;
+                insert(author);
+            }
+        }
+
+        void removeAuthor(final Long authorNumber) {
+            final Entry author = authors.remove(authorNumber);
+            if (author != null)
+                remove(author);
+        }
+
+        void putBook(final BookTitleLendingsDTO book, final List<Long> authorNumbers) {
+            removeBook(book.getIsbn());
+            final Entry title = new Entry(CatalogSuggestion.Type.TITLE, book.getIsbn(), book.getTitle(),
+                    book.getLendingCount());
+            books.put(book.getIsbn(), title);
+            bookAuthors.put(book.getIsbn(), authorNumbers);
+            insert(title);
+            for (Long authorNumber : authorNumbers)
+                addWeight(authors.get(authorNumber), title.weight);
+        }
+
+        void removeBook(final String isbn) {
+            final Entry title = books.remove(isbn);
+            if (title == null)
+                return;
+            remove(title);
+            for (Long authorNumber : bookAuthors.remove(isbn))
+                addWeight(authors.get(authorNumber), -title.weight);
+        }
+
+        void lent(final String isbn) {
+            final Entry title = books.get(isbn);
+            if (title == null)
+                return;
+            addWeight(title, 1);
+            for (Long authorNumber : bookAuthors.get(isbn))
+                addWeight(authors.get(authorNumber), 1);
+        }
+
+        private void addWeight(final Entry entry, final long delta) {
+            if (entry == null || delta == 0)
+                return;
+            entry.weight += delta;
+            for (String key : entry.keys)
+                refresh(path(key, false));
+        }
+
+        private void insert(final Entry entry) {
+            entry.keys = keysOf(entry.text);
+            for (String key : entry.keys) {
+                final Node[] path = path(key, true);
+                final Node end = path[path.length - 1];
+                end.entries = Arrays.copyOf(end.entries, end.entries.length + 1);
+                end.entries[end.entries.length - 1] = entry;
+                refresh(path);
+            }
+        }
+
+        private void remove(final Entry entry) {
+            for (String key : entry.keys) {
+                final Node[] path = path(key, false);
+                if (path == null)
+                    continue;
+                final Node end = path[path.length - 1];
+                end.entries = Arrays.stream(end.entries).filter(e -> e != entry).toArray(Entry[]::new);
+                // drops the nodes left without entries below them
+                int depth = path.length - 1;
+                while (depth > 0 && path[depth].isEmpty()) {
+                    path[depth - 1].removeChild(key.charAt(depth - 1));
+                    depth--;
+                }
+                refresh(Arrays.copyOf(path, depth + 1));
+            }
+            entry.keys = List.of();
+        }
+
+        /**
+         * @return the nodes from the root to the end of a key, or {@code null} if the key is not in the trie
+         */
+        private Node[] path(final String key, final boolean create) {
+            final Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node next = path[i].child(key.charAt(i));
+                if (next == null) {
+                    if (!create)
+                        return null;
+                    next = path[i].addChild(key.charAt(i));
+                }
+                path[i + 1] = next;
+            }
+            return path;
+        }
+
+        private void refresh(final Node[] path) {
+            if (loading || path == null)
+                return;
+            for (int i = path.length - 1; i >= 0; i--)
+                path[i].top = best(path[i]);
+        }
+
+        private void refreshAll(final Node node) {
+            for (Node child : node.children)
+                refreshAll(child);
+            node.top = best(node);
+        }
+
+        /**
+         * @return the best entries of a node, from its own entries and the best entries of its children
+         */
+        private Entry[] best(final Node node) {
+            final List<Entry> candidates = new ArrayList<>(Arrays.asList(node.entries));
+            for (Node child : node.children)
+                candidates.addAll(Arrays.asList(child.top));
+            // an entry may reach a node through several of its keys
+            return candidates.stream()
+                    .distinct()
+                    .sorted(MOST_LENT)
+                    .limit(topK)
+                    .toArray(Entry[]::new);
+        }
+    }
+}
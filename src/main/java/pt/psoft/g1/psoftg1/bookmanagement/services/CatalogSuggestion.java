@@ -0,0 +1,21 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import lombok.Value;
+
+/**
+ * An author name or book title completing what was typed in a search box.
+ */
+@Value
+public class CatalogSuggestion {
+    public enum Type {
+        AUTHOR, TITLE
+    }
+
+    Type type;
+    /**
+     * Author number or isbn
+     */
+    String id;
+    String text;
+    long lendingCount;
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -11,4 +13,24 @@ public class SearchBooksQuery {
     private String title;
     private String genre;
     private String authorName;
+    /**
+     * Whether words with a typo match as well
+     */
+    private Boolean typoTolerant;
+    /**
+     * Genres the search is narrowed to
+     */
+    private List<String> genres;
+    /**
+     * Author names the search is narrowed to
+     */
+    private List<String> authors;
+    /**
+     * Whether the books must be of any of the given genres and authors (the default), or of all of them
+     */
+    private FacetOperator facetOperator;
+
+    public enum FacetOperator {
+        AND, OR
+    }
 }
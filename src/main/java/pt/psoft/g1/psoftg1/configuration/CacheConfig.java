@@ -0,0 +1,38 @@
+package pt.psoft.g1.psoftg1.configuration;
+
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
+
+/**
+ * Enables {@code @Cacheable} on the report queries, with size and time bounded caches that record their
+ * hit, miss and eviction statistics (exposed as the {@code cache.*} metrics of the actuator).
+ * <p>
+ * Only the caches in {@link ReportCaches} are kept; any other cache name (e.g. the {@code users} cache of
+ * {@code SpringDataUserRepository}) is not cached.
+ */
+@Configuration
+// cached reports are returned before a transaction is started
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(@Value("${reports.cache.spec:maximumSize=500,expireAfterWrite=10m,recordStats}")
+                                     final String spec) {
+        final CaffeineCacheManager reports = new CaffeineCacheManager();
+        reports.setCaffeineSpec(CaffeineSpec.parse(spec));
+        reports.setCacheNames(ReportCaches.ALL);
+        reports.setAllowNullValues(false);
+
+        final CompositeCacheManager cacheManager = new CompositeCacheManager(reports);
+        cacheManager.setFallbackToNoOpCache(true);
+        return cacheManager;
+    }
+}
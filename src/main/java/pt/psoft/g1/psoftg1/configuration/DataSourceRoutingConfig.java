@@ -0,0 +1,72 @@
+package pt.psoft.g1.psoftg1.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
+
+import javax.sql.DataSource;
+
+/**
+ * Sends the read-only transactions of {@link ReplicaRead} methods (e.g. the genre and reader reports) to a read
+ * replica, so they do not take the connections of the writes. Enabled by setting {@code datasource.replica.url};
+ * the replica is kept up to date by the database, and may lag a little behind the primary.
+ * <p>
+ * Each route has its own Hikari pool: the primary is configured by {@code spring.datasource.*} (and
+ * {@code spring.datasource.hikari.*}), the replica by {@code datasource.replica.*} (and
+ * {@code datasource.replica.hikari.*}, e.g. {@code maximum-pool-size}). Their metrics are the {@code hikaricp.*}
+ * metrics of the actuator, tagged with {@code pool:primary} or {@code pool:replica}.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(final DataSourceProperties dataSourceProperties) {
+        return pool(dataSourceProperties, "primary");
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            @Qualifier("replicaDataSourceProperties") final DataSourceProperties replicaDataSourceProperties) {
+        return pool(replicaDataSourceProperties, "replica");
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") final DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") final DataSource replicaDataSource) {
+        return ReadWriteRoutingDataSource.lazy(primaryDataSource, replicaDataSource);
+    }
+
+    @Bean
+    public ReplicaReadAspect replicaReadAspect() {
+        return new ReplicaReadAspect();
+    }
+
+    private static HikariDataSource pool(final DataSourceProperties properties, final String name) {
+        final HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
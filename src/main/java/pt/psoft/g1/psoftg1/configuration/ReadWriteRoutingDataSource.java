@@ -0,0 +1,63 @@
+package pt.psoft.g1.psoftg1.configuration;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Routes the connections of read-only transactions opened by
+ * {@link pt.psoft.g1.psoftg1.shared.services.ReplicaRead} methods to a replica, and every other connection to the
+ * primary. The finders of the Spring Data repositories and the read-only transactions of the event listeners,
+ * which read back what was just committed, stay on the primary unless they run within such a method.
+ * <p>
+ * Use it through {@link #lazy(DataSource, DataSource)}: transaction managers open their connection before the
+ * transaction is marked as read-only, so the route must only be chosen on the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    /**
+     * Action that may throw anything, such as an intercepted call.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Throwable;
+    }
+
+    // whether the current thread runs within a ReplicaRead method
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = ThreadLocal.withInitial(() -> false);
+
+    public ReadWriteRoutingDataSource(final DataSource primary, final DataSource replica) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public static DataSource lazy(final DataSource primary, final DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+    }
+
+    /**
+     * Runs an action whose read-only transactions may use the replica.
+     */
+    public static <T> T allowingReplica(final Call<T> action) throws Throwable {
+        final boolean allowed = REPLICA_ALLOWED.get();
+        REPLICA_ALLOWED.set(true);
+        try {
+            return action.call();
+        } finally {
+            if (!allowed)
+                REPLICA_ALLOWED.remove();
+        }
+    }
+
+    @Override
+    protected Route determineCurrentLookupKey() {
+        return REPLICA_ALLOWED.get() && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? Route.REPLICA : Route.PRIMARY;
+    }
+}
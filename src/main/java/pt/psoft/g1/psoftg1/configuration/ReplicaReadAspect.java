@@ -0,0 +1,19 @@
+package pt.psoft.g1.psoftg1.configuration;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Marks the calls of {@link pt.psoft.g1.psoftg1.shared.services.ReplicaRead} methods, so their read-only
+ * transactions are routed to the replica by {@link ReadWriteRoutingDataSource}.
+ */
+@Aspect
+public class ReplicaReadAspect {
+
+    @Around("@annotation(pt.psoft.g1.psoftg1.shared.services.ReplicaRead)"
+            + " || @within(pt.psoft.g1.psoftg1.shared.services.ReplicaRead)")
+    public Object allowReplica(final ProceedingJoinPoint call) throws Throwable {
+        return ReadWriteRoutingDataSource.allowingReplica(call::proceed);
+    }
+}
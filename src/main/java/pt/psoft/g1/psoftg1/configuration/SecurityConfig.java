@@ -138,6 +138,7 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.DELETE,"/api/books/{isbn}/photo").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET,"/api/books/suggestions").hasRole(Role.READER)
                 .requestMatchers(HttpMethod.POST,"/api/books/search").hasAnyRole(Role.LIBRARIAN, Role.READER)
+                .requestMatchers(HttpMethod.GET,"/api/autocomplete").hasAnyRole(Role.LIBRARIAN, Role.READER)
                 //endBooks
                 //readers
                 .requestMatchers(HttpMethod.PATCH,"/api/readers").hasRole(Role.READER)
@@ -158,16 +159,28 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.POST,"/api/genres/avgLendingsPerGenre").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET,"/api/genres/lendingsPerMonthLastTwelveMonths").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET, "/api/genres/lendingsAverageDurationPerMonth").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET, "/api/genres/distinctReadersPerMonth").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET, "/api/genres/distinctReaders").hasRole(Role.LIBRARIAN)
                 //end genres
                 //lendings
                 .requestMatchers(HttpMethod.GET,"/api/lendings/overdue").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET,"/api/lendings/overdue/count").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET,"/api/lendings/{year}/{seq}").hasAnyRole(Role.READER, Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.POST,"/api/lendings").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.POST,"/api/lendings/batch").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.PATCH,"/api/lendings/batch").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET,"/api/lendings/avgDuration").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET,"/api/lendings/durationPercentiles").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET,"/api/lendings/averageMonthlyPerReader").hasRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.GET,"/api/lendings/histogram").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.GET,"/api/lendings/overdue").hasRole(Role.LIBRARIAN)
                 .requestMatchers(HttpMethod.PATCH,"/api/lendings/{year}/{seq}").hasRole(Role.READER)
                 .requestMatchers(HttpMethod.POST,"/api/lendings/search").hasAnyRole(Role.LIBRARIAN)
+                .requestMatchers(HttpMethod.POST,"/api/lendings/search/export").hasRole(Role.LIBRARIAN)
                 //end lendings
+                //report jobs
+                .requestMatchers("/api/reports/jobs/**").hasRole(Role.LIBRARIAN)
+                //end report jobs
                 // Admin has access to all endpoints
                 .requestMatchers("/**").hasRole(Role.ADMIN)
                 .anyRequest().authenticated()
@@ -0,0 +1,17 @@
+package pt.psoft.g1.psoftg1.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(final String string) {
+        super(string);
+    }
+
+    public ServiceUnavailableException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
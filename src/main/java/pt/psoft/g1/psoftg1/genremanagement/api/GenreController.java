@@ -8,6 +8,7 @@ import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.genremanagement.services.GenreService;
 import pt.psoft.g1.psoftg1.genremanagement.services.GetAverageLendingsQuery;
 import pt.psoft.g1.psoftg1.shared.api.ListResponse;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.SearchRequest;
 
 @Tag(name = "Genres", description = "Endpoints for managing Genres")
@@ -22,7 +23,8 @@ public class GenreController {
     public ListResponse<GenreLendingsView> getAverageLendings(
             @Valid @RequestBody final SearchRequest<GetAverageLendingsQuery> query){
         final var list = genreService.getAverageLendings(query.getQuery(), query.getPage());
-        return new ListResponse<>(genreViewMapper.toGenreAvgLendingsView(list));
+        return new ListResponse<>(genreViewMapper.toGenreAvgLendingsView(list),
+                Cursor.next(list, query.getPage(), g -> new Object[]{g.getGenre()}));
     }
 
     @GetMapping("/top5")
@@ -60,4 +62,24 @@ public class GenreController {
 
         return new ListResponse<>(viewList);
     }
+
+    @GetMapping("/distinctReadersPerMonth")
+    public ListResponse<GenreDistinctReadersPerMonthView> getDistinctReadersPerMonth(
+            @RequestParam("startDate") final String start,
+            @RequestParam("endDate") final String end) {
+        final var list = genreService.getDistinctReadersPerMonth(start, end);
+
+        final var viewList = genreViewMapper.toGenreDistinctReadersPerMonthView(list);
+
+        return new ListResponse<>(viewList);
+    }
+
+    @GetMapping("/distinctReaders")
+    public ListResponse<GenreLendingsView> getDistinctReaders(
+            @RequestParam("startDate") final String start,
+            @RequestParam("endDate") final String end) {
+        final var list = genreService.getDistinctReaders(start, end);
+
+        return new ListResponse<>(genreViewMapper.toGenreAvgLendingsView(list));
+    }
 }
@@ -34,5 +34,9 @@ public abstract class GenreViewMapper extends MapperInterface{
     public abstract GenreLendingsAvgPerMonthView toGenreLendingsAveragePerMonthView(GenreLendingsPerMonthDTO dto);
     public abstract List<GenreLendingsAvgPerMonthView> toGenreLendingsAveragePerMonthView(List<GenreLendingsPerMonthDTO> dtos);
 
+    @Mapping(target = "distinctReaders", source = "values")
+    public abstract GenreDistinctReadersPerMonthView toGenreDistinctReadersPerMonthView(GenreLendingsPerMonthDTO dto);
+    public abstract List<GenreDistinctReadersPerMonthView> toGenreDistinctReadersPerMonthView(List<GenreLendingsPerMonthDTO> dtos);
+
 
 }
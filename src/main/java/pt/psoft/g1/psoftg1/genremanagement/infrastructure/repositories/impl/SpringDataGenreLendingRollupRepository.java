@@ -0,0 +1,88 @@
+package pt.psoft.g1.psoftg1.genremanagement.infrastructure.repositories.impl;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import pt.psoft.g1.psoftg1.genremanagement.model.GenreLendingRollup;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreLendingRollupRepository;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingReaderDTO;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+public interface SpringDataGenreLendingRollupRepository extends GenreLendingRollupRepository, CrudRepository<GenreLendingRollup, GenreLendingRollup.Key> {
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO GENRE_LENDING_ROLLUP (GENRE, LENDING_MONTH, LENDING_COUNT, RETURNED_COUNT, TOTAL_DAYS) " +
+            "VALUES (:genre, :month, 0, 0, 0)"
+            , nativeQuery = true)
+    void createRollup(@Param("genre") String genre, @Param("month") LocalDate month);
+
+    @Override
+    @Modifying
+    @Query("UPDATE GenreLendingRollup r " +
+            "SET r.lendingCount = r.lendingCount + :lendings " +
+            "WHERE r.id.genre = :genre AND r.id.month = :month")
+    int addLendings(@Param("genre") String genre, @Param("month") LocalDate month, @Param("lendings") long lendings);
+
+    @Override
+    @Modifying
+    @Query("UPDATE GenreLendingRollup r " +
+            "SET r.returnedCount = r.returnedCount + :lendings, r.totalDays = r.totalDays + :days " +
+            "WHERE r.id.genre = :genre AND r.id.month = :month")
+    int addReturnedLendings(@Param("genre") String genre, @Param("month") LocalDate month,
+                            @Param("lendings") long lendings, @Param("days") long days);
+
+    @Override
+    @Query("SELECT COUNT(r) FROM GenreLendingRollup r WHERE r.lendingCount > 0 AND r.readerSketch IS NULL")
+    long countRollupsWithoutReaderSketch();
+
+    @Override
+    @Query("SELECT r.readerSketch FROM GenreLendingRollup r " +
+            "WHERE r.id.genre = :genre AND r.id.month = :month")
+    byte[] findReaderSketch(@Param("genre") String genre, @Param("month") LocalDate month);
+
+    @Override
+    @Modifying
+    @Query("UPDATE GenreLendingRollup r " +
+            "SET r.readerSketch = :readerSketch " +
+            "WHERE r.id.genre = :genre AND r.id.month = :month")
+    int setReaderSketch(@Param("genre") String genre, @Param("month") LocalDate month,
+                        @Param("readerSketch") byte[] readerSketch);
+
+    @Override
+    @Modifying
+    @Query("DELETE FROM GenreLendingRollup r")
+    void deleteAllRollups();
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO GENRE_LENDING_ROLLUP (GENRE, LENDING_MONTH, LENDING_COUNT, RETURNED_COUNT, TOTAL_DAYS) " +
+            "SELECT g.GENRE, CAST(DATE_TRUNC(MONTH, l.START_DATE) AS DATE), COUNT(*), COUNT(l.RETURNED_DATE), " +
+            "COALESCE(SUM(DATEDIFF(day, l.START_DATE, l.RETURNED_DATE)), 0) " +
+            "FROM LENDING l " +
+            "JOIN BOOK b ON l.BOOK_PK = b.PK " +
+            "JOIN GENRE g ON b.GENRE_PK = g.PK " +
+            "GROUP BY g.GENRE, CAST(DATE_TRUNC(MONTH, l.START_DATE) AS DATE)"
+            , nativeQuery = true)
+    void rebuildRollups();
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT new pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingReaderDTO(g.genre, l.startDate, " +
+                "r.readerNumber.readerNumber) " +
+            "FROM Lending l " +
+            "JOIN l.book b " +
+            "JOIN b.genre g " +
+            "JOIN l.readerDetails r")
+    Stream<GenreLendingReaderDTO> streamGenreLendingReaders();
+}
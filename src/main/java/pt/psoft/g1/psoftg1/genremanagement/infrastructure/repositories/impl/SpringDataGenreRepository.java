@@ -11,13 +11,14 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
-import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.services.GenreBookCountDTO;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.model.GenreLendingRollup;
 import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
 import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsDTO;
 import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsPerMonthDTO;
-import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.shared.model.HyperLogLog;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -45,9 +46,15 @@ interface GenreRepoCustom{
     List<GenreLendingsPerMonthDTO> getLendingsPerMonthLastYearByGenre();
     List<GenreLendingsDTO> getAverageLendingsInMonth(LocalDate month, pt.psoft.g1.psoftg1.shared.services.Page page);
     List<GenreLendingsPerMonthDTO> getLendingsAverageDurationPerMonth(LocalDate startDate, LocalDate endDate);
+    List<GenreLendingsPerMonthDTO> getDistinctReadersPerMonth(LocalDate startDate, LocalDate endDate);
+    List<GenreLendingsDTO> getDistinctReaders(LocalDate startDate, LocalDate endDate);
 
 }
 
+/**
+ * Reads the genre lending reports from the {@code GenreLendingRollup}s, whose granularity is one month:
+ * date ranges are widened to whole months.
+ */
 @RequiredArgsConstructor
 class GenreRepoCustomImpl implements GenreRepoCustom {
 
@@ -57,44 +64,37 @@ class GenreRepoCustomImpl implements GenreRepoCustom {
     public List<GenreLendingsPerMonthDTO> getLendingsPerMonthLastYearByGenre(){
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Tuple> cq = cb.createTupleQuery();
-        Root<Lending> lendingRoot = cq.from(Lending.class);
-        Join<Lending, Book> bookJoin = lendingRoot.join("book");
-        Join<Book, Genre> genreJoin = bookJoin.join("genre");
+        Root<GenreLendingRollup> rollupRoot = cq.from(GenreLendingRollup.class);
+        Path<String> genre = rollupRoot.get("id").get("genre");
+        Path<LocalDate> month = rollupRoot.get("id").get("month");
 
-        Expression<Integer> year = cb.function("YEAR", Integer.class, lendingRoot.get("startDate"));
-        Expression<Integer> month = cb.function("MONTH", Integer.class, lendingRoot.get("startDate"));
-
-        Expression<Long> lendingCount = cb.count(lendingRoot);
-
-        cq.multiselect(genreJoin.get("genre"), year, month, lendingCount);
-        cq.groupBy(genreJoin.get("genre"), year, month);
+        cq.multiselect(genre, month, rollupRoot.get("lendingCount"));
 
         // Predicate to filter the last 12 months
         LocalDate now = LocalDate.now();
         LocalDate twelveMonthsAgo = now.minusMonths(12);
-        Predicate datePredicate = cb.between(lendingRoot.get("startDate"),
-                java.sql.Date.valueOf(twelveMonthsAgo),
-                java.sql.Date.valueOf(now));
+        Predicate datePredicate = cb.between(month,
+                GenreLendingRollup.firstDayOfMonth(twelveMonthsAgo),
+                GenreLendingRollup.firstDayOfMonth(now));
 
-        cq.where(datePredicate);
-        cq.orderBy(cb.asc(year), cb.asc(month), cb.asc(genreJoin.get("genre")));
+        cq.where(datePredicate, cb.greaterThan(rollupRoot.get("lendingCount"), 0L));
+        cq.orderBy(cb.asc(month), cb.asc(genre));
 
         TypedQuery<Tuple> query = entityManager.createQuery(cq);
         List<Tuple> results = query.getResultList();
 
         // Grouping results by year and month
-        Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults = new HashMap<>();
+        Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults = new TreeMap<>();
 
         for (Tuple result : results) {
-            String genre = result.get(0, String.class);
-            int resultYear = result.get(1, Integer.class);
-            int resultMonth = result.get(2, Integer.class);
-            long count = result.get(3, Long.class);
-            GenreLendingsDTO genreLendingsDTO = new GenreLendingsDTO(genre, count);
+            String genreName = result.get(0, String.class);
+            LocalDate resultMonth = result.get(1, LocalDate.class);
+            long count = result.get(2, Long.class);
+            GenreLendingsDTO genreLendingsDTO = new GenreLendingsDTO(genreName, count);
 
             groupedResults
-                    .computeIfAbsent(resultYear, k -> new HashMap<>())
-                    .computeIfAbsent(resultMonth, k -> new ArrayList<>())
+                    .computeIfAbsent(resultMonth.getYear(), k -> new TreeMap<>())
+                    .computeIfAbsent(resultMonth.getMonthValue(), k -> new ArrayList<>())
                     .add(genreLendingsDTO);
         }
 
@@ -105,34 +105,36 @@ class GenreRepoCustomImpl implements GenreRepoCustom {
     @Override
     public List<GenreLendingsDTO> getAverageLendingsInMonth(LocalDate month, pt.psoft.g1.psoftg1.shared.services.Page page){
         int days = month.lengthOfMonth();
-        LocalDate firstOfMonth = LocalDate.of(month.getYear(), month.getMonth(), 1);
-        LocalDate lastOfMonth = LocalDate.of(month.getYear(), month.getMonth(), days);
 
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<GenreLendingsDTO> cq = cb.createQuery(GenreLendingsDTO.class);
-
-        Root<Lending> lendingRoot = cq.from(Lending.class);
-        Join<Lending, Book> bookJoin = lendingRoot.join("book", JoinType.LEFT);
-        Join<Book, Genre> genreJoin = bookJoin.join("genre", JoinType.LEFT);
-
-        Expression<Long> loanCount = cb.count(lendingRoot.get("pk"));
-        Expression<Number> dailyAvgLoans = cb.quot(cb.toDouble(loanCount), cb.literal(days));
-
-        cq.multiselect(genreJoin, dailyAvgLoans);
-        cq.groupBy(genreJoin.get("pk"));
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
 
-        Predicate startDatePredicate = cb.greaterThanOrEqualTo(lendingRoot.get("startDate"), firstOfMonth);
-        Predicate endDatePredicate = cb.lessThanOrEqualTo(lendingRoot.get("startDate"), lastOfMonth);
+        Root<GenreLendingRollup> rollupRoot = cq.from(GenreLendingRollup.class);
+        final Path<String> genreName = rollupRoot.get("id").get("genre");
+        cq.multiselect(genreName, rollupRoot.get("lendingCount"));
 
-        Predicate finalPredicate = cb.and(startDatePredicate, endDatePredicate);
+        Predicate finalPredicate = cb.and(
+                cb.equal(rollupRoot.get("id").get("month"), GenreLendingRollup.firstDayOfMonth(month)),
+                cb.greaterThan(rollupRoot.get("lendingCount"), 0L));
+        if (page.hasCursor()) {
+            // cursor keys: genre
+            finalPredicate = cb.and(finalPredicate, cb.greaterThan(genreName, Cursor.decode(page.getCursor(), 1).get(0)));
+        }
 
         cq.where(finalPredicate);
+        cq.orderBy(cb.asc(genreName));
 
-        final TypedQuery<GenreLendingsDTO> q = entityManager.createQuery(cq);
-        q.setFirstResult((page.getNumber() - 1) * page.getLimit());
+        final TypedQuery<Tuple> q = entityManager.createQuery(cq);
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
         q.setMaxResults(page.getLimit());
 
-        return q.getResultList();
+        List<GenreLendingsDTO> averages = new ArrayList<>();
+        for (Tuple result : q.getResultList()) {
+            double dailyAvgLoans = result.get(1, Long.class) / (double) days;
+            averages.add(new GenreLendingsDTO(result.get(0, String.class), dailyAvgLoans));
+        }
+        return averages;
     }
 
     @Override
@@ -140,47 +142,93 @@ class GenreRepoCustomImpl implements GenreRepoCustom {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Tuple> cq = cb.createTupleQuery();
 
-        Root<Lending> lendingRoot = cq.from(Lending.class);
-        Join<Lending, Book> bookJoin = lendingRoot.join("book");
-        Join<Book, Genre> genreJoin = bookJoin.join("genre");
+        Root<GenreLendingRollup> rollupRoot = cq.from(GenreLendingRollup.class);
+        Path<String> genre = rollupRoot.get("id").get("genre");
+        Path<LocalDate> month = rollupRoot.get("id").get("month");
 
-        Expression<Integer> yearExpr = cb.function("YEAR", Integer.class, lendingRoot.get("startDate"));
-        Expression<Integer> monthExpr = cb.function("MONTH", Integer.class, lendingRoot.get("startDate"));
-        Expression<Long> lendingDurationInDays = cb.diff(lendingRoot.get("returnedDate"), lendingRoot.get("startDate"));
-        double nanoSecondsInADay = 86400.0*1E9;
-        Expression<Number> durationInDays = cb.quot(cb.toDouble(lendingDurationInDays),nanoSecondsInADay);
-        Expression<Double> averageDuration = cb.avg(cb.toDouble(durationInDays));
+        cq.multiselect(genre, month, rollupRoot.get("returnedCount"), rollupRoot.get("totalDays"));
+        cq.orderBy(cb.asc(month), cb.asc(genre));
 
-        cq.multiselect(genreJoin.get("genre"), yearExpr, monthExpr, averageDuration);
-        cq.groupBy(genreJoin.get("genre"), yearExpr, monthExpr);
-        cq.orderBy(cb.asc(yearExpr), cb.asc(monthExpr), cb.asc(genreJoin.get("genre")));
-
-        Predicate startDatePredicate = cb.greaterThanOrEqualTo(lendingRoot.get("startDate"), startDate);
-        Predicate endDatePredicate = cb.lessThanOrEqualTo(lendingRoot.get("startDate"), endDate);
-        Predicate returnedPredicate = cb.isNotNull(lendingRoot.get("returnedDate"));
-        Predicate finalPredicate = cb.and(startDatePredicate, endDatePredicate, returnedPredicate);
+        Predicate datePredicate = cb.between(month,
+                GenreLendingRollup.firstDayOfMonth(startDate),
+                GenreLendingRollup.firstDayOfMonth(endDate));
+        Predicate returnedPredicate = cb.greaterThan(rollupRoot.get("returnedCount"), 0L);
+        Predicate finalPredicate = cb.and(datePredicate, returnedPredicate);
 
         cq.where(finalPredicate);
 
         List<Tuple> results = entityManager.createQuery(cq).getResultList();
-        Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults = new HashMap<>();
+        Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults = new TreeMap<>();
 
         for (Tuple result : results) {
-            String genre = result.get(0, String.class);
-            int yearValue = result.get(1, Integer.class);
-            int monthValue = result.get(2, Integer.class);
-            Double averageDurationValue = result.get(3, Double.class);
-            GenreLendingsDTO genreLendingsDTO = new GenreLendingsDTO(genre, averageDurationValue);
+            String genreName = result.get(0, String.class);
+            LocalDate monthValue = result.get(1, LocalDate.class);
+            double averageDurationValue = result.get(3, Long.class) / (double) result.get(2, Long.class);
+            GenreLendingsDTO genreLendingsDTO = new GenreLendingsDTO(genreName, averageDurationValue);
+
+            groupedResults
+                    .computeIfAbsent(monthValue.getYear(), k -> new TreeMap<>())
+                    .computeIfAbsent(monthValue.getMonthValue(), k -> new ArrayList<>())
+                    .add(genreLendingsDTO);
+        }
+
+        return getGenreLendingsPerMonthDtos(groupedResults);
+    }
+
+    @Override
+    public List<GenreLendingsPerMonthDTO> getDistinctReadersPerMonth(LocalDate startDate, LocalDate endDate){
+        Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults = new TreeMap<>();
+
+        for (Tuple result : getReaderSketches(startDate, endDate)) {
+            String genreName = result.get(0, String.class);
+            LocalDate monthValue = result.get(1, LocalDate.class);
+            long distinctReaders = HyperLogLog.fromBytes(result.get(2, byte[].class)).estimate();
+            GenreLendingsDTO genreLendingsDTO = new GenreLendingsDTO(genreName, distinctReaders);
 
             groupedResults
-                    .computeIfAbsent(yearValue, k -> new HashMap<>())
-                    .computeIfAbsent(monthValue, k -> new ArrayList<>())
+                    .computeIfAbsent(monthValue.getYear(), k -> new TreeMap<>())
+                    .computeIfAbsent(monthValue.getMonthValue(), k -> new ArrayList<>())
                     .add(genreLendingsDTO);
         }
 
         return getGenreLendingsPerMonthDtos(groupedResults);
     }
 
+    @Override
+    public List<GenreLendingsDTO> getDistinctReaders(LocalDate startDate, LocalDate endDate){
+        // a reader of several months is counted once in the union of their sketches
+        Map<String, HyperLogLog> sketches = new TreeMap<>();
+        for (Tuple result : getReaderSketches(startDate, endDate)) {
+            HyperLogLog sketch = HyperLogLog.fromBytes(result.get(2, byte[].class));
+            sketches.merge(result.get(0, String.class), sketch, HyperLogLog::merge);
+        }
+
+        List<GenreLendingsDTO> distinctReaders = new ArrayList<>();
+        for (Map.Entry<String, HyperLogLog> entry : sketches.entrySet())
+            distinctReaders.add(new GenreLendingsDTO(entry.getKey(), entry.getValue().estimate()));
+        return distinctReaders;
+    }
+
+    private List<Tuple> getReaderSketches(LocalDate startDate, LocalDate endDate) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+
+        Root<GenreLendingRollup> rollupRoot = cq.from(GenreLendingRollup.class);
+        Path<String> genre = rollupRoot.get("id").get("genre");
+        Path<LocalDate> month = rollupRoot.get("id").get("month");
+
+        cq.multiselect(genre, month, rollupRoot.get("readerSketch"));
+        cq.orderBy(cb.asc(month), cb.asc(genre));
+
+        Predicate datePredicate = cb.between(month,
+                GenreLendingRollup.firstDayOfMonth(startDate),
+                GenreLendingRollup.firstDayOfMonth(endDate));
+        Predicate lentPredicate = cb.greaterThan(rollupRoot.get("lendingCount"), 0L);
+        cq.where(cb.and(datePredicate, lentPredicate));
+
+        return entityManager.createQuery(cq).getResultList();
+    }
+
     @NotNull
     private List<GenreLendingsPerMonthDTO> getGenreLendingsPerMonthDtos(Map<Integer, Map<Integer, List<GenreLendingsDTO>>> groupedResults) {
         List<GenreLendingsPerMonthDTO> lendingsPerMonth = new ArrayList<>();
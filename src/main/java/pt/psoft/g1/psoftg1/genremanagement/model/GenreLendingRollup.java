@@ -0,0 +1,86 @@
+package pt.psoft.g1.psoftg1.genremanagement.model;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import pt.psoft.g1.psoftg1.shared.model.HyperLogLog;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * The {@code GenreLendingRollup} class keeps, for one genre and one month, the number of lendings started in
+ * that month, how many of them have been returned, the total number of days the returned ones lasted, and a
+ * sketch of the readers who started them.
+ * <p>It allows the genre lending reports to be read without joining the {@code Lending} history.
+ */
+@Entity
+@Table(name = "GENRE_LENDING_ROLLUP")
+public class GenreLendingRollup {
+
+    @EmbeddedId
+    @Getter
+    private Key id;
+
+    /**
+     * Number of lendings started in this month.
+     */
+    @Getter
+    @Column(nullable = false)
+    private long lendingCount;
+
+    /**
+     * Number of lendings started in this month that have been returned.
+     */
+    @Getter
+    @Column(nullable = false)
+    private long returnedCount;
+
+    /**
+     * Sum of the durations, in days, of the returned lendings.
+     */
+    @Getter
+    @Column(nullable = false)
+    private long totalDays;
+
+    /**
+     * {@link HyperLogLog} of the reader numbers of the lendings started in this month, {@code null} if none.
+     */
+    @Column(name = "READER_SKETCH", length = HyperLogLog.BYTES)
+    private byte[] readerSketch;
+
+    /**Protected empty constructor for ORM only.*/
+    protected GenreLendingRollup() {}
+
+    public HyperLogLog getReaders() {
+        return HyperLogLog.fromBytes(readerSketch);
+    }
+
+    /**
+     * Genre name and first day of the month of a {@code GenreLendingRollup}.
+     */
+    @Embeddable
+    @Getter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Column(length = 100)
+        private String genre;
+
+        @Column(name = "LENDING_MONTH")
+        private LocalDate month;
+
+        public Key(String genre, LocalDate date) {
+            if(genre == null || genre.isBlank())
+                throw new IllegalArgumentException("Genre cannot be blank");
+            this.genre = genre;
+            this.month = firstDayOfMonth(date);
+        }
+
+        /**Protected empty constructor for ORM only.*/
+        protected Key() {}
+    }
+
+    public static LocalDate firstDayOfMonth(LocalDate date) {
+        return date.withDayOfMonth(1);
+    }
+}
@@ -0,0 +1,64 @@
+package pt.psoft.g1.psoftg1.genremanagement.repositories;
+
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingReaderDTO;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+public interface GenreLendingRollupRepository {
+
+    long count();
+
+    /**
+     * @return number of rollups with lendings but no reader sketch, e.g. created before reader sketches were kept
+     */
+    long countRollupsWithoutReaderSketch();
+
+    /**
+     * Inserts an empty rollup.
+     * @param genre - Genre name
+     * @param month - First day of the month
+     */
+    void createRollup(String genre, LocalDate month);
+
+    /**
+     * Atomically adds started lendings to a rollup.
+     * @param genre    - Genre name
+     * @param month    - First day of the month the lendings started in
+     * @param lendings - Number of started lendings
+     * @return number of updated rollups, i.e. {@code 0} if there is no rollup for the genre and month yet
+     */
+    int addLendings(String genre, LocalDate month, long lendings);
+
+    /**
+     * Atomically adds returned lendings to a rollup.
+     * @param genre    - Genre name
+     * @param month    - First day of the month the lendings started in
+     * @param lendings - Number of returned lendings
+     * @param days     - Total duration of the returned lendings, in days
+     * @return number of updated rollups, i.e. {@code 0} if there is no rollup for the genre and month yet
+     */
+    int addReturnedLendings(String genre, LocalDate month, long lendings, long days);
+
+    /**
+     * @return the reader sketch of a rollup, {@code null} if it has none
+     */
+    byte[] findReaderSketch(String genre, LocalDate month);
+
+    /**
+     * @return number of updated rollups
+     */
+    int setReaderSketch(String genre, LocalDate month, byte[] readerSketch);
+
+    void deleteAllRollups();
+
+    /**
+     * Recomputes one rollup per genre and month with lendings.
+     */
+    void rebuildRollups();
+
+    /**
+     * @return genre, start date and reader of every lending, to rebuild the reader sketches
+     */
+    Stream<GenreLendingReaderDTO> streamGenreLendingReaders();
+}
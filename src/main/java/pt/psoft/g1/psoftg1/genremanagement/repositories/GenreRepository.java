@@ -20,5 +20,7 @@ public interface GenreRepository {
     List<GenreLendingsDTO> getAverageLendingsInMonth(LocalDate month, pt.psoft.g1.psoftg1.shared.services.Page page);
     List<GenreLendingsPerMonthDTO> getLendingsPerMonthLastYearByGenre();
     List<GenreLendingsPerMonthDTO> getLendingsAverageDurationPerMonth(LocalDate startDate, LocalDate endDate);
+    List<GenreLendingsPerMonthDTO> getDistinctReadersPerMonth(LocalDate startDate, LocalDate endDate);
+    List<GenreLendingsDTO> getDistinctReaders(LocalDate startDate, LocalDate endDate);
     void delete(Genre genre);
 }
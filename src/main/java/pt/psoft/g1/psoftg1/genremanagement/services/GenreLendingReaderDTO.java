@@ -0,0 +1,14 @@
+package pt.psoft.g1.psoftg1.genremanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class GenreLendingReaderDTO {
+    private String genre;
+    private LocalDate startDate;
+    private String readerNumber;
+}
@@ -0,0 +1,132 @@
+package pt.psoft.g1.psoftg1.genremanagement.services;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.genremanagement.model.GenreLendingRollup;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreLendingRollupRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.shared.model.HyperLogLog;
+
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@code GenreLendingRollup}s up to date, so the genre lending reports do not scan the lending history.
+ * <p>
+ * Rollups are incremented in the same transaction that creates or returns a lending, in the month the lending
+ * started, and the reader of a new lending is added to the reader sketch of its rollup. They can be recomputed
+ * from the lending history with {@link #rebuild()}, which is done at startup when there are no rollups yet, or
+ * rollups without a reader sketch.
+ */
+@Component
+public class GenreLendingRollupAggregator {
+    // sorted, so concurrent transactions update the rollups in the same order
+    private static final Comparator<GenreLendingRollup.Key> KEY_ORDER =
+            Comparator.comparing(GenreLendingRollup.Key::getMonth).thenComparing(GenreLendingRollup.Key::getGenre);
+
+    private final GenreLendingRollupRepository rollupRepository;
+    private final TransactionTemplate creationTransaction;
+
+    public GenreLendingRollupAggregator(final GenreLendingRollupRepository rollupRepository,
+                                        final PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        // missing rollups are created apart, so a concurrent creation does not roll back the lending
+        this.creationTransaction = new TransactionTemplate(transactionManager);
+        this.creationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Adds new lendings to the rollups of their genres.
+     * Must be called within the transaction that creates the lendings.
+     */
+    public void lendingsCreated(final Collection<Lending> lendings) {
+        final Map<GenreLendingRollup.Key, long[]> totals = new TreeMap<>(KEY_ORDER);
+        final Map<GenreLendingRollup.Key, Set<String>> readers = new TreeMap<>(KEY_ORDER);
+        for (Lending lending : lendings) {
+            totals.computeIfAbsent(keyOf(lending), k -> new long[1])[0]++;
+            readers.computeIfAbsent(keyOf(lending), k -> new TreeSet<>()).add(lending.getReaderDetails().getReaderNumber());
+        }
+
+        totals.forEach((key, t) -> update(key,
+                () -> rollupRepository.addLendings(key.getGenre(), key.getMonth(), t[0])));
+        // the rollups are locked by the updates above until the transaction ends, so their sketches are not
+        // changed concurrently
+        readers.forEach((key, readerNumbers) -> {
+            final HyperLogLog sketch = HyperLogLog.fromBytes(rollupRepository.findReaderSketch(key.getGenre(), key.getMonth()));
+            boolean changed = false;
+            for (String readerNumber : readerNumbers)
+                changed |= sketch.add(readerNumber);
+            if (changed)
+                rollupRepository.setReaderSketch(key.getGenre(), key.getMonth(), sketch.toBytes());
+        });
+    }
+
+    /**
+     * Adds returned lendings to the rollups of their genres, in the month each lending started.
+     * Must be called within the transaction that sets the lendings as returned.
+     */
+    public void lendingsReturned(final Collection<Lending> lendings) {
+        // key -> {lendings, days}
+        final Map<GenreLendingRollup.Key, long[]> totals = new TreeMap<>(KEY_ORDER);
+        for (Lending lending : lendings) {
+            final long[] t = totals.computeIfAbsent(keyOf(lending), k -> new long[2]);
+            t[0]++;
+            t[1] += ChronoUnit.DAYS.between(lending.getStartDate(), lending.getReturnedDate());
+        }
+
+        totals.forEach((key, t) -> update(key,
+                () -> rollupRepository.addReturnedLendings(key.getGenre(), key.getMonth(), t[0], t[1])));
+    }
+
+    /**
+     * Recomputes every rollup from the lendings in the database.
+     */
+    @Transactional
+    public void rebuild() {
+        rollupRepository.deleteAllRollups();
+        rollupRepository.rebuildRollups();
+
+        final Map<GenreLendingRollup.Key, HyperLogLog> sketches = new TreeMap<>(KEY_ORDER);
+        try (Stream<GenreLendingReaderDTO> readers = rollupRepository.streamGenreLendingReaders()) {
+            readers.forEach(r -> sketches.computeIfAbsent(new GenreLendingRollup.Key(r.getGenre(), r.getStartDate()),
+                    k -> new HyperLogLog()).add(r.getReaderNumber()));
+        }
+        sketches.forEach((key, sketch) -> rollupRepository.setReaderSketch(key.getGenre(), key.getMonth(), sketch.toBytes()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfIncomplete() {
+        if (rollupRepository.count() == 0 || rollupRepository.countRollupsWithoutReaderSketch() > 0)
+            rebuild();
+    }
+
+    private static GenreLendingRollup.Key keyOf(final Lending lending) {
+        return new GenreLendingRollup.Key(lending.getBook().getGenre().getGenre(), lending.getStartDate());
+    }
+
+    private void update(final GenreLendingRollup.Key key, final IntSupplier update) {
+        if (update.getAsInt() > 0)
+            return;
+
+        try {
+            creationTransaction.executeWithoutResult(status -> rollupRepository.createRollup(key.getGenre(), key.getMonth()));
+        } catch (DataIntegrityViolationException e) {
+            // created in the meantime by a concurrent lending
+        }
+        update.getAsInt();
+    }
+}
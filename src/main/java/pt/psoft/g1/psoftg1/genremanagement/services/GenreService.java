@@ -15,4 +15,14 @@ public interface GenreService {
     List<GenreLendingsDTO> getAverageLendings(GetAverageLendingsQuery query, Page page);
     List<GenreLendingsPerMonthDTO> getLendingsPerMonthLastYearByGenre();
     List<GenreLendingsPerMonthDTO> getLendingsAverageDurationPerMonth(String startDate, String endDate);
+
+    /**
+     * Estimated number of distinct readers of each genre in each month of a range, widened to whole months.
+     */
+    List<GenreLendingsPerMonthDTO> getDistinctReadersPerMonth(String startDate, String endDate);
+
+    /**
+     * Estimated number of distinct readers of each genre over a range, widened to whole months.
+     */
+    List<GenreLendingsDTO> getDistinctReaders(String startDate, String endDate);
 }
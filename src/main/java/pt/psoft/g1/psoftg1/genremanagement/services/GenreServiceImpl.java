@@ -1,14 +1,20 @@
 package pt.psoft.g1.psoftg1.genremanagement.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import pt.psoft.g1.psoftg1.bookmanagement.services.GenreBookCountDTO;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
 import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
@@ -17,10 +23,14 @@ import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
+@PropertySource({"classpath:config/library.properties"})
 public class GenreServiceImpl implements GenreService {
 
     private final GenreRepository genreRepository;
 
+    @Value("${topReportsSize}")
+    private int topReportsSize;
+
 
     public Optional<Genre> findByString(String name) {
         return genreRepository.findByString(name);
@@ -32,8 +42,11 @@ public class GenreServiceImpl implements GenreService {
     }
 
     @Override
+    @Cacheable(ReportCaches.TOP_GENRES_BY_BOOKS)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<GenreBookCountDTO> findTopGenreByBooks(){
-        Pageable pageableRules = PageRequest.of(0,5);
+        Pageable pageableRules = PageRequest.of(0,topReportsSize);
         return this.genreRepository.findTop5GenreByBookCount(pageableRules).getContent();
     }
 
@@ -43,11 +56,17 @@ public class GenreServiceImpl implements GenreService {
     }
 
     @Override
+    @Cacheable(ReportCaches.GENRE_LENDINGS_PER_MONTH)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<GenreLendingsPerMonthDTO> getLendingsPerMonthLastYearByGenre() {
         return genreRepository.getLendingsPerMonthLastYearByGenre();
     }
 
     @Override
+    @Cacheable(ReportCaches.GENRE_AVERAGE_LENDINGS)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<GenreLendingsDTO> getAverageLendings(GetAverageLendingsQuery query, Page page){
         if (page == null)
             page = new Page(1, 10);
@@ -58,7 +77,51 @@ public class GenreServiceImpl implements GenreService {
     }
 
     @Override
+    @Cacheable(ReportCaches.GENRE_LENDINGS_AVERAGE_DURATION)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<GenreLendingsPerMonthDTO> getLendingsAverageDurationPerMonth(String start, String end){
+        final LocalDate[] range = parseDateRange(start, end);
+
+        final var list = genreRepository.getLendingsAverageDurationPerMonth(range[0], range[1]);
+
+        if (list.isEmpty())
+            throw new NotFoundException("No objects match the provided criteria");
+
+        return list;
+    }
+
+    @Override
+    @Cacheable(ReportCaches.GENRE_DISTINCT_READERS_PER_MONTH)
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public List<GenreLendingsPerMonthDTO> getDistinctReadersPerMonth(String start, String end){
+        final LocalDate[] range = parseDateRange(start, end);
+
+        final var list = genreRepository.getDistinctReadersPerMonth(range[0], range[1]);
+
+        if (list.isEmpty())
+            throw new NotFoundException("No objects match the provided criteria");
+
+        return list;
+    }
+
+    @Override
+    @Cacheable(ReportCaches.GENRE_DISTINCT_READERS)
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public List<GenreLendingsDTO> getDistinctReaders(String start, String end){
+        final LocalDate[] range = parseDateRange(start, end);
+
+        final var list = genreRepository.getDistinctReaders(range[0], range[1]);
+
+        if (list.isEmpty())
+            throw new NotFoundException("No objects match the provided criteria");
+
+        return list;
+    }
+
+    private static LocalDate[] parseDateRange(String start, String end) {
         LocalDate startDate;
         LocalDate endDate;
 
@@ -72,11 +135,6 @@ public class GenreServiceImpl implements GenreService {
         if(startDate.isAfter(endDate))
             throw new IllegalArgumentException("Start date cannot be after end date");
 
-        final var list = genreRepository.getLendingsAverageDurationPerMonth(startDate, endDate);
-
-        if (list.isEmpty())
-            throw new NotFoundException("No objects match the provided criteria");
-
-        return list;
+        return new LocalDate[] { startDate, endDate };
     }
 }
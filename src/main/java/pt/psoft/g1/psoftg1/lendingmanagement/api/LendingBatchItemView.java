@@ -0,0 +1,23 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@Schema(description = "The outcome of one Lending of a batch")
+public class LendingBatchItemView {
+
+    @NotNull
+    private String isbn;
+
+    @NotNull
+    private String readerNumber;
+
+    @NotNull
+    private Boolean created;
+
+    private LendingView lending;
+
+    private String error;
+}
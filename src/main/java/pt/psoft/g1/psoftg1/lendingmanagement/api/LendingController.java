@@ -3,6 +3,7 @@ package pt.psoft.g1.psoftg1.lendingmanagement.api;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -17,19 +18,26 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
 import pt.psoft.g1.psoftg1.lendingmanagement.services.CreateLendingRequest;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.CreateLendingsRequest;
 import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingService;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.ReturnLendingsRequest;
 import pt.psoft.g1.psoftg1.lendingmanagement.services.SearchLendingQuery;
 import pt.psoft.g1.psoftg1.lendingmanagement.services.SetLendingReturnedRequest;
+import pt.psoft.g1.psoftg1.readermanagement.api.ReaderLendingsAvgPerMonthView;
+import pt.psoft.g1.psoftg1.readermanagement.api.ReaderViewMapper;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.services.ReaderService;
 import pt.psoft.g1.psoftg1.shared.api.ListResponse;
 import pt.psoft.g1.psoftg1.shared.services.ConcurrencyService;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
 import pt.psoft.g1.psoftg1.shared.services.SearchRequest;
 import pt.psoft.g1.psoftg1.usermanagement.model.Librarian;
 import pt.psoft.g1.psoftg1.usermanagement.model.User;
 import pt.psoft.g1.psoftg1.usermanagement.services.UserService;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
@@ -44,6 +52,7 @@ public class LendingController {
     private final ConcurrencyService concurrencyService;
 
     private final LendingViewMapper lendingViewMapper;
+    private final ReaderViewMapper readerViewMapper;
 
     @Operation(summary = "Creates a new Lending")
     @PostMapping
@@ -62,6 +71,12 @@ public class LendingController {
                 .body(lendingViewMapper.toLendingView(lending));
     }
 
+    @Operation(summary = "Creates several Lendings at once, reporting the outcome of each one")
+    @PostMapping(value = "/batch")
+    public ListResponse<LendingBatchItemView> createAll(@Valid @RequestBody final CreateLendingsRequest resource) {
+        return new ListResponse<>(lendingViewMapper.toLendingBatchItemView(lendingService.createAll(resource)));
+    }
+
     @Operation(summary = "Gets a specific Lending")
     @GetMapping(value = "/{year}/{seq}")
     public ResponseEntity<LendingView> findByLendingNumber(
@@ -137,6 +152,12 @@ public class LendingController {
                 .body(lendingViewMapper.toLendingView(lending));
     }
 
+    @Operation(summary = "Sets several lendings as returned at once, reporting the outcome of each one")
+    @PatchMapping(value = "/batch")
+    public ListResponse<LendingReturnItemView> setLendingsReturned(@Valid @RequestBody final ReturnLendingsRequest resource) {
+        return new ListResponse<>(lendingViewMapper.toLendingReturnItemView(lendingService.setAllReturned(resource)));
+    }
+
     @Operation(summary = "Get average lendings duration")
     @GetMapping(value = "/avgDuration")
     public @ResponseBody ResponseEntity<LendingsAverageDurationView> getAvgDuration() {
@@ -144,29 +165,81 @@ public class LendingController {
         return ResponseEntity.ok().body(lendingViewMapper.toLendingsAverageDurationView(lendingService.getAverageDuration()));
     }
 
+    @Operation(summary = "Get percentiles of the lendings duration, of every book, of a book or of a genre")
+    @GetMapping(value = "/durationPercentiles")
+    public @ResponseBody ResponseEntity<LendingsDurationPercentilesView> getDurationPercentiles(
+            @RequestParam(value = "percentiles", defaultValue = "50,90,99") final List<Double> percentiles,
+            @RequestParam(value = "isbn", required = false) final String isbn,
+            @RequestParam(value = "genre", required = false) final String genre) {
+
+        return ResponseEntity.ok().body(lendingViewMapper.toLendingsDurationPercentilesView(
+                lendingService.getDurationPercentiles(isbn, genre, percentiles)));
+    }
+
+    @Operation(summary = "Get the number of lendings started, returned and become overdue on each of the last days")
+    @GetMapping(value = "/histogram")
+    public ListResponse<LendingsDailyCountView> getDailyHistogram(
+            @RequestParam(value = "days", defaultValue = "30") final int days) {
+        return new ListResponse<>(lendingViewMapper.toLendingsDailyCountView(lendingService.getDailyHistogram(days)));
+    }
+
     @Operation(summary = "Get list of overdue lendings")
     @GetMapping(value = "/overdue")
     public ListResponse<LendingView> getOverdueLendings(@Valid @RequestBody Page page) {
-        final List<Lending> overdueLendings = lendingService.getOverdue(page);
-        if(overdueLendings.isEmpty())
+        final PageResult<Lending> overdueLendings = lendingService.getOverdue(page);
+        if(overdueLendings.getItems().isEmpty())
             throw new NotFoundException("No lendings to show");
-        return new ListResponse<>(lendingViewMapper.toLendingView(overdueLendings));
+        return new ListResponse<>(lendingViewMapper.toLendingView(overdueLendings.getItems()),
+                overdueLendings.getNextCursor(), overdueLendings.getTotal());
+    }
+
+    @Operation(summary = "Get number of overdue lendings")
+    @GetMapping(value = "/overdue/count")
+    public @ResponseBody ResponseEntity<LendingsOverdueCountView> getOverdueLendingsCount() {
+
+        return ResponseEntity.ok().body(lendingViewMapper.toLendingsOverdueCountView(lendingService.countOverdue()));
     }
 
     @PostMapping("/search")
     public ListResponse<LendingView> searchReaders(
             @RequestBody final SearchRequest<SearchLendingQuery> request) {
         final var readerList = lendingService.searchLendings(request.getPage(), request.getQuery());
-        return new ListResponse<>(lendingViewMapper.toLendingView(readerList));
+        return new ListResponse<>(lendingViewMapper.toLendingView(readerList),
+                Cursor.next(readerList, request.getPage(), l -> new Object[]{l.getLendingNumber()}));
+    }
+
+    @Operation(summary = "Exports every Lending matching a search, without paging, as NDJSON or CSV")
+    @PostMapping("/search/export")
+    public void exportLendings(
+            @RequestParam(value = "format", defaultValue = "ndjson")
+                @Parameter(description = "ndjson or csv")
+                final String format,
+            @RequestBody(required = false) final SearchLendingQuery query,
+            final HttpServletResponse response) throws IOException {
+        response.setContentType(LendingExportWriter.contentType(format));
+        response.setCharacterEncoding("UTF-8");
+        // rows are written to the response as they are read, instead of being collected first; nothing is
+        // flushed before the search has started, so invalid criteria are still answered with an error
+        final LendingExportWriter writer = LendingExportWriter.of(format, response.getOutputStream());
+        lendingService.exportLendings(query, writer::write);
+        writer.flush();
     }
 
-/*    @Operation(summary = "Get list monthly average lendings per reader")
+    @Operation(summary = "Get the number of lendings of each reader in each month of a date range")
     @GetMapping(value = "/averageMonthlyPerReader")
-    public ListResponse<ReaderLendingsAvgPerMonthView>getAverageMonthlyPerReader(
+    public ListResponse<ReaderLendingsAvgPerMonthView> getAverageMonthlyPerReader(
             @RequestParam("startDate") final String start,
-            @RequestParam("endDate") final String end){
-
-
-    }*/
+            @RequestParam("endDate") final String end,
+            @Valid final Page page) {
+        final var months = lendingService.getAverageMonthlyPerReader(start, end, page);
+
+        // pages hold (month, reader) pairs, whatever the number of months they span
+        final List<Object[]> pairs = months.stream()
+                .flatMap(m -> m.getDurationAverages().stream()
+                        .map(r -> new Object[]{m.getYear(), m.getMonth(), r.getReaderView().getReaderNumber()}))
+                .toList();
+        return new ListResponse<>(readerViewMapper.toReaderLendingsAvgPerMonthView(months),
+                Cursor.next(pairs, page, keys -> keys));
+    }
 
 }
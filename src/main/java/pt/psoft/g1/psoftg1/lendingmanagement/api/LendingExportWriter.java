@@ -0,0 +1,137 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes lendings one by one, as NDJSON (one JSON object per line) or CSV, so an export never holds more than
+ * the lending being written.
+ */
+public abstract class LendingExportWriter {
+    static final List<String> COLUMNS = List.of("lendingNumber", "isbn", "bookTitle", "readerNumber", "startDate",
+            "limitDate", "returnedDate", "daysDelayed", "fineValueInCents");
+
+    protected final Writer out;
+
+    protected LendingExportWriter(final OutputStream out) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param format - {@code ndjson} or {@code csv}
+     */
+    public static LendingExportWriter of(final String format, final OutputStream out) {
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> new Ndjson(out);
+            case "csv" -> new Csv(out);
+            default -> throw new IllegalArgumentException("Export format must be ndjson or csv");
+        };
+    }
+
+    public static String contentType(final String format) {
+        return "csv".equalsIgnoreCase(format) ? "text/csv" : "application/x-ndjson";
+    }
+
+    /**
+     * @throws UncheckedIOException if the lending cannot be written, e.g. because the client went away
+     */
+    public void write(final Lending lending) {
+        try {
+            writeRow(new Object[]{
+                    lending.getLendingNumber(),
+                    lending.getBook().getIsbn(),
+                    lending.getBook().getTitle().toString(),
+                    lending.getReaderDetails().getReaderNumber(),
+                    lending.getStartDate(),
+                    lending.getLimitDate(),
+                    lending.getReturnedDate(),
+                    lending.getDaysDelayed(),
+                    lending.getFineValueInCents().orElse(null)});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected abstract void writeRow(Object[] values) throws IOException;
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private static final class Ndjson extends LendingExportWriter {
+        private final JsonGenerator json;
+
+        private Ndjson(final OutputStream out) {
+            super(out);
+            try {
+                this.json = new JsonFactory().createGenerator(this.out);
+                // lines are separated explicitly, and only flushed to the response by flush()
+                this.json.setRootValueSeparator(null);
+                this.json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected void writeRow(final Object[] values) throws IOException {
+            json.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                final Object value = values[i];
+                if (value == null)
+                    json.writeNullField(COLUMNS.get(i));
+                else if (value instanceof Integer n)
+                    json.writeNumberField(COLUMNS.get(i), n);
+                else
+                    json.writeStringField(COLUMNS.get(i), value.toString());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            json.flush();
+            super.flush();
+        }
+    }
+
+    private static final class Csv extends LendingExportWriter {
+        private Csv(final OutputStream out) {
+            super(out);
+            try {
+                this.out.write(String.join(",", COLUMNS));
+                this.out.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected void writeRow(final Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    out.write(',');
+                if (values[i] != null)
+                    out.write(escape(values[i].toString()));
+            }
+            out.write("\r\n");
+        }
+
+        private static String escape(final String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+                return value;
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@Schema(description = "The outcome of one returned Lending of a batch")
+public class LendingReturnItemView {
+
+    @NotNull
+    private String lendingNumber;
+
+    @NotNull
+    @Schema(description = "RETURNED, NOT_FOUND, ALREADY_RETURNED or VERSION_CONFLICT")
+    private String status;
+
+    @Schema(description = "New version of the returned lending")
+    private Long version;
+
+    private LendingView lending;
+
+    private String error;
+}
@@ -3,8 +3,13 @@ package pt.psoft.g1.psoftg1.lendingmanagement.api;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingBatchResult;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDailyCountDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDurationPercentilesDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingReturnResult;
 import pt.psoft.g1.psoftg1.shared.api.MapperInterface;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 /**
@@ -27,5 +32,32 @@ public abstract class LendingViewMapper extends MapperInterface {
 
     public abstract List<LendingView> toLendingView(List<Lending> lendings);
 
+    @Mapping(target = "isbn", source = "request.isbn")
+    @Mapping(target = "readerNumber", source = "request.readerNumber")
+    public abstract LendingBatchItemView toLendingBatchItemView(LendingBatchResult result);
+
+    public abstract List<LendingBatchItemView> toLendingBatchItemView(List<LendingBatchResult> results);
+
+    @Mapping(target = "lendingNumber", source = "request.lendingNumber")
+    @Mapping(target = "version", source = "lending.version")
+    public abstract LendingReturnItemView toLendingReturnItemView(LendingReturnResult result);
+
+    public abstract List<LendingReturnItemView> toLendingReturnItemView(List<LendingReturnResult> results);
+
     public abstract LendingsAverageDurationView toLendingsAverageDurationView(Double lendingsAverageDuration);
+
+    public abstract LendingsOverdueCountView toLendingsOverdueCountView(Long overdueLendings);
+
+    public abstract List<LendingsDailyCountView> toLendingsDailyCountView(List<LendingDailyCountDTO> days);
+
+    public LendingsDurationPercentilesView toLendingsDurationPercentilesView(LendingDurationPercentilesDTO dto) {
+        final LendingsDurationPercentilesView view = new LendingsDurationPercentilesView();
+        view.setLendingCount(dto.getLendingCount());
+        // e.g. p50, p99.9
+        final Map<String, Long> percentiles = new LinkedHashMap<>();
+        dto.getPercentiles().forEach((percentile, days) -> percentiles.put(
+                "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(), days));
+        view.setPercentiles(percentiles);
+        return view;
+    }
 }
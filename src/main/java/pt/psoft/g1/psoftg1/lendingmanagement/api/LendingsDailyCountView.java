@@ -0,0 +1,15 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Schema(description = "The number of lendings started, returned and become overdue on one day.")
+public class LendingsDailyCountView {
+    private LocalDate date;
+    private Long lendings;
+    private Long returns;
+    private Long overdue;
+}
@@ -0,0 +1,13 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Schema(description = "Percentiles of the duration, in days, of the returned lendings, e.g. {\"p50\": 9, \"p99\": 30}.")
+public class LendingsDurationPercentilesView {
+    private Long lendingCount;
+    private Map<String, Long> percentiles;
+}
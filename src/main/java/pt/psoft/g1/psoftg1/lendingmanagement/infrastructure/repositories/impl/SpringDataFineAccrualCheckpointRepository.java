@@ -0,0 +1,23 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.FineAccrualCheckpoint;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineAccrualCheckpointRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface SpringDataFineAccrualCheckpointRepository extends FineAccrualCheckpointRepository, CrudRepository<FineAccrualCheckpoint, LocalDate> {
+
+    @Override
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c " +
+            "FROM FineAccrualCheckpoint c " +
+            "WHERE c.runDate = :runDate")
+    Optional<FineAccrualCheckpoint> findByRunDateForUpdate(@Param("runDate") LocalDate runDate);
+
+}
@@ -2,9 +2,12 @@ package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
 
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Fine;
 import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -17,4 +20,11 @@ public interface SpringDataFineRepository extends FineRepository, CrudRepository
             "WHERE l.lendingNumber.lendingNumber = :lendingNumber")
     Optional<Fine> findByLendingNumber(String lendingNumber);
 
+    @Override
+    @Query("SELECT f " +
+            "FROM Fine f " +
+            "JOIN FETCH f.lending l " +
+            "WHERE l.lendingNumber.lendingNumber IN :lendingNumbers")
+    List<Fine> findAllByLendingNumberIn(@Param("lendingNumbers") Collection<String> lendingNumbers);
+
 }
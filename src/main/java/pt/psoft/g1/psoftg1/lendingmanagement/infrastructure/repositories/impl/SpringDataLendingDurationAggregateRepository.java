@@ -0,0 +1,107 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingDurationAggregate;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingDurationAggregateRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDurationDTO;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface SpringDataLendingDurationAggregateRepository extends LendingDurationAggregateRepository, CrudRepository<LendingDurationAggregate, String> {
+
+    @Override
+    @Query("SELECT CAST(a.totalDays AS Double) / a.lendingCount " +
+            "FROM LendingDurationAggregate a " +
+            "WHERE a.scope = :scope " +
+            "AND a.lendingCount > 0")
+    Optional<Double> findAverageDaysByScope(@Param("scope") String scope);
+
+    @Override
+    @Query("SELECT COUNT(a) FROM LendingDurationAggregate a WHERE a.lendingCount > 0 AND a.durationHistogram IS NULL")
+    long countAggregatesWithoutHistogram();
+
+    @Override
+    @Query("SELECT a.durationHistogram FROM LendingDurationAggregate a WHERE a.scope = :scope")
+    Optional<byte[]> findHistogramByScope(@Param("scope") String scope);
+
+    @Override
+    @Modifying
+    @Query("UPDATE LendingDurationAggregate a " +
+            "SET a.durationHistogram = :histogram " +
+            "WHERE a.scope = :scope")
+    int setHistogram(@Param("scope") String scope, @Param("histogram") byte[] histogram);
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO LENDING_DURATION_AGGREGATE (SCOPE, LENDING_COUNT, TOTAL_DAYS) " +
+            "VALUES (:scope, 0, 0)"
+            , nativeQuery = true)
+    void createAggregate(@Param("scope") String scope);
+
+    @Override
+    @Modifying
+    @Query("UPDATE LendingDurationAggregate a " +
+            "SET a.lendingCount = a.lendingCount + :lendings, a.totalDays = a.totalDays + :days " +
+            "WHERE a.scope = :scope")
+    int addLendings(@Param("scope") String scope, @Param("lendings") long lendings, @Param("days") long days);
+
+    @Override
+    @Modifying
+    @Query("DELETE FROM LendingDurationAggregate a")
+    void deleteAllAggregates();
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO LENDING_DURATION_AGGREGATE (SCOPE, LENDING_COUNT, TOTAL_DAYS) " +
+            "SELECT 'ALL', COUNT(*), COALESCE(SUM(DATEDIFF(day, l.start_date, l.returned_date)), 0) " +
+            "FROM Lending l " +
+            "WHERE l.returned_date IS NOT NULL"
+            , nativeQuery = true)
+    void rebuildGlobalAggregate();
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO LENDING_DURATION_AGGREGATE (SCOPE, LENDING_COUNT, TOTAL_DAYS) " +
+            "SELECT CONCAT('BOOK:', b.ISBN), COUNT(*), SUM(DATEDIFF(day, l.start_date, l.returned_date)) " +
+            "FROM Lending l " +
+            "JOIN BOOK b ON l.BOOK_PK = b.PK " +
+            "WHERE l.returned_date IS NOT NULL " +
+            "GROUP BY b.ISBN"
+            , nativeQuery = true)
+    void rebuildBookAggregates();
+
+    @Override
+    @Modifying
+    @Query(value =
+            "INSERT INTO LENDING_DURATION_AGGREGATE (SCOPE, LENDING_COUNT, TOTAL_DAYS) " +
+            "SELECT CONCAT('GENRE:', g.GENRE), COUNT(*), SUM(DATEDIFF(day, l.start_date, l.returned_date)) " +
+            "FROM Lending l " +
+            "JOIN BOOK b ON l.BOOK_PK = b.PK " +
+            "JOIN GENRE g ON b.GENRE_PK = g.PK " +
+            "WHERE l.returned_date IS NOT NULL " +
+            "GROUP BY g.GENRE"
+            , nativeQuery = true)
+    void rebuildGenreAggregates();
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDurationDTO(b.isbn.isbn, g.genre, " +
+                "l.startDate, l.returnedDate) " +
+            "FROM Lending l " +
+            "JOIN l.book b " +
+            "JOIN b.genre g " +
+            "WHERE l.returnedDate IS NOT NULL")
+    Stream<LendingDurationDTO> streamReturnedLendingDurations();
+}
@@ -1,32 +1,64 @@
 package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.util.StringUtils;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
 import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDatesDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDueDateDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.OutstandingLendingsDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.ReaderMonthLendingsDTO;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.Page;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface SpringDataLendingRepository extends LendingRepository, LendingRepoCustom, CrudRepository<Lending, Long> {
     @Override
+    @EntityGraph(Lending.BOOK_AND_READER_GRAPH)
     @Query("SELECT l " +
             "FROM Lending l " +
             "WHERE l.lendingNumber.lendingNumber = :lendingNumber")
     Optional<Lending> findByLendingNumber(String lendingNumber);
 
+    @Override
+    @EntityGraph(Lending.BOOK_AND_READER_GRAPH)
+    @Query("SELECT l " +
+            "FROM Lending l " +
+            "WHERE l.lendingNumber.lendingNumber IN :lendingNumbers")
+    List<Lending> findAllByLendingNumberIn(@Param("lendingNumbers") Collection<String> lendingNumbers);
+
+    @Override
+    @EntityGraph(Lending.BOOK_AND_READER_GRAPH)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l " +
+            "FROM Lending l " +
+            "WHERE l.lendingNumber.lendingNumber IN :lendingNumbers " +
+            "ORDER BY l.lendingNumber.lendingNumber")
+    List<Lending> findAllByLendingNumberInForUpdate(@Param("lendingNumbers") Collection<String> lendingNumbers);
+
     //http://www.h2database.com/html/commands.html
 
     @Override
+    @EntityGraph(Lending.BOOK_AND_READER_GRAPH)
     @Query("SELECT l " +
             "FROM Lending l " +
             "JOIN Book b ON l.book.pk = b.pk " +
@@ -42,6 +74,13 @@ public interface SpringDataLendingRepository extends LendingRepository, LendingR
     int getCountFromCurrentYear();
 
     @Override
+    @Query("SELECT COALESCE(MAX(CAST(SUBSTRING(l.lendingNumber.lendingNumber, 6) AS Integer)), 0) " +
+            "FROM Lending l " +
+            "WHERE l.lendingNumber.lendingNumber LIKE CONCAT(CAST(:year AS String), '/%')")
+    int getLastSequenceFromYear(@Param("year") int year);
+
+    @Override
+    @EntityGraph(Lending.BOOK_AND_READER_GRAPH)
     @Query("SELECT l " +
             "FROM Lending l " +
                 "JOIN ReaderDetails r ON l.readerDetails.pk = r.pk " +
@@ -49,6 +88,74 @@ public interface SpringDataLendingRepository extends LendingRepository, LendingR
                 "AND l.returnedDate IS NULL")
     List<Lending> listOutstandingByReaderNumber(@Param("readerNumber") String readerNumber);
 
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.OutstandingLendingsDTO(COUNT(l), MIN(l.limitDate)) " +
+            "FROM Lending l " +
+            "WHERE l.readerDetails.readerNumber.readerNumber = :readerNumber " +
+                "AND l.returnedDate IS NULL")
+    OutstandingLendingsDTO getOutstandingLendingsByReaderNumber(@Param("readerNumber") String readerNumber);
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.OutstandingLendingsDTO(r.readerNumber.readerNumber, COUNT(l), MIN(l.limitDate)) " +
+            "FROM Lending l " +
+                "JOIN l.readerDetails r " +
+            "WHERE r.readerNumber.readerNumber IN :readerNumbers " +
+                "AND l.returnedDate IS NULL " +
+            "GROUP BY r.readerNumber.readerNumber")
+    List<OutstandingLendingsDTO> getOutstandingLendingsByReaderNumbers(@Param("readerNumbers") Collection<String> readerNumbers);
+
+    @Override
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDueDateDTO(l.lendingNumber.lendingNumber, l.limitDate) " +
+            "FROM Lending l " +
+            "WHERE l.returnedDate IS NULL")
+    List<LendingDueDateDTO> listOutstandingDueDates();
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500")})
+    @Query("SELECT l.lendingNumber.lendingNumber " +
+            "FROM Lending l " +
+            "WHERE l.returnedDate IS NULL " +
+                "AND l.limitDate < :today " +
+                "AND l.lendingNumber.lendingNumber > :afterLendingNumber " +
+            "ORDER BY l.lendingNumber.lendingNumber")
+    Stream<String> streamOverdueLendingNumbers(@Param("afterLendingNumber") String afterLendingNumber,
+                                               @Param("today") LocalDate today);
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO(l.lendingNumber.lendingNumber, " +
+                "b.isbn.isbn, r.readerNumber.readerNumber, l.startDate) " +
+            "FROM Lending l " +
+            "JOIN l.book b " +
+            "JOIN l.readerDetails r")
+    Stream<LendingFactDTO> streamLendingFacts();
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO(l.lendingNumber.lendingNumber, " +
+                "b.isbn.isbn, r.readerNumber.readerNumber, l.startDate) " +
+            "FROM Lending l " +
+            "JOIN l.book b " +
+            "JOIN l.readerDetails r " +
+            "WHERE l.startDate >= :startDate")
+    Stream<LendingFactDTO> streamLendingFactsStartedFrom(@Param("startDate") LocalDate startDate);
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT new pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDatesDTO(" +
+                "l.lendingNumber.lendingNumber, l.startDate, l.limitDate, l.returnedDate) " +
+            "FROM Lending l " +
+            "WHERE l.startDate >= :from OR l.limitDate >= :from OR l.returnedDate >= :from")
+    Stream<LendingDatesDTO> streamLendingDatesFrom(@Param("from") LocalDate from);
+
     @Override
     @Query(value =
             "SELECT AVG(DATEDIFF(day, l.start_date, l.returned_date)) " +
@@ -69,9 +176,9 @@ public interface SpringDataLendingRepository extends LendingRepository, LendingR
 }
 
 interface LendingRepoCustom {
-    List<Lending> getOverdue(Page page);
     List<Lending> searchLendings(Page page, String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate);
-//    List<ReaderAverageDto> getAverageMonthlyPerReader(LocalDate startDate, LocalDate endDate);
+    void exportLendings(String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate, Consumer<Lending> action);
+    List<ReaderMonthLendingsDTO> getLendingsPerReaderPerMonth(LocalDate startDate, LocalDate endDate, Page page);
 
 }
 
@@ -81,38 +188,72 @@ class LendingRepoCustomImpl implements LendingRepoCustom {
     // injection
     private final EntityManager em;
 
-    @Override
-    public List<Lending> getOverdue(Page page)
-    {
+    private static final String FETCH_GRAPH = "jakarta.persistence.fetchgraph";
+    // rows fetched per database round trip, and lendings written between two clears of the persistence context
+    private static final int EXPORT_FETCH_SIZE = 1000;
 
+    public List<Lending> searchLendings(Page page, String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate){
         final CriteriaBuilder cb = em.getCriteriaBuilder();
         final CriteriaQuery<Lending> cq = cb.createQuery(Lending.class);
-        final Root<Lending> root = cq.from(Lending.class);
-        cq.select(root);
+        final Root<Lending> lendingRoot = cq.from(Lending.class);
+        cq.select(lendingRoot);
 
-        final List<Predicate> where = new ArrayList<>();
+        final List<Predicate> where = searchPredicates(cb, lendingRoot, readerNumber, isbn, returned, startDate, endDate);
 
-        // Select overdue lendings where returnedDate is null and limitDate is before the current date
-        where.add(cb.isNull(root.get("returnedDate")));
-        where.add(cb.lessThan(root.get("limitDate"), LocalDate.now()));
+        final Path<String> lendingNumber = lendingRoot.get("lendingNumber").get("lendingNumber");
+        if (page.hasCursor()) {
+            // cursor keys: lendingNumber
+            where.add(cb.greaterThan(lendingNumber, Cursor.decode(page.getCursor(), 1).get(0)));
+        }
 
         cq.where(where.toArray(new Predicate[0]));
-        cq.orderBy(cb.asc(root.get("limitDate"))); // Order by limitDate, oldest first
+        cq.orderBy(cb.asc(lendingNumber));
 
         final TypedQuery<Lending> q = em.createQuery(cq);
-        q.setFirstResult((page.getNumber() - 1) * page.getLimit());
+        q.setHint(FETCH_GRAPH, em.getEntityGraph(Lending.BOOK_AND_READER_GRAPH));
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
         q.setMaxResults(page.getLimit());
 
         return q.getResultList();
     }
 
-    public List<Lending> searchLendings(Page page, String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate){
+    /**
+     * Same search as {@link #searchLendings}, without paging: every matching lending is read through a
+     * read-only database cursor, handed to {@code action}, and then detached, so memory use stays flat
+     * whatever the number of lendings. Must be called within a transaction.
+     */
+    @Override
+    public void exportLendings(String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate,
+                               Consumer<Lending> action) {
         final CriteriaBuilder cb = em.getCriteriaBuilder();
         final CriteriaQuery<Lending> cq = cb.createQuery(Lending.class);
         final Root<Lending> lendingRoot = cq.from(Lending.class);
+        cq.select(lendingRoot);
+        cq.where(searchPredicates(cb, lendingRoot, readerNumber, isbn, returned, startDate, endDate).toArray(new Predicate[0]));
+        cq.orderBy(cb.asc(lendingRoot.get("lendingNumber").get("lendingNumber")));
+
+        final TypedQuery<Lending> q = em.createQuery(cq);
+        q.setHint(FETCH_GRAPH, em.getEntityGraph(Lending.BOOK_AND_READER_GRAPH));
+        q.setHint(HibernateHints.HINT_READ_ONLY, true);
+        q.setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE);
+
+        try (Stream<Lending> lendings = q.getResultStream()) {
+            int written = 0;
+            for (Lending lending : (Iterable<Lending>) lendings::iterator) {
+                action.accept(lending);
+                em.detach(lending);
+                // books and readers are shared between lendings, so they are only released now and then
+                if (++written % EXPORT_FETCH_SIZE == 0)
+                    em.clear();
+            }
+        }
+    }
+
+    private List<Predicate> searchPredicates(CriteriaBuilder cb, Root<Lending> lendingRoot, String readerNumber, String isbn,
+                                             Boolean returned, LocalDate startDate, LocalDate endDate) {
         final Join<Lending, Book> bookJoin = lendingRoot.join("book");
         final Join<Lending, ReaderDetails> readerDetailsJoin = lendingRoot.join("readerDetails");
-        cq.select(lendingRoot);
 
         final List<Predicate> where = new ArrayList<>();
 
@@ -131,83 +272,43 @@ class LendingRepoCustomImpl implements LendingRepoCustom {
             where.add(cb.greaterThanOrEqualTo(lendingRoot.get("startDate"), startDate));
         if(endDate!=null)
             where.add(cb.lessThanOrEqualTo(lendingRoot.get("startDate"), endDate));
-
-        cq.where(where.toArray(new Predicate[0]));
-        cq.orderBy(cb.asc(lendingRoot.get("lendingNumber")));
-
-        final TypedQuery<Lending> q = em.createQuery(cq);
-        q.setFirstResult((page.getNumber() - 1) * page.getLimit());
-        q.setMaxResults(page.getLimit());
-
-        return q.getResultList();
+        return where;
     }
 
-/*
     @Override
-    public List<ReaderAverageDto> getAverageMonthlyPerReader(LocalDate startDate, LocalDate endDate) {
+    public List<ReaderMonthLendingsDTO> getLendingsPerReaderPerMonth(LocalDate startDate, LocalDate endDate, Page page) {
         final CriteriaBuilder cb = em.getCriteriaBuilder();
-        final CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        final CriteriaQuery<ReaderMonthLendingsDTO> cq = cb.createQuery(ReaderMonthLendingsDTO.class);
         final Root<Lending> lendingRoot = cq.from(Lending.class);
-        final Join<ReaderDetails, Lending> readerDetailsJoin = lendingRoot.join("readerDetails");
-        final Join<ReaderDetails, User> userJoin = readerDetailsJoin.join("user");
-
-        final List<Predicate> where = new ArrayList<>();
-
-        Expression<Integer> yearExpr = cb.function("YEAR", Integer.class, lendingRoot.get("startDate"));
-        Expression<Integer> monthExpr = cb.function("MONTH", Integer.class, lendingRoot.get("startDate"));
-
-        Expression<Double> lendingCount = cb.count(lendingRoot).as(Double.class);
-
-        Expression<Double> diffInMonths = cb.function(
-                "date_part", Double.class, cb.literal("month"),
-                cb.literal(LocalDate.now())
-        );
-
-        Expression<Double> lendingsAveragePerMonth = cb.diff(lendingCount, diffInMonths);
-
-
-
-        cq.multiselect(readerDetailsJoin, yearExpr, monthExpr, durationInMonths);
-
-        Expression<Long> durationInMonths = cb.quot(diffInDays, 30L);
-
-        if(startDate!=null)
-            where.add(cb.greaterThanOrEqualTo(lendingRoot.get("startDate"), startDate));
-        if(endDate!=null)
-            where.add(cb.lessThanOrEqualTo(lendingRoot.get("startDate"), endDate));
-
-        cq.where(where.toArray(new Predicate[0]));
-        cq.groupBy(readerDetailsJoin.get("readerNumber"), yearExpr, monthExpr);
-        cq.orderBy(cb.asc(lendingRoot.get("lendingNumber")));
-
-        List<Tuple> results = em.createQuery(cq).getResultList();
-        Map<Integer, Map<Integer, List<ReaderAverageDto>>> groupedResults = new HashMap<>();
+        final Join<Lending, ReaderDetails> readerDetailsJoin = lendingRoot.join("readerDetails");
 
+        final Path<String> readerNumber = readerDetailsJoin.get("readerNumber").get("readerNumber");
+        final Expression<Integer> year = cb.function("year", Integer.class, lendingRoot.get("startDate"));
+        final Expression<Integer> month = cb.function("month", Integer.class, lendingRoot.get("startDate"));
 
-        for (Tuple result : results) {
-            ReaderDetails readerDetails = result.get(0, ReaderDetails.class);
-            int yearValue = result.get(1, Integer.class);
-            int monthValue = result.get(2, Integer.class);
-            Double averageDurationValue = result.get(3, Double.class);
-            ReaderAverageDto readerAverageDto = new ReaderAverageDto(genre, averageDurationValue);
+        cq.select(cb.construct(ReaderMonthLendingsDTO.class, readerNumber, year, month, cb.count(lendingRoot)));
 
-            groupedResults
-                    .computeIfAbsent(yearValue, k -> new HashMap<>())
-                    .computeIfAbsent(monthValue, k -> new ArrayList<>())
-                    .add(readerAverageDto);
+        final List<Predicate> where = new ArrayList<>();
+        where.add(cb.between(lendingRoot.get("startDate"), startDate, endDate));
+        if (page.hasCursor()) {
+            // cursor keys: year, month, readerNumber
+            final List<String> after = Cursor.decode(page.getCursor(), 3);
+            final int afterYear = Cursor.parse(after.get(0), Integer::parseInt);
+            final int afterMonth = Cursor.parse(after.get(1), Integer::parseInt);
+            where.add(cb.or(cb.greaterThan(year, afterYear),
+                    cb.and(cb.equal(year, afterYear), cb.greaterThan(month, afterMonth)),
+                    cb.and(cb.equal(year, afterYear), cb.equal(month, afterMonth), cb.greaterThan(readerNumber, after.get(2)))));
         }
 
-        List<ReaderLendingsAvgPerMonthDto> readerLendingsAvgPerMonthDtos = new ArrayList<>();
-        for (Map.Entry<Integer, Map<Integer, List<ReaderAverageDto>>> yearEntry : groupedResults.entrySet()) {
-            int yearValue = yearEntry.getKey();
-            for (Map.Entry<Integer, List<ReaderAverageDto>> monthEntry : yearEntry.getValue().entrySet()) {
-                int monthValue = monthEntry.getKey();
-                List<ReaderAverageDto> values = monthEntry.getValue();
-                readerLendingsAvgPerMonthDtos.add(new GenreLendingsPerMonthDTO(yearValue, monthValue, values));
-            }
-        }
+        cq.where(where.toArray(new Predicate[0]));
+        cq.groupBy(year, month, readerNumber);
+        cq.orderBy(cb.asc(year), cb.asc(month), cb.asc(readerNumber));
 
+        final TypedQuery<ReaderMonthLendingsDTO> q = em.createQuery(cq);
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
+        q.setMaxResults(page.getLimit());
 
-        return null;
-    }*/
+        return q.getResultList();
+    }
 }
@@ -0,0 +1,22 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingSequence;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingSequenceRepository;
+
+import java.util.Optional;
+
+public interface SpringDataLendingSequenceRepository extends LendingSequenceRepository, CrudRepository<LendingSequence, Integer> {
+
+    @Override
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s " +
+            "FROM LendingSequence s " +
+            "WHERE s.year = :year")
+    Optional<LendingSequence> findByYearForUpdate(@Param("year") int year);
+
+}
@@ -0,0 +1,21 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCounter;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCounterRepository;
+
+import java.util.List;
+
+public interface SpringDataTopLendingCounterRepository extends TopLendingCounterRepository, CrudRepository<TopLendingCounter, Long> {
+
+    @Override
+    @Query("SELECT c FROM TopLendingCounter c")
+    List<TopLendingCounter> findAllCounters();
+
+    @Override
+    @Modifying
+    @Query("DELETE FROM TopLendingCounter c")
+    void deleteAllCounters();
+}
@@ -0,0 +1,24 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.infrastructure.repositories.impl;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCountersCheckpoint;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCountersCheckpointRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface SpringDataTopLendingCountersCheckpointRepository extends TopLendingCountersCheckpointRepository, CrudRepository<TopLendingCountersCheckpoint, LocalDate> {
+
+    @Override
+    @Query("SELECT c " +
+            "FROM TopLendingCountersCheckpoint c " +
+            "WHERE c.sealedThrough = (SELECT MAX(l.sealedThrough) FROM TopLendingCountersCheckpoint l)")
+    Optional<TopLendingCountersCheckpoint> findLatest();
+
+    @Override
+    @Modifying
+    @Query("DELETE FROM TopLendingCountersCheckpoint c")
+    void deleteAllCheckpoints();
+}
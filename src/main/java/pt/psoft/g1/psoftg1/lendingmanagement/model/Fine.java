@@ -9,7 +9,8 @@ import java.util.Objects;
 
 /**
  * The {@code Fine} class models a fine applied when a lending is past its due date.
- * <p>It stores its current value, and the associated {@code Lending}.
+ * <p>It stores its current value, and the associated {@code Lending}. The value of the fine of a lending
+ * that is still outstanding keeps growing, and is brought up to date with {@link #accrue()}.
  * @author  rmfranca*/
 @Getter
 @Entity
@@ -44,6 +45,19 @@ public class Fine {
         this.lending = Objects.requireNonNull(lending);
     }
 
+    /**
+     * Brings the value of the fine up to date with the days the lending is (or was, if already returned)
+     * past its due date, at the fine value per day set when the fine was created.
+     * @return  {@code true} if the value changed.
+     * */
+    public boolean accrue() {
+        final int accrued = fineValuePerDayInCents * lending.getDaysDelayed();
+        if(accrued == centsValue)
+            return false;
+        centsValue = accrued;
+        return true;
+    }
+
     /**Protected empty constructor for ORM only.*/
     protected Fine() {}
 }
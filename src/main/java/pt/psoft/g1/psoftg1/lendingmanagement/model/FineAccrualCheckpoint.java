@@ -0,0 +1,68 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The {@code FineAccrualCheckpoint} class records how far the fine accrual run of a given day has gone.
+ * <p>Overdue lendings are accrued in ascending {@code LendingNumber} order, in chunks, and the checkpoint is
+ * advanced in the same transaction as each chunk, so an interrupted run resumes after the last committed chunk.
+ */
+@Entity
+@Table(name = "FINE_ACCRUAL_CHECKPOINT")
+public class FineAccrualCheckpoint {
+
+    /**
+     * Day the fines are accrued to.
+     */
+    @Id
+    @Getter
+    @Column(name = "RUN_DATE")
+    private LocalDate runDate;
+
+    /**
+     * Last lending number whose fine has been accrued, empty if none yet.
+     */
+    @Getter
+    @Column(nullable = false, length = 32)
+    private String lastLendingNumber;
+
+    /**
+     * Whether every overdue lending has been accrued for {@code runDate}.
+     */
+    @Getter
+    @Column(nullable = false)
+    private boolean completed;
+
+    /**
+     * Constructs the checkpoint of a run that has not accrued any fine yet.
+     * @param   runDate     Day the fines are accrued to.
+     */
+    public FineAccrualCheckpoint(LocalDate runDate) {
+        if(runDate == null)
+            throw new IllegalArgumentException("Run date cannot be null");
+        this.runDate = runDate;
+        this.lastLendingNumber = "";
+    }
+
+    /**
+     * Records that the fines of every overdue lending up to {@code lendingNumber} have been accrued.
+     */
+    public void advance(String lendingNumber) {
+        if(lendingNumber.compareTo(lastLendingNumber) <= 0)
+            throw new IllegalArgumentException("Checkpoint can only move forward");
+        this.lastLendingNumber = lendingNumber;
+    }
+
+    public void complete() {
+        this.completed = true;
+    }
+
+    /**Protected empty constructor for ORM only.*/
+    protected FineAccrualCheckpoint() {}
+}
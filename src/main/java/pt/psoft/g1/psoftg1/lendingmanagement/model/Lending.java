@@ -23,10 +23,19 @@ import java.util.Optional;
  * natural key ({@code LendingNumber}) with its own business rules.
  * @author  rmfranca*/
 @Entity
+@NamedEntityGraph(name = Lending.BOOK_AND_READER_GRAPH, attributeNodes = {
+        @NamedAttributeNode("book"),
+        @NamedAttributeNode("readerDetails")})
 @Table(uniqueConstraints = {
         @UniqueConstraint(columnNames={"LENDING_NUMBER"})})
 public class Lending {
 
+    /**
+     * Fetch plan of the read paths that map lendings to views, which need both the {@code Book} and the
+     * {@code ReaderDetails}. Both associations are lazy otherwise.
+     */
+    public static final String BOOK_AND_READER_GRAPH = "Lending.bookAndReader";
+
     /**
      * Database primary key. Since this field is autogenerated by the database there
      * is not setId() method.
@@ -53,7 +62,7 @@ public class Lending {
      * */
     @NotNull
     @Getter
-    @ManyToOne(fetch=FetchType.EAGER, optional = false)
+    @ManyToOne(fetch=FetchType.LAZY, optional = false)
     private Book book;
 
     /**
@@ -61,7 +70,7 @@ public class Lending {
      **/
     @NotNull
     @Getter
-    @ManyToOne(fetch=FetchType.EAGER, optional = false)
+    @ManyToOne(fetch=FetchType.LAZY, optional = false)
     private ReaderDetails readerDetails;
 
     /**
@@ -129,13 +138,29 @@ public class Lending {
      * @throws      NullPointerException if any of the arguments is {@code null}
      * */
     public Lending(Book book, ReaderDetails readerDetails, int seq, int lendingDuration, int fineValuePerDayInCents){
+        this(book, readerDetails, new LendingNumber(seq), lendingDuration, fineValuePerDayInCents);
+    }
+
+    /**
+     * Constructs a new {@code Lending} object with an already allocated {@code LendingNumber}.
+     * <p>
+     * Same as {@link Lending#Lending(Book, ReaderDetails, int, int, int)}, but the year component of the
+     * lending number is the one chosen by whoever allocated it, so a lending created right at the turn of
+     * the year cannot end up with a sequential number reserved for the previous one.
+     *
+     * @param       book {@code Book} object, which should be retrieved from the database.
+     * @param       readerDetails {@code Reader} object, which should be retrieved from the database.
+     * @param       lendingNumber natural key of the lending, which should be obtained from the lending number allocator.
+     * @throws      IllegalArgumentException if any of the arguments is {@code null}
+     * */
+    public Lending(Book book, ReaderDetails readerDetails, LendingNumber lendingNumber, int lendingDuration, int fineValuePerDayInCents){
         try {
             this.book = Objects.requireNonNull(book);
             this.readerDetails = Objects.requireNonNull(readerDetails);
+            this.lendingNumber = Objects.requireNonNull(lendingNumber);
         }catch (NullPointerException e){
             throw new IllegalArgumentException("Null objects passed to lending");
         }
-        this.lendingNumber = new LendingNumber(seq);
         this.startDate = LocalDate.now();
         this.limitDate = LocalDate.now().plusDays(lendingDuration);
         this.returnedDate = null;
@@ -0,0 +1,77 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import pt.psoft.g1.psoftg1.shared.model.Histogram;
+
+/**
+ * The {@code LendingDurationAggregate} class keeps the running number of returned lendings, and the total
+ * number of days they lasted, for a given scope (all lendings, or the lendings of one book or of one genre),
+ * along with the {@link Histogram} of those durations.
+ * <p>It allows average lending durations, and their percentiles, to be read without scanning the {@code Lending}
+ * table.
+ */
+@Entity
+@Table(name = "LENDING_DURATION_AGGREGATE")
+public class LendingDurationAggregate {
+
+    public static final String ALL = "ALL";
+    private static final String BOOK_PREFIX = "BOOK:";
+    private static final String GENRE_PREFIX = "GENRE:";
+
+    /**
+     * Scope of the aggregate, e.g. {@code ALL}, {@code BOOK:<isbn>} or {@code GENRE:<genre>}.
+     */
+    @Id
+    @Getter
+    @Column(length = 110)
+    private String scope;
+
+    /**
+     * Number of returned lendings in this scope.
+     */
+    @Getter
+    @Column(nullable = false)
+    private long lendingCount;
+
+    /**
+     * Sum of the durations, in days, of the returned lendings in this scope.
+     */
+    @Getter
+    @Column(nullable = false)
+    private long totalDays;
+
+    /**
+     * {@link Histogram} of the durations, in days, of the returned lendings in this scope, {@code null} if none.
+     */
+    @Column(name = "DURATION_HISTOGRAM", length = 4096)
+    private byte[] durationHistogram;
+
+    /**
+     * Constructs an empty {@code LendingDurationAggregate}.
+     * @param   scope   Scope of the aggregate.
+     */
+    public LendingDurationAggregate(String scope) {
+        if(scope == null || scope.isBlank())
+            throw new IllegalArgumentException("Scope cannot be blank");
+        this.scope = scope;
+    }
+
+    public static String bookScope(String isbn) {
+        return BOOK_PREFIX + isbn;
+    }
+
+    public static String genreScope(String genre) {
+        return GENRE_PREFIX + genre;
+    }
+
+    public Histogram getDurations() {
+        return Histogram.fromBytes(durationHistogram);
+    }
+
+    /**Protected empty constructor for ORM only.*/
+    protected LendingDurationAggregate() {}
+}
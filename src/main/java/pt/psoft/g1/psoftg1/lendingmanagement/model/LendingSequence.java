@@ -0,0 +1,63 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Getter;
+
+/**
+ * The {@code LendingSequence} class keeps, for a given year, the next sequential component of a
+ * {@code LendingNumber} that has not been handed out to any application node yet.
+ * <p>Nodes reserve whole blocks of sequential numbers at once (hi/lo), so this row is only touched
+ * once per block instead of once per lending.
+ */
+@Entity
+@Table(name = "LENDING_SEQUENCE")
+public class LendingSequence {
+
+    /**
+     * Year component of the lending numbers handed out from this sequence.
+     */
+    @Id
+    @Getter
+    @Column(name = "SEQUENCE_YEAR")
+    private int year;
+
+    /**
+     * First sequential number of the next block to be reserved.
+     */
+    @Getter
+    @PositiveOrZero
+    @Column(nullable = false)
+    private int nextValue;
+
+    /**
+     * Constructs a new {@code LendingSequence} for a year.
+     * @param   year        Year component of the lending numbers.
+     * @param   nextValue   First sequential number that is still free for that year.
+     */
+    public LendingSequence(int year, int nextValue) {
+        if(nextValue < 0)
+            throw new IllegalArgumentException("Sequential component cannot be negative");
+        this.year = year;
+        this.nextValue = nextValue;
+    }
+
+    /**
+     * Reserves the next {@code size} sequential numbers.
+     * @param   size    number of sequential numbers to reserve.
+     * @return  the first sequential number of the reserved block.
+     */
+    public int reserve(int size) {
+        if(size < 1)
+            throw new IllegalArgumentException("Block size must be positive");
+        final int first = nextValue;
+        nextValue += size;
+        return first;
+    }
+
+    /**Protected empty constructor for ORM only.*/
+    protected LendingSequence() {}
+}
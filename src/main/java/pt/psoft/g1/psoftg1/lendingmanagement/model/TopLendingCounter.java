@@ -0,0 +1,57 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The {@code TopLendingCounter} class is a checkpointed counter of the top lending reports: the number of lendings
+ * of a book, author or reader, either started on a given day or, without a day, started up to the checkpoint.
+ */
+@Entity
+@Table(name = "TOP_LENDING_COUNTER")
+public class TopLendingCounter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long pk;
+
+    @Getter
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Dimension dimension;
+
+    /**
+     * Isbn, author name or reader number, according to the {@code dimension}.
+     */
+    @Getter
+    @Column(name = "COUNTER_KEY", nullable = false)
+    private String key;
+
+    /**
+     * Day the counted lendings started, {@code null} for every lending started up to the checkpoint.
+     */
+    @Getter
+    @Column(name = "COUNTER_DAY")
+    private LocalDate day;
+
+    @Getter
+    @Column(nullable = false)
+    private long lendingCount;
+
+    public enum Dimension { BOOK, AUTHOR, READER }
+
+    public TopLendingCounter(Dimension dimension, String key, LocalDate day, long lendingCount) {
+        if(dimension == null)
+            throw new IllegalArgumentException("Dimension cannot be null");
+        if(key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        this.dimension = dimension;
+        this.key = key;
+        this.day = day;
+        this.lendingCount = lendingCount;
+    }
+
+    /**Protected empty constructor for ORM only.*/
+    protected TopLendingCounter() {}
+}
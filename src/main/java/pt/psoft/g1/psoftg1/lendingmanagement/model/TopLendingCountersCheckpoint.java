@@ -0,0 +1,35 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The {@code TopLendingCountersCheckpoint} class records up to which day the {@code TopLendingCounter}s have been
+ * checkpointed. The lendings started after that day are counted from the {@code Lending} table at startup.
+ */
+@Entity
+@Table(name = "TOP_LENDING_COUNTERS_CHECKPOINT")
+public class TopLendingCountersCheckpoint {
+
+    /**
+     * Last day whose lendings are included in the checkpoint.
+     */
+    @Id
+    @Getter
+    @Column(name = "SEALED_THROUGH")
+    private LocalDate sealedThrough;
+
+    public TopLendingCountersCheckpoint(LocalDate sealedThrough) {
+        if(sealedThrough == null)
+            throw new IllegalArgumentException("Sealed day cannot be null");
+        this.sealedThrough = sealedThrough;
+    }
+
+    /**Protected empty constructor for ORM only.*/
+    protected TopLendingCountersCheckpoint() {}
+}
@@ -0,0 +1,16 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import pt.psoft.g1.psoftg1.lendingmanagement.model.FineAccrualCheckpoint;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface FineAccrualCheckpointRepository {
+    /**
+     * @param runDate - Day of the accrual run
+     * @return {@code Optional<FineAccrualCheckpoint>}, row-locked until the end of the current transaction
+     */
+    Optional<FineAccrualCheckpoint> findByRunDateForUpdate(LocalDate runDate);
+
+    FineAccrualCheckpoint save(FineAccrualCheckpoint checkpoint);
+}
@@ -2,13 +2,17 @@ package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
 
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Fine;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface FineRepository {
 
     Optional<Fine> findByLendingNumber(String lendingNumber);
+    List<Fine> findAllByLendingNumberIn(Collection<String> lendingNumbers);
     Iterable<Fine> findAll();
 
     Fine save(Fine fine);
+    <S extends Fine> Iterable<S> saveAll(Iterable<S> fines);
 
 }
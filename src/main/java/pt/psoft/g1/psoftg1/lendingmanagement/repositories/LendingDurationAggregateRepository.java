@@ -0,0 +1,72 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDurationDTO;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface LendingDurationAggregateRepository {
+
+    /**
+     * @param scope - Scope of the aggregate
+     * @return average duration in days, empty if no lending has been returned in the scope
+     */
+    Optional<Double> findAverageDaysByScope(String scope);
+
+    long count();
+
+    /**
+     * @return number of aggregates with returned lendings but no duration histogram, e.g. created before histograms were kept
+     */
+    long countAggregatesWithoutHistogram();
+
+    /**
+     * @param scope - Scope of the aggregate
+     * @return duration histogram of the aggregate, empty if there is no aggregate for the scope
+     */
+    Optional<byte[]> findHistogramByScope(String scope);
+
+    /**
+     * @param scope     - Scope of the aggregate
+     * @param histogram - Duration histogram, as returned by {@code Histogram.toBytes()}
+     * @return number of updated aggregates
+     */
+    int setHistogram(String scope, byte[] histogram);
+
+    /**
+     * Inserts an empty aggregate.
+     * @param scope - Scope of the aggregate
+     */
+    void createAggregate(String scope);
+
+    /**
+     * Atomically adds returned lendings to an aggregate.
+     * @param scope    - Scope of the aggregate
+     * @param lendings - Number of returned lendings
+     * @param days     - Total duration of the returned lendings, in days
+     * @return number of updated aggregates, i.e. {@code 0} if there is no aggregate for the scope yet
+     */
+    int addLendings(String scope, long lendings, long days);
+
+    void deleteAllAggregates();
+
+    /**
+     * Recomputes the {@code ALL} aggregate from every returned lending.
+     */
+    void rebuildGlobalAggregate();
+
+    /**
+     * Recomputes one {@code BOOK:<isbn>} aggregate per book with returned lendings.
+     */
+    void rebuildBookAggregates();
+
+    /**
+     * Recomputes one {@code GENRE:<genre>} aggregate per genre with returned lendings.
+     */
+    void rebuildGenreAggregates();
+
+    /**
+     * @return the book, genre and duration of every returned lending; must be closed
+     */
+    Stream<LendingDurationDTO> streamReturnedLendingDurations();
+}
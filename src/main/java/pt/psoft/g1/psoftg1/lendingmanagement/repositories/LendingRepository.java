@@ -1,25 +1,66 @@
 package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
 
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDatesDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingDueDateDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.OutstandingLendingsDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.ReaderMonthLendingsDTO;
 import pt.psoft.g1.psoftg1.shared.services.Page;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface LendingRepository {
     Optional<Lending> findByLendingNumber(String lendingNumber);
+    List<Lending> findAllByLendingNumberIn(Collection<String> lendingNumbers);
+    List<Lending> findAllByLendingNumberInForUpdate(Collection<String> lendingNumbers);
     List<Lending> listByReaderNumberAndIsbn(String readerNumber, String isbn);
     int getCountFromCurrentYear();
+    int getLastSequenceFromYear(int year);
     List<Lending> listOutstandingByReaderNumber(String readerNumber);
+    OutstandingLendingsDTO getOutstandingLendingsByReaderNumber(String readerNumber);
+    List<OutstandingLendingsDTO> getOutstandingLendingsByReaderNumbers(Collection<String> readerNumbers);
+    List<LendingDueDateDTO> listOutstandingDueDates();
+    /**
+     * Streams, through a read-only database cursor, the lending numbers of the lendings that are outstanding and
+     * past their due date, in ascending order. The stream must be consumed, and closed, within a transaction.
+     * @param afterLendingNumber - Only lending numbers greater than this one are returned
+     * @param today              - Lendings with a {@code limitDate} before this date are overdue
+     */
+    Stream<String> streamOverdueLendingNumbers(String afterLendingNumber, LocalDate today);
+    /**
+     * Streams, through a read-only database cursor, the facts of every lending, in no particular order.
+     * The stream must be consumed, and closed, within a transaction.
+     */
+    Stream<LendingFactDTO> streamLendingFacts();
+    /**
+     * Same as {@link #streamLendingFacts()}, for the lendings started on or after a given day.
+     */
+    Stream<LendingFactDTO> streamLendingFactsStartedFrom(LocalDate startDate);
+    /**
+     * Streams, through a read-only database cursor, the dates of the lendings started, due or returned on or
+     * after a given day. The stream must be consumed, and closed, within a transaction.
+     */
+    Stream<LendingDatesDTO> streamLendingDatesFrom(LocalDate from);
     Double getAverageDuration();
     Double getAvgLendingDurationByIsbn(String isbn);
 
 
-    List<Lending> getOverdue(Page page);
     List<Lending> searchLendings(Page page, String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate);
+    void exportLendings(String readerNumber, String isbn, Boolean returned, LocalDate startDate, LocalDate endDate, Consumer<Lending> action);
+    /**
+     * Counts the lendings of each reader in each month, grouped by the database, for the lendings started
+     * between two days (inclusive). Rows are sorted by year, month and reader number, and only one page is read.
+     */
+    List<ReaderMonthLendingsDTO> getLendingsPerReaderPerMonth(LocalDate startDate, LocalDate endDate, Page page);
 
     Lending save(Lending lending);
+    <S extends Lending> Iterable<S> saveAll(Iterable<S> lendings);
 
     void delete(Lending lending);
 
@@ -0,0 +1,15 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingSequence;
+
+import java.util.Optional;
+
+public interface LendingSequenceRepository {
+    /**
+     * @param year - Year of the sequence
+     * @return {@code Optional<LendingSequence>}, row-locked until the end of the current transaction
+     */
+    Optional<LendingSequence> findByYearForUpdate(int year);
+
+    LendingSequence save(LendingSequence lendingSequence);
+}
@@ -0,0 +1,14 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCounter;
+
+import java.util.List;
+
+public interface TopLendingCounterRepository {
+
+    List<TopLendingCounter> findAllCounters();
+
+    <S extends TopLendingCounter> Iterable<S> saveAll(Iterable<S> counters);
+
+    void deleteAllCounters();
+}
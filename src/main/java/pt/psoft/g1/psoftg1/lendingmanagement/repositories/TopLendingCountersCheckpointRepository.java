@@ -0,0 +1,16 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCountersCheckpoint;
+
+import java.util.Optional;
+
+public interface TopLendingCountersCheckpointRepository {
+    /**
+     * @return the latest checkpoint, empty if the counters have never been checkpointed
+     */
+    Optional<TopLendingCountersCheckpoint> findLatest();
+
+    TopLendingCountersCheckpoint save(TopLendingCountersCheckpoint checkpoint);
+
+    void deleteAllCheckpoints();
+}
@@ -0,0 +1,146 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Fine;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.FineAccrualCheckpoint;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineAccrualCheckpointRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Nightly job that keeps a {@code Fine} for every outstanding overdue lending, with its value accrued to the
+ * current day, so the outstanding fines can be reported without computing the delay of every lending.
+ * <p>
+ * Overdue lending numbers are streamed, in ascending order, from a read-only database cursor, and their fines
+ * are created or accrued in chunks of {@code fineAccrualChunkSize}, each in its own transaction together with
+ * the {@code FineAccrualCheckpoint} of the day. Memory use does not depend on the number of lendings, and a run
+ * that is interrupted resumes after its last committed chunk.
+ */
+@Component
+@PropertySource({"classpath:config/library.properties"})
+public class FineAccrualJob {
+    private final Logger logger = LogManager.getLogger();
+
+    private final LendingRepository lendingRepository;
+    private final FineRepository fineRepository;
+    private final FineAccrualCheckpointRepository checkpointRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate chunkTransaction;
+
+    @Value("${fineAccrualChunkSize}")
+    private int chunkSize;
+
+    public FineAccrualJob(final LendingRepository lendingRepository,
+                          final FineRepository fineRepository,
+                          final FineAccrualCheckpointRepository checkpointRepository,
+                          final PlatformTransactionManager transactionManager) {
+        this.lendingRepository = lendingRepository;
+        this.fineRepository = fineRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        // every chunk is committed on its own, while the cursor stays open in the read transaction
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Scheduled(cron = "${fines.accrual.cron:0 30 2 * * *}")
+    public void accrueFines() {
+        accrueFines(LocalDate.now());
+    }
+
+    /**
+     * Accrues the fines of the lendings overdue on {@code today}, resuming the run of that day if there is one.
+     * @return number of lendings whose fine was created or accrued by this call
+     */
+    public int accrueFines(final LocalDate today) {
+        final FineAccrualCheckpoint checkpoint = startOrResume(today);
+        if (checkpoint.isCompleted())
+            return 0;
+
+        final Integer accrued = readTransaction.execute(status -> {
+            String last = checkpoint.getLastLendingNumber();
+            int count = 0;
+            final List<String> chunk = new ArrayList<>(chunkSize);
+            try (Stream<String> overdue = lendingRepository.streamOverdueLendingNumbers(last, today)) {
+                for (String lendingNumber : (Iterable<String>) overdue::iterator) {
+                    chunk.add(lendingNumber);
+                    if (chunk.size() == chunkSize) {
+                        if (!accrueChunk(today, last, chunk, false))
+                            return count;
+                        count += chunk.size();
+                        last = chunk.get(chunk.size() - 1);
+                        chunk.clear();
+                    }
+                }
+            }
+            if (accrueChunk(today, last, chunk, true))
+                count += chunk.size();
+            return count;
+        });
+        logger.info("Accrued the fines of {} overdue lendings for {}", accrued, today);
+        return accrued;
+    }
+
+    private FineAccrualCheckpoint startOrResume(final LocalDate today) {
+        try {
+            return chunkTransaction.execute(status -> checkpointRepository.findByRunDateForUpdate(today)
+                    .orElseGet(() -> checkpointRepository.save(new FineAccrualCheckpoint(today))));
+        } catch (DataIntegrityViolationException e) {
+            // started at the same time by another node
+            return chunkTransaction.execute(status -> checkpointRepository.findByRunDateForUpdate(today).orElseThrow());
+        }
+    }
+
+    /**
+     * Creates or accrues the fines of a chunk of lendings and advances the checkpoint past them.
+     * @param expectedLast - lending number the checkpoint is expected to be at
+     * @return {@code false} if another run has moved the checkpoint in the meantime, and this one must stop
+     */
+    private boolean accrueChunk(final LocalDate today, final String expectedLast, final List<String> lendingNumbers,
+                                final boolean lastChunk) {
+        return Boolean.TRUE.equals(chunkTransaction.execute(status -> {
+            final FineAccrualCheckpoint checkpoint = checkpointRepository.findByRunDateForUpdate(today).orElseThrow();
+            if (checkpoint.isCompleted() || !checkpoint.getLastLendingNumber().equals(expectedLast))
+                return false;
+
+            if (!lendingNumbers.isEmpty()) {
+                final Set<String> withoutFine = new HashSet<>(lendingNumbers);
+                for (Fine fine : fineRepository.findAllByLendingNumberIn(lendingNumbers)) {
+                    fine.accrue();
+                    withoutFine.remove(fine.getLending().getLendingNumber());
+                }
+                final List<Fine> newFines = new ArrayList<>(withoutFine.size());
+                if (!withoutFine.isEmpty()) {
+                    for (Lending lending : lendingRepository.findAllByLendingNumberIn(withoutFine)) {
+                        if (lending.getDaysDelayed() > 0)
+                            newFines.add(new Fine(lending));
+                    }
+                }
+                fineRepository.saveAll(newFines);
+                checkpoint.advance(lendingNumbers.get(lendingNumbers.size() - 1));
+            }
+            if (lastChunk)
+                checkpoint.complete();
+            checkpointRepository.save(checkpoint);
+            return true;
+        }));
+    }
+}
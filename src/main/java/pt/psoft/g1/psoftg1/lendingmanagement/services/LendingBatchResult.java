@@ -0,0 +1,29 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+
+/**
+ * Outcome of one item of a batch of lendings: either the created {@code Lending}, or the reason it was rejected.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class LendingBatchResult {
+    private final CreateLendingRequest request;
+    private final Lending lending;
+    private final String error;
+
+    public static LendingBatchResult created(final CreateLendingRequest request, final Lending lending) {
+        return new LendingBatchResult(request, lending, null);
+    }
+
+    public static LendingBatchResult rejected(final CreateLendingRequest request, final String error) {
+        return new LendingBatchResult(request, null, error);
+    }
+
+    public boolean isCreated() {
+        return lending != null;
+    }
+}
@@ -0,0 +1,12 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.Value;
+
+/**
+ * A key of a lending report (isbn, author name or reader number) and its number of lendings.
+ */
+@Value
+public class LendingCount {
+    String key;
+    long count;
+}
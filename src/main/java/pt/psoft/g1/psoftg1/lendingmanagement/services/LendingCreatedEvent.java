@@ -0,0 +1,28 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.Value;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+
+import java.time.LocalDate;
+
+/**
+ * Published when a new {@code Lending} is registered.
+ * <p>It carries a snapshot of the lending, so listeners running after the transaction has been committed
+ * do not have to access the entity.
+ */
+@Value
+public class LendingCreatedEvent {
+    String lendingNumber;
+    String isbn;
+    String readerNumber;
+    LocalDate startDate;
+    LocalDate limitDate;
+
+    public static LendingCreatedEvent of(Lending lending) {
+        return new LendingCreatedEvent(lending.getLendingNumber(),
+                lending.getBook().getIsbn(),
+                lending.getReaderDetails().getReaderNumber(),
+                lending.getStartDate(),
+                lending.getLimitDate());
+    }
+}
@@ -0,0 +1,18 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Lendings started, lendings returned, and lendings that became overdue on one day.
+ */
+@Data
+@AllArgsConstructor
+public class LendingDailyCountDTO {
+    private LocalDate date;
+    private long lendings;
+    private long returns;
+    private long overdue;
+}
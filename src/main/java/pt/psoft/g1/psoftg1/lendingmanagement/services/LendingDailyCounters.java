@@ -0,0 +1,193 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory daily counters of the lendings started, the lendings returned, and the lendings that became overdue
+ * (on the day after their {@code limitDate}, when not returned by then), for the last {@code lendings.histogram.days}
+ * days.
+ * <p>
+ * Each counter is a ring buffer of {@code long}s indexed by epoch day, which also spans the next
+ * {@code lendingDurationInDays} days: a new lending is counted as becoming overdue on its future day, and taken back
+ * from that day if it is returned in time.
+ * <p>
+ * The counters are loaded at startup, fed by {@link LendingCreatedEvent}s and {@link LendingReturnedEvent}s once
+ * their transaction is committed, and periodically reloaded to pick up the lendings written by other nodes.
+ * Events received while a reload reads the database are only counted again if the reload did not read them.
+ */
+@Component
+@PropertySource({"classpath:config/library.properties"})
+public class LendingDailyCounters {
+    private final Logger logger = LogManager.getLogger();
+
+    private final LendingRepository lendingRepository;
+    private final TransactionTemplate readTransaction;
+    private final int days;
+    private final int horizon;
+    private final InMemoryProjection<Counters> counters;
+
+    public LendingDailyCounters(final LendingRepository lendingRepository,
+                                final PlatformTransactionManager transactionManager,
+                                @Value("${lendings.histogram.days:366}") final int days,
+                                @Value("${lendingDurationInDays}") final int lendingDurationInDays) {
+        this.lendingRepository = lendingRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.days = days;
+        // a lending started today becomes overdue the day after its limitDate
+        this.horizon = lendingDurationInDays + 1;
+        this.counters = new InMemoryProjection<>(new Counters(LocalDate.now().toEpochDay()));
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @param today - Last day of the histogram
+     * @param count - Number of days, at most {@link #getDays()}
+     * @return one entry per day, oldest first
+     */
+    public List<LendingDailyCountDTO> getHistogram(final LocalDate today, final int count) {
+        if (count < 1 || count > days)
+            throw new IllegalArgumentException("Number of days must be between 1 and " + days);
+        return counters.read(c -> {
+            final List<LendingDailyCountDTO> histogram = new ArrayList<>(count);
+            for (LocalDate day = today.minusDays(count - 1); !day.isAfter(today); day = day.plusDays(1)) {
+                final long epochDay = day.toEpochDay();
+                histogram.add(new LendingDailyCountDTO(day, c.get(c.lendings, epochDay),
+                        c.get(c.returns, epochDay), c.get(c.overdue, epochDay)));
+            }
+            return histogram;
+        }).orElseThrow();
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        apply(new Started(event.getLendingNumber()), c -> c.created(event.getStartDate(), event.getLimitDate()));
+    }
+
+    @TransactionalEventListener
+    public void onLendingReturned(final LendingReturnedEvent event) {
+        apply(new Returned(event.getLendingNumber()), c -> c.returned(event.getLimitDate(), event.getReturnedDate()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Recomputes the counters from the lendings in the database.
+     */
+    @Scheduled(fixedDelayString = "${lendings.histogram.reload-interval:PT1H}",
+            initialDelayString = "${lendings.histogram.reload-interval:PT1H}")
+    public void reload() {
+        final Counters fresh = counters.reload(loaded -> readTransaction.execute(status -> {
+            final Counters c = new Counters(LocalDate.now().toEpochDay());
+            try (Stream<LendingDatesDTO> lendings = lendingRepository.streamLendingDatesFrom(LocalDate.ofEpochDay(c.first - 1))) {
+                lendings.forEach(l -> {
+                    c.created(l.getStartDate(), l.getLimitDate());
+                    loaded.accept(new Started(l.getLendingNumber()));
+                    if (l.getReturnedDate() != null) {
+                        c.returned(l.getLimitDate(), l.getReturnedDate());
+                        loaded.accept(new Returned(l.getLendingNumber()));
+                    }
+                });
+            }
+            return c;
+        }));
+        logger.debug("Loaded the daily lending counters since {}", LocalDate.ofEpochDay(fresh.first));
+    }
+
+    private void apply(final Object key, final Consumer<Counters> event) {
+        final long today = LocalDate.now().toEpochDay();
+        counters.apply(key, c -> {
+            c.advanceTo(today);
+            event.accept(c);
+        });
+    }
+
+    // keys of the events, to tell which ones a reload has counted already
+    private record Started(String lendingNumber) {
+    }
+
+    private record Returned(String lendingNumber) {
+    }
+
+    /**
+     * Ring buffers of the days from {@code first} to {@code first + days + horizon - 1}; slot {@code i} holds
+     * the day {@code epochDays[i]}, whatever was stored there for an older day being stale.
+     */
+    private final class Counters {
+        private final long[] epochDays = new long[days + horizon];
+        private final long[] lendings = new long[days + horizon];
+        private final long[] returns = new long[days + horizon];
+        private final long[] overdue = new long[days + horizon];
+        private long first;
+
+        private Counters(final long today) {
+            Arrays.fill(epochDays, Long.MIN_VALUE);
+            advanceTo(today);
+        }
+
+        private void advanceTo(final long today) {
+            first = Math.max(first, today - days + 1);
+        }
+
+        private void created(final LocalDate startDate, final LocalDate limitDate) {
+            add(lendings, startDate.toEpochDay(), 1);
+            add(overdue, limitDate.toEpochDay() + 1, 1);
+        }
+
+        private void returned(final LocalDate limitDate, final LocalDate returnedDate) {
+            add(returns, returnedDate.toEpochDay(), 1);
+            if (!returnedDate.isAfter(limitDate))
+                add(overdue, limitDate.toEpochDay() + 1, -1);
+        }
+
+        private long get(final long[] counter, final long epochDay) {
+            final int slot = slotOf(epochDay);
+            return slot < 0 || epochDays[slot] != epochDay ? 0 : counter[slot];
+        }
+
+        private void add(final long[] counter, final long epochDay, final long delta) {
+            final int slot = slotOf(epochDay);
+            if (slot < 0)
+                return;
+            if (epochDays[slot] != epochDay) {
+                // the slot of an older day is reused
+                epochDays[slot] = epochDay;
+                lendings[slot] = 0;
+                returns[slot] = 0;
+                overdue[slot] = 0;
+            }
+            counter[slot] += delta;
+        }
+
+        /** @return the slot of a day, or {@code -1} if it is out of the buffer */
+        private int slotOf(final long epochDay) {
+            if (epochDay < first || epochDay >= first + epochDays.length)
+                return -1;
+            return (int) Math.floorMod(epochDay, (long) epochDays.length);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LendingDatesDTO {
+    private String lendingNumber;
+    private LocalDate startDate;
+    private LocalDate limitDate;
+    private LocalDate returnedDate;
+}
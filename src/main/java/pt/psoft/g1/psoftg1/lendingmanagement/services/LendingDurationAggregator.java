@@ -0,0 +1,152 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingDurationAggregate;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingDurationAggregateRepository;
+import pt.psoft.g1.psoftg1.shared.model.Histogram;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@code LendingDurationAggregate}s up to date, so average lending durations, and their percentiles,
+ * are read in constant time.
+ * <p>
+ * Aggregates are incremented, and their duration histograms updated, in the same transaction that returns a
+ * lending. They can be recomputed from the lending history with {@link #rebuild()}, which is done at startup when
+ * there are no aggregates yet, or aggregates without a histogram.
+ */
+@Component
+public class LendingDurationAggregator {
+    private final LendingDurationAggregateRepository aggregateRepository;
+    private final TransactionTemplate creationTransaction;
+
+    public LendingDurationAggregator(final LendingDurationAggregateRepository aggregateRepository,
+                                     final PlatformTransactionManager transactionManager) {
+        this.aggregateRepository = aggregateRepository;
+        // missing aggregates are created apart, so a concurrent creation does not roll back the returned lending
+        this.creationTransaction = new TransactionTemplate(transactionManager);
+        this.creationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Adds a returned lending to the global aggregate and to the aggregates of its book and of its genre.
+     * Must be called within the transaction that sets the lending as returned.
+     */
+    public void lendingReturned(final Lending lending) {
+        lendingsReturned(List.of(lending));
+    }
+
+    /**
+     * Same as {@link #lendingReturned(Lending)} for several lendings, with one update per aggregate.
+     */
+    public void lendingsReturned(final Collection<Lending> lendings) {
+        if (lendings.isEmpty())
+            return;
+        // scope -> {lendings, days}; sorted, so concurrent returns update the aggregates in the same order
+        final Map<String, long[]> totals = new TreeMap<>();
+        final Map<String, List<Long>> durations = new TreeMap<>();
+        for (Lending lending : lendings) {
+            final long days = ChronoUnit.DAYS.between(lending.getStartDate(), lending.getReturnedDate());
+            for (String scope : scopesOf(lending.getBook().getIsbn(), lending.getBook().getGenre().getGenre())) {
+                add(totals, scope, days);
+                durations.computeIfAbsent(scope, s -> new ArrayList<>()).add(days);
+            }
+        }
+        totals.forEach((scope, t) -> addLendings(scope, t[0], t[1]));
+        // the aggregates are locked by the updates above until the transaction ends, so their histograms are not
+        // changed concurrently
+        durations.forEach((scope, days) -> {
+            final Histogram histogram = Histogram.fromBytes(aggregateRepository.findHistogramByScope(scope).orElse(null));
+            days.forEach(d -> histogram.record(Math.max(d, 0)));
+            aggregateRepository.setHistogram(scope, histogram.toBytes());
+        });
+    }
+
+    public double getAverageDuration() {
+        return getAverageDays(LendingDurationAggregate.ALL);
+    }
+
+    public double getAverageDurationByIsbn(final String isbn) {
+        return getAverageDays(LendingDurationAggregate.bookScope(isbn));
+    }
+
+    /**
+     * @param scope - Scope of the aggregate, e.g. {@code LendingDurationAggregate.genreScope(genre)}
+     * @return histogram of the durations, in days, of the lendings returned in the scope, empty if there are none
+     */
+    public Optional<Histogram> getDurations(final String scope) {
+        return aggregateRepository.findHistogramByScope(scope)
+                .map(Histogram::fromBytes)
+                .filter(h -> h.getTotalCount() > 0);
+    }
+
+    /**
+     * Recomputes every aggregate from the returned lendings in the database.
+     */
+    @Transactional
+    public void rebuild() {
+        aggregateRepository.deleteAllAggregates();
+        aggregateRepository.rebuildGlobalAggregate();
+        aggregateRepository.rebuildBookAggregates();
+        aggregateRepository.rebuildGenreAggregates();
+
+        final Map<String, Histogram> histograms = new TreeMap<>();
+        try (Stream<LendingDurationDTO> durations = aggregateRepository.streamReturnedLendingDurations()) {
+            durations.forEach(d -> {
+                for (String scope : scopesOf(d.getIsbn(), d.getGenre()))
+                    histograms.computeIfAbsent(scope, s -> new Histogram()).record(Math.max(d.getDays(), 0));
+            });
+        }
+        histograms.forEach((scope, histogram) -> aggregateRepository.setHistogram(scope, histogram.toBytes()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfIncomplete() {
+        if (aggregateRepository.count() == 0 || aggregateRepository.countAggregatesWithoutHistogram() > 0)
+            rebuild();
+    }
+
+    private double getAverageDays(final String scope) {
+        return aggregateRepository.findAverageDaysByScope(scope).orElse(0.0);
+    }
+
+    private static List<String> scopesOf(final String isbn, final String genre) {
+        return List.of(LendingDurationAggregate.ALL,
+                LendingDurationAggregate.bookScope(isbn),
+                LendingDurationAggregate.genreScope(genre));
+    }
+
+    private static void add(final Map<String, long[]> totals, final String scope, final long days) {
+        final long[] t = totals.computeIfAbsent(scope, s -> new long[2]);
+        t[0]++;
+        t[1] += days;
+    }
+
+    private void addLendings(final String scope, final long lendings, final long days) {
+        if (aggregateRepository.addLendings(scope, lendings, days) > 0)
+            return;
+
+        try {
+            creationTransaction.executeWithoutResult(status -> aggregateRepository.createAggregate(scope));
+        } catch (DataIntegrityViolationException e) {
+            // created in the meantime by a concurrent return
+        }
+        aggregateRepository.addLendings(scope, lendings, days);
+    }
+}
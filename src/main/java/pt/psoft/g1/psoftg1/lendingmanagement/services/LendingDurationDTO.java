@@ -0,0 +1,20 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+@Data
+@AllArgsConstructor
+public class LendingDurationDTO {
+    private String isbn;
+    private String genre;
+    private LocalDate startDate;
+    private LocalDate returnedDate;
+
+    public long getDays() {
+        return ChronoUnit.DAYS.between(startDate, returnedDate);
+    }
+}
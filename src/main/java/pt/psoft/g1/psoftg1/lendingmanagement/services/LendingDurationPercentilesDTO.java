@@ -0,0 +1,16 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class LendingDurationPercentilesDTO {
+    private long lendingCount;
+    /**
+     * Duration in days at each requested percentile, in the requested order.
+     */
+    private Map<Double, Long> percentiles;
+}
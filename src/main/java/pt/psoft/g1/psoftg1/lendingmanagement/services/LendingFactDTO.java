@@ -0,0 +1,15 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LendingFactDTO {
+    private String lendingNumber;
+    private String isbn;
+    private String readerNumber;
+    private LocalDate startDate;
+}
@@ -0,0 +1,309 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-memory, columnar copy of the lending history, for the reports that count lendings per book,
+ * author or reader.
+ * <p>
+ * Every lending is a row of {@code int} columns: start day, and the dictionary ids of its book, genre and reader.
+ * The author ids are kept per book. Reports scan the columns, in parallel when there are many rows, instead of
+ * joining the relational tables.
+ * <p>
+ * The store is only used when {@code lendings.fact-store.enabled} is set. It is then an {@link InMemoryProjection}:
+ * loaded at startup, fed by {@link LendingCreatedEvent}s once their transaction is committed (rows are keyed by
+ * lending number, so an event is never counted twice), and periodically reloaded to repair any drift (e.g. lendings written by other nodes, or books whose genre or authors changed). Until it is loaded every report is empty, so callers fall back to the database.
+ */
+@Component
+public class LendingFactStore {
+    private final Logger logger = LogManager.getLogger();
+
+    // below this number of rows, splitting a scan across threads costs more than it saves
+    private static final int PARALLEL_SCAN_THRESHOLD = 1 << 15;
+
+    private final LendingRepository lendingRepository;
+    private final BookRepository bookRepository;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final InMemoryProjection<Facts> facts = new InMemoryProjection<>();
+
+    public LendingFactStore(final LendingRepository lendingRepository,
+                            final BookRepository bookRepository,
+                            final PlatformTransactionManager transactionManager,
+                            @Value("${lendings.fact-store.enabled:false}")
+                            final boolean enabled) {
+        this.lendingRepository = lendingRepository;
+        this.bookRepository = bookRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param startedAfter - Only lendings started after this day are counted
+     * @param limit        - Maximum number of books to return
+     * @return isbns of the most lent books, most lendings first, or empty if the store is not loaded
+     */
+    public Optional<List<LendingCount>> findTopBooksLent(final LocalDate startedAfter, final int limit) {
+        final int after = (int) startedAfter.toEpochDay();
+        return report(f -> f.top(f.books, limit, (counts, row) -> {
+            if (f.startDay[row] > after)
+                counts[f.bookId[row]]++;
+        }));
+    }
+
+    /**
+     * @param limit - Maximum number of authors to return
+     * @return names of the authors with the most lendings, most lendings first, or empty if the store is not loaded
+     */
+    public Optional<List<LendingCount>> findTopAuthorsByLendings(final int limit) {
+        return report(f -> f.top(f.authors, limit, (counts, row) -> {
+            for (int author : f.bookAuthors[f.bookId[row]])
+                counts[author]++;
+        }));
+    }
+
+    /**
+     * @param genre     - Genre of the lent books
+     * @param startDate - First start day of the counted lendings
+     * @param endDate   - Last start day of the counted lendings
+     * @param limit     - Maximum number of readers to return
+     * @return reader numbers of the readers with the most lendings, most lendings first, or empty if the store
+     * is not loaded
+     */
+    public Optional<List<LendingCount>> findTopReadersByGenre(final String genre, final LocalDate startDate,
+                                                       final LocalDate endDate, final int limit) {
+        final int start = (int) startDate.toEpochDay();
+        final int end = (int) endDate.toEpochDay();
+        return report(f -> {
+            final int genreId = f.genres.idOf(genre);
+            if (genreId < 0)
+                return List.of();
+            return f.top(f.readers, limit, (counts, row) -> {
+                if (f.genreId[row] == genreId && f.startDay[row] >= start && f.startDay[row] <= end)
+                    counts[f.readerId[row]]++;
+            });
+        });
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        if (!enabled)
+            return;
+        // the genre and authors of a book the store does not know yet are read before taking the lock
+        final List<BookGenreAuthorDTO> book = isKnownBook(event.getIsbn()) ? null
+                : readTransaction.execute(status -> bookRepository.listGenresAndAuthorsByIsbnIn(List.of(event.getIsbn())));
+        facts.apply(f -> {
+            if (book != null && !book.isEmpty() && !f.books.contains(event.getIsbn()))
+                f.putBook(event.getIsbn(), book);
+            f.add(event.getLendingNumber(), event.getIsbn(), event.getReaderNumber(), event.getStartDate());
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Replaces the store with a fresh copy of the lending history.
+     */
+    @Scheduled(fixedDelayString = "${lendings.fact-store.reload-interval:PT6H}",
+            initialDelayString = "${lendings.fact-store.reload-interval:PT6H}")
+    public void reload() {
+        if (!enabled)
+            return;
+        final Facts fresh = facts.reload(loaded -> readTransaction.execute(status -> load()));
+        logger.info("Loaded {} lendings into the lending fact store", fresh.size);
+    }
+
+    private Facts load() {
+        final Facts f = new Facts();
+        byIsbn(bookRepository.listGenresAndAuthors()).forEach(f::putBook);
+
+        final Set<String> unknownBooks = new HashSet<>();
+        try (Stream<LendingFactDTO> lendings = lendingRepository.streamLendingFacts()) {
+            lendings.forEach(l -> {
+                if (!f.books.contains(l.getIsbn()))
+                    unknownBooks.add(l.getIsbn());
+                f.add(l.getLendingNumber(), l.getIsbn(), l.getReaderNumber(), l.getStartDate());
+            });
+        }
+        // books created after their genres and authors were read
+        if (!unknownBooks.isEmpty()) {
+            byIsbn(bookRepository.listGenresAndAuthorsByIsbnIn(unknownBooks)).forEach(f::putBook);
+            f.refreshGenres();
+        }
+        return f;
+    }
+
+    private static Map<String, List<BookGenreAuthorDTO>> byIsbn(final List<BookGenreAuthorDTO> rows) {
+        return rows.stream().collect(Collectors.groupingBy(BookGenreAuthorDTO::getIsbn));
+    }
+
+    private boolean isKnownBook(final String isbn) {
+        return facts.read(f -> f.books.contains(isbn)).orElse(false);
+    }
+
+    private <T> Optional<T> report(final Function<Facts, T> query) {
+        return facts.read(query);
+    }
+
+    /**
+     * Maps keys (isbns, genres, author names, reader numbers) to dense ids, used as indexes of the columns.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+
+        int idOf(final String key) {
+            return ids.getOrDefault(key, -1);
+        }
+
+        int add(final String key) {
+            return ids.computeIfAbsent(key, k -> {
+                keys.add(k);
+                return keys.size() - 1;
+            });
+        }
+
+        boolean contains(final String key) {
+            return ids.containsKey(key);
+        }
+
+        String keyOf(final int id) {
+            return keys.get(id);
+        }
+
+        int size() {
+            return keys.size();
+        }
+    }
+
+    /**
+     * The columns. Adding lendings is idempotent, so events can be applied more than once.
+     */
+    private static final class Facts {
+        private static final int NO_GENRE = -1;
+        private static final int[] NO_AUTHORS = new int[0];
+
+        final Dictionary books = new Dictionary();
+        final Dictionary genres = new Dictionary();
+        final Dictionary authors = new Dictionary();
+        final Dictionary readers = new Dictionary();
+        final Map<String, Integer> rowByLendingNumber = new HashMap<>();
+
+        // one entry per book id
+        int[] bookGenre = new int[256];
+        int[][] bookAuthors = new int[256][];
+
+        // one entry per lending
+        int size;
+        int[] startDay = new int[4096];
+        int[] bookId = new int[4096];
+        int[] genreId = new int[4096];
+        int[] readerId = new int[4096];
+
+        void putBook(final String isbn, final List<BookGenreAuthorDTO> rows) {
+            final int id = addBook(isbn);
+            bookGenre[id] = genres.add(rows.get(0).getGenre());
+            bookAuthors[id] = rows.stream()
+                    .map(BookGenreAuthorDTO::getAuthorName)
+                    .filter(Objects::nonNull)
+                    .mapToInt(authors::add)
+                    .distinct()
+                    .toArray();
+        }
+
+        void add(final String lendingNumber, final String isbn, final String readerNumber, final LocalDate startDate) {
+            if (rowByLendingNumber.containsKey(lendingNumber))
+                return;
+            if (size == startDay.length) {
+                final int capacity = size * 2;
+                startDay = Arrays.copyOf(startDay, capacity);
+                bookId = Arrays.copyOf(bookId, capacity);
+                genreId = Arrays.copyOf(genreId, capacity);
+                readerId = Arrays.copyOf(readerId, capacity);
+            }
+            final int book = addBook(isbn);
+            startDay[size] = (int) startDate.toEpochDay();
+            bookId[size] = book;
+            genreId[size] = bookGenre[book];
+            readerId[size] = readers.add(readerNumber);
+            rowByLendingNumber.put(lendingNumber, size++);
+        }
+
+        void refreshGenres() {
+            for (int row = 0; row < size; row++)
+                genreId[row] = bookGenre[bookId[row]];
+        }
+
+        /**
+         * @param keys    - Dictionary of the counted dimension
+         * @param counter - Increments the counters of the dimension ids of a row, if the row is to be counted
+         * @return the {@code limit} keys with the highest counts, ties broken by key
+         */
+        List<LendingCount> top(final Dictionary keys, final int limit, final ObjIntConsumer<long[]> counter) {
+            final int dimension = keys.size();
+            IntStream rows = IntStream.range(0, size);
+            if (size >= PARALLEL_SCAN_THRESHOLD)
+                rows = rows.parallel();
+            final long[] counts = rows.collect(() -> new long[dimension], counter, (a, b) -> {
+                for (int i = 0; i < a.length; i++)
+                    a[i] += b[i];
+            });
+
+            // the head is the worst of the best ids found so far
+            final PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1,
+                    Comparator.<Integer>comparingLong(id -> counts[id])
+                            .thenComparing(keys::keyOf, Comparator.reverseOrder()));
+            for (int id = 0; id < dimension; id++) {
+                if (counts[id] == 0)
+                    continue;
+                best.add(id);
+                if (best.size() > limit)
+                    best.poll();
+            }
+            final LinkedList<LendingCount> top = new LinkedList<>();
+            while (!best.isEmpty()) {
+                final int id = best.poll();
+                top.addFirst(new LendingCount(keys.keyOf(id), counts[id]));
+            }
+            return top;
+        }
+
+        private int addBook(final String isbn) {
+            final int id = books.add(isbn);
+            if (id == bookGenre.length) {
+                bookGenre = Arrays.copyOf(bookGenre, id * 2);
+                bookAuthors = Arrays.copyOf(bookAuthors, id * 2);
+            }
+            if (bookAuthors[id] == null) {
+                // not read from the database yet, counted without a genre nor authors until then
+                bookGenre[id] = NO_GENRE;
+                bookAuthors[id] = NO_AUTHORS;
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingNumber;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingSequence;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingSequenceRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the sequential component of new {@code LendingNumber}s, per year.
+ * <p>
+ * Sequential numbers are reserved from the database in blocks of {@code lendingNumberBlockSize} (hi/lo):
+ * the {@code LendingSequence} row of the year is locked and advanced once per block, and the numbers
+ * inside a block are then handed out from an atomic counter without touching the database.
+ * Every node reserves its own blocks, so numbers are unique across nodes, but they are not gap-free
+ * and not strictly ordered by creation time.
+ */
+@Component
+@PropertySource({"classpath:config/library.properties"})
+public class LendingNumberAllocator {
+    private static final int MAX_RESERVATION_ATTEMPTS = 3;
+
+    private final LendingSequenceRepository lendingSequenceRepository;
+    private final LendingRepository lendingRepository;
+    private final TransactionTemplate reservationTransaction;
+
+    private final ConcurrentMap<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+    @Value("${lendingNumberBlockSize}")
+    private int blockSize;
+
+    public LendingNumberAllocator(final LendingSequenceRepository lendingSequenceRepository,
+                                  final LendingRepository lendingRepository,
+                                  final PlatformTransactionManager transactionManager) {
+        this.lendingSequenceRepository = lendingSequenceRepository;
+        this.lendingRepository = lendingRepository;
+        // blocks are reserved in their own transaction, so the sequence row is not kept locked
+        // until the lending that triggered the reservation is committed (or rolled back)
+        this.reservationTransaction = new TransactionTemplate(transactionManager);
+        this.reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @return a new {@code LendingNumber} for the current year
+     */
+    public LendingNumber nextLendingNumber() {
+        final int year = LocalDate.now().getYear();
+        return new LendingNumber(year, nextSequence(year));
+    }
+
+    /**
+     * Reserves {@code count} consecutive sequential numbers at once, apart from the shared blocks.
+     * @return {@code count} new {@code LendingNumber}s for the current year
+     */
+    public List<LendingNumber> nextLendingNumbers(final int count) {
+        final List<LendingNumber> lendingNumbers = new ArrayList<>(count);
+        if (count <= 0)
+            return lendingNumbers;
+
+        final int year = LocalDate.now().getYear();
+        final int first = reserve(year, count);
+        for (int seq = first; seq < first + count; seq++)
+            lendingNumbers.add(new LendingNumber(year, seq));
+        return lendingNumbers;
+    }
+
+    int nextSequence(final int year) {
+        while (true) {
+            final Block block = blocks.get(year);
+            if (block != null) {
+                final int seq = block.next();
+                if (seq >= 0)
+                    return seq;
+            }
+            refill(year, block);
+        }
+    }
+
+    private synchronized void refill(final int year, final Block exhausted) {
+        // another thread may have refilled the block while this one was waiting for the lock
+        if (blocks.get(year) != exhausted)
+            return;
+
+        final int first = reserve(year, blockSize);
+        blocks.put(year, new Block(first, first + blockSize));
+        // year rollover: blocks of previous years will not be used anymore
+        blocks.keySet().removeIf(y -> y < year);
+    }
+
+    private int reserve(final int year, final int size) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final Integer first = reservationTransaction.execute(status -> {
+                    final LendingSequence sequence = lendingSequenceRepository.findByYearForUpdate(year)
+                            .orElseGet(() -> new LendingSequence(year, lendingRepository.getLastSequenceFromYear(year) + 1));
+                    final int reserved = sequence.reserve(size);
+                    lendingSequenceRepository.save(sequence);
+                    return reserved;
+                });
+                return first;
+            } catch (DataIntegrityViolationException e) {
+                // another node created the sequence of this year at the same time; read it again
+                if (attempt >= MAX_RESERVATION_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * Range of sequential numbers reserved from the database, consumed by a lock-free counter.
+     */
+    private static final class Block {
+        private final AtomicInteger next;
+        private final int limit;
+
+        private Block(final int first, final int limit) {
+            this.next = new AtomicInteger(first);
+            this.limit = limit;
+        }
+
+        /**
+         * @return the next sequential number of this block, or {@code -1} if the block is exhausted
+         */
+        private int next() {
+            final int seq = next.getAndIncrement();
+            return seq < limit ? seq : -1;
+        }
+    }
+}
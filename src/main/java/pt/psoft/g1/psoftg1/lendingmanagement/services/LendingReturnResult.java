@@ -0,0 +1,28 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+
+/**
+ * Outcome of one item of a batch of returns: the returned {@code Lending}, or the reason it was not returned.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class LendingReturnResult {
+    public enum Status { RETURNED, NOT_FOUND, ALREADY_RETURNED, VERSION_CONFLICT }
+
+    private final ReturnLendingRequest request;
+    private final Status status;
+    private final Lending lending;
+    private final String error;
+
+    public static LendingReturnResult returned(final ReturnLendingRequest request, final Lending lending) {
+        return new LendingReturnResult(request, Status.RETURNED, lending, null);
+    }
+
+    public static LendingReturnResult failed(final ReturnLendingRequest request, final Status status, final String error) {
+        return new LendingReturnResult(request, status, null, error);
+    }
+}
@@ -0,0 +1,30 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.Value;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+
+import java.time.LocalDate;
+
+/**
+ * Published when a {@code Lending} is set as returned.
+ * <p>It carries a snapshot of the lending, so listeners running after the transaction has been committed
+ * do not have to access the entity.
+ */
+@Value
+public class LendingReturnedEvent {
+    String lendingNumber;
+    String isbn;
+    String readerNumber;
+    LocalDate startDate;
+    LocalDate limitDate;
+    LocalDate returnedDate;
+
+    public static LendingReturnedEvent of(Lending lending) {
+        return new LendingReturnedEvent(lending.getLendingNumber(),
+                lending.getBook().getIsbn(),
+                lending.getReaderDetails().getReaderNumber(),
+                lending.getStartDate(),
+                lending.getLimitDate(),
+                lending.getReturnedDate());
+    }
+}
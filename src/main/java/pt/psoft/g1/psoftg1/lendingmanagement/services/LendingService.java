@@ -1,10 +1,13 @@
 package pt.psoft.g1.psoftg1.lendingmanagement.services;
 
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderLendingsAvgPerMonthDto;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface LendingService {
     /**
@@ -20,11 +23,53 @@ public interface LendingService {
      */
     List<Lending> listByReaderNumberAndIsbn(String readerNumber, String isbn, Optional<Boolean> returned);
     Lending create(CreateLendingRequest resource); //No ID passed, as it is auto generated
+    /**
+     * Creates several lendings in one transaction, applying the business rules of {@link #create} to each one.
+     * @return one result per requested lending, in the same order, with the created lending or the reason it was rejected
+     */
+    List<LendingBatchResult> createAll(CreateLendingsRequest resource);
     Lending setReturned(String id, SetLendingReturnedRequest resource, long desiredVersion);
+    /**
+     * Sets several lendings as returned in one transaction. A lending that cannot be returned, e.g. because its
+     * version is stale, is reported in its result and does not prevent the others from being returned.
+     * @return one result per requested lending, in the same order
+     */
+    List<LendingReturnResult> setAllReturned(ReturnLendingsRequest resource);
     Double getAverageDuration();
-    List<Lending> getOverdue(Page page);
+    /**
+     * @return the requested page of overdue lendings, oldest {@code limitDate} first, with the number of
+     * overdue lendings and the cursor of the next page
+     */
+    PageResult<Lending> getOverdue(Page page);
+    long countOverdue();
     Double getAvgLendingDurationByIsbn(String isbn);
+    /**
+     * Percentiles of the duration of the returned lendings of a book, of a genre, or of every book.
+     * @param isbn        - ISBN of the book, or {@code null}
+     * @param genre       - Name of the genre, or {@code null}; cannot be given along with {@code isbn}
+     * @param percentiles - Percentiles, each greater than 0 and at most 100
+     */
+    LendingDurationPercentilesDTO getDurationPercentiles(String isbn, String genre, List<Double> percentiles);
     List<Lending> searchLendings(Page page, SearchLendingQuery request);
+    /**
+     * Hands every lending matching {@code request} to {@code action}, in lending number order and without paging.
+     * Lendings are read through a database cursor and detached once handled, so they can be counted in millions.
+     * @param request - Search criteria; {@code null} exports every lending
+     */
+    void exportLendings(SearchLendingQuery request, Consumer<Lending> action);
+    /**
+     * Number of lendings of each reader in each month of a range, one page of (month, reader) pairs at a time.
+     * @param startDate - First day of the range, YYYY-MM-DD
+     * @param endDate   - Last day of the range, YYYY-MM-DD
+     * @return the pairs of the page, grouped by month, in chronological order
+     */
+    List<ReaderLendingsAvgPerMonthDto> getAverageMonthlyPerReader(String startDate, String endDate, Page page);
+    /**
+     * Lendings started, returned, and become overdue on each of the last days, today included.
+     * @param days - Number of days
+     * @return one entry per day, oldest first
+     */
+    List<LendingDailyCountDTO> getDailyHistogram(int days);
 
 
 }
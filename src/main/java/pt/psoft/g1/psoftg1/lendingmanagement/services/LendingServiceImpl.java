@@ -1,24 +1,40 @@
 package pt.psoft.g1.psoftg1.lendingmanagement.services;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.StaleObjectStateException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
 import pt.psoft.g1.psoftg1.exceptions.LendingForbiddenException;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingRollupAggregator;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Fine;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingDurationAggregate;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.LendingNumber;
 import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineRepository;
 import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderAverageDto;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderLendingsAvgPerMonthDto;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.shared.model.Histogram;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.shared.services.PageResult;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
-import java.util.List;
-import java.util.Locale;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +44,12 @@ public class LendingServiceImpl implements LendingService{
     private final FineRepository fineRepository;
     private final BookRepository bookRepository;
     private final ReaderRepository readerRepository;
+    private final LendingNumberAllocator lendingNumberAllocator;
+    private final LendingDurationAggregator lendingDurationAggregator;
+    private final GenreLendingRollupAggregator genreLendingRollupAggregator;
+    private final OverdueIndex overdueIndex;
+    private final LendingDailyCounters lendingDailyCounters;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${lendingDurationInDays}")
     private int lendingDurationInDays;
@@ -56,33 +78,96 @@ public class LendingServiceImpl implements LendingService{
     }
 
     @Override
+    @Transactional
     public Lending create(final CreateLendingRequest resource) {
-        int count = 0;
-
-        Iterable<Lending> lendingList = lendingRepository.listOutstandingByReaderNumber(resource.getReaderNumber());
-        for (Lending lending : lendingList) {
-            //Business rule: cannot create a lending if user has late outstanding books to return.
-            if (lending.getDaysDelayed() > 0) {
-                throw new LendingForbiddenException("Reader has book(s) past their due date");
-            }
-            count++;
-            //Business rule: cannot create a lending if user already has 3 outstanding books to return.
-            if (count >= 3) {
-                throw new LendingForbiddenException("Reader has three books outstanding already");
-            }
+        final OutstandingLendingsDTO outstanding = lendingRepository.getOutstandingLendingsByReaderNumber(resource.getReaderNumber());
+        //Business rule: cannot create a lending if user has late outstanding books to return.
+        if (outstanding.hasOverdue(LocalDate.now())) {
+            throw new LendingForbiddenException("Reader has book(s) past their due date");
+        }
+        //Business rule: cannot create a lending if user already has 3 outstanding books to return.
+        if (outstanding.getOutstandingLendings() >= 3) {
+            throw new LendingForbiddenException("Reader has three books outstanding already");
         }
 
         final var b = bookRepository.findByIsbn(resource.getIsbn())
                 .orElseThrow(() -> new NotFoundException("Book not found"));
         final var r = readerRepository.findByReaderNumber(resource.getReaderNumber())
                 .orElseThrow(() -> new NotFoundException("Reader not found"));
-        int seq = lendingRepository.getCountFromCurrentYear()+1;
-        final Lending l = new Lending(b,r,seq, lendingDurationInDays, fineValuePerDayInCents );
+        final Lending l = new Lending(b, r, lendingNumberAllocator.nextLendingNumber(), lendingDurationInDays, fineValuePerDayInCents);
+
+        final Lending saved = lendingRepository.save(l);
+        genreLendingRollupAggregator.lendingsCreated(List.of(saved));
+        eventPublisher.publishEvent(LendingCreatedEvent.of(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<LendingBatchResult> createAll(final CreateLendingsRequest resource) {
+        final List<CreateLendingRequest> items = resource.getLendings();
+        final Set<String> isbns = items.stream().map(CreateLendingRequest::getIsbn).collect(Collectors.toSet());
+        final Set<String> readerNumbers = items.stream().map(CreateLendingRequest::getReaderNumber).collect(Collectors.toSet());
+
+        final Map<String, Book> books = bookRepository.findAllByIsbnIn(isbns).stream()
+                .collect(Collectors.toMap(Book::getIsbn, b -> b));
+        final Map<String, ReaderDetails> readers = readerRepository.findAllByReaderNumberIn(readerNumbers).stream()
+                .collect(Collectors.toMap(ReaderDetails::getReaderNumber, r -> r));
+        final Map<String, OutstandingLendingsDTO> outstanding = lendingRepository.getOutstandingLendingsByReaderNumbers(readerNumbers).stream()
+                .collect(Collectors.toMap(OutstandingLendingsDTO::getReaderNumber, o -> o));
 
-        return lendingRepository.save(l);
+        final LocalDate today = LocalDate.now();
+        final String[] errors = new String[items.size()];
+        final Map<String, Long> outstandingCount = new HashMap<>();
+        int accepted = 0;
+        for (int i = 0; i < items.size(); i++) {
+            final CreateLendingRequest item = items.get(i);
+            final OutstandingLendingsDTO o = outstanding.get(item.getReaderNumber());
+            final long count = outstandingCount.getOrDefault(item.getReaderNumber(),
+                    o == null ? 0 : o.getOutstandingLendings());
+            //Same business rules as create(), counting the lendings accepted earlier in this batch
+            if (o != null && o.hasOverdue(today)) {
+                errors[i] = "Reader has book(s) past their due date";
+            } else if (count >= 3) {
+                errors[i] = "Reader has three books outstanding already";
+            } else if (!books.containsKey(item.getIsbn())) {
+                errors[i] = "Book not found";
+            } else if (!readers.containsKey(item.getReaderNumber())) {
+                errors[i] = "Reader not found";
+            } else {
+                outstandingCount.put(item.getReaderNumber(), count + 1);
+                accepted++;
+            }
+        }
+
+        final Iterator<LendingNumber> lendingNumbers = lendingNumberAllocator.nextLendingNumbers(accepted).iterator();
+        final List<Lending> lendings = new ArrayList<>(accepted);
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null) {
+                final CreateLendingRequest item = items.get(i);
+                lendings.add(new Lending(books.get(item.getIsbn()), readers.get(item.getReaderNumber()),
+                        lendingNumbers.next(), lendingDurationInDays, fineValuePerDayInCents));
+            }
+        }
+        lendingRepository.saveAll(lendings);
+        genreLendingRollupAggregator.lendingsCreated(lendings);
+
+        final List<LendingBatchResult> results = new ArrayList<>(items.size());
+        final Iterator<Lending> saved = lendings.iterator();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] != null) {
+                results.add(LendingBatchResult.rejected(items.get(i), errors[i]));
+            } else {
+                final Lending lending = saved.next();
+                eventPublisher.publishEvent(LendingCreatedEvent.of(lending));
+                results.add(LendingBatchResult.created(items.get(i), lending));
+            }
+        }
+        return results;
     }
 
     @Override
+    @Transactional
     public Lending setReturned(final String lendingNumber, final SetLendingReturnedRequest resource, final long desiredVersion) {
 
         var lending = lendingRepository.findByLendingNumber(lendingNumber)
@@ -91,38 +176,164 @@ public class LendingServiceImpl implements LendingService{
         lending.setReturned(desiredVersion, resource.getCommentary());
 
         if(lending.getDaysDelayed() > 0){
-            final var fine = new Fine(lending);
+            // the fine of a lending that was overdue may already have been accrued by the FineAccrualJob
+            final var fine = fineRepository.findByLendingNumber(lendingNumber).orElseGet(() -> new Fine(lending));
+            fine.accrue();
             fineRepository.save(fine);
         }
 
-        return lendingRepository.save(lending);
+        lendingDurationAggregator.lendingReturned(lending);
+        genreLendingRollupAggregator.lendingsReturned(List.of(lending));
+
+        final Lending saved = lendingRepository.save(lending);
+        eventPublisher.publishEvent(LendingReturnedEvent.of(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<LendingReturnResult> setAllReturned(final ReturnLendingsRequest resource) {
+        final List<ReturnLendingRequest> items = resource.getLendings();
+        final Set<String> lendingNumbers = items.stream().map(ReturnLendingRequest::getLendingNumber).collect(Collectors.toSet());
+        // locked, so the versions cannot change between the check below and the commit
+        final Map<String, Lending> lendings = lendingRepository.findAllByLendingNumberInForUpdate(lendingNumbers).stream()
+                .collect(Collectors.toMap(Lending::getLendingNumber, l -> l));
+
+        final List<LendingReturnResult> results = new ArrayList<>(items.size());
+        final List<Lending> returned = new ArrayList<>();
+        final List<Fine> fines = new ArrayList<>();
+        for (ReturnLendingRequest item : items) {
+            final Lending lending = lendings.get(item.getLendingNumber());
+            if (lending == null) {
+                results.add(LendingReturnResult.failed(item, LendingReturnResult.Status.NOT_FOUND,
+                        "Cannot update lending with this lending number"));
+                continue;
+            }
+            try {
+                lending.setReturned(item.getVersion(), item.getCommentary());
+            } catch (StaleObjectStateException e) {
+                results.add(LendingReturnResult.failed(item, LendingReturnResult.Status.VERSION_CONFLICT, e.getMessage()));
+                continue;
+            } catch (IllegalArgumentException e) {
+                results.add(LendingReturnResult.failed(item, LendingReturnResult.Status.ALREADY_RETURNED, e.getMessage()));
+                continue;
+            }
+            returned.add(lending);
+            results.add(LendingReturnResult.returned(item, lending));
+        }
+
+        final List<Lending> late = returned.stream().filter(l -> l.getDaysDelayed() > 0).toList();
+        if (!late.isEmpty()) {
+            // fines already accrued by the FineAccrualJob are brought up to date instead
+            final Map<String, Fine> accruedFines = fineRepository.findAllByLendingNumberIn(
+                    late.stream().map(Lending::getLendingNumber).toList()).stream()
+                    .collect(Collectors.toMap(f -> f.getLending().getLendingNumber(), f -> f));
+            for (Lending lending : late) {
+                final Fine accrued = accruedFines.get(lending.getLendingNumber());
+                if (accrued != null)
+                    accrued.accrue();
+                else
+                    fines.add(new Fine(lending));
+            }
+        }
+        fineRepository.saveAll(fines);
+        lendingDurationAggregator.lendingsReturned(returned);
+        genreLendingRollupAggregator.lendingsReturned(returned);
+        lendingRepository.saveAll(returned);
+        returned.forEach(l -> eventPublisher.publishEvent(LendingReturnedEvent.of(l)));
+        return results;
     }
 
     @Override
     public Double getAverageDuration(){
-        Double avg = lendingRepository.getAverageDuration();
+        double avg = lendingDurationAggregator.getAverageDuration();
         return Double.valueOf(String.format(Locale.US,"%.1f", avg));
     }
 
     @Override
-    public List<Lending> getOverdue(Page page) {
+    public PageResult<Lending> getOverdue(Page page) {
         if (page == null) {
             page = new Page(1, 10);
         }
-        return lendingRepository.getOverdue(page);
+        final LocalDate today = LocalDate.now();
+        OverdueIndex.Overdue after = null;
+        if (page.hasCursor()) {
+            // cursor keys: limitDate, lendingNumber
+            final List<String> keys = Cursor.decode(page.getCursor(), 2);
+            after = new OverdueIndex.Overdue(Cursor.parse(keys.get(0), LocalDate::parse), keys.get(1));
+        }
+
+        // entries of lendings returned elsewhere since the last reconciliation are evicted as they are found,
+        // and more entries are read in their place, so a page is only short when the index runs out
+        final List<Lending> overdue = new ArrayList<>(page.getLimit());
+        while (overdue.size() < page.getLimit()) {
+            final int wanted = page.getLimit() - overdue.size();
+            final List<OverdueIndex.Overdue> entries = after == null
+                    ? overdueIndex.findOverdue(today, page.getOffset(), wanted)
+                    : overdueIndex.findOverdueAfter(today, after.limitDate(), after.lendingNumber(), wanted);
+            if (entries.isEmpty())
+                break;
+
+            final Map<String, Lending> lendings = lendingRepository.findAllByLendingNumberIn(
+                            entries.stream().map(OverdueIndex.Overdue::lendingNumber).toList()).stream()
+                    .collect(Collectors.toMap(Lending::getLendingNumber, l -> l));
+            // keep the order of the index, oldest limitDate first
+            for (OverdueIndex.Overdue entry : entries) {
+                final Lending lending = lendings.get(entry.lendingNumber());
+                if (lending == null || lending.getReturnedDate() != null)
+                    overdueIndex.evict(entry.lendingNumber());
+                else
+                    overdue.add(lending);
+            }
+            after = entries.get(entries.size() - 1);
+            if (entries.size() < wanted)
+                break;
+        }
+
+        // the cursor holds the last entry read, even if it was evicted
+        final String nextCursor = overdue.size() < page.getLimit() ? null
+                : Cursor.encode(after.limitDate(), after.lendingNumber());
+        return new PageResult<>(overdue, overdueIndex.countOverdue(today), nextCursor);
+    }
+
+    @Override
+    public long countOverdue() {
+        return overdueIndex.countOverdue(LocalDate.now());
     }
 
     @Override
     public Double getAvgLendingDurationByIsbn(String isbn){
-        Double avg = lendingRepository.getAvgLendingDurationByIsbn(isbn);
+        double avg = lendingDurationAggregator.getAverageDurationByIsbn(isbn);
         return Double.valueOf(String.format(Locale.US,"%.1f", avg));
     }
 
     @Override
-    public List<Lending> searchLendings(Page page, SearchLendingQuery query){
-        LocalDate startDate = null;
-        LocalDate endDate = null;
+    @Cacheable(ReportCaches.LENDING_DURATION_PERCENTILES)
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public LendingDurationPercentilesDTO getDurationPercentiles(String isbn, String genre, List<Double> percentiles){
+        if (isbn != null && genre != null)
+            throw new IllegalArgumentException("Percentiles are either of a book or of a genre, not both");
+        if (percentiles == null || percentiles.isEmpty())
+            throw new IllegalArgumentException("At least one percentile is required");
+        for (Double percentile : percentiles)
+            if (percentile == null || !(percentile > 0 && percentile <= 100))
+                throw new IllegalArgumentException("Percentiles must be greater than 0 and at most 100");
+
+        final String scope = isbn != null ? LendingDurationAggregate.bookScope(isbn)
+                : genre != null ? LendingDurationAggregate.genreScope(genre)
+                : LendingDurationAggregate.ALL;
+        final Histogram durations = lendingDurationAggregator.getDurations(scope)
+                .orElseThrow(() -> new NotFoundException("No returned lendings to show"));
+
+        final Map<Double, Long> values = new LinkedHashMap<>();
+        for (Double percentile : percentiles)
+            values.put(percentile, durations.percentile(percentile));
+        return new LendingDurationPercentilesDTO(durations.getTotalCount(), values);
+    }
 
+    @Override
+    public List<Lending> searchLendings(Page page, SearchLendingQuery query){
         if (page == null) {
             page = new Page(1, 10);
         }
@@ -133,14 +344,8 @@ public class LendingServiceImpl implements LendingService{
                     LocalDate.now().minusDays(10L).toString(),
                     null);
 
-        try {
-            if(query.getStartDate()!=null)
-                startDate = LocalDate.parse(query.getStartDate());
-            if(query.getEndDate()!=null)
-                endDate = LocalDate.parse(query.getEndDate());
-        } catch (DateTimeParseException e) {
-            throw new IllegalArgumentException("Expected format is YYYY-MM-DD");
-        }
+        final LocalDate startDate = parseDate(query.getStartDate());
+        final LocalDate endDate = parseDate(query.getEndDate());
 
         return lendingRepository.searchLendings(page,
                 query.getReaderNumber(),
@@ -151,6 +356,68 @@ public class LendingServiceImpl implements LendingService{
 
     }
 
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public void exportLendings(SearchLendingQuery query, Consumer<Lending> action){
+        if (query == null)
+            query = new SearchLendingQuery();
+        // parsed before the first lending is handed out, so a bad date is still reported as an error
+        final LocalDate startDate = parseDate(query.getStartDate());
+        final LocalDate endDate = parseDate(query.getEndDate());
+
+        lendingRepository.exportLendings(query.getReaderNumber(),
+                query.getIsbn(),
+                query.getReturned(),
+                startDate,
+                endDate,
+                action);
+    }
+
+    @Override
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public List<ReaderLendingsAvgPerMonthDto> getAverageMonthlyPerReader(String start, String end, Page page) {
+        if (page == null)
+            page = new Page(1, 10);
+        if (start == null || end == null)
+            throw new IllegalArgumentException("Start and end dates are required");
+        final LocalDate startDate = parseDate(start);
+        final LocalDate endDate = parseDate(end);
+        if (startDate.isAfter(endDate))
+            throw new IllegalArgumentException("Start date cannot be after end date");
+
+        final List<ReaderMonthLendingsDTO> rows = lendingRepository.getLendingsPerReaderPerMonth(startDate, endDate, page);
+        final Map<String, ReaderDetails> readers = readerRepository.findAllByReaderNumberIn(
+                rows.stream().map(ReaderMonthLendingsDTO::getReaderNumber).distinct().toList()).stream()
+                .collect(Collectors.toMap(ReaderDetails::getReaderNumber, r -> r));
+
+        // rows are sorted by month, so each month is a run of consecutive rows
+        final List<ReaderLendingsAvgPerMonthDto> months = new ArrayList<>();
+        ReaderLendingsAvgPerMonthDto current = null;
+        for (ReaderMonthLendingsDTO row : rows) {
+            if (current == null || !current.getYear().equals(row.getYear()) || !current.getMonth().equals(row.getMonth())) {
+                current = new ReaderLendingsAvgPerMonthDto(row.getYear(), row.getMonth(), new ArrayList<>());
+                months.add(current);
+            }
+            current.getDurationAverages().add(new ReaderAverageDto(readers.get(row.getReaderNumber()), row.getLendingCount()));
+        }
+        return months;
+    }
+
+    @Override
+    public List<LendingDailyCountDTO> getDailyHistogram(int days) {
+        return lendingDailyCounters.getHistogram(LocalDate.now(), days);
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return date == null ? null : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected format is YYYY-MM-DD");
+        }
+    }
+
 
 
 }
@@ -0,0 +1,26 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Summary of the outstanding (not returned) lendings of a reader, enough to decide whether they may borrow another book.
+ */
+@Data
+@AllArgsConstructor
+public class OutstandingLendingsDTO {
+    private String readerNumber;
+    private Long outstandingLendings;
+    /** Earliest {@code limitDate} of the outstanding lendings, or {@code null} when there are none. */
+    private LocalDate earliestLimitDate;
+
+    public OutstandingLendingsDTO(Long outstandingLendings, LocalDate earliestLimitDate) {
+        this(null, outstandingLendings, earliestLimitDate);
+    }
+
+    public boolean hasOverdue(final LocalDate today) {
+        return earliestLimitDate != null && earliestLimitDate.isBefore(today);
+    }
+}
@@ -0,0 +1,199 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory index of the outstanding (not returned) lendings, ordered by {@code limitDate}.
+ * <p>
+ * The overdue lendings are the head of the index up to the current date, so a page of overdue lendings is
+ * read without scanning the {@code Lending} table, and the number of overdue lendings is summed from
+ * per-{@code limitDate} counters.
+ * <p>
+ * The index is fed by {@link LendingCreatedEvent}s and {@link LendingReturnedEvent}s once their transaction
+ * is committed, loaded at startup, and periodically reconciled with the database to repair any drift
+ * (e.g. lendings written by other nodes or directly to the database).
+ */
+@Component
+@RequiredArgsConstructor
+public class OverdueIndex {
+    private final LendingRepository lendingRepository;
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, Entry> byLendingNumber = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<LocalDate, Integer> countByLimitDate = new ConcurrentSkipListMap<>();
+    // lendings returned while a reconciliation may still be reading them as outstanding
+    private final ConcurrentMap<String, Long> returnedAt = new ConcurrentHashMap<>();
+
+    /**
+     * @param today  - Lendings with a {@code limitDate} before this date are overdue
+     * @param offset - Number of overdue lendings to skip
+     * @param limit  - Maximum number of lendings to return
+     * @return overdue lendings, oldest {@code limitDate} first
+     */
+    public List<Overdue> findOverdue(final LocalDate today, final int offset, final int limit) {
+        final List<Overdue> page = new ArrayList<>(limit);
+        final Iterator<Entry> it = entries.headSet(Entry.first(today)).iterator();
+        for (int skipped = 0; skipped < offset && it.hasNext(); skipped++)
+            it.next();
+        while (page.size() < limit && it.hasNext())
+            page.add(it.next().overdue());
+        return page;
+    }
+
+    /**
+     * Same as {@link #findOverdue(LocalDate, int, int)}, but starting right after a given overdue lending.
+     * @param afterLimitDate     - {@code limitDate} of the last lending already read
+     * @param afterLendingNumber - lending number of the last lending already read
+     */
+    public List<Overdue> findOverdueAfter(final LocalDate today, final LocalDate afterLimitDate,
+                                          final String afterLendingNumber, final int limit) {
+        if (!afterLimitDate.isBefore(today))
+            return List.of();
+        final List<Overdue> page = new ArrayList<>(limit);
+        final Iterator<Entry> it = entries.subSet(new Entry(afterLimitDate, afterLendingNumber), false,
+                Entry.first(today), false).iterator();
+        while (page.size() < limit && it.hasNext())
+            page.add(it.next().overdue());
+        return page;
+    }
+
+    /**
+     * @param today - Lendings with a {@code limitDate} before this date are overdue
+     * @return number of overdue lendings
+     */
+    public long countOverdue(final LocalDate today) {
+        long count = 0;
+        for (int c : countByLimitDate.headMap(today).values())
+            count += c;
+        return count;
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        add(new Entry(event.getLimitDate(), event.getLendingNumber()), System.nanoTime());
+    }
+
+    @TransactionalEventListener
+    public void onLendingReturned(final LendingReturnedEvent event) {
+        evict(event.getLendingNumber());
+    }
+
+    /**
+     * Removes a lending found to be returned, or missing, in the database, e.g. returned by another node since
+     * the last reconciliation.
+     */
+    public void evict(final String lendingNumber) {
+        returnedAt.put(lendingNumber, System.nanoTime());
+        remove(lendingNumber);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reconcile();
+    }
+
+    /**
+     * Brings the index in line with the outstanding lendings in the database.
+     * <p>Entries added, and lendings returned, while the database was being read are left as they are.
+     */
+    @Scheduled(fixedDelayString = "${lendings.overdue-index.reconcile-interval:PT15M}",
+            initialDelayString = "${lendings.overdue-index.reconcile-interval:PT15M}")
+    public void reconcile() {
+        final long snapshotStart = System.nanoTime();
+        final List<LendingDueDateDTO> outstanding = lendingRepository.listOutstandingDueDates();
+
+        final Set<String> outstandingNumbers = new HashSet<>(outstanding.size() * 2);
+        for (LendingDueDateDTO l : outstanding) {
+            outstandingNumbers.add(l.getLendingNumber());
+            final Long returned = returnedAt.get(l.getLendingNumber());
+            if (returned == null || returned < snapshotStart)
+                add(new Entry(l.getLimitDate(), l.getLendingNumber()), snapshotStart);
+        }
+        for (Entry e : byLendingNumber.values()) {
+            if (e.indexedAt() < snapshotStart && !outstandingNumbers.contains(e.lendingNumber()))
+                remove(e.lendingNumber());
+        }
+        returnedAt.values().removeIf(returned -> returned < snapshotStart);
+    }
+
+    private synchronized void add(final Entry entry, final long indexedAt) {
+        final Entry current = byLendingNumber.get(entry.lendingNumber());
+        if (current != null) {
+            if (current.limitDate().equals(entry.limitDate()))
+                return;
+            remove(entry.lendingNumber());
+        }
+        final Entry indexed = entry.indexedAt(indexedAt);
+        byLendingNumber.put(indexed.lendingNumber(), indexed);
+        entries.add(indexed);
+        countByLimitDate.merge(indexed.limitDate(), 1, Integer::sum);
+    }
+
+    private synchronized void remove(final String lendingNumber) {
+        final Entry removed = byLendingNumber.remove(lendingNumber);
+        if (removed == null)
+            return;
+        entries.remove(removed);
+        countByLimitDate.computeIfPresent(removed.limitDate(), (date, c) -> c > 1 ? c - 1 : null);
+    }
+
+    /**
+     * Position of an overdue lending in the index.
+     */
+    public record Overdue(LocalDate limitDate, String lendingNumber) {}
+
+    /**
+     * Outstanding lending, ordered by {@code limitDate} and then by lending number.
+     * {@code indexedAt} does not take part in the ordering nor in equality.
+     */
+    private record Entry(LocalDate limitDate, String lendingNumber, long indexedAt) implements Comparable<Entry> {
+        private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::limitDate)
+                .thenComparing(Entry::lendingNumber);
+
+        private Entry(final LocalDate limitDate, final String lendingNumber) {
+            this(limitDate, lendingNumber, 0);
+        }
+
+        /** @return the lowest possible entry for a {@code limitDate} */
+        private static Entry first(final LocalDate limitDate) {
+            return new Entry(limitDate, "");
+        }
+
+        private Entry indexedAt(final long indexedAt) {
+            return new Entry(limitDate, lendingNumber, indexedAt);
+        }
+
+        private Overdue overdue() {
+            return new Overdue(limitDate, lendingNumber);
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Entry other && limitDate.equals(other.limitDate) && lendingNumber.equals(other.lendingNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(limitDate, lendingNumber);
+        }
+    }
+}
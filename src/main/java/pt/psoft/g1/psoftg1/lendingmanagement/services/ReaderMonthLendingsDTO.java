@@ -0,0 +1,16 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Number of lendings started by one reader in one month.
+ */
+@Data
+@AllArgsConstructor
+public class ReaderMonthLendingsDTO {
+    private String readerNumber;
+    private Integer year;
+    private Integer month;
+    private Long lendingCount;
+}
@@ -0,0 +1,29 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A DTO for setting one Lending of a batch as returned")
+public class ReturnLendingRequest {
+    @NotNull
+    @NotBlank
+    @Size(max = 32)
+    private String lendingNumber;
+
+    /**
+     * Version of the lending known by the client, i.e. the value it would send in the {@code If-Match} header.
+     */
+    @NotNull
+    private Long version;
+
+    @Size(max = 1024)
+    private String commentary;
+}
@@ -0,0 +1,21 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A DTO for setting several Lendings as returned at once")
+public class ReturnLendingsRequest {
+    @NotEmpty
+    @Size(max = 500)
+    private List<@Valid ReturnLendingRequest> lendings;
+}
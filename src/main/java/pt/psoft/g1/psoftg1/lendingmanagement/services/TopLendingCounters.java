@@ -0,0 +1,381 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookChangedEvent;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookGenreAuthorDTO;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCounter;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCountersCheckpoint;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCounterRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCountersCheckpointRepository;
+import pt.psoft.g1.psoftg1.shared.services.InMemoryProjection;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exact lending counters behind the top reports: lendings per book started in the last year, and lendings per
+ * author and per reader.
+ * <p>
+ * Counters are kept in memory per day the lendings started, as an {@link InMemoryProjection} fed by
+ * {@link LendingCreatedEvent}s once their transaction is committed. The lending numbers of the days that are not
+ * checkpointed yet are kept, so a lending is never counted twice. Every night the days that have ended are
+ * recounted from the database, which brings in the lendings created by other nodes, and checkpointed to the
+ * {@code TopLendingCounter} table; the lendings added while the recount reads the database are added again once
+ * it replaces their days, as the recount may have missed them; at startup the checkpoint is loaded and only the lendings started after it are
+ * counted from the database. The authors of each book are cached, and refreshed on {@link BookChangedEvent}s; the
+ * lendings counted already keep the authors they were counted with until their day is recounted.
+ * Until the counters are loaded every report is empty, so callers fall back to the database.
+ */
+@Component
+public class TopLendingCounters {
+    private final Logger logger = LogManager.getLogger();
+
+    private final LendingRepository lendingRepository;
+    private final BookRepository bookRepository;
+    private final TopLendingCounterRepository counterRepository;
+    private final TopLendingCountersCheckpointRepository checkpointRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    // author names per isbn, shared by every load
+    private final ConcurrentMap<String, List<String>> authorsByIsbn = new ConcurrentHashMap<>();
+
+    private final InMemoryProjection<Counters> counters = new InMemoryProjection<>();
+
+    public TopLendingCounters(final LendingRepository lendingRepository,
+                              final BookRepository bookRepository,
+                              final TopLendingCounterRepository counterRepository,
+                              final TopLendingCountersCheckpointRepository checkpointRepository,
+                              final PlatformTransactionManager transactionManager) {
+        this.lendingRepository = lendingRepository;
+        this.bookRepository = bookRepository;
+        this.counterRepository = counterRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.readTransaction = InMemoryProjection.readTransaction(transactionManager);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param limit - Maximum number of books to return
+     * @return isbns of the books with the most lendings started in the last year, most lendings first,
+     * or empty if the counters are not loaded
+     */
+    public Optional<List<LendingCount>> findTopBooksLent(final int limit) {
+        final LocalDate today = LocalDate.now();
+        return counters.update(c -> {
+            c.books.evictBefore(bookWindowStart(today));
+            return c.books.top(limit);
+        });
+    }
+
+    /**
+     * @param limit - Maximum number of authors to return
+     * @return names of the authors with the most lendings, most lendings first, or empty if the counters are not loaded
+     */
+    public Optional<List<LendingCount>> findTopAuthorsByLendings(final int limit) {
+        return counters.read(c -> c.authors.top(limit));
+    }
+
+    /**
+     * @param limit - Maximum number of readers to return
+     * @return reader numbers of the readers with the most lendings, most lendings first, or empty if the counters
+     * are not loaded
+     */
+    public Optional<List<LendingCount>> findTopReaders(final int limit) {
+        return counters.read(c -> c.readers.top(limit));
+    }
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        // read before taking the lock, as it may query the database
+        final Created created = new Created(event, authorsOf(event.getIsbn()));
+        counters.apply(c -> c.add(created));
+    }
+
+    // books are saved outside of a transaction as well
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(final BookChangedEvent event) {
+        final List<BookGenreAuthorDTO> rows = readTransaction.execute(status ->
+                bookRepository.listGenresAndAuthorsByIsbnIn(List.of(event.getIsbn())));
+        if (rows == null || rows.isEmpty())
+            authorsByIsbn.remove(event.getIsbn());
+        else
+            authorsByIsbn.put(event.getIsbn(), rows.stream().collect(authorNames()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        load();
+        checkpoint();
+    }
+
+    /**
+     * Loads the counters from the latest checkpoint and the lendings started after it, or from every lending
+     * if there is no checkpoint.
+     * <p>Lendings created while the database is being read are counted as well.
+     */
+    public synchronized void load() {
+        counters.reload(loaded -> readTransaction.execute(status -> {
+            authorsByIsbn.putAll(bookRepository.listGenresAndAuthors().stream()
+                    .collect(Collectors.groupingBy(BookGenreAuthorDTO::getIsbn, authorNames())));
+            final Counters c = new Counters();
+            final Optional<TopLendingCountersCheckpoint> checkpoint = checkpointRepository.findLatest();
+            if (checkpoint.isPresent()) {
+                c.restore(counterRepository.findAllCounters(), checkpoint.get().getSealedThrough());
+                count(c, lendingRepository.streamLendingFactsStartedFrom(checkpoint.get().getSealedThrough().plusDays(1)));
+            } else {
+                count(c, lendingRepository.streamLendingFacts());
+            }
+            return c;
+        }));
+    }
+
+    @Scheduled(cron = "${lendings.top-counters.checkpoint-cron:0 15 0 * * *}")
+    public void checkpoint() {
+        checkpoint(LocalDate.now());
+    }
+
+    /**
+     * Recounts, from the database, the days before {@code today} that have not been checkpointed yet, and saves
+     * the counters of every day before {@code today} as the new checkpoint.
+     */
+    public synchronized void checkpoint(final LocalDate today) {
+        final LocalDate through = today.minusDays(1);
+        if (!counters.isLoaded())
+            return;
+        // counters loaded without a checkpoint were counted from the database already
+        final LocalDate from = counters.read(c -> c.sealedThrough).map(sealed -> sealed.plusDays(1)).orElse(null);
+        if (from != null && from.isAfter(through))
+            return;
+
+        final List<TopLendingCounter> rows;
+        if (from == null) {
+            rows = counters.update(c -> {
+                c.seal(through, bookWindowStart(today));
+                return c.checkpointRows();
+            }).orElseThrow();
+        } else {
+            counters.update(c -> c.addedDuringRecount = new ArrayList<>());
+            try {
+                final Counters recounted = readTransaction.execute(status ->
+                        count(new Counters(), lendingRepository.streamLendingFactsStartedFrom(from)));
+                rows = counters.update(c -> {
+                    c.replaceDays(from, through, recounted);
+                    c.seal(through, bookWindowStart(today));
+                    return c.checkpointRows();
+                }).orElseThrow();
+            } finally {
+                counters.update(c -> c.addedDuringRecount = null);
+            }
+        }
+        writeTransaction.executeWithoutResult(status -> {
+            counterRepository.deleteAllCounters();
+            checkpointRepository.deleteAllCheckpoints();
+            counterRepository.saveAll(rows);
+            checkpointRepository.save(new TopLendingCountersCheckpoint(through));
+        });
+        logger.info("Checkpointed {} top lending counters through {}", rows.size(), through);
+    }
+
+    /** @return first start day of the lendings counted in the top books */
+    private static LocalDate bookWindowStart(final LocalDate today) {
+        return today.minusYears(1).plusDays(1);
+    }
+
+    private Counters count(final Counters c, final Stream<LendingFactDTO> lendings) {
+        try (lendings) {
+            lendings.forEach(l -> c.add(new Created(l.getLendingNumber(), l.getIsbn(), l.getReaderNumber(),
+                    l.getStartDate(), authorsOf(l.getIsbn()))));
+        }
+        return c;
+    }
+
+    private List<String> authorsOf(final String isbn) {
+        final List<String> authors = authorsByIsbn.get(isbn);
+        if (authors != null)
+            return authors;
+        final List<String> read = readTransaction.execute(status ->
+                bookRepository.listGenresAndAuthorsByIsbnIn(List.of(isbn)).stream().collect(authorNames()));
+        authorsByIsbn.put(isbn, read);
+        return read;
+    }
+
+    private static Collector<BookGenreAuthorDTO, ?, List<String>> authorNames() {
+        return Collectors.mapping(BookGenreAuthorDTO::getAuthorName,
+                Collectors.filtering(Objects::nonNull, Collectors.toList()));
+    }
+
+    private record Created(String lendingNumber, String isbn, String readerNumber, LocalDate startDate,
+                           List<String> authors) {
+        private Created(final LendingCreatedEvent event, final List<String> authors) {
+            this(event.getLendingNumber(), event.getIsbn(), event.getReaderNumber(), event.getStartDate(), authors);
+        }
+    }
+
+    /**
+     * The counters of every dimension. Adding a lending is idempotent, so it can be counted more than once.
+     */
+    private static final class Counters {
+        final Dimension books = new Dimension(TopLendingCounter.Dimension.BOOK);
+        final Dimension authors = new Dimension(TopLendingCounter.Dimension.AUTHOR);
+        final Dimension readers = new Dimension(TopLendingCounter.Dimension.READER);
+        // lending numbers counted per day that is not checkpointed yet
+        final Map<LocalDate, Set<String>> counted = new HashMap<>();
+        // last day included in the checkpoint, null if there is none
+        LocalDate sealedThrough;
+        // lendings added while the days not checkpointed yet are recounted, null otherwise
+        List<Created> addedDuringRecount;
+
+        void add(final Created lending) {
+            if (addedDuringRecount != null)
+                addedDuringRecount.add(lending);
+            final LocalDate day = lending.startDate();
+            if (sealedThrough != null && !day.isAfter(sealedThrough))
+                return;
+            if (!counted.computeIfAbsent(day, d -> new HashSet<>()).add(lending.lendingNumber()))
+                return;
+            books.add(day, lending.isbn(), 1);
+            readers.add(day, lending.readerNumber(), 1);
+            for (String author : lending.authors())
+                authors.add(day, author, 1);
+        }
+
+        void restore(final List<TopLendingCounter> rows, final LocalDate sealedThrough) {
+            for (TopLendingCounter row : rows)
+                dimension(row.getDimension()).add(row.getDay(), row.getKey(), row.getLendingCount());
+            this.sealedThrough = sealedThrough;
+        }
+
+        /**
+         * Replaces the counts of the days from {@code from} through {@code through} with recounted ones, then adds
+         * again the lendings added since the recount started, which may have been committed after it read them.
+         */
+        void replaceDays(final LocalDate from, final LocalDate through, final Counters recounted) {
+            for (Dimension dimension : List.of(books, authors, readers))
+                dimension.replaceDays(from, through, recounted.dimension(dimension.name));
+            counted.keySet().removeIf(day -> !day.isBefore(from) && !day.isAfter(through));
+            recounted.counted.forEach((day, numbers) -> {
+                if (!day.isAfter(through))
+                    counted.put(day, numbers);
+            });
+            final List<Created> added = addedDuringRecount;
+            addedDuringRecount = null;
+            added.forEach(this::add);
+        }
+
+        /**
+         * Folds the author and reader counts up to {@code through} into their totals, and drops the book counts
+         * before {@code bookWindowStart}.
+         */
+        void seal(final LocalDate through, final LocalDate bookWindowStart) {
+            books.evictBefore(bookWindowStart);
+            authors.fold(through);
+            readers.fold(through);
+            counted.keySet().removeIf(day -> !day.isAfter(through));
+            sealedThrough = through;
+        }
+
+        List<TopLendingCounter> checkpointRows() {
+            final List<TopLendingCounter> rows = new ArrayList<>();
+            for (Dimension dimension : List.of(books, authors, readers))
+                dimension.rows(sealedThrough, rows);
+            return rows;
+        }
+
+        Dimension dimension(final TopLendingCounter.Dimension name) {
+            return switch (name) {
+                case BOOK -> books;
+                case AUTHOR -> authors;
+                case READER -> readers;
+            };
+        }
+    }
+
+    /**
+     * Lending counts of one dimension: per day, and folded into totals up to the last checkpoint.
+     */
+    private static final class Dimension {
+        final TopLendingCounter.Dimension name;
+        final Map<String, Long> folded = new HashMap<>();
+        final NavigableMap<LocalDate, Map<String, Long>> days = new TreeMap<>();
+        // folded plus every day
+        final Map<String, Long> totals = new HashMap<>();
+
+        Dimension(final TopLendingCounter.Dimension name) {
+            this.name = name;
+        }
+
+        /** @param day - Start day of the lendings, {@code null} for folded lendings */
+        void add(final LocalDate day, final String key, final long count) {
+            if (day == null)
+                folded.merge(key, count, Long::sum);
+            else
+                days.computeIfAbsent(day, d -> new HashMap<>()).merge(key, count, Long::sum);
+            totals.merge(key, count, Long::sum);
+        }
+
+        void replaceDays(final LocalDate from, final LocalDate through, final Dimension recounted) {
+            final Map<LocalDate, Map<String, Long>> replaced = days.subMap(from, true, through, true);
+            replaced.values().forEach(this::subtract);
+            replaced.clear();
+            recounted.days.subMap(from, true, through, true)
+                    .forEach((day, counts) -> counts.forEach((key, count) -> add(day, key, count)));
+        }
+
+        void fold(final LocalDate through) {
+            final Map<LocalDate, Map<String, Long>> old = days.headMap(through, true);
+            old.values().forEach(counts -> counts.forEach((key, count) -> folded.merge(key, count, Long::sum)));
+            old.clear();
+        }
+
+        void evictBefore(final LocalDate first) {
+            final Map<LocalDate, Map<String, Long>> old = days.headMap(first, false);
+            old.values().forEach(this::subtract);
+            old.clear();
+        }
+
+        void rows(final LocalDate through, final List<TopLendingCounter> rows) {
+            folded.forEach((key, count) -> rows.add(new TopLendingCounter(name, key, null, count)));
+            days.headMap(through, true).forEach((day, counts) ->
+                    counts.forEach((key, count) -> rows.add(new TopLendingCounter(name, key, day, count))));
+        }
+
+        /** @return the {@code limit} keys with the highest totals, ties broken by key */
+        List<LendingCount> top(final int limit) {
+            // the head is the worst of the best found so far
+            final PriorityQueue<Map.Entry<String, Long>> best = new PriorityQueue<>(limit + 1,
+                    Map.Entry.<String, Long>comparingByValue()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())));
+            for (Map.Entry<String, Long> total : totals.entrySet()) {
+                best.add(total);
+                if (best.size() > limit)
+                    best.poll();
+            }
+            final LinkedList<LendingCount> top = new LinkedList<>();
+            while (!best.isEmpty()) {
+                final Map.Entry<String, Long> total = best.poll();
+                top.addFirst(new LendingCount(total.getKey(), total.getValue()));
+            }
+            return top;
+        }
+
+        private void subtract(final Map<String, Long> counts) {
+            counts.forEach((key, count) -> totals.computeIfPresent(key, (k, total) -> total - count == 0 ? null : total - count));
+        }
+    }
+}
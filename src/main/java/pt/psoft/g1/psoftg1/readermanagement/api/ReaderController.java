@@ -35,6 +35,7 @@ import pt.psoft.g1.psoftg1.readermanagement.services.SearchReadersQuery;
 import pt.psoft.g1.psoftg1.readermanagement.services.UpdateReaderRequest;
 import pt.psoft.g1.psoftg1.shared.api.ListResponse;
 import pt.psoft.g1.psoftg1.shared.services.ConcurrencyService;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.FileStorageService;
 import pt.psoft.g1.psoftg1.shared.services.SearchRequest;
 import pt.psoft.g1.psoftg1.usermanagement.model.Librarian;
@@ -326,7 +327,7 @@ class ReaderController {
 
     @GetMapping("/top5")
     public ListResponse<ReaderView> getTop() {
-        return new ListResponse<>(readerViewMapper.toReaderView(readerService.findTopReaders(5)));
+        return new ListResponse<>(readerViewMapper.toReaderView(readerService.findTopReaders()));
     }
 
     @GetMapping("/top5ByGenre")
@@ -347,6 +348,8 @@ class ReaderController {
     public ListResponse<ReaderView> searchReaders(
             @RequestBody final SearchRequest<SearchReadersQuery> request) {
         final var readerList = readerService.searchReaders(request.getPage(), request.getQuery());
-        return new ListResponse<>(readerViewMapper.toReaderView(readerList));
+        final var query = request.getQuery() == null ? new SearchReadersQuery("", "", "") : request.getQuery();
+        return new ListResponse<>(readerViewMapper.toReaderView(readerList),
+                Cursor.next(readerList, request.getPage(), r -> new Object[]{query.sortKeyOf(r), r.getReaderNumber()}));
     }
 }
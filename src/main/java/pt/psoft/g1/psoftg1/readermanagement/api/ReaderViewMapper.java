@@ -6,7 +6,9 @@ import org.mapstruct.Named;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderAverageDto;
 import pt.psoft.g1.psoftg1.readermanagement.services.ReaderBookCountDTO;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderLendingsAvgPerMonthDto;
 import pt.psoft.g1.psoftg1.shared.api.MapperInterface;
 
 import java.util.ArrayList;
@@ -45,6 +47,12 @@ public abstract class ReaderViewMapper extends MapperInterface {
 
     public abstract List<ReaderCountView> toReaderCountViewList(List<ReaderBookCountDTO> readerBookCountDTOList);
 
+    @Mapping(target = "readerView", source = "readerView", qualifiedByName = "toReaderView")
+    public abstract ReaderAverageView toReaderAverageView(ReaderAverageDto readerAverageDto);
+
+    public abstract ReaderLendingsAvgPerMonthView toReaderLendingsAvgPerMonthView(ReaderLendingsAvgPerMonthDto dto);
+    public abstract List<ReaderLendingsAvgPerMonthView> toReaderLendingsAvgPerMonthView(List<ReaderLendingsAvgPerMonthDto> dtos);
+
 
     protected String generatePhotoUrl(ReaderDetails readerDetails) {
         String readerNumber = readerDetails.getReaderNumber();
@@ -11,6 +11,7 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.util.StringUtils;
 import pt.psoft.g1.psoftg1.readermanagement.services.SearchReadersQuery;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
 
@@ -20,6 +21,7 @@ import pt.psoft.g1.psoftg1.usermanagement.model.User;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +33,12 @@ public interface SpringDataReaderRepositoryImpl extends ReaderRepository, Reader
             "WHERE r.readerNumber.readerNumber = :readerNumber")
     Optional<ReaderDetails> findByReaderNumber(@Param("readerNumber") @NotNull String readerNumber);
 
+    @Override
+    @Query("SELECT r " +
+            "FROM ReaderDetails r " +
+            "WHERE r.readerNumber.readerNumber IN :readerNumbers")
+    List<ReaderDetails> findAllByReaderNumberIn(@Param("readerNumbers") @NotNull Collection<String> readerNumbers);
+
     @Override
     @Query("SELECT r " +
             "FROM ReaderDetails r " +
@@ -100,29 +108,42 @@ class ReaderDetailsRepoCustomImpl implements ReaderDetailsRepoCustom {
 
         cq.select(readerDetailsRoot);
 
+        final Path<String> readerNumber = readerDetailsRoot.get("readerNumber").get("readerNumber");
+        // sort criterion must match SearchReadersQuery.sortKeyOf
+        Path<String> sortKey = readerNumber;
+
         final List<Predicate> where = new ArrayList<>();
         if (StringUtils.hasText(query.getName())) { //'contains' type search
             where.add(cb.like(userJoin.get("name").get("name"), "%" + query.getName() + "%"));
-            cq.orderBy(cb.asc(userJoin.get("name")));
+            sortKey = userJoin.get("name").get("name");
         }
         if (StringUtils.hasText(query.getEmail())) { //'exatct' type search
             where.add(cb.equal(userJoin.get("username"), query.getEmail()));
-            cq.orderBy(cb.asc(userJoin.get("username")));
-
+            sortKey = userJoin.get("username");
         }
         if (StringUtils.hasText(query.getPhoneNumber())) { //'exatct' type search
             where.add(cb.equal(readerDetailsRoot.get("phoneNumber").get("phoneNumber"), query.getPhoneNumber()));
-            cq.orderBy(cb.asc(readerDetailsRoot.get("phoneNumber").get("phoneNumber")));
+            sortKey = readerDetailsRoot.get("phoneNumber").get("phoneNumber");
         }
 
         // search using OR
-        if (!where.isEmpty()) {
-            cq.where(cb.or(where.toArray(new Predicate[0])));
+        Predicate filter = where.isEmpty() ? null : cb.or(where.toArray(new Predicate[0]));
+
+        if (page.hasCursor()) {
+            // cursor keys: sort criterion, readerNumber
+            final List<String> after = Cursor.decode(page.getCursor(), 2);
+            final Predicate seek = cb.or(cb.greaterThan(sortKey, after.get(0)),
+                    cb.and(cb.equal(sortKey, after.get(0)), cb.greaterThan(readerNumber, after.get(1))));
+            filter = filter == null ? seek : cb.and(filter, seek);
         }
-
+        if (filter != null) {
+            cq.where(filter);
+        }
+        cq.orderBy(cb.asc(sortKey), cb.asc(readerNumber));
 
         final TypedQuery<ReaderDetails> q = em.createQuery(cq);
-        q.setFirstResult((page.getNumber() - 1) * page.getLimit());
+        if (!page.hasCursor())
+            q.setFirstResult(page.getOffset());
         q.setMaxResults(page.getLimit());
 
         return q.getResultList();
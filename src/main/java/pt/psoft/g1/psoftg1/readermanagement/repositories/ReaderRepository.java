@@ -9,6 +9,7 @@ import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.services.ReaderBookCountDTO;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,7 @@ import java.util.Optional;
  */
 public interface ReaderRepository {
     Optional<ReaderDetails> findByReaderNumber(@Param("readerNumber") @NotNull String readerNumber);
+    List<ReaderDetails> findAllByReaderNumberIn(@Param("readerNumbers") @NotNull Collection<String> readerNumbers);
     List<ReaderDetails> findByPhoneNumber(@Param("phoneNumber") @NotNull String phoneNumber);
     Optional<ReaderDetails> findByUsername(@Param("username") @NotNull String username);
     Optional<ReaderDetails> findByUserId(@Param("userId") @NotNull Long userId);
@@ -2,11 +2,14 @@ package pt.psoft.g1.psoftg1.readermanagement.services;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
 import lombok.Data;
-import pt.psoft.g1.psoftg1.readermanagement.api.ReaderView;
+import lombok.NoArgsConstructor;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Schema(description = "Reader with lending count")
 public class ReaderAverageDto {
     @NotNull
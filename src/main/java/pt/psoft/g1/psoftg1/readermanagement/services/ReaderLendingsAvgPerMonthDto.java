@@ -7,7 +7,7 @@ import lombok.Data;
 import java.util.List;
 
 @Data
-@Schema(description = "A Genre and its lending duration averages per month.")
+@Schema(description = "A month and the number of lendings of each reader in it.")
 @AllArgsConstructor
 public class ReaderLendingsAvgPerMonthDto {
     private Integer year;
@@ -17,6 +17,7 @@ public interface ReaderService {
     Optional<ReaderDetails> findByReaderNumber(String readerNumber);
     List<ReaderDetails> findByPhoneNumber(String phoneNumber);
     Iterable<ReaderDetails> findAll();
+    List<ReaderDetails> findTopReaders();
     List<ReaderDetails> findTopReaders(int minTop);
     List<ReaderBookCountDTO> findTopByGenre(String genre, LocalDate startDate, LocalDate endDate);
     //Optional<Reader> update(UpdateReaderRequest request) throws Exception;
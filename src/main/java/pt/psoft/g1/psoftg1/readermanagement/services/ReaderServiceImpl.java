@@ -1,29 +1,43 @@
 package pt.psoft.g1.psoftg1.readermanagement.services;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
 import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
 import pt.psoft.g1.psoftg1.exceptions.ConflictException;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCount;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactStore;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.TopLendingCounters;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
 import pt.psoft.g1.psoftg1.shared.repositories.ForbiddenNameRepository;
 import pt.psoft.g1.psoftg1.shared.repositories.PhotoRepository;
+import pt.psoft.g1.psoftg1.shared.services.ReportCaches;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
 import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
 import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Pageable;
 
 @Service
 @RequiredArgsConstructor
+@PropertySource({"classpath:config/library.properties"})
 public class ReaderServiceImpl implements ReaderService {
     private final ReaderRepository readerRepo;
     private final UserRepository userRepo;
@@ -31,6 +45,11 @@ public class ReaderServiceImpl implements ReaderService {
     private final GenreRepository genreRepo;
     private final ForbiddenNameRepository forbiddenNameRepository;
     private final PhotoRepository photoRepository;
+    private final LendingFactStore lendingFactStore;
+    private final TopLendingCounters topLendingCounters;
+
+    @Value("${topReportsSize}")
+    private int topReportsSize;
 
 
     @Override
@@ -78,12 +97,29 @@ public class ReaderServiceImpl implements ReaderService {
     }
 
     @Override
+    @Cacheable(ReportCaches.TOP_READERS_BY_GENRE)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<ReaderBookCountDTO> findTopByGenre(String genre, LocalDate startDate, LocalDate endDate){
         if(startDate.isAfter(endDate)){
             throw new IllegalArgumentException("Start date cannot be after end date");
         }
-        Pageable pageableRules = PageRequest.of(0,5);
-        return this.readerRepo.findTopByGenre(pageableRules, genre, startDate, endDate).getContent();
+        final var top = lendingFactStore.findTopReadersByGenre(genre, startDate, endDate, topReportsSize);
+        if (top.isPresent()) {
+            final Map<String, ReaderDetails> readers = readerRepo.findAllByReaderNumberIn(
+                    top.get().stream().map(LendingCount::getKey).toList()).stream()
+                    .collect(Collectors.toMap(ReaderDetails::getReaderNumber, r -> r));
+            final List<ReaderBookCountDTO> topByGenre = top.get().stream()
+                    .filter(c -> readers.containsKey(c.getKey()))
+                    .map(c -> new ReaderBookCountDTO(readers.get(c.getKey()), c.getCount()))
+                    .collect(Collectors.toList());
+            initializeInterests(topByGenre.stream().map(ReaderBookCountDTO::getReaderDetails).toList());
+            return topByGenre;
+        }
+        Pageable pageableRules = PageRequest.of(0,topReportsSize);
+        final List<ReaderBookCountDTO> topByGenre = this.readerRepo.findTopByGenre(pageableRules, genre, startDate, endDate).getContent();
+        initializeInterests(topByGenre.stream().map(ReaderBookCountDTO::getReaderDetails).toList());
+        return topByGenre;
     }
 
     @Override
@@ -140,14 +176,43 @@ public class ReaderServiceImpl implements ReaderService {
     }
 
     @Override
+    @Cacheable(ReportCaches.TOP_READERS)
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    public List<ReaderDetails> findTopReaders() {
+        return findTopReaders(topReportsSize);
+    }
+
+    @Override
+    @Cacheable(ReportCaches.TOP_READERS)
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<ReaderDetails> findTopReaders(int minTop) {
         if(minTop < 1) {
             throw new IllegalArgumentException("Minimum top reader must be greater than 0");
         }
 
+        final var top = topLendingCounters.findTopReaders(minTop);
+        if (top.isPresent()) {
+            final Map<String, ReaderDetails> readers = readerRepo.findAllByReaderNumberIn(
+                    top.get().stream().map(LendingCount::getKey).toList()).stream()
+                    .collect(Collectors.toMap(ReaderDetails::getReaderNumber, r -> r));
+            return initializeInterests(top.get().stream()
+                    .map(c -> readers.get(c.getKey()))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+        }
         Pageable pageableRules = PageRequest.of(0,minTop);
         Page<ReaderDetails> page = readerRepo.findTopReaders(pageableRules);
-        return page.getContent();
+        return initializeInterests(page.getContent());
+    }
+
+    /**
+     * Top readers are cached beyond this session, so the interests shown with each reader are loaded here.
+     */
+    private static List<ReaderDetails> initializeInterests(List<ReaderDetails> readers) {
+        readers.forEach(r -> Hibernate.initialize(r.getInterestList()));
+        return readers;
     }
 
     private List<Genre> getGenreListFromStringList(List<String> interestList) {
@@ -3,6 +3,8 @@ package pt.psoft.g1.psoftg1.readermanagement.services;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.util.StringUtils;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 
 @Data
 @NoArgsConstructor
@@ -11,4 +13,19 @@ public class SearchReadersQuery {
     private String name;
     private String phoneNumber;
     private String email;
+
+    /**
+     * Search results are sorted by the most specific criterion given (phone number, then e-mail, then name),
+     * or by reader number if there is none; ties are always broken by reader number.
+     * @return the value of the sort criterion for a search result
+     */
+    public String sortKeyOf(final ReaderDetails readerDetails) {
+        if (StringUtils.hasText(phoneNumber))
+            return readerDetails.getPhoneNumber();
+        if (StringUtils.hasText(email))
+            return readerDetails.getReader().getUsername();
+        if (StringUtils.hasText(name))
+            return readerDetails.getReader().getName().toString();
+        return readerDetails.getReaderNumber();
+    }
 }
@@ -0,0 +1,80 @@
+package pt.psoft.g1.psoftg1.reportmanagement.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import pt.psoft.g1.psoftg1.genremanagement.api.GenreViewMapper;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsPerMonthDTO;
+import pt.psoft.g1.psoftg1.readermanagement.api.ReaderViewMapper;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderBookCountDTO;
+import pt.psoft.g1.psoftg1.reportmanagement.services.ReportJob;
+import pt.psoft.g1.psoftg1.reportmanagement.services.ReportJobService;
+import pt.psoft.g1.psoftg1.shared.api.ListResponse;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Tag(name = "Report jobs", description = "Endpoints to compute long reports in the background")
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/reports/jobs")
+public class ReportJobController {
+    private final ReportJobService reportJobService;
+    private final ReportJobViewMapper reportJobViewMapper;
+    private final GenreViewMapper genreViewMapper;
+    private final ReaderViewMapper readerViewMapper;
+
+    @Operation(summary = "Submits GET /api/genres/lendingsAverageDurationPerMonth as a background job")
+    @PostMapping("/genres/lendingsAverageDurationPerMonth")
+    public ResponseEntity<ReportJobView> submitLendingsAverageDurationPerMonth(
+            @RequestParam("startDate") final String start,
+            @RequestParam("endDate") final String end) {
+        return accepted(reportJobService.submitLendingsAverageDurationPerMonth(start, end));
+    }
+
+    @Operation(summary = "Submits GET /api/readers/top5ByGenre as a background job")
+    @PostMapping("/readers/top5ByGenre")
+    public ResponseEntity<ReportJobView> submitTopReadersByGenre(
+            @RequestParam("genre") final String genre,
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) final LocalDate endDate) {
+        return accepted(reportJobService.submitTopReadersByGenre(genre, startDate, endDate));
+    }
+
+    @Operation(summary = "Gets the status of a report job")
+    @GetMapping("/{id}")
+    public ReportJobView getJob(@PathVariable("id") final String id) {
+        return reportJobViewMapper.toReportJobView(reportJobService.findById(id));
+    }
+
+    @Operation(summary = "Gets the result of a report job that has succeeded, as its synchronous endpoint returns it")
+    @GetMapping("/{id}/result")
+    @SuppressWarnings("unchecked")
+    public ListResponse<?> getResult(@PathVariable("id") final String id) {
+        final Object result = reportJobService.getResult(id);
+        return switch (reportJobService.findById(id).getType()) {
+            case LENDINGS_AVERAGE_DURATION_PER_MONTH -> new ListResponse<>(
+                    genreViewMapper.toGenreLendingsAveragePerMonthView((List<GenreLendingsPerMonthDTO>) result));
+            case TOP_READERS_BY_GENRE -> new ListResponse<>(
+                    readerViewMapper.toReaderCountViewList((List<ReaderBookCountDTO>) result));
+        };
+    }
+
+    @Operation(summary = "Cancels a report job that has not finished")
+    @DeleteMapping("/{id}")
+    public ReportJobView cancelJob(@PathVariable("id") final String id) {
+        return reportJobViewMapper.toReportJobView(reportJobService.cancel(id));
+    }
+
+    private ResponseEntity<ReportJobView> accepted(final ReportJob job) {
+        final var jobUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/reports/jobs/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(jobUri).body(reportJobViewMapper.toReportJobView(job));
+    }
+}
@@ -0,0 +1,26 @@
+package pt.psoft.g1.psoftg1.reportmanagement.api;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Schema(description = "A report computed in the background")
+public class ReportJobView {
+    private String id;
+    private String type;
+    private String status;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private String error;
+
+    @Setter
+    @Getter
+    private Map<String, Object> _links = new HashMap<>();
+}
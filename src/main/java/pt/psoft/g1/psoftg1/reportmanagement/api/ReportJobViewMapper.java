@@ -0,0 +1,30 @@
+package pt.psoft.g1.psoftg1.reportmanagement.api;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import pt.psoft.g1.psoftg1.reportmanagement.services.ReportJob;
+import pt.psoft.g1.psoftg1.shared.api.MapperInterface;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Mapper(componentModel = "spring")
+public abstract class ReportJobViewMapper extends MapperInterface {
+
+    @Mapping(target = "_links", expression = "java(mapLinks(job))")
+    public abstract ReportJobView toReportJobView(ReportJob job);
+
+    public Map<String, Object> mapLinks(final ReportJob job) {
+        final String jobUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/reports/jobs/{id}")
+                .buildAndExpand(job.getId())
+                .toUriString();
+
+        final Map<String, Object> links = new HashMap<>();
+        links.put("self", jobUri);
+        if (job.getStatus() == ReportJob.Status.SUCCEEDED)
+            links.put("result", jobUri + "/result");
+        return links;
+    }
+}
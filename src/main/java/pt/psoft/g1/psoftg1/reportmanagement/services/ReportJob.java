@@ -0,0 +1,109 @@
+package pt.psoft.g1.psoftg1.reportmanagement.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * A report computed in the background by the {@link ReportJobService}.
+ * <p>
+ * A job is {@code QUEUED} until a worker starts it, and ends as {@code SUCCEEDED} (with a result), {@code FAILED}
+ * (with an error) or {@code CANCELLED}. Finished jobs are kept for a while, so their result can be downloaded.
+ */
+@Getter
+public class ReportJob {
+    public enum Type {
+        LENDINGS_AVERAGE_DURATION_PER_MONTH,
+        TOP_READERS_BY_GENRE
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Type type;
+    private final Instant submittedAt = Instant.now();
+    private Status status = Status.QUEUED;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private Object result;
+    private String error;
+
+    @Getter(AccessLevel.NONE)
+    private Future<?> future;
+
+    public ReportJob(final Type type) {
+        this.type = type;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized Object getResult() {
+        return result;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    synchronized void setFuture(final Future<?> future) {
+        this.future = future;
+    }
+
+    /** @return whether the job is to be run, i.e. it was not cancelled while queued */
+    synchronized boolean start() {
+        if (status != Status.QUEUED)
+            return false;
+        status = Status.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    synchronized void succeed(final Object result) {
+        if (finish(Status.SUCCEEDED))
+            this.result = result;
+    }
+
+    synchronized void fail(final String error) {
+        if (finish(Status.FAILED))
+            this.error = error;
+    }
+
+    /**
+     * Cancels the job, interrupting it if it is running.
+     * @return whether the job was cancelled, i.e. it had not finished yet
+     */
+    synchronized boolean cancel() {
+        if (!finish(Status.CANCELLED))
+            return false;
+        if (future != null)
+            future.cancel(true);
+        return true;
+    }
+
+    private boolean finish(final Status finalStatus) {
+        if (status.isFinished())
+            return false;
+        status = finalStatus;
+        finishedAt = Instant.now();
+        return true;
+    }
+}
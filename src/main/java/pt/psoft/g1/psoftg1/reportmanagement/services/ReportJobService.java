@@ -0,0 +1,26 @@
+package pt.psoft.g1.psoftg1.reportmanagement.services;
+
+import java.time.LocalDate;
+
+public interface ReportJobService {
+
+    /**
+     * Submits {@code GenreService.getLendingsAverageDurationPerMonth}; the result is a list of
+     * {@code GenreLendingsPerMonthDTO}.
+     */
+    ReportJob submitLendingsAverageDurationPerMonth(String startDate, String endDate);
+
+    /**
+     * Submits {@code ReaderService.findTopByGenre}; the result is a list of {@code ReaderBookCountDTO}.
+     */
+    ReportJob submitTopReadersByGenre(String genre, LocalDate startDate, LocalDate endDate);
+
+    ReportJob findById(String id);
+
+    /**
+     * @return the result of a job that has succeeded
+     */
+    Object getResult(String id);
+
+    ReportJob cancel(String id);
+}
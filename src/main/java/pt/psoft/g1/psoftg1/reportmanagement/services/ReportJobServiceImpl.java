@@ -0,0 +1,145 @@
+package pt.psoft.g1.psoftg1.reportmanagement.services;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import pt.psoft.g1.psoftg1.exceptions.ConflictException;
+import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
+import pt.psoft.g1.psoftg1.exceptions.ServiceUnavailableException;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreService;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs report jobs on a bounded pool of workers, so long reports neither hold a servlet thread nor take more than
+ * {@code reports.jobs.workers} database connections. Up to {@code reports.jobs.queue-capacity} jobs wait for a
+ * worker; beyond that, submissions are refused. Finished jobs are kept for {@code reports.jobs.retention}.
+ * <p>The dates of a job are checked when it is submitted, so invalid ones are refused without taking a place in
+ * the queue, as they are by the synchronous reports.
+ */
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+    private final Logger logger = LogManager.getLogger();
+
+    private final GenreService genreService;
+    private final ReaderService readerService;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    public ReportJobServiceImpl(final GenreService genreService,
+                                final ReaderService readerService,
+                                @Value("${reports.jobs.workers:2}") final int workers,
+                                @Value("${reports.jobs.queue-capacity:20}") final int queueCapacity,
+                                @Value("${reports.jobs.retention:PT1H}") final Duration retention) {
+        this.genreService = genreService;
+        this.readerService = readerService;
+        this.retention = retention;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("report-job-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+    }
+
+    @Override
+    public ReportJob submitLendingsAverageDurationPerMonth(final String startDate, final String endDate) {
+        checkDateRange(parseDate(startDate), parseDate(endDate));
+        return submit(new ReportJob(ReportJob.Type.LENDINGS_AVERAGE_DURATION_PER_MONTH),
+                () -> genreService.getLendingsAverageDurationPerMonth(startDate, endDate));
+    }
+
+    @Override
+    public ReportJob submitTopReadersByGenre(final String genre, final LocalDate startDate, final LocalDate endDate) {
+        checkDateRange(startDate, endDate);
+        return submit(new ReportJob(ReportJob.Type.TOP_READERS_BY_GENRE),
+                () -> readerService.findTopByGenre(genre, startDate, endDate));
+    }
+
+    @Override
+    public ReportJob findById(final String id) {
+        final ReportJob job = jobs.get(id);
+        if (job == null)
+            throw new NotFoundException(ReportJob.class, id);
+        return job;
+    }
+
+    @Override
+    public Object getResult(final String id) {
+        final ReportJob job = findById(id);
+        if (job.getStatus() != ReportJob.Status.SUCCEEDED)
+            throw new ConflictException("Report job " + id + " has no result, it is " + job.getStatus());
+        return job.getResult();
+    }
+
+    @Override
+    public ReportJob cancel(final String id) {
+        final ReportJob job = findById(id);
+        if (!job.cancel())
+            throw new ConflictException("Report job " + id + " has already finished");
+        // frees the place of the job in the queue
+        executor.purge();
+        return job;
+    }
+
+    /**
+     * Forgets the jobs that finished longer than the retention ago.
+     */
+    @Scheduled(fixedDelayString = "${reports.jobs.purge-interval:PT5M}")
+    public void purge() {
+        final Instant oldest = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt().isBefore(oldest));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static LocalDate parseDate(final String date) {
+        if (date == null)
+            throw new IllegalArgumentException("Start and end dates are required");
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Expected format is YYYY-MM-DD");
+        }
+    }
+
+    private static void checkDateRange(final LocalDate startDate, final LocalDate endDate) {
+        if (startDate.isAfter(endDate))
+            throw new IllegalArgumentException("Start date cannot be after end date");
+    }
+
+    private ReportJob submit(final ReportJob job, final Supplier<Object> report) {
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job, report)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new ServiceUnavailableException("Too many report jobs, try again later", e);
+        }
+        return job;
+    }
+
+    private void run(final ReportJob job, final Supplier<Object> report) {
+        if (!job.start())
+            return;
+        try {
+            job.succeed(report.get());
+        } catch (Exception e) {
+            logger.warn("Report job {} ({}) failed", job.getId(), job.getType(), e);
+            job.fail(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package pt.psoft.g1.psoftg1.shared.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ListResponse} with the number of items of every page per value of some facets (e.g. per genre).
+ */
+@Getter
+public class FacetedListResponse<T> extends ListResponse<T> {
+	/**
+	 * Facet name -> facet value -> number of items
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final Map<String, Map<String, Long>> facets;
+
+	public FacetedListResponse(final List<T> items, final String nextCursor, final Long total,
+							   final Map<String, Map<String, Long>> facets) {
+		super(items, nextCursor, total);
+		this.facets = facets;
+	}
+}
@@ -22,6 +22,7 @@ package pt.psoft.g1.psoftg1.shared.api;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -32,4 +33,24 @@ import lombok.Data;
 @AllArgsConstructor
 public class ListResponse<T> {
 	private List<T> items;
+
+	/**
+	 * Cursor of the next page, to be sent back in {@code Page.cursor}; absent on the last page.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String nextCursor;
+
+	/**
+	 * Number of items of every page, for the searches that count them.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Long total;
+
+	public ListResponse(final List<T> items) {
+		this(items, null);
+	}
+
+	public ListResponse(final List<T> items, final String nextCursor) {
+		this(items, nextCursor, null);
+	}
 }
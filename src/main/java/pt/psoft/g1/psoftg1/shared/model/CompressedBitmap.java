@@ -0,0 +1,418 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative {@code int}s (e.g. dense ordinals of books), laid out like a Roaring bitmap.
+ * <p>
+ * Values are split by their high 16 bits into containers of up to {@code 2^16} values. A container holding at
+ * most {@value #ARRAY_MAX} values keeps them as a sorted {@code char} array; a fuller one as a bitmap of
+ * {@code 2^16} bits. Sparse sets then take 2 bytes per value and dense ones 1 bit per value, and intersections
+ * and unions only visit the containers present in both (or either) sets.
+ */
+public final class CompressedBitmap {
+    // beyond this, an array container is larger than a bitmap container
+    static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = (1 << 16) / Long.SIZE;
+
+    // sorted high 16 bits of the values, and the container of their low 16 bits
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers)
+            cardinality += container.cardinality;
+        return cardinality;
+    }
+
+    public boolean contains(final int value) {
+        final int i = Arrays.binarySearch(keys, high(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    /**
+     * @return whether the value was not in the set yet
+     */
+    public boolean add(final int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Only non-negative values can be added, not " + value);
+        final char key = high(value);
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new ArrayContainer());
+        }
+        final int before = containers[i].cardinality;
+        containers[i] = containers[i].add(low(value));
+        return containers[i].cardinality != before;
+    }
+
+    /**
+     * @return whether the value was in the set
+     */
+    public boolean remove(final int value) {
+        final int i = Arrays.binarySearch(keys, high(value));
+        if (i < 0)
+            return false;
+        final int before = containers[i].cardinality;
+        containers[i] = containers[i].remove(low(value));
+        final boolean removed = containers[i].cardinality != before;
+        if (containers[i].cardinality == 0)
+            removeContainer(i);
+        return removed;
+    }
+
+    /**
+     * @return a new set with the values in both sets
+     */
+    public CompressedBitmap and(final CompressedBitmap other) {
+        final CompressedBitmap and = new CompressedBitmap();
+        int i = 0, j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                final Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality > 0)
+                    and.appendContainer(keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return and;
+    }
+
+    /**
+     * @return a new set with the values in either set
+     */
+    public CompressedBitmap or(final CompressedBitmap other) {
+        final CompressedBitmap or = new CompressedBitmap();
+        int i = 0, j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                or.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                or.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                or.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return or;
+    }
+
+    /**
+     * @return the number of values in both sets, without building their intersection
+     */
+    public long andCardinality(final CompressedBitmap other) {
+        long cardinality = 0;
+        int i = 0, j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Runs an action on every value, in ascending order.
+     */
+    public void forEach(final IntConsumer action) {
+        for (int i = 0; i < keys.length; i++)
+            containers[i].forEach(keys[i] << 16, action);
+    }
+
+    private static char high(final int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(final int value) {
+        return (char) value;
+    }
+
+    private void insertContainer(final int i, final char key, final Container container) {
+        final char[] newKeys = new char[keys.length + 1];
+        final Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        newKeys[i] = key;
+        newContainers[i] = container;
+        System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+        System.arraycopy(containers, i, newContainers, i + 1, containers.length - i);
+        keys = newKeys;
+        containers = newContainers;
+    }
+
+    private void removeContainer(final int i) {
+        final char[] newKeys = new char[keys.length - 1];
+        final Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+        System.arraycopy(containers, i + 1, newContainers, i, containers.length - i - 1);
+        keys = newKeys;
+        containers = newContainers;
+    }
+
+    private void appendContainer(final char key, final Container container) {
+        insertContainer(keys.length, key, container);
+    }
+
+    private abstract static class Container {
+        int cardinality;
+
+        abstract boolean contains(char value);
+
+        /**
+         * @return this container, or the one replacing it
+         */
+        abstract Container add(char value);
+
+        /**
+         * @return this container, or the one replacing it
+         */
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container copy();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(final char[] values, final int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(final char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0)
+                return this;
+            if (cardinality == ARRAY_MAX)
+                return toBitmap().add(value);
+            i = -i - 1;
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, values.length * 2)));
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i < 0)
+                return this;
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        Container and(final Container other) {
+            final char[] and = new char[Math.min(cardinality, other.cardinality)];
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        and[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++)
+                    if (other.contains(values[i]))
+                        and[n++] = values[i];
+            }
+            return new ArrayContainer(and, n);
+        }
+
+        @Override
+        Container or(final Container other) {
+            if (other instanceof BitmapContainer bitmap)
+                return bitmap.or(this);
+            final ArrayContainer array = (ArrayContainer) other;
+            final char[] or = new char[cardinality + array.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || i < cardinality && values[i] < array.values[j]) {
+                    or[n++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    or[n++] = array.values[j++];
+                } else {
+                    or[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            final ArrayContainer union = new ArrayContainer(or, n);
+            return n > ARRAY_MAX ? union.toBitmap() : union;
+        }
+
+        @Override
+        int andCardinality(final Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++)
+                if (other.contains(values[i]))
+                    count++;
+            return count;
+        }
+
+        @Override
+        void forEach(final int high, final IntConsumer action) {
+            for (int i = 0; i < cardinality; i++)
+                action.accept(high | values[i]);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        BitmapContainer toBitmap() {
+            final BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++)
+                bitmap.add(values[i]);
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+
+        BitmapContainer(final long[] words, final int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(final char value) {
+            if (!contains(value)) {
+                words[value >>> 6] |= 1L << value;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            if (contains(value)) {
+                words[value >>> 6] &= ~(1L << value);
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        Container and(final Container other) {
+            if (other instanceof ArrayContainer array)
+                return array.and(this);
+            final long[] and = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                and[i] = words[i] & ((BitmapContainer) other).words[i];
+                count += Long.bitCount(and[i]);
+            }
+            final BitmapContainer intersection = new BitmapContainer(and, count);
+            return count <= ARRAY_MAX ? intersection.toArray() : intersection;
+        }
+
+        @Override
+        Container or(final Container other) {
+            final BitmapContainer union = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++)
+                    union.add(array.values[i]);
+                return union;
+            }
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                union.words[i] |= ((BitmapContainer) other).words[i];
+                count += Long.bitCount(union.words[i]);
+            }
+            union.cardinality = count;
+            return union;
+        }
+
+        @Override
+        int andCardinality(final Container other) {
+            if (other instanceof ArrayContainer array)
+                return array.andCardinality(this);
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                count += Long.bitCount(words[i] & ((BitmapContainer) other).words[i]);
+            return count;
+        }
+
+        @Override
+        void forEach(final int high, final IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        ArrayContainer toArray() {
+            final char[] values = new char[Math.max(cardinality, 1)];
+            final int[] n = {0};
+            forEach(0, value -> values[n[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values (e.g. lending durations in days), answering any percentile without keeping the
+ * values themselves.
+ * <p>
+ * Values below {@code 64} have a bucket each and are exact; above, each power of two is split in 32 buckets, so a
+ * percentile is at most about 3% above the actual value. Histograms are merged by adding their buckets, and are
+ * stored as the varint encoded (bucket, count) pairs of their non-empty buckets.
+ */
+public final class Histogram {
+    private static final int EXACT_BITS = 6;
+    private static final int EXACT = 1 << EXACT_BITS;
+    private static final int SUB_BUCKET_BITS = EXACT_BITS - 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts = new long[EXACT];
+    private long totalCount;
+
+    /**
+     * @param bytes - Histogram as returned by {@link #toBytes()}, or {@code null} for an empty histogram
+     */
+    public static Histogram fromBytes(final byte[] bytes) {
+        final Histogram histogram = new Histogram();
+        if (bytes == null)
+            return histogram;
+        final int[] position = {0};
+        int bucket = -1;
+        while (position[0] < bytes.length) {
+            bucket += (int) readVarLong(bytes, position) + 1;
+            histogram.add(bucket, readVarLong(bytes, position));
+        }
+        return histogram;
+    }
+
+    public byte[] toBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int previous = -1;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] == 0)
+                continue;
+            writeVarLong(bytes, bucket - previous - 1);
+            writeVarLong(bytes, counts[bucket]);
+            previous = bucket;
+        }
+        return bytes.toByteArray();
+    }
+
+    public void record(final long value) {
+        record(value, 1);
+    }
+
+    public void record(final long value, final long count) {
+        if (value < 0)
+            throw new IllegalArgumentException("Value cannot be negative");
+        add(bucketOf(value), count);
+    }
+
+    /**
+     * Adds every value of another histogram to this one.
+     * @return this histogram
+     */
+    public Histogram merge(final Histogram other) {
+        for (int bucket = 0; bucket < other.counts.length; bucket++)
+            if (other.counts[bucket] > 0)
+                add(bucket, other.counts[bucket]);
+        return this;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile - Between {@code 0} (exclusive) and {@code 100}
+     * @return highest value of the bucket holding the given percentile, or {@code 0} if the histogram is empty
+     */
+    public long percentile(final double percentile) {
+        if (!(percentile > 0 && percentile <= 100))
+            throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100");
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank)
+                return highestValueOf(bucket);
+        }
+        return 0;
+    }
+
+    private void add(final int bucket, final long count) {
+        if (bucket >= counts.length)
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length + SUB_BUCKETS));
+        counts[bucket] += count;
+        totalCount += count;
+    }
+
+    static int bucketOf(final long value) {
+        if (value < EXACT)
+            return (int) value;
+        final int msb = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = msb - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT + (msb - EXACT_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(final int bucket) {
+        if (bucket < EXACT)
+            return bucket;
+        final int msb = EXACT_BITS + (bucket - EXACT) / SUB_BUCKETS;
+        final int shift = msb - SUB_BUCKET_BITS;
+        final long lowest = (long) (SUB_BUCKETS + (bucket - EXACT) % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static void writeVarLong(final ByteArrayOutputStream bytes, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    private static long readVarLong(final byte[] bytes, final int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position[0] >= bytes.length)
+                throw new IllegalArgumentException("Truncated histogram");
+            final byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+}
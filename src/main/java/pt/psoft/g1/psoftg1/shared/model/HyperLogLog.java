@@ -0,0 +1,113 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog sketch, estimating the number of distinct values added to it with a standard error of about 2.3%,
+ * and exactly counting small sets through linear counting.
+ * <p>
+ * Sketches are merged by keeping the highest of each register, so the number of distinct values of a union
+ * (e.g. the readers of several months) is estimated from the sketches of its parts. They are stored as
+ * {@value #BYTES} bytes, packing each of the {@code 2^11} registers in 6 bits.
+ */
+public final class HyperLogLog {
+    private static final int PRECISION = 11;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int REGISTER_BITS = 6;
+    public static final int BYTES = REGISTERS * REGISTER_BITS / Byte.SIZE;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * @param bytes - Sketch as returned by {@link #toBytes()}, or {@code null} for an empty sketch
+     */
+    public static HyperLogLog fromBytes(final byte[] bytes) {
+        final HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null)
+            return sketch;
+        if (bytes.length != BYTES)
+            throw new IllegalArgumentException("A sketch has " + BYTES + " bytes, not " + bytes.length);
+        for (int i = 0; i < REGISTERS; i++) {
+            int register = 0;
+            for (int b = 0; b < REGISTER_BITS; b++) {
+                final int bit = i * REGISTER_BITS + b;
+                if ((bytes[bit >>> 3] & (1 << (bit & 7))) != 0)
+                    register |= 1 << b;
+            }
+            sketch.registers[i] = (byte) register;
+        }
+        return sketch;
+    }
+
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[BYTES];
+        for (int i = 0; i < REGISTERS; i++) {
+            for (int b = 0; b < REGISTER_BITS; b++) {
+                if ((registers[i] & (1 << b)) != 0) {
+                    final int bit = i * REGISTER_BITS + b;
+                    bytes[bit >>> 3] |= (byte) (1 << (bit & 7));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return whether the sketch changed, i.e. whether it must be saved again
+     */
+    public boolean add(final String value) {
+        final long hash = hash(value);
+        final int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // position of the first 1 bit after the index bits; at most 54, which fits the 6 bits of a register
+        final byte rank = (byte) (Math.min(Long.numberOfLeadingZeros(hash << PRECISION), Long.SIZE - PRECISION) + 1);
+        if (registers[index] >= rank)
+            return false;
+        registers[index] = rank;
+        return true;
+    }
+
+    /**
+     * Adds every value of another sketch to this one.
+     * @return this sketch
+     */
+    public HyperLogLog merge(final HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++)
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        return this;
+    }
+
+    /**
+     * @return estimated number of distinct values added to the sketch
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                zeros++;
+        }
+        final double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        final double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0)
+            return Math.round(REGISTERS * Math.log((double) REGISTERS / zeros));
+        return Math.round(estimate);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes of a value, with the MurmurHash3 finalizer spreading it over every bit.
+     */
+    static long hash(final String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe1a85ec5L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,68 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque cursors for keyset pagination.
+ * <p>
+ * A cursor holds the sort key values of the last record of a page (the last one being a unique key, so
+ * records with the same sort value are not skipped). Searches continue right after those values instead of
+ * skipping {@code (number - 1) * limit} records, so deep pages cost the same as the first one.
+ */
+public final class Cursor {
+    private static final String SEPARATOR = "\u0000";
+
+    private Cursor() {}
+
+    public static String encode(final Object... keys) {
+        final String joined = String.join(SEPARATOR, Arrays.stream(keys).map(String::valueOf).toList());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor       - Cursor received from the client
+     * @param expectedKeys - Number of sort keys of the search
+     * @return the sort key values held by the cursor
+     * @throws IllegalArgumentException if the cursor was not issued for this search
+     */
+    public static List<String> decode(final String cursor, final int expectedKeys) {
+        final List<String> keys;
+        try {
+            keys = List.of(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (keys.size() != expectedKeys)
+            throw new IllegalArgumentException("Invalid cursor");
+        return keys;
+    }
+
+    /**
+     * Parses a non-textual sort key value held by a cursor.
+     * @throws IllegalArgumentException if the value cannot be parsed
+     */
+    public static <K> K parse(final String key, final Function<String, K> parser) {
+        try {
+            return parser.apply(key);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * @param items   - Records of the current page
+     * @param page    - Requested page
+     * @param keysOf  - Sort key values of a record, in the same order used by the search
+     * @return cursor of the next page, or {@code null} if the current page is the last one
+     */
+    public static <T> String next(final List<T> items, final Page page, final Function<T, Object[]> keysOf) {
+        final int limit = page == null ? new Page().getLimit() : page.getLimit();
+        if (items.isEmpty() || items.size() < limit)
+            return null;
+        return encode(keysOf.apply(items.get(items.size() - 1)));
+    }
+}
@@ -0,0 +1,154 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory state derived from the database (an index, counters...), kept up to date by the events of committed
+ * transactions and periodically reloaded.
+ * <p>
+ * Events keep coming while a reload reads the database: the changes they make are applied to the current state
+ * and queued, then replayed onto the fresh state before it replaces the current one. A change made with a key
+ * (e.g. the number of a new lending) is not replayed if the reload already loaded that key, so a lending
+ * committed while the database was being read is not counted twice. Changes without a key must be idempotent.
+ * <p>
+ * Until it is loaded there is no state, so {@link #read(Function)} is empty and callers fall back to the
+ * database, unless it is created with an initial state.
+ *
+ * @param <S> - Type of the state, only accessed through this class once loaded
+ */
+public final class InMemoryProjection<S> {
+
+    /**
+     * Reads the state from the database.
+     */
+    @FunctionalInterface
+    public interface Loader<S> {
+        /**
+         * @param loaded - Takes the key of every keyed change the state already includes
+         */
+        S load(Consumer<Object> loaded);
+    }
+
+    private record Change<S>(Object key, Consumer<S> action) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock; null until loaded
+    private S state;
+    // guarded by lock; changes received while a reload is reading the database, null otherwise
+    private List<Change<S>> pending;
+
+    public InMemoryProjection() {
+    }
+
+    public InMemoryProjection(final S initial) {
+        this.state = initial;
+    }
+
+    /**
+     * @return a read-only transaction of its own, for the reloads and for the event listeners, which run after
+     * the transaction of their event has been committed
+     */
+    public static TransactionTemplate readTransaction(final PlatformTransactionManager transactionManager) {
+        final TransactionTemplate readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return readTransaction;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return state != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the result of a query of the state, or empty if it is not loaded
+     */
+    public <R> Optional<R> read(final Function<S, R> query) {
+        lock.readLock().lock();
+        try {
+            return state == null ? Optional.empty() : Optional.ofNullable(query.apply(state));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a query that also changes the state (e.g. evicts old entries), which is not replayed after a reload.
+     *
+     * @return its result, or empty if the state is not loaded
+     */
+    public <R> Optional<R> update(final Function<S, R> query) {
+        lock.writeLock().lock();
+        try {
+            return state == null ? Optional.empty() : Optional.ofNullable(query.apply(state));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies an idempotent change to the state, and to the state being reloaded.
+     */
+    public void apply(final Consumer<S> change) {
+        apply(null, change);
+    }
+
+    /**
+     * Applies a change to the state, and to the state being reloaded unless it loads the key of the change.
+     */
+    public void apply(final Object key, final Consumer<S> change) {
+        lock.writeLock().lock();
+        try {
+            if (state != null)
+                change.accept(state);
+            if (pending != null)
+                pending.add(new Change<>(key, change));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the state with a fresh one, plus the changes received while it was being loaded.
+     *
+     * @return the fresh state, e.g. to log its size
+     */
+    public synchronized S reload(final Loader<S> loader) {
+        write(() -> pending = new ArrayList<>());
+        try {
+            final Set<Object> loaded = new HashSet<>();
+            final S fresh = loader.load(loaded::add);
+            write(() -> {
+                for (Change<S> change : pending)
+                    if (change.key() == null || !loaded.contains(change.key()))
+                        change.action().accept(fresh);
+                state = fresh;
+            });
+            return fresh;
+        } finally {
+            write(() -> pending = null);
+        }
+    }
+
+    private void write(final Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
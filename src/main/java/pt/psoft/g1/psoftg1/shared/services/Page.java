@@ -2,6 +2,7 @@ package pt.psoft.g1.psoftg1.shared.services;
 
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -19,7 +20,29 @@ public class Page {
     @Max(value = 100, message = "You can request maximum 100 records")
     int limit;
 
+    /**
+     * Opaque position returned as {@code nextCursor} by a previous search. When present, the page starts right
+     * after that position (keyset pagination) and {@code number} is ignored.
+     */
+    @Size(max = 1024)
+    String cursor;
+
     public Page() {
         this(1, 10);
     }
+
+    public Page(int number, int limit) {
+        this(number, limit, null);
+    }
+
+    public boolean hasCursor() {
+        return cursor != null && !cursor.isEmpty();
+    }
+
+    /**
+     * @return number of records to skip in offset mode
+     */
+    public int getOffset() {
+        return (number - 1) * limit;
+    }
 }
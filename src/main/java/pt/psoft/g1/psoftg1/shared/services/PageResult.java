@@ -0,0 +1,16 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The records of a requested {@link Page}, with the number of records of every page and the cursor of the next
+ * page ({@code null} if this page is the last one).
+ */
+@Value
+public class PageResult<T> {
+    List<T> items;
+    long total;
+    String nextCursor;
+}
@@ -0,0 +1,14 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import java.lang.annotation.*;
+
+/**
+ * Lets the read-only transactions of a method (or of every method of a class) use the read replica, when there
+ * is one. Only meant for reads that can be a little behind the latest writes, such as the reports: every other
+ * transaction, read-only or not, uses the primary.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+}
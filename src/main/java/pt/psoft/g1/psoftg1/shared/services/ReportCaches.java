@@ -0,0 +1,73 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookChangedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingReturnedEvent;
+
+import java.util.List;
+
+/**
+ * Names of the caches of the report queries, and their invalidation.
+ * <p>
+ * Reports are cached for a bounded time (see {@code CacheConfig}), and cleared as soon as a change they depend on
+ * is committed: new lendings clear the lending count reports, returned lendings the lending duration reports, and
+ * book changes every report.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReportCaches {
+    public static final String TOP_BOOKS_LENT = "topBooksLent";
+    public static final String TOP_AUTHORS_BY_LENDINGS = "topAuthorsByLendings";
+    public static final String TOP_READERS = "topReaders";
+    public static final String TOP_READERS_BY_GENRE = "topReadersByGenre";
+    public static final String TOP_GENRES_BY_BOOKS = "topGenresByBooks";
+    public static final String GENRE_LENDINGS_PER_MONTH = "genreLendingsPerMonth";
+    public static final String GENRE_AVERAGE_LENDINGS = "genreAverageLendings";
+    public static final String GENRE_LENDINGS_AVERAGE_DURATION = "genreLendingsAverageDuration";
+    public static final String GENRE_DISTINCT_READERS_PER_MONTH = "genreDistinctReadersPerMonth";
+    public static final String GENRE_DISTINCT_READERS = "genreDistinctReaders";
+    public static final String LENDING_DURATION_PERCENTILES = "lendingDurationPercentiles";
+
+    public static final List<String> ALL = List.of(TOP_BOOKS_LENT, TOP_AUTHORS_BY_LENDINGS, TOP_READERS,
+            TOP_READERS_BY_GENRE, TOP_GENRES_BY_BOOKS, GENRE_LENDINGS_PER_MONTH, GENRE_AVERAGE_LENDINGS,
+            GENRE_LENDINGS_AVERAGE_DURATION, GENRE_DISTINCT_READERS_PER_MONTH, GENRE_DISTINCT_READERS,
+            LENDING_DURATION_PERCENTILES);
+
+    private static final List<String> LENDING_COUNTS = List.of(TOP_BOOKS_LENT, TOP_AUTHORS_BY_LENDINGS, TOP_READERS,
+            TOP_READERS_BY_GENRE, GENRE_LENDINGS_PER_MONTH, GENRE_AVERAGE_LENDINGS, GENRE_DISTINCT_READERS_PER_MONTH,
+            GENRE_DISTINCT_READERS);
+
+    private static final List<String> LENDING_DURATIONS = List.of(GENRE_LENDINGS_AVERAGE_DURATION,
+            LENDING_DURATION_PERCENTILES);
+
+    private final CacheManager cacheManager;
+
+    @TransactionalEventListener
+    public void onLendingCreated(final LendingCreatedEvent event) {
+        clear(LENDING_COUNTS);
+    }
+
+    @TransactionalEventListener
+    public void onLendingReturned(final LendingReturnedEvent event) {
+        clear(LENDING_DURATIONS);
+    }
+
+    // books are saved outside of a transaction as well
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(final BookChangedEvent event) {
+        clear(ALL);
+    }
+
+    private void clear(final List<String> names) {
+        for (String name : names) {
+            final Cache cache = cacheManager.getCache(name);
+            if (cache != null)
+                cache.clear();
+        }
+    }
+}
@@ -20,6 +20,7 @@
  */
 package pt.psoft.g1.psoftg1.usermanagement.infrastructure.repositories.impl;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -39,6 +40,7 @@ import org.springframework.util.StringUtils;
 import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.usermanagement.model.User;
 import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
 import pt.psoft.g1.psoftg1.shared.services.Page;
 import pt.psoft.g1.psoftg1.usermanagement.services.SearchUsersQuery;
 
@@ -131,14 +133,27 @@ class UserRepoCustomImpl implements UserRepoCustom {
 		}
 
 		// search using OR
-		if (!where.isEmpty()) {
-			cq.where(cb.or(where.toArray(new Predicate[0])));
+		Predicate filter = where.isEmpty() ? null : cb.or(where.toArray(new Predicate[0]));
+
+		final Path<LocalDateTime> createdAt = root.get("createdAt");
+		final Path<String> username = root.get("username");
+		if (page.hasCursor()) {
+			// cursor keys: createdAt, username
+			final List<String> after = Cursor.decode(page.getCursor(), 2);
+			final LocalDateTime afterCreatedAt = Cursor.parse(after.get(0), LocalDateTime::parse);
+			final Predicate seek = cb.or(cb.lessThan(createdAt, afterCreatedAt),
+					cb.and(cb.equal(createdAt, afterCreatedAt), cb.greaterThan(username, after.get(1))));
+			filter = filter == null ? seek : cb.and(filter, seek);
+		}
+		if (filter != null) {
+			cq.where(filter);
 		}
 
-		cq.orderBy(cb.desc(root.get("createdAt")));
+		cq.orderBy(cb.desc(createdAt), cb.asc(username));
 
 		final TypedQuery<User> q = em.createQuery(cq);
-		q.setFirstResult((page.getNumber() - 1) * page.getLimit());
+		if (!page.hasCursor())
+			q.setFirstResult(page.getOffset());
 		q.setMaxResults(page.getLimit());
 
 		return q.getResultList();
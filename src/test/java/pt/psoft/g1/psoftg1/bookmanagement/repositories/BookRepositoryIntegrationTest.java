@@ -0,0 +1,77 @@
+package pt.psoft.g1.psoftg1.bookmanagement.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
+import pt.psoft.g1.psoftg1.shared.services.Page;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Transactional
+@SpringBootTest
+class BookRepositoryIntegrationTest {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @BeforeEach
+    void setUp() {
+        final Author one = authorRepository.save(new Author("Zzauthor One", "Bio", null));
+        final Author two = authorRepository.save(new Author("Zzauthor Two", "Bio", null));
+        final Genre genre = genreRepository.save(new Genre("Zzgenre"));
+        final Genre other = genreRepository.save(new Genre("Zzother"));
+
+        bookRepository.save(new Book("9780000000019", "Zzfind Alpha", "Description", other, List.of(one), null));
+        // two matching authors, found once
+        bookRepository.save(new Book("9780000000026", "Zzfind Beta", "Description", other, List.of(one, two), null));
+        bookRepository.save(new Book("9780000000033", "Zzfind Gamma", "Description", genre, List.of(two), null));
+        bookRepository.save(new Book("9780000000040", "Unrelated Title", "Description", other, List.of(one), null));
+    }
+
+    private static List<String> titles(final List<Book> books) {
+        return books.stream().map(b -> b.getTitle().toString()).toList();
+    }
+
+    @Test
+    void testFindBooksUnionsCriteriaByTitle() {
+        assertEquals(List.of("Unrelated Title", "Zzfind Alpha", "Zzfind Beta", "Zzfind Gamma"),
+                titles(bookRepository.findBooks("find", null, "Zzauthor", new Page(1, 10))));
+        assertEquals(4, bookRepository.countBooks("find", null, "Zzauthor"));
+
+        assertEquals(List.of("Zzfind Gamma"), titles(bookRepository.findBooks(null, "genre", null, new Page(1, 10))));
+        assertEquals(List.of("Zzfind Beta", "Zzfind Gamma"),
+                titles(bookRepository.findBooks("Gamma", null, "Zzauthor T", new Page(1, 10))));
+        assertEquals(2, bookRepository.countBooks("Gamma", null, "Zzauthor T"));
+    }
+
+    @Test
+    void testFindBooksReturnsTheRequestedPage() {
+        assertEquals(List.of("Zzfind Beta", "Zzfind Gamma"),
+                titles(bookRepository.findBooks("find", null, "Zzauthor", new Page(2, 2))));
+
+        final String cursor = Cursor.encode(0, "Zzfind Alpha", "9780000000019");
+        assertEquals(List.of("Zzfind Beta"),
+                titles(bookRepository.findBooks("find", null, "Zzauthor", new Page(1, 1, cursor))));
+        // the count ignores paging
+        assertEquals(4, bookRepository.countBooks("find", null, "Zzauthor"));
+    }
+
+    @Test
+    void testFindBooksWithoutCriteriaFindsNothing() {
+        assertEquals(List.of(), bookRepository.findBooks(null, null, null, new Page(1, 10)));
+        assertEquals(0, bookRepository.countBooks(null, null, null));
+    }
+}
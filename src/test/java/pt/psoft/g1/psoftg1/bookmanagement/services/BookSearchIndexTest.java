@@ -0,0 +1,167 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
+import pt.psoft.g1.psoftg1.shared.services.Page;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSearchIndexTest {
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex(bookRepository, mock(PlatformTransactionManager.class), true, 10);
+        when(bookRepository.listSearchFields()).thenReturn(List.of(
+                new BookSearchFieldsDTO("1", "O Principezinho", "Infantil", "Antoine de Saint-Exupéry"),
+                new BookSearchFieldsDTO("2", "A Criação do Mundo", "Romance", "Miguel Torga"),
+                new BookSearchFieldsDTO("3", "Os Maias", "Romance", "Eça de Queirós"),
+                new BookSearchFieldsDTO("4", "Príncipe Real", "Romance", "Ana Príncipe"),
+                new BookSearchFieldsDTO("4", "Príncipe Real", "Romance", "Miguel Real")));
+        index.reload();
+    }
+
+    private List<String> search(final String title, final String genre, final String authorName,
+                                final boolean matchAll, final boolean typoTolerant) {
+        return index.search(title, genre, authorName, matchAll, typoTolerant).orElseThrow();
+    }
+
+    @Test
+    void ensureSearchIsEmptyUntilLoaded() {
+        final BookSearchIndex notLoaded = new BookSearchIndex(bookRepository, mock(PlatformTransactionManager.class), true, 10);
+
+        assertEquals(Optional.empty(), notLoaded.search("maias", null, null, true, false));
+    }
+
+    @Test
+    void ensureWordsAreAccentFoldedAndLowerCased() {
+        assertEquals(List.of("eca", "de", "queiros"), BookSearchIndex.words("Eça de Queirós"));
+        assertEquals(List.of("saint", "exupery"), BookSearchIndex.words(" Saint-Exupéry"));
+        assertEquals(List.of(), BookSearchIndex.words(null));
+    }
+
+    @Test
+    void ensureWholeWordsRankBeforePrefixesAndSubstrings() {
+        // "principe" is a whole word of 4, a prefix of "principezinho", and a substring of no other title
+        assertEquals(List.of("4", "1"), search("PRINCIPE", null, null, true, false));
+        assertEquals(List.of("3"), search("aia", null, null, true, false));
+        assertEquals(List.of("3"), search("os", null, null, true, false));
+        assertEquals(List.of("2", "4"), search(null, null, "miguel", true, false));
+    }
+
+    @Test
+    void ensureEveryWordOfAFieldMustMatch() {
+        assertEquals(List.of("2"), search("mundo criação", null, null, true, false));
+        assertEquals(List.of(), search("mundo maias", null, null, true, false));
+    }
+
+    @Test
+    void ensureFieldsAreJoinedWithAndOrOr() {
+        assertEquals(List.of("4"), search("real", "romance", "miguel", true, false));
+        assertEquals(List.of("2", "3", "4"), search(null, "romance", null, true, false));
+        // matches of the title weigh more than matches of the genre
+        assertEquals(List.of("3", "4", "2"), search("maias", "roman", "principe", false, false));
+        // without criteria, every book matches all of them, by title
+        assertEquals(List.of("2", "1", "3", "4"), search(null, null, null, true, false));
+        assertEquals(List.of(), search(null, null, null, false, false));
+    }
+
+    @Test
+    void ensureHitsAreCountedPerGenreAndAuthor() {
+        final BookSearchHits hits = index.search(new SearchBooksQuery(), new Page()).orElseThrow();
+
+        assertEquals(List.of("2", "1", "3", "4"), hits.getIsbns());
+        assertEquals(4, hits.getTotal());
+        assertEquals(List.of("Romance", "Infantil"), List.copyOf(hits.getGenres().keySet()));
+        assertEquals(Map.of("Romance", 3L, "Infantil", 1L), hits.getGenres());
+        assertEquals(2L, hits.getAuthors().get("Miguel Torga") + hits.getAuthors().get("Miguel Real"));
+    }
+
+    @Test
+    void ensureFacetValuesAreJoinedWithOrUnlessAndIsAsked() {
+        final SearchBooksQuery query = new SearchBooksQuery(null, null, null, false,
+                List.of("Romance"), List.of("Miguel Torga", "Miguel Real"), null);
+        final BookSearchHits any = index.search(query, new Page()).orElseThrow();
+        assertEquals(List.of("2", "4"), any.getIsbns());
+        assertEquals(Map.of("Romance", 2L), any.getGenres());
+
+        query.setFacetOperator(SearchBooksQuery.FacetOperator.AND);
+        assertEquals(List.of(), index.search(query, new Page()).orElseThrow().getIsbns());
+        query.setAuthors(List.of("Ana Príncipe", "Miguel Real"));
+        assertEquals(List.of("4"), index.search(query, new Page()).orElseThrow().getIsbns());
+        query.setGenres(List.of("Romance", "Infantil"));
+        assertEquals(List.of(), index.search(query, new Page()).orElseThrow().getIsbns());
+    }
+
+    @Test
+    void ensureOnlyHitsAreCountedWhenWordsAreSearched() {
+        final SearchBooksQuery query = new SearchBooksQuery(null, null, "miguel", false,
+                List.of("Romance"), null, null);
+        final BookSearchHits hits = index.search(query, new Page()).orElseThrow();
+
+        assertEquals(List.of("2", "4"), hits.getIsbns());
+        assertEquals(Map.of("Romance", 2L), hits.getGenres());
+        assertEquals(Map.of("Miguel Torga", 1L, "Miguel Real", 1L, "Ana Príncipe", 1L), hits.getAuthors());
+    }
+
+    @Test
+    void ensurePagesFollowTheRanking() {
+        // ranked: 3 (title), 4 (title and genre), 2 (genre)
+        final BookSearchHits first = index.search("maias", "roman", "principe", false, new Page(1, 2)).orElseThrow();
+        assertEquals(List.of("3", "4"), first.getIsbns());
+        assertEquals(3, first.getTotal());
+
+        assertEquals(List.of("2"),
+                index.search("maias", "roman", "principe", false, new Page(2, 2)).orElseThrow().getIsbns());
+        final BookSearchHits next = index.search("maias", "roman", "principe", false,
+                new Page(1, 2, first.getNextCursor())).orElseThrow();
+        assertEquals(List.of("2"), next.getIsbns());
+        assertNull(next.getNextCursor());
+        assertEquals(List.of(), index.search("maias", "roman", "principe", false, new Page(3, 2)).orElseThrow().getIsbns());
+    }
+
+    @Test
+    void ensureCursorsOutliveTheirBook() {
+        final SearchBooksQuery query = new SearchBooksQuery(null, "romance", null, false, null, null, null);
+        final String cursor = index.search(query, new Page(1, 1)).orElseThrow().getNextCursor();
+        when(bookRepository.listSearchFieldsByIsbnIn(List.of("2"))).thenReturn(List.of());
+        index.onBookChanged(new BookChangedEvent("2"));
+
+        assertEquals(List.of("3", "4"), index.search(query, new Page(1, 10, cursor)).orElseThrow().getIsbns());
+        assertThrows(IllegalArgumentException.class,
+                () -> index.search(query, new Page(1, 10, Cursor.encode("Os Maias", "3"))));
+    }
+
+    @Test
+    void ensureTyposOnlyMatchWhenTolerated() {
+        assertEquals(List.of(), search("pricipezinho", null, null, true, false));
+        assertEquals(List.of("1"), search("pricipezinho", null, null, true, true));
+        assertEquals(List.of("3"), search(null, null, "qeiros", true, true));
+        // too far from any word
+        assertEquals(List.of(), search("mondial", null, null, true, true));
+    }
+
+    @Test
+    void ensureChangedBooksAreReindexed() {
+        when(bookRepository.listSearchFieldsByIsbnIn(List.of("3"))).thenReturn(List.of(
+                new BookSearchFieldsDTO("3", "A Cidade e as Serras", "Romance", "Eça de Queirós")));
+        when(bookRepository.listSearchFieldsByIsbnIn(List.of("2"))).thenReturn(List.of());
+
+        index.onBookChanged(new BookChangedEvent("3"));
+        index.onBookChanged(new BookChangedEvent("2"));
+
+        assertEquals(List.of(), search("maias", null, null, true, false));
+        assertEquals(List.of("3"), search("serras", null, null, true, false));
+        assertEquals(List.of("4"), search(null, null, "miguel", true, false));
+    }
+}
@@ -0,0 +1,112 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSuggestionsTest {
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final LendingRepository lendingRepository = mock(LendingRepository.class);
+    private final LocalDate today = LocalDate.now();
+    private BookSuggestions suggestions;
+
+    private LendingFactDTO lending(final String lendingNumber, final String isbn, final String readerNumber,
+                                   final LocalDate startDate) {
+        return new LendingFactDTO(lendingNumber, isbn, readerNumber, startDate);
+    }
+
+    @BeforeEach
+    void setUp() {
+        suggestions = new BookSuggestions(bookRepository, lendingRepository, mock(PlatformTransactionManager.class), 30);
+        when(bookRepository.listGenresAndAuthors()).thenReturn(List.of(
+                new BookGenreAuthorDTO("1", "Fantasia", "J. R. R. Tolkien"),
+                new BookGenreAuthorDTO("2", "Fantasia", "J. R. R. Tolkien"),
+                new BookGenreAuthorDTO("3", "Fantasia", null),
+                new BookGenreAuthorDTO("4", "Romance", "Eça de Queirós"),
+                new BookGenreAuthorDTO("4", "Romance", "Miguel Torga")));
+        when(lendingRepository.streamLendingFacts()).thenReturn(Stream.of(
+                lending("2024/1", "3", "2024/1", today),
+                lending("2024/2", "3", "2024/2", today.minusDays(1)),
+                lending("2024/3", "2", "2024/2", today.minusDays(5)),
+                // out of the popularity window, but still lent by the reader
+                lending("2024/4", "1", "2024/1", today.minusDays(30)),
+                lending("2024/5", "1", "2024/2", today.minusYears(1))));
+        suggestions.reload();
+    }
+
+    private List<String> suggest(final String readerNumber, final int limitPerGenre, final String... genres) {
+        return suggestions.suggest(readerNumber, List.of(genres), limitPerGenre).orElseThrow();
+    }
+
+    @Test
+    void ensureSuggestionsAreEmptyUntilLoaded() {
+        final BookSuggestions notLoaded = new BookSuggestions(bookRepository, lendingRepository,
+                mock(PlatformTransactionManager.class), 30);
+
+        assertEquals(Optional.empty(), notLoaded.suggest("2024/1", List.of("Fantasia"), 2));
+    }
+
+    @Test
+    void ensureRecentlyMostLentBooksComeFirstGenreByGenre() {
+        assertEquals(List.of("3", "2", "4"), suggest("2024/3", 2, "Fantasia", "Romance", "Terror"));
+        assertEquals(List.of("4", "3"), suggest("2024/3", 1, "Romance", "Fantasia"));
+    }
+
+    @Test
+    void ensureBooksLentByTheReaderAreSkipped() {
+        assertEquals(List.of("2"), suggest("2024/1", 2, "Fantasia"));
+        assertEquals(List.of(), suggest("2024/2", 2, "Fantasia"));
+    }
+
+    @Test
+    void ensureLendingsReceivedDuringReloadAreCountedOnce() {
+        when(lendingRepository.streamLendingFacts()).thenAnswer(invocation -> {
+            // read by the reload, and received meanwhile
+            suggestions.onLendingCreated(new LendingCreatedEvent("2024/3", "2", "2024/2", today.minusDays(5), today));
+            suggestions.onLendingCreated(new LendingCreatedEvent("2024/6", "2", "2024/3", today, today.plusDays(14)));
+            return Stream.of(
+                    lending("2024/1", "3", "2024/1", today),
+                    lending("2024/2", "3", "2024/2", today.minusDays(1)),
+                    lending("2024/3", "2", "2024/2", today.minusDays(5)));
+        });
+
+        suggestions.reload();
+
+        // books 2 and 3 are lent twice each, ties broken by isbn
+        assertEquals(List.of("2", "3"), suggest("2024/4", 2, "Fantasia"));
+        // a third lending puts book 3 first, which it would not if the lending read by the reload was counted again
+        suggestions.onLendingCreated(new LendingCreatedEvent("2024/7", "3", "2024/3", today, today.plusDays(14)));
+        assertEquals(List.of("3", "2"), suggest("2024/4", 2, "Fantasia"));
+    }
+
+    @Test
+    void ensureLendingsAndBookChangesAreAppliedIncrementally() {
+        suggestions.onLendingCreated(new LendingCreatedEvent("2024/6", "1", "2024/3", today, today.plusDays(14)));
+        suggestions.onLendingCreated(new LendingCreatedEvent("2024/7", "1", "2024/3", today, today.plusDays(14)));
+        assertEquals(List.of("3", "2"), suggest("2024/3", 2, "Fantasia"));
+        assertEquals(List.of("1", "3"), suggest("2024/4", 2, "Fantasia"));
+
+        when(bookRepository.listGenresAndAuthorsByIsbnIn(List.of("1")))
+                .thenReturn(List.of(new BookGenreAuthorDTO("1", "Romance", "J. R. R. Tolkien")));
+        suggestions.onBookChanged(new BookChangedEvent("1"));
+        assertEquals(List.of("3", "2"), suggest("2024/4", 2, "Fantasia"));
+        assertEquals(List.of("1", "4"), suggest("2024/4", 2, "Romance"));
+
+        when(bookRepository.listGenresAndAuthorsByIsbnIn(List.of("1"))).thenReturn(List.of());
+        suggestions.onBookChanged(new BookChangedEvent("1"));
+        assertEquals(List.of("4"), suggest("2024/4", 2, "Romance"));
+    }
+}
@@ -0,0 +1,145 @@
+package pt.psoft.g1.psoftg1.bookmanagement.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.authormanagement.services.AuthorChangedEvent;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingFactDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogAutocompleteTest {
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final AuthorRepository authorRepository = mock(AuthorRepository.class);
+    private final LendingRepository lendingRepository = mock(LendingRepository.class);
+    private CatalogAutocomplete autocomplete;
+
+    private static Author author(final long authorNumber, final String name) {
+        final Author author = mock(Author.class);
+        when(author.getAuthorNumber()).thenReturn(authorNumber);
+        when(author.getName()).thenReturn(name);
+        return author;
+    }
+
+    private static LendingCreatedEvent lending(final String lendingNumber, final String isbn) {
+        return new LendingCreatedEvent(lendingNumber, isbn, "2024/1", LocalDate.now(), LocalDate.now().plusDays(15));
+    }
+
+    /**
+     * @return {@code count} lendings of a book, numbered from {@code first}
+     */
+    private static Stream<LendingFactDTO> lendings(final String isbn, final int first, final int count) {
+        return IntStream.range(first, first + count)
+                .mapToObj(i -> new LendingFactDTO("2024/" + i, isbn, "2024/1", LocalDate.now()));
+    }
+
+    @BeforeEach
+    void setUp() {
+        autocomplete = new CatalogAutocomplete(bookRepository, authorRepository, lendingRepository,
+                mock(PlatformTransactionManager.class), 10);
+        final List<Author> authors = List.of(author(1, "J. R. R. Tolkien"), author(2, "Leo Tolstoy"));
+        when(authorRepository.findAll()).thenReturn(authors);
+        when(bookRepository.listTitles()).thenReturn(List.of(
+                new BookTitleDTO("1", "The Hobbit"),
+                new BookTitleDTO("2", "The Lord of the Rings"),
+                new BookTitleDTO("3", "War and Peace"),
+                new BookTitleDTO("4", "Told Tales")));
+        when(lendingRepository.streamLendingFacts()).thenAnswer(invocation -> Stream.of(
+                lendings("1", 100, 5), lendings("2", 200, 7), lendings("3", 300, 3), lendings("4", 400, 20))
+                .flatMap(s -> s));
+        when(bookRepository.listAuthorNumbers()).thenReturn(List.of(
+                new BookAuthorNumberDTO("1", 1L),
+                new BookAuthorNumberDTO("2", 1L),
+                new BookAuthorNumberDTO("3", 2L)));
+        autocomplete.reload();
+    }
+
+    private List<String> complete(final String prefix, final int limit) {
+        return autocomplete.complete(prefix, limit).orElseThrow().stream()
+                .map(s -> s.getText() + " " + s.getLendingCount())
+                .toList();
+    }
+
+    @Test
+    void ensureCompletionIsEmptyUntilLoaded() {
+        final CatalogAutocomplete notLoaded = new CatalogAutocomplete(bookRepository, authorRepository,
+                lendingRepository, mock(PlatformTransactionManager.class), 10);
+
+        assertEquals(Optional.empty(), notLoaded.complete("tol", 10));
+    }
+
+    @Test
+    void ensureKeysStartAtEveryWord() {
+        assertEquals(List.of("j r r tolkien", "r r tolkien", "r tolkien", "tolkien"),
+                CatalogAutocomplete.keysOf("J. R. R. Tolkien"));
+    }
+
+    @Test
+    void ensureSuggestionsAreTheMostLentFirst() {
+        // authors are weighted by the lendings of all their books
+        assertEquals(List.of("Told Tales 20", "J. R. R. Tolkien 12", "Leo Tolstoy 3"), complete("tol", 10));
+        assertEquals(List.of("Told Tales 20", "J. R. R. Tolkien 12"), complete("Tol", 2));
+        // a title holding the prefix at two word starts is suggested once
+        assertEquals(List.of("The Lord of the Rings 7", "The Hobbit 5"), complete("the", 10));
+        assertEquals(List.of("The Lord of the Rings 7"), complete("RINGS", 10));
+        assertEquals(List.of("J. R. R. Tolkien 12"), complete("  Tólkien", 10));
+        assertEquals(List.of(), complete("tolx", 10));
+        assertEquals(List.of(), complete("", 10));
+    }
+
+    @Test
+    void ensureLendingsReorderSuggestions() {
+        for (int i = 0; i < 10; i++)
+            autocomplete.onLendingCreated(lending("2024/" + i, "3"));
+
+        assertEquals(List.of("Told Tales 20", "Leo Tolstoy 13", "J. R. R. Tolkien 12"), complete("tol", 10));
+        assertEquals(List.of("War and Peace 13"), complete("peace", 10));
+    }
+
+    @Test
+    void ensureLendingsReceivedDuringReloadAreCountedOnce() {
+        when(lendingRepository.streamLendingFacts()).thenAnswer(invocation -> {
+            // read by the reload, and received meanwhile
+            autocomplete.onLendingCreated(lending("2024/300", "3"));
+            // committed after the read
+            autocomplete.onLendingCreated(lending("2024/1000", "3"));
+            return lendings("3", 300, 3);
+        });
+
+        autocomplete.reload();
+
+        assertEquals(List.of("War and Peace 4"), complete("peace", 10));
+    }
+
+    @Test
+    void ensureChangedBooksAndAuthorsAreRefreshed() {
+        when(bookRepository.listTitlesAndLendingCountsByIsbnIn(List.of("4")))
+                .thenReturn(List.of(new BookTitleLendingsDTO("4", "Untold Tales", 20L)));
+        when(bookRepository.listTitlesAndLendingCountsByIsbnIn(List.of("2"))).thenReturn(List.of());
+        final Author renamed = author(2, "Lev Tolstoi");
+        when(authorRepository.findByAuthorNumber(2L)).thenReturn(Optional.of(renamed));
+
+        autocomplete.onBookChanged(new BookChangedEvent("4"));
+        autocomplete.onBookChanged(new BookChangedEvent("2"));
+        autocomplete.onAuthorChanged(new AuthorChangedEvent(2L));
+
+        // the lendings of a removed book no longer count for its authors
+        assertEquals(List.of("J. R. R. Tolkien 5", "Lev Tolstoi 3"), complete("tol", 10));
+        assertEquals(List.of("Untold Tales 20"), complete("unt", 10));
+        assertEquals(List.of("The Hobbit 5"), complete("the", 10));
+        assertEquals(List.of(), complete("leo", 10));
+    }
+}
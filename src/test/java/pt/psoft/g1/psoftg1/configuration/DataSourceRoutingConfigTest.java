@@ -0,0 +1,200 @@
+package pt.psoft.g1.psoftg1.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.jdbc.DataSourcePoolMetricsAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.shared.services.ReplicaRead;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between two local H2 databases, each knowing which one it is.
+ * <p>
+ * The JPA test goes through {@code JpaTransactionManager}, like the application: repository finders and the
+ * read-only transactions that event listeners open after a commit must use the primary.
+ */
+class DataSourceRoutingConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class,
+                    MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class,
+                    CompositeMeterRegistryAutoConfiguration.class, DataSourcePoolMetricsAutoConfiguration.class))
+            .withUserConfiguration(DataSourceRoutingConfig.class)
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+                    "spring.datasource.hikari.maximum-pool-size=4",
+                    "datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+                    "datasource.replica.hikari.maximum-pool-size=2");
+
+    private static String whoAmI(final DataSource dataSource, final boolean readOnly) {
+        final TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(s -> new JdbcTemplate(dataSource).queryForObject("SELECT NAME FROM WHO_AM_I", String.class));
+    }
+
+    private static void name(final DataSource dataSource, final String name) {
+        final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS WHO_AM_I (NAME VARCHAR(10))");
+        jdbc.update("DELETE FROM WHO_AM_I");
+        jdbc.update("INSERT INTO WHO_AM_I VALUES (?)", name);
+    }
+
+    @Test
+    void testOnlyReadOnlyTransactionsAllowedToUseTheReplicaUseIt() {
+        contextRunner.run(context -> {
+            name(context.getBean("primaryDataSource", DataSource.class), "primary");
+            name(context.getBean("replicaDataSource", DataSource.class), "replica");
+            final DataSource dataSource = context.getBean(DataSource.class);
+
+            assertEquals("replica", ReadWriteRoutingDataSource.allowingReplica(() -> whoAmI(dataSource, true)));
+            assertEquals("primary", ReadWriteRoutingDataSource.allowingReplica(() -> whoAmI(dataSource, false)));
+            assertEquals("primary", whoAmI(dataSource, true));
+            assertEquals("primary", whoAmI(dataSource, false));
+            // outside of a transaction
+            assertEquals("primary", new JdbcTemplate(dataSource).queryForObject("SELECT NAME FROM WHO_AM_I", String.class));
+        });
+    }
+
+    @Test
+    void testOnlyReplicaReadMethodsUseTheReplicaThroughJpa() {
+        contextRunner
+                .withConfiguration(AutoConfigurations.of(HibernateJpaAutoConfiguration.class,
+                        TransactionAutoConfiguration.class, AopAutoConfiguration.class))
+                .withUserConfiguration(JpaConfig.class)
+                .withPropertyValues("spring.jpa.hibernate.ddl-auto=none")
+                .run(context -> {
+                    name(context.getBean("primaryDataSource", DataSource.class), "primary");
+                    name(context.getBean("replicaDataSource", DataSource.class), "replica");
+                    final WhoAmIRepository repository = context.getBean(WhoAmIRepository.class);
+                    final WhoAmIService service = context.getBean(WhoAmIService.class);
+
+                    assertEquals("replica", service.whoAmIOnReplica());
+                    // repository finders run in read-only transactions of their own
+                    assertEquals("primary", repository.findAll().get(0).getName());
+                    assertEquals("primary", service.whoAmI());
+                    // listeners read back what was just committed
+                    service.publishWrite();
+                    assertEquals("primary", context.getBean(WhoAmIListener.class).getName());
+                });
+    }
+
+    @Test
+    void testEachRouteHasItsOwnPoolAndMetrics() {
+        contextRunner.run(context -> {
+            name(context.getBean("primaryDataSource", DataSource.class), "primary");
+            name(context.getBean("replicaDataSource", DataSource.class), "replica");
+
+            final MeterRegistry registry = context.getBean(MeterRegistry.class);
+            assertEquals(4, registry.get("hikaricp.connections.max").tag("pool", "primary").gauge().value());
+            assertEquals(2, registry.get("hikaricp.connections.max").tag("pool", "replica").gauge().value());
+        });
+    }
+
+    @Test
+    void testRoutingIsDisabledWithoutReplica() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(DataSourceRoutingConfig.class)
+                .run(context -> assertThat(context).doesNotHaveBean("replicaDataSource"));
+    }
+
+    @Entity
+    @Table(name = "WHO_AM_I")
+    @Getter
+    static class WhoAmI {
+        @Id
+        private String name;
+    }
+
+    interface WhoAmIRepository extends JpaRepository<WhoAmI, String> {
+    }
+
+    record Written() {
+    }
+
+    @RequiredArgsConstructor
+    static class WhoAmIService {
+        private final WhoAmIRepository repository;
+        private final ApplicationEventPublisher eventPublisher;
+
+        @ReplicaRead
+        @Transactional(readOnly = true)
+        public String whoAmIOnReplica() {
+            return repository.findAll().get(0).getName();
+        }
+
+        @Transactional(readOnly = true)
+        public String whoAmI() {
+            return repository.findAll().get(0).getName();
+        }
+
+        @Transactional
+        public void publishWrite() {
+            eventPublisher.publishEvent(new Written());
+        }
+    }
+
+    @Getter
+    static class WhoAmIListener {
+        private final WhoAmIRepository repository;
+        private final TransactionTemplate readTransaction;
+        private String name;
+
+        WhoAmIListener(final WhoAmIRepository repository, final PlatformTransactionManager transactionManager) {
+            this.repository = repository;
+            // like the listeners of the in-memory indexes
+            this.readTransaction = new TransactionTemplate(transactionManager);
+            this.readTransaction.setReadOnly(true);
+            this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        @TransactionalEventListener
+        public void onWritten(final Written event) {
+            name = readTransaction.execute(status -> repository.findAll().get(0).getName());
+        }
+    }
+
+    @Configuration
+    @EntityScan(basePackageClasses = DataSourceRoutingConfigTest.class)
+    @EnableJpaRepositories(basePackageClasses = DataSourceRoutingConfigTest.class, considerNestedRepositories = true)
+    static class JpaConfig {
+        @Bean
+        WhoAmIService whoAmIService(final WhoAmIRepository repository, final ApplicationEventPublisher eventPublisher) {
+            return new WhoAmIService(repository, eventPublisher);
+        }
+
+        @Bean
+        WhoAmIListener whoAmIListener(final WhoAmIRepository repository, final PlatformTransactionManager transactionManager) {
+            return new WhoAmIListener(repository, transactionManager);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.OverdueIndex;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.testutils.QueryCountGuard;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.model.Role;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the number of SQL statements of the lending read endpoints, so each page of lendings is read in a
+ * single query instead of one (or more) per lending.
+ * <p>The overdue index is reconciled with the lendings of the test transaction, which are rolled back but stay
+ * indexed, so the context is discarded afterwards.
+ */
+@Transactional
+@SpringBootTest
+@DirtiesContext
+@AutoConfigureMockMvc
+@WithMockUser(roles = Role.LIBRARIAN)
+class LendingControllerQueryCountTest {
+    private static final List<String> ISBNS = List.of("9780306406157", "9780140449136", "9780262033848",
+            "9780131103627", "9780596520687");
+    private static final int LENDINGS_PER_BOOK = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private QueryCountGuard queryCountGuard;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private OverdueIndex overdueIndex;
+    @Autowired
+    private LendingRepository lendingRepository;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @BeforeEach
+    void setUp() {
+        final Author author = authorRepository.save(new Author("Manuel Antonio Pina",
+                "Manuel António Pina foi um jornalista e escritor português, premiado em 2011 com o Prémio Camões",
+                null));
+        final List<Book> books = new ArrayList<>();
+        for (String isbn : ISBNS) {
+            final Genre genre = genreRepository.save(new Genre("Género " + isbn));
+            books.add(bookRepository.save(new Book(isbn, "Livro " + isbn, "Descrição", genre, List.of(author), null)));
+        }
+        final List<ReaderDetails> readers = new ArrayList<>();
+        for (int i = 0; i < LENDINGS_PER_BOOK; i++) {
+            final Reader reader = userRepository.save(Reader.newReader("leitor" + i + "@gmail.com", "Manuelino123!", "Leitor Numero"));
+            readers.add(readerRepository.save(new ReaderDetails(900 + i, reader, "2000-01-01", "919191919",
+                    true, true, true, null, null)));
+        }
+        int seq = 1;
+        for (Book book : books) {
+            for (ReaderDetails reader : readers) {
+                lendingRepository.save(Lending.newBootstrappingLending(book, reader, 2020, seq++,
+                        LocalDate.of(2020, 1, 1), null, 15, 300));
+            }
+        }
+        entityManager.flush();
+        overdueIndex.reconcile();
+        // start from an empty persistence context, as a new request would
+        entityManager.clear();
+    }
+
+    @Test
+    void searchLendingsReadsAPageInOneQuery() throws Exception {
+        queryCountGuard.assertMaxStatements(1, () -> mockMvc.perform(post("/api/lendings/search")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"page\":{\"number\":1,\"limit\":100},\"query\":{\"startDate\":\"2020-01-01\",\"endDate\":\"2020-01-01\"}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(ISBNS.size() * LENDINGS_PER_BOOK)));
+    }
+
+    @Test
+    void getOverdueReadsAPageInOneQuery() throws Exception {
+        queryCountGuard.assertMaxStatements(1, () -> mockMvc.perform(get("/api/lendings/overdue")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"number\":1,\"limit\":100}"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void getAverageMonthlyPerReaderReadsThePageFromQueryParameters() throws Exception {
+        // one month of the 4 readers, 2 at a time
+        mockMvc.perform(get("/api/lendings/averageMonthlyPerReader")
+                        .param("startDate", "2020-01-01")
+                        .param("endDate", "2020-01-31")
+                        .param("number", "1")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].durationAverages.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").exists());
+    }
+}
@@ -0,0 +1,75 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.api;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LendingExportWriterTest {
+    private static Lending returnedLending;
+    private static Lending outstandingLending;
+
+    @BeforeAll
+    static void setup() {
+        final Author author = new Author("Manuel Antonio Pina",
+                "Manuel António Pina foi um jornalista e escritor português, premiado em 2011 com o Prémio Camões",
+                null);
+        final Book book = new Book("9782826012092", "O Inspetor Max, \"o cão\"", "Descrição", new Genre("Romance"),
+                List.of(author), null);
+        final ReaderDetails readerDetails = new ReaderDetails(1,
+                Reader.newReader("manuel@gmail.com", "Manuelino123!", "Manuel Sarapinto das Coives"),
+                "2000-01-01", "919191919", true, true, true, null, null);
+        returnedLending = Lending.newBootstrappingLending(book, readerDetails, 2024, 1,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 20), 15, 200);
+        outstandingLending = Lending.newBootstrappingLending(book, readerDetails, 2024, 2,
+                LocalDate.now(), null, 15, 200);
+    }
+
+    @Test
+    void ensureCsvHasHeaderAndEscapedValues() throws IOException {
+        final String csv = export("csv");
+        final String[] lines = csv.split("\r\n");
+
+        assertEquals(3, lines.length);
+        assertEquals(String.join(",", LendingExportWriter.COLUMNS), lines[0]);
+        assertEquals("2024/1,9782826012092,\"O Inspetor Max, \"\"o cão\"\"\"," + LocalDate.now().getYear()
+                + "/1,2024-01-01,2024-01-16,2024-01-20,4,800", lines[1]);
+        assertTrue(lines[2].endsWith(",0,"));
+    }
+
+    @Test
+    void ensureNdjsonHasOneObjectPerLine() throws IOException {
+        final String[] lines = export("ndjson").split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"lendingNumber\":\"2024/1\",\"isbn\":\"9782826012092\""));
+        assertTrue(lines[0].endsWith("\"daysDelayed\":4,\"fineValueInCents\":800}"));
+        assertTrue(lines[1].contains("\"returnedDate\":null"));
+    }
+
+    @Test
+    void ensureUnknownFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LendingExportWriter.of("xml", new ByteArrayOutputStream()));
+    }
+
+    private static String export(final String format) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LendingExportWriter writer = LendingExportWriter.of(format, out);
+        writer.write(returnedLending);
+        writer.write(outstandingLending);
+        writer.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
+import pt.psoft.g1.psoftg1.shared.services.Page;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares offset and cursor (keyset) pagination of {@code searchLendings} on a large generated dataset.
+ * <p>
+ * The same queries are also timed through plain JDBC. Note that the embedded H2 database can skip rows of an
+ * index in logarithmic time, so the cost of deep offsets mostly shows on server databases, which walk every
+ * skipped row.
+ * <p>
+ * Not part of the regular test run; run it with {@code mvn test -Dtest=LendingPaginationBenchmark}.
+ */
+@Transactional
+@SpringBootTest
+class LendingPaginationBenchmark {
+    private static final int LENDINGS = 100_000;
+    private static final int PAGE_SIZE = 10;
+    private static final int DEEP_PAGE = LENDINGS / PAGE_SIZE;
+    private static final int RUNS = 15;
+
+    @Autowired
+    private LendingRepository lendingRepository;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        Author author = authorRepository.save(new Author("Manuel Antonio Pina",
+                "Manuel António Pina foi um jornalista e escritor português, premiado em 2011 com o Prémio Camões",
+                null));
+        Genre genre = genreRepository.save(new Genre("Género"));
+        Book book = bookRepository.save(new Book("9782826012092",
+                "O Inspetor Max",
+                "conhecido pastor-alemão que trabalha para a Judiciária",
+                genre,
+                List.of(author),
+                null));
+        Reader reader = userRepository.save(Reader.newReader("manuel@gmail.com", "Manuelino123!", "Manuel Sarapinto das Coives"));
+        ReaderDetails readerDetails = readerRepository.save(new ReaderDetails(1,
+                reader,
+                "2000-01-01",
+                "919191919",
+                true,
+                true,
+                true,
+                null, null));
+
+        // rows are inserted through JDBC, which does not see pending JPA changes
+        entityManager.flush();
+        final Long bookPk = jdbcTemplate.queryForObject("SELECT PK FROM BOOK WHERE ISBN = ?", Long.class, book.getIsbn());
+        final Long readerPk = jdbcTemplate.queryForObject("SELECT PK FROM READER_DETAILS WHERE READER_NUMBER = ?",
+                Long.class, readerDetails.getReaderNumber());
+
+        final LocalDate start = LocalDate.of(2000, 1, 1);
+        final List<Object[]> rows = new ArrayList<>(LENDINGS);
+        for (int i = 1; i <= LENDINGS; i++) {
+            rows.add(new Object[]{10_000_000L + i,
+                    String.format("2000/%06d", i),
+                    bookPk,
+                    readerPk,
+                    Date.valueOf(start),
+                    Date.valueOf(start.plusDays(15)),
+                    Date.valueOf(start.plusDays(10)),
+                    200});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO LENDING (PK, LENDING_NUMBER, BOOK_PK, READER_DETAILS_PK, START_DATE, " +
+                "LIMIT_DATE, RETURNED_DATE, FINE_VALUE_PER_DAY_IN_CENTS, VERSION) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)", rows);
+    }
+
+    @Test
+    void compareFirstAndDeepPage() {
+        final List<Lending> beforeDeepPage = search(new Page(DEEP_PAGE - 1, PAGE_SIZE));
+        final String cursor = Cursor.next(beforeDeepPage, new Page(DEEP_PAGE - 1, PAGE_SIZE),
+                l -> new Object[]{l.getLendingNumber()});
+
+        final long firstPage = median(() -> search(new Page(1, PAGE_SIZE)));
+        final long deepOffsetPage = median(() -> search(new Page(DEEP_PAGE, PAGE_SIZE)));
+        final long deepCursorPage = median(() -> search(new Page(1, PAGE_SIZE, cursor)));
+
+        // same queries through plain JDBC, i.e. without the ORM overhead, which is the same for every page
+        final String lastLendingNumber = beforeDeepPage.get(PAGE_SIZE - 1).getLendingNumber();
+        final long deepOffsetPageJdbc = median(() -> jdbcTemplate.queryForList(
+                "SELECT LENDING_NUMBER FROM LENDING ORDER BY LENDING_NUMBER OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                String.class, (DEEP_PAGE - 1) * PAGE_SIZE, PAGE_SIZE));
+        final long deepCursorPageJdbc = median(() -> jdbcTemplate.queryForList(
+                "SELECT LENDING_NUMBER FROM LENDING WHERE LENDING_NUMBER > ? ORDER BY LENDING_NUMBER FETCH NEXT ? ROWS ONLY",
+                String.class, lastLendingNumber, PAGE_SIZE));
+
+        assertThat(search(new Page(1, PAGE_SIZE, cursor)))
+                .extracting(Lending::getLendingNumber)
+                .containsExactlyElementsOf(search(new Page(DEEP_PAGE, PAGE_SIZE)).stream().map(Lending::getLendingNumber).toList());
+
+        System.out.printf("searchLendings over %d lendings, %d per page (median of %d runs):%n", LENDINGS, PAGE_SIZE, RUNS);
+        System.out.printf("  page 1                : %8.2f ms%n", firstPage / 1e6);
+        System.out.printf("  page %d (offset)   : %8.2f ms%n", DEEP_PAGE, deepOffsetPage / 1e6);
+        System.out.printf("  page %d (cursor)   : %8.2f ms%n", DEEP_PAGE, deepCursorPage / 1e6);
+        System.out.printf("  page %d (offset, JDBC) : %8.2f ms%n", DEEP_PAGE, deepOffsetPageJdbc / 1e6);
+        System.out.printf("  page %d (cursor, JDBC) : %8.2f ms%n", DEEP_PAGE, deepCursorPageJdbc / 1e6);
+    }
+
+    private List<Lending> search(final Page page) {
+        return lendingRepository.searchLendings(page, null, null, null, null, null);
+    }
+
+    private long median(final Supplier<List<?>> search) {
+        final long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            final long start = System.nanoTime();
+            assertThat(search.get()).hasSize(PAGE_SIZE);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
@@ -1,5 +1,6 @@
 package pt.psoft.g1.psoftg1.lendingmanagement.repositories;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,12 +16,12 @@ import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
-import pt.psoft.g1.psoftg1.shared.services.Page;
 import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
 import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,6 +44,8 @@ public class LendingRepositoryIntegrationTest {
     private GenreRepository genreRepository;
     @Autowired
     private AuthorRepository authorRepository;
+    @Autowired
+    private EntityManager entityManager;
 
     private Lending lending;
     private ReaderDetails readerDetails;
@@ -195,39 +198,6 @@ public class LendingRepositoryIntegrationTest {
 
     }
 
-    @Test
-    public void testGetOverdue() {
-        var returnedLateLending = lendingRepository.save(Lending.newBootstrappingLending(book,
-                readerDetails,
-                2024,
-                998,
-                LocalDate.of(2024, 1,1),
-                LocalDate.of(2024, 2,1),
-                15,
-                300));
-        var notReturnedLending = lendingRepository.save(Lending.newBootstrappingLending(book,
-                readerDetails,
-                2024,
-                997,
-                LocalDate.of(2024, 3,1),
-                null,
-                15,
-                300));
-        var notReturnedAndNotOverdueLending = lendingRepository.save(Lending.newBootstrappingLending(book,
-                readerDetails,
-                2024,
-                996,
-                LocalDate.of(LocalDate.now().getYear(), LocalDate.now().getMonth(),LocalDate.now().getDayOfMonth()),
-                null,
-                15,
-                300));
-        Page page = new Page(1, 10);
-        List<Lending> overdueLendings = lendingRepository.getOverdue(page);
-        assertThat(overdueLendings).doesNotContain(returnedLateLending);
-        assertThat(overdueLendings).contains(notReturnedLending);
-        assertThat(overdueLendings).doesNotContain(notReturnedAndNotOverdueLending);
-    }
-
     @Test
     public void testFindByLendingNumberNotFound() {
         Optional<Lending> found = lendingRepository.findByLendingNumber("9999/9999");
@@ -263,29 +233,66 @@ public class LendingRepositoryIntegrationTest {
     }
 
     @Test
-    public void testListOutstandingByReaderNumberEmpty() {
-        List<Lending> outstandingLendings = lendingRepository.listOutstandingByReaderNumber("9999/9999");
-        assertThat(outstandingLendings).isEmpty();
+    public void testGetOutstandingLendingsByReaderNumber() {
+        lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                2024,
+                998,
+                LocalDate.of(2024, 5,31),
+                null,
+                15,
+                300));
+        lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                2024,
+                999,
+                LocalDate.of(2024, 5,1),
+                null,
+                15,
+                300));
+        var outstanding = lendingRepository.getOutstandingLendingsByReaderNumber(readerDetails.getReaderNumber());
+        assertEquals(2L, outstanding.getOutstandingLendings());
+        assertEquals(LocalDate.of(2024, 5, 16), outstanding.getEarliestLimitDate());
+        assertTrue(outstanding.hasOverdue(LocalDate.of(2024, 5, 17)));
+        assertFalse(outstanding.hasOverdue(LocalDate.of(2024, 5, 16)));
     }
 
     @Test
-    public void testGetOverdueWithPagination() {
-        // Create multiple overdue lendings
-        for (int i = 0; i < 5; i++) {
+    public void testGetOutstandingLendingsByReaderNumberEmpty() {
+        var outstanding = lendingRepository.getOutstandingLendingsByReaderNumber("9999/9999");
+        assertEquals(0L, outstanding.getOutstandingLendings());
+        assertNull(outstanding.getEarliestLimitDate());
+        assertFalse(outstanding.hasOverdue(LocalDate.now()));
+    }
+
+    @Test
+    public void testExportLendings() {
+        for (int i = 0; i < 3; i++) {
             lendingRepository.save(Lending.newBootstrappingLending(book,
                     readerDetails,
-                    2023,
-                    200 + i,
-                    LocalDate.of(2023, 1, 1 + i),
+                    2022,
+                    300 + i,
+                    LocalDate.of(2022, 2, 1 + i),
                     null,
                     15,
                     300));
         }
-        
-        Page page = new Page(1, 3);
-        List<Lending> overdueLendings = lendingRepository.getOverdue(page);
-        assertThat(overdueLendings).isNotEmpty();
-        assertThat(overdueLendings.size()).isLessThanOrEqualTo(3);
+        entityManager.flush();
+
+        final List<Lending> exported = new ArrayList<>();
+        lendingRepository.exportLendings(null, book.getIsbn(), false,
+                LocalDate.of(2022, 1, 1), LocalDate.of(2022, 12, 31), exported::add);
+
+        assertThat(exported).extracting(Lending::getLendingNumber)
+                .containsExactly("2022/300", "2022/301", "2022/302");
+        // handed out one by one, and not kept in the persistence context
+        assertThat(exported).noneMatch(entityManager::contains);
+    }
+
+    @Test
+    public void testListOutstandingByReaderNumberEmpty() {
+        List<Lending> outstandingLendings = lendingRepository.listOutstandingByReaderNumber("9999/9999");
+        assertThat(outstandingLendings).isEmpty();
     }
 
     @Test
@@ -0,0 +1,120 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Fine;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The job commits every chunk in its own transaction, so this test commits its data and removes it afterwards.
+ */
+@SpringBootTest
+class FineAccrualJobTest {
+    private static final LocalDate OVERDUE_START = LocalDate.of(2019, 1, 1);
+
+    @Autowired
+    private FineAccrualJob fineAccrualJob;
+    @Autowired
+    private LendingService lendingService;
+    @Autowired
+    private FineRepository fineRepository;
+    @Autowired
+    private LendingRepository lendingRepository;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private LendingDurationAggregator lendingDurationAggregator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Author author;
+    private Genre genre;
+    private Book book;
+    private Reader reader;
+    private ReaderDetails readerDetails;
+
+    @BeforeEach
+    void setUp() {
+        author = authorRepository.save(new Author("Manuel Antonio Pina",
+                "Manuel António Pina foi um jornalista e escritor português, premiado em 2011 com o Prémio Camões",
+                null));
+        genre = genreRepository.save(new Genre("Multas"));
+        book = bookRepository.save(new Book("9781861978769", "O Inspetor Max", "Descrição", genre,
+                List.of(author), null));
+        reader = userRepository.save(Reader.newReader("multas@gmail.com", "Manuelino123!", "Leitor Multado"));
+        readerDetails = readerRepository.save(new ReaderDetails(950, reader, "2000-01-01",
+                "919191919", true, true, true, null, null));
+
+        // overdue
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 1, OVERDUE_START, null, 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 2, OVERDUE_START, null, 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 3, OVERDUE_START, null, 15, 300));
+        // returned, and not yet due
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 4, OVERDUE_START,
+                OVERDUE_START.plusDays(5), 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 5, LocalDate.now(), null, 15, 300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM FINE");
+        jdbcTemplate.update("DELETE FROM FINE_ACCRUAL_CHECKPOINT");
+        jdbcTemplate.update("DELETE FROM LENDING WHERE LENDING_NUMBER LIKE '2019/%'");
+        readerRepository.delete(readerDetails);
+        userRepository.delete(reader);
+        bookRepository.delete(book);
+        genreRepository.delete(genre);
+        authorRepository.delete(author);
+        lendingDurationAggregator.rebuild();
+    }
+
+    @Test
+    void testAccruesOverdueLendingsOncePerDay() {
+        final LocalDate today = LocalDate.now();
+        final int expected = 300 * (int) ChronoUnit.DAYS.between(OVERDUE_START.plusDays(15), today);
+
+        assertEquals(3, fineAccrualJob.accrueFines(today));
+        assertThat(fineRepository.findAllByLendingNumberIn(List.of("2019/1", "2019/2", "2019/3", "2019/4", "2019/5")))
+                .extracting(Fine::getCentsValue)
+                .containsExactly(expected, expected, expected);
+
+        // the run of the day is complete
+        assertEquals(0, fineAccrualJob.accrueFines(today));
+
+        // returning an accrued lending brings its fine up to date instead of creating another one
+        final Lending lending = lendingRepository.findByLendingNumber("2019/1").orElseThrow();
+        lendingService.setReturned("2019/1", new SetLendingReturnedRequest(null), lending.getVersion());
+        assertThat(fineRepository.findByLendingNumber("2019/1")).get().extracting(Fine::getCentsValue).isEqualTo(expected);
+    }
+}
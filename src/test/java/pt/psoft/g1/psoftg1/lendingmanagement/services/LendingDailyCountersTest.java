@@ -0,0 +1,103 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LendingDailyCountersTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final LendingRepository lendingRepository = mock(LendingRepository.class);
+    private LendingDailyCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        counters = new LendingDailyCounters(lendingRepository, mock(PlatformTransactionManager.class), 30, 15);
+    }
+
+    private LendingDailyCountDTO day(final LocalDate date) {
+        final List<LendingDailyCountDTO> histogram = counters.getHistogram(TODAY, 30);
+        return histogram.get(histogram.size() - 1 - (int) (TODAY.toEpochDay() - date.toEpochDay()));
+    }
+
+    @Test
+    void testReloadCountsHistory() {
+        when(lendingRepository.streamLendingDatesFrom(any())).thenReturn(Stream.of(
+                // overdue since TODAY - 4, still outstanding
+                new LendingDatesDTO("2024/1", TODAY.minusDays(20), TODAY.minusDays(5), null),
+                // returned late, overdue since TODAY - 4 as well
+                new LendingDatesDTO("2024/2", TODAY.minusDays(20), TODAY.minusDays(5), TODAY.minusDays(2)),
+                // returned in time
+                new LendingDatesDTO("2024/3", TODAY.minusDays(10), TODAY.plusDays(5), TODAY.minusDays(2)),
+                // out of the histogram
+                new LendingDatesDTO("2024/4", TODAY.minusDays(100), TODAY.minusDays(85), TODAY.minusDays(80))));
+
+        counters.reload();
+
+        assertEquals(new LendingDailyCountDTO(TODAY.minusDays(20), 2, 0, 0), day(TODAY.minusDays(20)));
+        assertEquals(new LendingDailyCountDTO(TODAY.minusDays(4), 0, 0, 2), day(TODAY.minusDays(4)));
+        assertEquals(new LendingDailyCountDTO(TODAY.minusDays(2), 0, 2, 0), day(TODAY.minusDays(2)));
+        final List<LendingDailyCountDTO> histogram = counters.getHistogram(TODAY, 30);
+        assertEquals(30, histogram.size());
+        assertEquals(3, histogram.stream().mapToLong(LendingDailyCountDTO::getLendings).sum());
+        assertEquals(2, histogram.stream().mapToLong(LendingDailyCountDTO::getReturns).sum());
+        assertEquals(2, histogram.stream().mapToLong(LendingDailyCountDTO::getOverdue).sum());
+    }
+
+    @Test
+    void testEventsReceivedDuringReloadAreCountedOnce() {
+        when(lendingRepository.streamLendingDatesFrom(any())).thenAnswer(invocation -> {
+            // committed before the read: read by the reload, and its event is received meanwhile
+            counters.onLendingCreated(new LendingCreatedEvent("2024/1", "isbn", "2024/1", TODAY, TODAY.plusDays(15)));
+            // committed after the read
+            counters.onLendingCreated(new LendingCreatedEvent("2024/2", "isbn", "2024/1", TODAY, TODAY.plusDays(15)));
+            counters.onLendingReturned(new LendingReturnedEvent("2024/1", "isbn", "2024/1",
+                    TODAY, TODAY.plusDays(15), TODAY));
+            return Stream.of(new LendingDatesDTO("2024/1", TODAY, TODAY.plusDays(15), null));
+        });
+
+        counters.reload();
+
+        assertEquals(new LendingDailyCountDTO(TODAY, 2, 1, 0), day(TODAY));
+        assertEquals(1, counters.getHistogram(TODAY.plusDays(16), 1).get(0).getOverdue());
+    }
+
+    @Test
+    void testEventsUpdateCounters() {
+        counters.onLendingCreated(new LendingCreatedEvent("2024/1", "isbn", "2024/1", TODAY, TODAY.plusDays(15)));
+        counters.onLendingCreated(new LendingCreatedEvent("2024/2", "isbn", "2024/1",
+                TODAY.minusDays(16), TODAY.minusDays(1)));
+        counters.onLendingReturned(new LendingReturnedEvent("2024/3", "isbn", "2024/1",
+                TODAY.minusDays(3), TODAY.plusDays(12), TODAY));
+
+        assertEquals(new LendingDailyCountDTO(TODAY, 1, 1, 1), day(TODAY));
+        assertEquals(1, day(TODAY.minusDays(16)).getLendings());
+    }
+
+    @Test
+    void testLendingReturnedInTimeIsNotOverdue() {
+        counters.onLendingCreated(new LendingCreatedEvent("2024/1", "isbn", "2024/1",
+                TODAY.minusDays(15), TODAY));
+        counters.onLendingReturned(new LendingReturnedEvent("2024/1", "isbn", "2024/1",
+                TODAY.minusDays(15), TODAY, TODAY));
+
+        // would have become overdue tomorrow
+        assertEquals(0, counters.getHistogram(TODAY.plusDays(1), 1).get(0).getOverdue());
+    }
+
+    @Test
+    void testNumberOfDaysIsBounded() {
+        assertThrows(IllegalArgumentException.class, () -> counters.getHistogram(TODAY, 0));
+        assertThrows(IllegalArgumentException.class, () -> counters.getHistogram(TODAY, 31));
+    }
+}
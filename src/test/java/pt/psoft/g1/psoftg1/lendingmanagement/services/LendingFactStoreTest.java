@@ -0,0 +1,162 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingRollupAggregator;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The store reads committed data, and is fed by events published once a transaction is committed, so this test
+ * commits its data and removes it afterwards.
+ */
+@SpringBootTest(properties = "lendings.fact-store.enabled=true")
+class LendingFactStoreTest {
+    private static final String ISBN = "9780306406157";
+    private static final String OTHER_ISBN = "9780470059029";
+    private static final String GENRE = "Factos";
+
+    @Autowired
+    private LendingFactStore lendingFactStore;
+    @Autowired
+    private LendingService lendingService;
+    @Autowired
+    private LendingRepository lendingRepository;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private LendingDurationAggregator lendingDurationAggregator;
+    @Autowired
+    private GenreLendingRollupAggregator genreLendingRollupAggregator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Author author;
+    private Author coAuthor;
+    private Genre genre;
+    private Book book;
+    private Book otherBook;
+    private Reader reader;
+    private Reader otherReader;
+    private ReaderDetails readerDetails;
+    private ReaderDetails otherReaderDetails;
+
+    @BeforeEach
+    void setUp() {
+        author = authorRepository.save(new Author("Ana Factual", "Escreve factos", null));
+        coAuthor = authorRepository.save(new Author("Bruno Factual", "Também escreve factos", null));
+        genre = genreRepository.save(new Genre(GENRE));
+        book = bookRepository.save(new Book(ISBN, "Factos I", "Descrição", genre, List.of(author), null));
+        otherBook = bookRepository.save(new Book(OTHER_ISBN, "Factos II", "Descrição", genre,
+                List.of(author, coAuthor), null));
+        reader = userRepository.save(Reader.newReader("factos@gmail.com", "Manuelino123!", "Leitor Factual"));
+        readerDetails = readerRepository.save(new ReaderDetails(960, reader, "2000-01-01",
+                "919191919", true, true, true, null, null));
+        otherReader = userRepository.save(Reader.newReader("factos2@gmail.com", "Manuelino123!", "Outro Leitor"));
+        otherReaderDetails = readerRepository.save(new ReaderDetails(961, otherReader, "2000-01-01",
+                "919191919", true, true, true, null, null));
+
+        final LocalDate today = LocalDate.now();
+        // book: 3 lendings, otherBook: 1 lending; readerDetails: 3 lendings, otherReaderDetails: 1 lending
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2018, 1,
+                today.minusDays(40), today.minusDays(30), 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2018, 2,
+                today.minusDays(20), today.minusDays(10), 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, otherReaderDetails, 2018, 3,
+                today.minusDays(5), null, 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(otherBook, readerDetails, 2018, 4,
+                today.minusDays(3), today.minusDays(1), 15, 300));
+        lendingFactStore.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM LENDING WHERE BOOK_PK IN (SELECT PK FROM BOOK WHERE ISBN IN (?, ?))",
+                ISBN, OTHER_ISBN);
+        readerRepository.delete(readerDetails);
+        readerRepository.delete(otherReaderDetails);
+        userRepository.delete(reader);
+        userRepository.delete(otherReader);
+        bookRepository.delete(book);
+        bookRepository.delete(otherBook);
+        genreRepository.delete(genre);
+        authorRepository.delete(author);
+        authorRepository.delete(coAuthor);
+        lendingDurationAggregator.rebuild();
+        genreLendingRollupAggregator.rebuild();
+        lendingFactStore.reload();
+    }
+
+    @Test
+    void testReportsMatchDatabase() {
+        final LocalDate oneYearAgo = LocalDate.now().minusYears(1);
+        final LocalDate today = LocalDate.now();
+
+        assertThat(lendingFactStore.findTopBooksLent(oneYearAgo, 100)).get().asList()
+                .containsExactlyInAnyOrderElementsOf(bookRepository.findTop5BooksLent(oneYearAgo, PageRequest.of(0, 100))
+                        .map(b -> new LendingCount(b.getBook().getIsbn(), b.getLendingCount())).toList());
+        assertThat(lendingFactStore.findTopAuthorsByLendings(100)).get().asList()
+                .containsExactlyInAnyOrderElementsOf(authorRepository.findTopAuthorByLendings(PageRequest.of(0, 100))
+                        .map(a -> new LendingCount(a.getAuthorName(), a.getLendingCount())).toList());
+        assertThat(lendingFactStore.findTopReadersByGenre(GENRE, oneYearAgo, today, 100)).get().asList()
+                .containsExactlyInAnyOrderElementsOf(readerRepository.findTopByGenre(PageRequest.of(0, 100), GENRE, oneYearAgo, today)
+                        .map(r -> new LendingCount(r.getReaderDetails().getReaderNumber(), r.getLendingCount())).toList());
+
+        assertThat(lendingFactStore.findTopBooksLent(oneYearAgo, 1)).contains(List.of(new LendingCount(ISBN, 3)));
+        assertThat(lendingFactStore.findTopAuthorsByLendings(2)).get().asList()
+                .startsWith(new LendingCount("Ana Factual", 4));
+        assertThat(lendingFactStore.findTopReadersByGenre(GENRE, today.minusDays(10), today, 5)).contains(List.of(
+                new LendingCount(readerDetails.getReaderNumber(), 1),
+                new LendingCount(otherReaderDetails.getReaderNumber(), 1)));
+        assertThat(lendingFactStore.findTopReadersByGenre("Sem lendings", oneYearAgo, today, 5)).contains(List.of());
+    }
+
+    @Test
+    void testCommittedLendingsAreAppended() {
+        final LocalDate oneYearAgo = LocalDate.now().minusYears(1);
+
+        lendingService.create(new CreateLendingRequest(OTHER_ISBN, readerDetails.getReaderNumber()));
+
+        assertThat(lendingFactStore.findTopBooksLent(oneYearAgo, 5)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 2));
+        assertThat(lendingFactStore.findTopAuthorsByLendings(5)).get().asList()
+                .contains(new LendingCount("Ana Factual", 5), new LendingCount("Bruno Factual", 2));
+
+        // events are idempotent
+        final Lending created = lendingRepository.listByReaderNumberAndIsbn(readerDetails.getReaderNumber(), OTHER_ISBN).stream()
+                .filter(l -> l.getReturnedDate() == null)
+                .findFirst().orElseThrow();
+        lendingFactStore.onLendingCreated(LendingCreatedEvent.of(created));
+        assertEquals(2, lendingFactStore.findTopBooksLent(oneYearAgo, 5).orElseThrow().stream()
+                .filter(c -> c.getKey().equals(OTHER_ISBN)).findFirst().orElseThrow().getCount());
+    }
+}
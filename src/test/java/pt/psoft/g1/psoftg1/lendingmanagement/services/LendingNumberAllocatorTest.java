@@ -0,0 +1,152 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingRollupAggregator;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class LendingNumberAllocatorTest {
+    private static final List<String> ISBNS = List.of("9789720000019", "9789720000026", "9789720000033");
+
+    @Autowired
+    private LendingNumberAllocator lendingNumberAllocator;
+    @Autowired
+    private LendingService lendingService;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private LendingDurationAggregator lendingDurationAggregator;
+    @Autowired
+    private GenreLendingRollupAggregator genreLendingRollupAggregator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // the sequences of the made-up years the tests allocate from
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM LENDING_SEQUENCE WHERE SEQUENCE_YEAR BETWEEN 3001 AND 3003");
+    }
+
+    @Test
+    void testConcurrentAllocationsAreUnique() throws Exception {
+        final int threads = 8;
+        final int perThread = 250;
+        final Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = IntStream.range(0, threads)
+                    .<Callable<Void>>mapToObj(t -> () -> {
+                        for (int i = 0; i < perThread; i++)
+                            assertThat(allocated.add(lendingNumberAllocator.nextSequence(3001))).isTrue();
+                        return null;
+                    })
+                    .toList();
+            for (Future<Void> result : executor.invokeAll(tasks))
+                result.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(allocated).hasSize(threads * perThread);
+    }
+
+    /**
+     * Lendings are created through the service, each in its own committed transaction, so the in-memory projections
+     * fed by their events are discarded afterwards.
+     */
+    @Test
+    @DirtiesContext
+    void testConcurrentLendingsGetDistinctNumbers() throws Exception {
+        final int threads = 8;
+        final Author author = authorRepository.save(new Author("Rita Concorrente", "Empresta em paralelo", null));
+        final Genre genre = genreRepository.save(new Genre("Concorrência"));
+        final List<Book> books = ISBNS.stream()
+                .map(isbn -> bookRepository.save(new Book(isbn, "Em Paralelo " + isbn, "Descrição", genre,
+                        List.of(author), null)))
+                .toList();
+        final List<Reader> readers = new ArrayList<>();
+        final List<ReaderDetails> readerDetails = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Reader reader = userRepository.save(Reader.newReader("paralelo" + t + "@gmail.com", "Manuelino123!",
+                    "Leitor Paralelo"));
+            readers.add(reader);
+            readerDetails.add(readerRepository.save(new ReaderDetails(9001 + t, reader, "2000-01-01",
+                    "919191919", true, true, true, null, null)));
+        }
+
+        final Set<String> lendingNumbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // one reader per thread, each borrowing every book, which stays within the outstanding lendings limit
+            List<Callable<Void>> tasks = readerDetails.stream()
+                    .<Callable<Void>>map(details -> () -> {
+                        for (String isbn : ISBNS)
+                            lendingNumbers.add(lendingService.create(
+                                    new CreateLendingRequest(isbn, details.getReaderNumber())).getLendingNumber());
+                        return null;
+                    })
+                    .toList();
+            // a DataIntegrityViolationException, or any other failure, surfaces here
+            for (Future<Void> result : executor.invokeAll(tasks))
+                result.get();
+
+            assertThat(lendingNumbers).hasSize(threads * ISBNS.size());
+        } finally {
+            executor.shutdown();
+            jdbcTemplate.update("DELETE FROM LENDING WHERE BOOK_PK IN (SELECT PK FROM BOOK WHERE ISBN IN (?, ?, ?))",
+                    ISBNS.toArray());
+            readerDetails.forEach(readerRepository::delete);
+            readers.forEach(userRepository::delete);
+            books.forEach(bookRepository::delete);
+            genreRepository.delete(genre);
+            authorRepository.delete(author);
+            lendingDurationAggregator.rebuild();
+            genreLendingRollupAggregator.rebuild();
+        }
+    }
+
+    @Test
+    void testYearRolloverStartsNewSequence() {
+        int last = 0;
+        for (int i = 0; i < 30; i++)
+            last = lendingNumberAllocator.nextSequence(3002);
+        assertThat(last).isGreaterThanOrEqualTo(30);
+
+        assertThat(lendingNumberAllocator.nextSequence(3003)).isEqualTo(1);
+    }
+}
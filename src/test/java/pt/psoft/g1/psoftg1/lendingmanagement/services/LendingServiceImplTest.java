@@ -12,16 +12,25 @@ import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
 import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
 import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
 import pt.psoft.g1.psoftg1.exceptions.LendingForbiddenException;
+import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
 import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
 import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingRollupAggregator;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsDTO;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsPerMonthDTO;
 import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.FineRepository;
 import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
 import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
 import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.shared.services.Cursor;
+import pt.psoft.g1.psoftg1.shared.services.Page;
 import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
 import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,6 +45,8 @@ class LendingServiceImplTest {
     @Autowired
     private LendingRepository lendingRepository;
     @Autowired
+    private FineRepository fineRepository;
+    @Autowired
     private ReaderRepository readerRepository;
     @Autowired
     private UserRepository userRepository;
@@ -45,6 +56,12 @@ class LendingServiceImplTest {
     private GenreRepository genreRepository;
     @Autowired
     private AuthorRepository authorRepository;
+    @Autowired
+    private LendingDurationAggregator lendingDurationAggregator;
+    @Autowired
+    private OverdueIndex overdueIndex;
+    @Autowired
+    private GenreLendingRollupAggregator genreLendingRollupAggregator;
 
     private Lending lending;
     private ReaderDetails readerDetails;
@@ -148,6 +165,31 @@ class LendingServiceImplTest {
 
     }
 
+    @Test
+    void testCreateAll() {
+        final String readerNumber = LocalDate.now().getYear() + "/1";
+        var request = new CreateLendingsRequest(List.of(
+                new CreateLendingRequest("9782826012092", readerNumber),
+                new CreateLendingRequest("9782826012092", "1999/999"),
+                new CreateLendingRequest("9780000000002", readerNumber),
+                new CreateLendingRequest("9782826012092", readerNumber),
+                new CreateLendingRequest("9782826012092", readerNumber),
+                // 4th lending of the same reader
+                new CreateLendingRequest("9782826012092", readerNumber)));
+
+        var results = lendingService.createAll(request);
+
+        assertThat(results).extracting(LendingBatchResult::isCreated)
+                .containsExactly(true, false, false, true, true, false);
+        assertThat(results).extracting(LendingBatchResult::getError)
+                .containsExactly(null, "Reader not found", "Book not found", null, null,
+                        "Reader has three books outstanding already");
+        assertThat(results.stream().filter(LendingBatchResult::isCreated).map(r -> r.getLending().getLendingNumber()))
+                .doesNotHaveDuplicates()
+                .allSatisfy(ln -> assertThat(lendingService.findByLendingNumber(ln)).isPresent());
+        assertEquals(3L, lendingRepository.getOutstandingLendingsByReaderNumber(readerNumber).getOutstandingLendings());
+    }
+
     @Test
     void testSetReturned() {
         int year = 2024, seq = 888;
@@ -167,6 +209,43 @@ class LendingServiceImplTest {
                 () -> lendingService.setReturned(year + "/" + seq, request, notReturnedLending.getVersion()));
     }
 
+    @Test
+    void testSetAllReturned() {
+        var overdueLending = lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                2024,
+                666,
+                LocalDate.of(2024, 3,1),
+                null,
+                15,
+                300));
+        var staleLending = lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                2024,
+                667,
+                LocalDate.of(2024, 3,1),
+                null,
+                15,
+                300));
+        var request = new ReturnLendingsRequest(List.of(
+                new ReturnLendingRequest("2024/666", overdueLending.getVersion(), "Late, sorry"),
+                new ReturnLendingRequest("2024/667", staleLending.getVersion() - 1, null),
+                new ReturnLendingRequest("2024/1234", 0L, null),
+                new ReturnLendingRequest("2024/666", overdueLending.getVersion(), null)));
+
+        var results = lendingService.setAllReturned(request);
+
+        assertThat(results).extracting(LendingReturnResult::getStatus).containsExactly(
+                LendingReturnResult.Status.RETURNED,
+                LendingReturnResult.Status.VERSION_CONFLICT,
+                LendingReturnResult.Status.NOT_FOUND,
+                LendingReturnResult.Status.ALREADY_RETURNED);
+        assertNotNull(lendingService.findByLendingNumber("2024/666").orElseThrow().getReturnedDate());
+        assertNull(lendingService.findByLendingNumber("2024/667").orElseThrow().getReturnedDate());
+        assertThat(fineRepository.findByLendingNumber("2024/666")).isPresent();
+        assertThat(fineRepository.findByLendingNumber("2024/667")).isEmpty();
+    }
+
     @Test
     void testSetReturnedWithCommentary() {
         int year = 2024, seq = 777;
@@ -202,12 +281,67 @@ class LendingServiceImplTest {
                 LocalDate.of(2023, 2,15),
                 15,
                 300));
+        lendingDurationAggregator.rebuild();
         
         Double avg = lendingService.getAverageDuration();
         assertNotNull(avg);
         assertTrue(avg > 0);
     }
 
+    @Test
+    void testSetReturnedUpdatesAverageDuration() {
+        lendingDurationAggregator.rebuild();
+        // setUp lending lasted 10 days
+        assertEquals(10.0, lendingService.getAvgLendingDurationByIsbn("9782826012092"));
+
+        int year = 2024, seq = 666;
+        var notReturnedLending = lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                year,
+                seq,
+                LocalDate.now().minusDays(4),
+                null,
+                15,
+                300));
+        lendingService.setReturned(year + "/" + seq, new SetLendingReturnedRequest(null), notReturnedLending.getVersion());
+
+        assertEquals(7.0, lendingService.getAvgLendingDurationByIsbn("9782826012092"));
+        assertEquals(7.0, lendingService.getAverageDuration());
+    }
+
+    @Test
+    void testSetReturnedUpdatesDurationPercentiles() {
+        lendingDurationAggregator.rebuild();
+        // setUp lending lasted 10 days
+        int year = 2024, seq = 667;
+        var notReturnedLending = lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                year,
+                seq,
+                LocalDate.now().minusDays(4),
+                null,
+                15,
+                300));
+        lendingService.setReturned(year + "/" + seq, new SetLendingReturnedRequest(null), notReturnedLending.getVersion());
+
+        var byBook = lendingService.getDurationPercentiles("9782826012092", null, List.of(50.0, 100.0));
+        assertEquals(2, byBook.getLendingCount());
+        assertEquals(List.of(4L, 10L), List.copyOf(byBook.getPercentiles().values()));
+        var byGenre = lendingService.getDurationPercentiles(null, "Género", List.of(50.0, 100.0));
+        assertEquals(byBook, byGenre);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getDurationPercentiles("9782826012092", "Género", List.of(50.0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getDurationPercentiles(null, "No such genre", Arrays.asList(50.0, null, 99.0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getDurationPercentiles(null, "No such genre", List.of(0.0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getDurationPercentiles(null, "No such genre", List.of(100.5)));
+        assertThrows(NotFoundException.class,
+                () -> lendingService.getDurationPercentiles(null, "No such genre", List.of(50.0)));
+    }
+
     @Test
     void testGetOverdue() {
         // Create an overdue lending
@@ -219,10 +353,40 @@ class LendingServiceImplTest {
                 null,
                 15,
                 300));
-        
-        var overdueLendings = lendingService.getOverdue(null);
-        assertNotNull(overdueLendings);
-        assertTrue(overdueLendings.size() > 0);
+        overdueIndex.reconcile();
+        try {
+            var overdueLendings = lendingService.getOverdue(null);
+            assertNotNull(overdueLendings);
+            assertTrue(overdueLendings.getItems().size() > 0);
+            assertTrue(lendingService.countOverdue() > 0);
+        } finally {
+            // the lending is rolled back, but the index is shared
+            overdueIndex.evict("2023/100");
+        }
+    }
+
+    @Test
+    void testGetOverdueSkipsAndEvictsStaleEntries() {
+        final Lending stale = lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails,
+                2023, 100, LocalDate.of(2023, 1, 1), null, 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails,
+                2023, 101, LocalDate.of(2023, 1, 2), null, 15, 300));
+        overdueIndex.reconcile();
+        try {
+            // gone from the database, e.g. returned on another node, but still indexed
+            lendingRepository.delete(stale);
+
+            var overdueLendings = lendingService.getOverdue(new Page(1, 1));
+            assertEquals(List.of("2023/101"),
+                    overdueLendings.getItems().stream().map(Lending::getLendingNumber).toList());
+            assertNotNull(overdueLendings.getNextCursor());
+            assertTrue(overdueIndex.findOverdue(LocalDate.now(), 0, 100).stream()
+                    .noneMatch(o -> o.lendingNumber().equals("2023/100")));
+        } finally {
+            // the lendings are rolled back, but the index is shared
+            overdueIndex.evict("2023/100");
+            overdueIndex.evict("2023/101");
+        }
     }
 
     @Test
@@ -294,11 +458,84 @@ class LendingServiceImplTest {
                 LocalDate.of(2023, 1,10),
                 15,
                 300));
+        lendingDurationAggregator.rebuild();
         
         Double avg = lendingService.getAvgLendingDurationByIsbn("9782826012092");
         assertNotNull(avg);
     }
 
+    @Test
+    void testLendingsUpdateGenreRollup() {
+        final LocalDate start = LocalDate.of(2023, 3, 1);
+        var notReturnedLending = lendingRepository.save(Lending.newBootstrappingLending(book,
+                readerDetails,
+                2023,
+                777,
+                start,
+                null,
+                15,
+                300));
+        genreLendingRollupAggregator.rebuild();
+        assertThat(genreRepository.getLendingsAverageDurationPerMonth(start, start)).isEmpty();
+
+        lendingService.setReturned("2023/777", new SetLendingReturnedRequest(null), notReturnedLending.getVersion());
+        var durations = genreRepository.getLendingsAverageDurationPerMonth(start, start.plusDays(30));
+        assertEquals(1, durations.size());
+        assertEquals(List.of(new GenreLendingsDTO("Género", (double) ChronoUnit.DAYS.between(start, LocalDate.now()))),
+                durations.get(0).getValues());
+
+        final Number before = countInCurrentMonth();
+        lendingService.create(new CreateLendingRequest("9782826012092", LocalDate.now().getYear() + "/1"));
+        assertEquals(before.longValue() + 1, countInCurrentMonth().longValue());
+
+        final LocalDate now = LocalDate.now();
+        assertThat(genreRepository.getDistinctReaders(start, start))
+                .anyMatch(r -> r.getGenre().equals("Género") && r.getValue().longValue() >= 1);
+        assertThat(genreRepository.getDistinctReaders(now, now))
+                .anyMatch(r -> r.getGenre().equals("Género") && r.getValue().longValue() >= 1);
+        assertThat(genreRepository.getDistinctReadersPerMonth(now, now)).hasSize(1);
+    }
+
+    private Number countInCurrentMonth() {
+        final LocalDate now = LocalDate.now();
+        return genreRepository.getLendingsPerMonthLastYearByGenre().stream()
+                .filter(m -> m.getYear() == now.getYear() && m.getMonth() == now.getMonthValue())
+                .map(GenreLendingsPerMonthDTO::getValues)
+                .flatMap(List::stream)
+                .filter(v -> v.getGenre().equals("Género"))
+                .map(GenreLendingsDTO::getValue)
+                .findFirst()
+                .orElse(0L);
+    }
+
+    @Test
+    void testGetAverageMonthlyPerReader() {
+        final LocalDate[] startDates = {LocalDate.of(2019, 3, 2), LocalDate.of(2019, 3, 20), LocalDate.of(2019, 4, 5)};
+        for (int i = 0; i < startDates.length; i++)
+            lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2019, 801 + i,
+                    startDates[i], null, 15, 300));
+
+        var months = lendingService.getAverageMonthlyPerReader("2019-03-01", "2019-04-30", new Page(1, 10));
+        assertEquals(2, months.size());
+        assertEquals(3, months.get(0).getMonth());
+        assertEquals(readerDetails.getReaderNumber(), months.get(0).getDurationAverages().get(0).getReaderView().getReaderNumber());
+        assertEquals(2L, months.get(0).getDurationAverages().get(0).getLendingCount());
+        assertEquals(4, months.get(1).getMonth());
+        assertEquals(1L, months.get(1).getDurationAverages().get(0).getLendingCount());
+
+        // one (month, reader) pair per page
+        var first = lendingService.getAverageMonthlyPerReader("2019-03-01", "2019-04-30", new Page(1, 1));
+        var next = lendingService.getAverageMonthlyPerReader("2019-03-01", "2019-04-30",
+                new Page(1, 1, Cursor.encode(2019, 3, readerDetails.getReaderNumber())));
+        assertEquals(3, first.get(0).getMonth());
+        assertEquals(4, next.get(0).getMonth());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getAverageMonthlyPerReader("2019-04-30", "2019-03-01", null));
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingService.getAverageMonthlyPerReader(null, "2019-03-01", null));
+    }
+
     @Test
     void testCreateThrowsExceptionForNonExistentBook() {
         var request = new CreateLendingRequest("9999999999999",
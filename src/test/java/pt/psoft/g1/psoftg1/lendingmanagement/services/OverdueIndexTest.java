@@ -0,0 +1,112 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OverdueIndexTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final LendingRepository lendingRepository = mock(LendingRepository.class);
+    private OverdueIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new OverdueIndex(lendingRepository);
+    }
+
+    private static LendingCreatedEvent created(final String lendingNumber, final LocalDate limitDate) {
+        return new LendingCreatedEvent(lendingNumber, "isbn", "2024/1", limitDate.minusDays(15), limitDate);
+    }
+
+    private static LendingReturnedEvent returned(final String lendingNumber, final LocalDate limitDate) {
+        return new LendingReturnedEvent(lendingNumber, "isbn", "2024/1", limitDate.minusDays(15), limitDate, TODAY);
+    }
+
+    private List<String> overdue() {
+        return index.findOverdue(TODAY, 0, 100).stream().map(OverdueIndex.Overdue::lendingNumber).toList();
+    }
+
+    @Test
+    void testOverdueLendingsArePagedByLimitDate() {
+        index.onLendingCreated(created("2024/3", TODAY.minusDays(1)));
+        index.onLendingCreated(created("2024/1", TODAY.minusDays(3)));
+        index.onLendingCreated(created("2024/2", TODAY.minusDays(1)));
+        // not overdue yet
+        index.onLendingCreated(created("2024/4", TODAY));
+
+        assertEquals(List.of("2024/1", "2024/2", "2024/3"), overdue());
+        assertEquals(List.of(new OverdueIndex.Overdue(TODAY.minusDays(1), "2024/2")), index.findOverdue(TODAY, 1, 1));
+        assertEquals(List.of(), index.findOverdue(TODAY, 3, 10));
+
+        assertEquals(List.of(new OverdueIndex.Overdue(TODAY.minusDays(1), "2024/3")),
+                index.findOverdueAfter(TODAY, TODAY.minusDays(1), "2024/2", 10));
+        // the lending after which the page starts does not have to be indexed
+        assertEquals(List.of(new OverdueIndex.Overdue(TODAY.minusDays(1), "2024/2"),
+                        new OverdueIndex.Overdue(TODAY.minusDays(1), "2024/3")),
+                index.findOverdueAfter(TODAY, TODAY.minusDays(2), "2024/9", 10));
+        assertEquals(List.of(), index.findOverdueAfter(TODAY, TODAY, "", 10));
+    }
+
+    @Test
+    void testOverdueLendingsAreCounted() {
+        index.onLendingCreated(created("2024/1", TODAY.minusDays(3)));
+        index.onLendingCreated(created("2024/2", TODAY.minusDays(1)));
+        index.onLendingCreated(created("2024/3", TODAY.minusDays(1)));
+        index.onLendingCreated(created("2024/4", TODAY));
+        assertEquals(3, index.countOverdue(TODAY));
+        assertEquals(4, index.countOverdue(TODAY.plusDays(1)));
+
+        index.onLendingReturned(returned("2024/2", TODAY.minusDays(1)));
+        index.evict("2024/1");
+        assertEquals(1, index.countOverdue(TODAY));
+        assertEquals(List.of("2024/3"), overdue());
+    }
+
+    @Test
+    void testReconcileRepairsMissingAndStaleEntries() {
+        // stale: returned, or written, elsewhere
+        index.onLendingCreated(created("2024/1", TODAY.minusDays(3)));
+        index.onLendingCreated(created("2024/2", TODAY.minusDays(2)));
+        when(lendingRepository.listOutstandingDueDates()).thenReturn(List.of(
+                new LendingDueDateDTO("2024/2", TODAY.minusDays(2)),
+                // missing
+                new LendingDueDateDTO("2024/3", TODAY.minusDays(1))));
+
+        index.reconcile();
+
+        assertEquals(List.of("2024/2", "2024/3"), overdue());
+        assertEquals(2, index.countOverdue(TODAY));
+    }
+
+    @Test
+    void testReconcileLeavesChangesMadeDuringTheSnapshot() {
+        index.onLendingCreated(created("2024/1", TODAY.minusDays(3)));
+        when(lendingRepository.listOutstandingDueDates()).thenAnswer(invocation -> {
+            // committed after the database was read
+            index.onLendingCreated(created("2024/2", TODAY.minusDays(2)));
+            index.onLendingReturned(returned("2024/1", TODAY.minusDays(3)));
+            return List.of(new LendingDueDateDTO("2024/1", TODAY.minusDays(3)));
+        });
+
+        index.reconcile();
+
+        // neither the returned lending is indexed again, nor the new one removed
+        assertEquals(List.of("2024/2"), overdue());
+        assertEquals(1, index.countOverdue(TODAY));
+
+        // a later reconciliation indexes a lending outstanding again, e.g. after its return was rolled back
+        when(lendingRepository.listOutstandingDueDates()).thenReturn(List.of(
+                new LendingDueDateDTO("2024/1", TODAY.minusDays(3)),
+                new LendingDueDateDTO("2024/2", TODAY.minusDays(2))));
+        index.reconcile();
+        assertEquals(List.of("2024/1", "2024/2"), overdue());
+    }
+}
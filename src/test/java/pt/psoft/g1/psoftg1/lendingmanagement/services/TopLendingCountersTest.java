@@ -0,0 +1,254 @@
+package pt.psoft.g1.psoftg1.lendingmanagement.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pt.psoft.g1.psoftg1.authormanagement.model.Author;
+import pt.psoft.g1.psoftg1.authormanagement.repositories.AuthorRepository;
+import pt.psoft.g1.psoftg1.bookmanagement.model.Book;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookChangedEvent;
+import pt.psoft.g1.psoftg1.bookmanagement.repositories.BookRepository;
+import pt.psoft.g1.psoftg1.genremanagement.model.Genre;
+import pt.psoft.g1.psoftg1.genremanagement.repositories.GenreRepository;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingRollupAggregator;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.Lending;
+import pt.psoft.g1.psoftg1.lendingmanagement.model.TopLendingCountersCheckpoint;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.LendingRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCounterRepository;
+import pt.psoft.g1.psoftg1.lendingmanagement.repositories.TopLendingCountersCheckpointRepository;
+import pt.psoft.g1.psoftg1.readermanagement.model.ReaderDetails;
+import pt.psoft.g1.psoftg1.readermanagement.repositories.ReaderRepository;
+import pt.psoft.g1.psoftg1.usermanagement.model.Reader;
+import pt.psoft.g1.psoftg1.usermanagement.repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * The counters read committed data, and are fed by events published once a transaction is committed, so this test
+ * commits its data and removes it afterwards.
+ */
+@SpringBootTest
+class TopLendingCountersTest {
+    private static final String ISBN = "9780262033848";
+    private static final String OTHER_ISBN = "9780131103627";
+
+    @Autowired
+    private TopLendingCounters topLendingCounters;
+    @Autowired
+    private TopLendingCounterRepository counterRepository;
+    @Autowired
+    private TopLendingCountersCheckpointRepository checkpointRepository;
+    @Autowired
+    private LendingService lendingService;
+    @SpyBean
+    private LendingRepository lendingRepository;
+    @Autowired
+    private ReaderRepository readerRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private LendingDurationAggregator lendingDurationAggregator;
+    @Autowired
+    private GenreLendingRollupAggregator genreLendingRollupAggregator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Author author;
+    private Author coAuthor;
+    private Genre genre;
+    private Book book;
+    private Book otherBook;
+    private Reader reader;
+    private Reader otherReader;
+    private ReaderDetails readerDetails;
+    private ReaderDetails otherReaderDetails;
+
+    @BeforeEach
+    void setUp() {
+        author = authorRepository.save(new Author("Carla Contada", "Conta lendings", null));
+        coAuthor = authorRepository.save(new Author("Duarte Contado", "Também conta lendings", null));
+        genre = genreRepository.save(new Genre("Contagens"));
+        book = bookRepository.save(new Book(ISBN, "Contagens I", "Descrição", genre, List.of(author), null));
+        otherBook = bookRepository.save(new Book(OTHER_ISBN, "Contagens II", "Descrição", genre,
+                List.of(author, coAuthor), null));
+        reader = userRepository.save(Reader.newReader("contagens@gmail.com", "Manuelino123!", "Leitor Contado"));
+        readerDetails = readerRepository.save(new ReaderDetails(962, reader, "2000-01-01",
+                "919191919", true, true, true, null, null));
+        otherReader = userRepository.save(Reader.newReader("contagens2@gmail.com", "Manuelino123!", "Outro Contado"));
+        otherReaderDetails = readerRepository.save(new ReaderDetails(963, otherReader, "2000-01-01",
+                "919191919", true, true, true, null, null));
+
+        final LocalDate today = LocalDate.now();
+        // book: 3 lendings, one of them older than a year; otherBook: 1 lending
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2017, 1,
+                today.minusYears(2), today.minusYears(2).plusDays(10), 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, readerDetails, 2017, 2,
+                today.minusDays(20), today.minusDays(10), 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(book, otherReaderDetails, 2017, 3,
+                today.minusDays(5), null, 15, 300));
+        lendingRepository.save(Lending.newBootstrappingLending(otherBook, readerDetails, 2017, 4,
+                today.minusDays(3), today.minusDays(1), 15, 300));
+
+        // counted from every lending
+        deleteCheckpoints();
+        topLendingCounters.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM LENDING WHERE BOOK_PK IN (SELECT PK FROM BOOK WHERE ISBN IN (?, ?))",
+                ISBN, OTHER_ISBN);
+        readerRepository.delete(readerDetails);
+        readerRepository.delete(otherReaderDetails);
+        userRepository.delete(reader);
+        userRepository.delete(otherReader);
+        bookRepository.delete(book);
+        bookRepository.delete(otherBook);
+        genreRepository.delete(genre);
+        authorRepository.delete(author);
+        authorRepository.delete(coAuthor);
+        lendingDurationAggregator.rebuild();
+        genreLendingRollupAggregator.rebuild();
+        deleteCheckpoints();
+        topLendingCounters.load();
+    }
+
+    private void deleteCheckpoints() {
+        jdbcTemplate.update("DELETE FROM TOP_LENDING_COUNTER");
+        jdbcTemplate.update("DELETE FROM TOP_LENDING_COUNTERS_CHECKPOINT");
+    }
+
+    @Test
+    void testReportsMatchDatabase() {
+        final LocalDate oneYearAgo = LocalDate.now().minusYears(1);
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .containsExactlyInAnyOrderElementsOf(bookRepository.findTop5BooksLent(oneYearAgo, PageRequest.of(0, 100))
+                        .map(b -> new LendingCount(b.getBook().getIsbn(), b.getLendingCount())).toList());
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .containsExactlyInAnyOrderElementsOf(authorRepository.findTopAuthorByLendings(PageRequest.of(0, 100))
+                        .map(a -> new LendingCount(a.getAuthorName(), a.getLendingCount())).toList());
+        assertThat(topLendingCounters.findTopReaders(100).orElseThrow().stream().map(LendingCount::getKey).toList())
+                .containsExactlyInAnyOrderElementsOf(readerRepository.findTopReaders(PageRequest.of(0, 100))
+                        .map(ReaderDetails::getReaderNumber).toList());
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(ISBN, 2), new LendingCount(OTHER_ISBN, 1));
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .contains(new LendingCount("Carla Contada", 4), new LendingCount("Duarte Contado", 1));
+        assertThat(topLendingCounters.findTopReaders(100)).get().asList()
+                .contains(new LendingCount(readerDetails.getReaderNumber(), 3),
+                        new LendingCount(otherReaderDetails.getReaderNumber(), 1));
+        assertThat(topLendingCounters.findTopReaders(1)).get().asList().hasSize(1);
+    }
+
+    @Test
+    void testCommittedLendingsAreCounted() {
+        lendingService.create(new CreateLendingRequest(OTHER_ISBN, otherReaderDetails.getReaderNumber()));
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 2));
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .contains(new LendingCount("Carla Contada", 5), new LendingCount("Duarte Contado", 2));
+        assertThat(topLendingCounters.findTopReaders(100)).get().asList()
+                .contains(new LendingCount(otherReaderDetails.getReaderNumber(), 2));
+
+        // events are idempotent
+        final Lending created = lendingRepository.listByReaderNumberAndIsbn(otherReaderDetails.getReaderNumber(), OTHER_ISBN)
+                .stream().findFirst().orElseThrow();
+        topLendingCounters.onLendingCreated(LendingCreatedEvent.of(created));
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 2));
+    }
+
+    @Test
+    void testChangedAuthorsAreCountedForNewLendings() {
+        // only the co-author is left
+        jdbcTemplate.update("DELETE FROM BOOK_AUTHORS WHERE BOOK_PK = (SELECT PK FROM BOOK WHERE ISBN = ?) "
+                + "AND AUTHORS_AUTHOR_NUMBER = ?", OTHER_ISBN, author.getAuthorNumber());
+        topLendingCounters.onBookChanged(new BookChangedEvent(OTHER_ISBN));
+
+        lendingService.create(new CreateLendingRequest(OTHER_ISBN, otherReaderDetails.getReaderNumber()));
+
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .contains(new LendingCount("Carla Contada", 4), new LendingCount("Duarte Contado", 2));
+    }
+
+    @Test
+    void testCheckpointIsReloaded() {
+        final LocalDate today = LocalDate.now();
+        topLendingCounters.checkpoint(today);
+
+        assertEquals(today.minusDays(1), checkpointRepository.findLatest()
+                .map(TopLendingCountersCheckpoint::getSealedThrough).orElseThrow());
+        assertThat(counterRepository.findAllCounters()).isNotEmpty();
+
+        final var books = topLendingCounters.findTopBooksLent(100).orElseThrow();
+        final var authors = topLendingCounters.findTopAuthorsByLendings(100).orElseThrow();
+        final var readers = topLendingCounters.findTopReaders(100).orElseThrow();
+        topLendingCounters.load();
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).contains(books);
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).contains(authors);
+        assertThat(topLendingCounters.findTopReaders(100)).contains(readers);
+    }
+
+    @Test
+    void testCheckpointRecountsLendingsOfOtherNodes() {
+        final LocalDate today = LocalDate.now();
+        topLendingCounters.checkpoint(today.minusDays(2));
+        // created without an event, as if by another node
+        lendingRepository.save(Lending.newBootstrappingLending(otherBook, otherReaderDetails, 2017, 5,
+                today.minusDays(2), today.minusDays(1), 15, 300));
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 1));
+
+        topLendingCounters.checkpoint(today);
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 2));
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .contains(new LendingCount("Carla Contada", 5), new LendingCount("Duarte Contado", 2));
+    }
+
+    @Test
+    void testCheckpointKeepsLendingsCommittedDuringTheRecount() {
+        final LocalDate today = LocalDate.now();
+        topLendingCounters.checkpoint(today.minusDays(2));
+        // a lending of a recounted day is committed, and its event delivered, after the recount read its day
+        doAnswer(invocation -> {
+            final List<LendingFactDTO> read;
+            try (Stream<LendingFactDTO> facts = lendingRepository.streamLendingFacts()) {
+                read = facts.filter(fact -> !fact.getStartDate().isBefore(today.minusDays(2))).toList();
+            }
+            topLendingCounters.onLendingCreated(new LendingCreatedEvent("2017/5", OTHER_ISBN,
+                    otherReaderDetails.getReaderNumber(), today.minusDays(2), today.plusDays(13)));
+            return read.stream();
+        }).when(lendingRepository).streamLendingFactsStartedFrom(today.minusDays(2));
+
+        topLendingCounters.checkpoint(today);
+
+        assertThat(topLendingCounters.findTopBooksLent(100)).get().asList()
+                .contains(new LendingCount(OTHER_ISBN, 2));
+        assertThat(topLendingCounters.findTopAuthorsByLendings(100)).get().asList()
+                .contains(new LendingCount("Carla Contada", 5), new LendingCount("Duarte Contado", 2));
+    }
+}
@@ -0,0 +1,140 @@
+package pt.psoft.g1.psoftg1.reportmanagement.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pt.psoft.g1.psoftg1.exceptions.ConflictException;
+import pt.psoft.g1.psoftg1.exceptions.NotFoundException;
+import pt.psoft.g1.psoftg1.exceptions.ServiceUnavailableException;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreLendingsPerMonthDTO;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreService;
+import pt.psoft.g1.psoftg1.readermanagement.services.ReaderService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportJobServiceImplTest {
+    private final GenreService genreService = mock(GenreService.class);
+    private final ReaderService readerService = mock(ReaderService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ReportJobServiceImpl reportJobService;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(i -> {
+            release.await();
+            return List.of();
+        }).when(genreService).getLendingsAverageDurationPerMonth("2024-01-01", "2024-12-31");
+        // a single worker, and room for a single waiting job
+        reportJobService = new ReportJobServiceImpl(genreService, readerService, 1, 1, Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        reportJobService.shutdown();
+    }
+
+    private ReportJob await(final ReportJob job) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!job.getStatus().isFinished() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        return job;
+    }
+
+    private ReportJob submitBlockingJob() {
+        return reportJobService.submitLendingsAverageDurationPerMonth("2024-01-01", "2024-12-31");
+    }
+
+    @Test
+    void testSucceededJobHasResult() throws InterruptedException {
+        final List<GenreLendingsPerMonthDTO> report = List.of(new GenreLendingsPerMonthDTO(2024, 1, List.of()));
+        when(genreService.getLendingsAverageDurationPerMonth("2024-01-01", "2024-01-31")).thenReturn(report);
+
+        final ReportJob job = await(reportJobService.submitLendingsAverageDurationPerMonth("2024-01-01", "2024-01-31"));
+
+        assertEquals(ReportJob.Status.SUCCEEDED, job.getStatus());
+        assertSame(job, reportJobService.findById(job.getId()));
+        assertSame(report, reportJobService.getResult(job.getId()));
+    }
+
+    @Test
+    void testFailedJobHasError() throws InterruptedException {
+        when(genreService.getLendingsAverageDurationPerMonth("2023-01-01", "2023-01-31"))
+                .thenThrow(new NotFoundException("No objects match the provided criteria"));
+
+        final ReportJob job = await(reportJobService.submitLendingsAverageDurationPerMonth("2023-01-01", "2023-01-31"));
+
+        assertEquals(ReportJob.Status.FAILED, job.getStatus());
+        assertEquals("No objects match the provided criteria", job.getError());
+        assertThrows(ConflictException.class, () -> reportJobService.getResult(job.getId()));
+    }
+
+    @Test
+    void testInvalidDatesAreRefusedWithoutQueueing() {
+        // the single worker is busy and the single waiting place is free
+        submitBlockingJob();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> reportJobService.submitLendingsAverageDurationPerMonth("x", "2024-01-31"));
+        assertThrows(IllegalArgumentException.class,
+                () -> reportJobService.submitLendingsAverageDurationPerMonth("2024-02-01", "2024-01-31"));
+        assertThrows(IllegalArgumentException.class, () -> reportJobService.submitTopReadersByGenre("Romance",
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 31)));
+
+        // the waiting place was not taken
+        assertNotNull(submitBlockingJob());
+    }
+
+    @Test
+    void testQueueIsBoundedAndCancelledJobsLeaveIt() throws InterruptedException {
+        final ReportJob running = submitBlockingJob();
+        final ReportJob queued = submitBlockingJob();
+        assertThrows(ServiceUnavailableException.class, this::submitBlockingJob);
+
+        reportJobService.cancel(queued.getId());
+        assertEquals(ReportJob.Status.CANCELLED, queued.getStatus());
+        assertThrows(ConflictException.class, () -> reportJobService.cancel(queued.getId()));
+        final ReportJob next = submitBlockingJob();
+
+        release.countDown();
+        assertEquals(ReportJob.Status.SUCCEEDED, await(running).getStatus());
+        assertEquals(ReportJob.Status.SUCCEEDED, await(next).getStatus());
+        assertEquals(ReportJob.Status.CANCELLED, queued.getStatus());
+    }
+
+    @Test
+    void testRunningJobIsInterrupted() throws InterruptedException {
+        final ReportJob running = submitBlockingJob();
+        while (running.getStatus() == ReportJob.Status.QUEUED)
+            Thread.sleep(10);
+
+        reportJobService.cancel(running.getId());
+
+        assertEquals(ReportJob.Status.CANCELLED, running.getStatus());
+        // the worker is free again
+        doReturn(List.of()).when(genreService).getLendingsAverageDurationPerMonth("2024-02-01", "2024-02-29");
+        assertEquals(ReportJob.Status.SUCCEEDED,
+                await(reportJobService.submitLendingsAverageDurationPerMonth("2024-02-01", "2024-02-29")).getStatus());
+    }
+
+    @Test
+    void testFinishedJobsArePurged() throws InterruptedException {
+        when(genreService.getLendingsAverageDurationPerMonth("2024-01-01", "2024-01-31")).thenReturn(List.of());
+        final ReportJob job = await(reportJobService.submitLendingsAverageDurationPerMonth("2024-01-01", "2024-01-31"));
+        Thread.sleep(5);
+
+        reportJobService.purge();
+
+        assertThrows(NotFoundException.class, () -> reportJobService.findById(job.getId()));
+    }
+}
@@ -0,0 +1,84 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedBitmapTest {
+
+    /**
+     * Random values, sparse in some containers and dense in others
+     */
+    private static BitSet randomSet(final long seed) {
+        final Random random = new Random(seed);
+        final BitSet set = new BitSet();
+        for (int i = 0; i < 3_000; i++)
+            set.set(random.nextInt(1 << 18));
+        for (int i = 0; i < 20_000; i++)
+            set.set((1 << 18) + random.nextInt(1 << 16));
+        return set;
+    }
+
+    private static CompressedBitmap bitmapOf(final BitSet set) {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        set.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static BitSet toBitSet(final CompressedBitmap bitmap) {
+        final BitSet set = new BitSet();
+        bitmap.forEach(set::set);
+        return set;
+    }
+
+    @Test
+    void ensureAddAndRemoveTrackValues() {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(70_000));
+        assertFalse(bitmap.add(70_000));
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(4_464));
+        assertTrue(bitmap.remove(70_000));
+        assertFalse(bitmap.remove(70_000));
+        assertTrue(bitmap.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    void ensureContainersSwitchBetweenArrayAndBitmap() {
+        final CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i < 2 * CompressedBitmap.ARRAY_MAX; i++)
+            bitmap.add(2 * i);
+        for (int i = 0; i < 2 * CompressedBitmap.ARRAY_MAX - 1; i++)
+            bitmap.remove(2 * i);
+
+        assertEquals(1, bitmap.cardinality());
+        assertTrue(bitmap.contains(4 * CompressedBitmap.ARRAY_MAX - 2));
+    }
+
+    @Test
+    void ensureSetOperationsMatchBitSet() {
+        final BitSet a = randomSet(1);
+        final BitSet b = randomSet(2);
+        final CompressedBitmap bitmapA = bitmapOf(a);
+        final CompressedBitmap bitmapB = bitmapOf(b);
+
+        final BitSet and = (BitSet) a.clone();
+        and.and(b);
+        final BitSet or = (BitSet) a.clone();
+        or.or(b);
+
+        assertEquals(a.cardinality(), bitmapA.cardinality());
+        assertEquals(a, toBitSet(bitmapA));
+        assertEquals(and, toBitSet(bitmapA.and(bitmapB)));
+        assertEquals(and.cardinality(), bitmapA.andCardinality(bitmapB));
+        assertEquals(or, toBitSet(bitmapA.or(bitmapB)));
+        // the operands are left unchanged
+        assertEquals(b, toBitSet(bitmapB));
+    }
+}
@@ -0,0 +1,64 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    private static Histogram histogramOf(final long from, final long to) {
+        final Histogram histogram = new Histogram();
+        for (long value = from; value < to; value++)
+            histogram.record(value);
+        return histogram;
+    }
+
+    @Test
+    void ensureSmallValuesAreExact() {
+        final Histogram histogram = histogramOf(1, 11);
+
+        assertEquals(10, histogram.getTotalCount());
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(9, histogram.percentile(90));
+        assertEquals(10, histogram.percentile(99));
+        assertEquals(10, histogram.percentile(100));
+    }
+
+    @Test
+    void ensureLargeValuesAreWithinError() {
+        final Histogram histogram = histogramOf(0, 100_000);
+
+        assertEquals(50_000, histogram.percentile(50), 50_000 * 0.035);
+        assertEquals(99_000, histogram.percentile(99), 99_000 * 0.035);
+        assertTrue(histogram.percentile(99) >= 99_000);
+    }
+
+    @Test
+    void ensureBucketsCoverEveryValue() {
+        for (long value = 0; value < 1 << 16; value++) {
+            final int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || Histogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    void ensureEmptyHistogram() {
+        assertEquals(0, new Histogram().percentile(50));
+        assertEquals(0, Histogram.fromBytes(null).getTotalCount());
+        assertThrows(IllegalArgumentException.class, () -> new Histogram().percentile(0));
+        assertThrows(IllegalArgumentException.class, () -> new Histogram().record(-1));
+    }
+
+    @Test
+    void ensureMergeAndBytesRoundTrip() {
+        final Histogram merged = histogramOf(0, 500).merge(histogramOf(500, 1_000));
+        final byte[] bytes = merged.toBytes();
+        final Histogram read = Histogram.fromBytes(bytes);
+
+        assertEquals(1_000, read.getTotalCount());
+        assertEquals(histogramOf(0, 1_000).percentile(90), read.percentile(90));
+        assertArrayEquals(bytes, read.toBytes());
+        assertThrows(IllegalArgumentException.class, () -> Histogram.fromBytes(new byte[]{(byte) 0x80}));
+    }
+}
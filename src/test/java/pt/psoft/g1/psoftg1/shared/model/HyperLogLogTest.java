@@ -0,0 +1,55 @@
+package pt.psoft.g1.psoftg1.shared.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog sketchOf(final int from, final int to) {
+        final HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++)
+            sketch.add("2024/" + i);
+        return sketch;
+    }
+
+    @Test
+    void ensureEmptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+        assertEquals(0, HyperLogLog.fromBytes(null).estimate());
+    }
+
+    @Test
+    void ensureSmallSetsAreCountedExactly() {
+        final HyperLogLog sketch = sketchOf(0, 20);
+
+        assertFalse(sketch.add("2024/3"));
+        assertEquals(20, sketch.estimate());
+    }
+
+    @Test
+    void ensureLargeSetsAreEstimatedWithinError() {
+        // 3 standard errors
+        assertEquals(100_000, sketchOf(0, 100_000).estimate(), 100_000 * 0.07);
+        assertEquals(5_000, sketchOf(0, 5_000).estimate(), 5_000 * 0.07);
+    }
+
+    @Test
+    void ensureMergeEstimatesUnion() {
+        final HyperLogLog union = sketchOf(0, 3_000).merge(sketchOf(2_000, 5_000));
+
+        assertEquals(5_000, union.estimate(), 5_000 * 0.07);
+        assertEquals(sketchOf(0, 5_000).estimate(), union.estimate());
+    }
+
+    @Test
+    void ensureBytesRoundTrip() {
+        final HyperLogLog sketch = sketchOf(0, 50_000);
+        final byte[] bytes = sketch.toBytes();
+
+        assertEquals(HyperLogLog.BYTES, bytes.length);
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+        assertArrayEquals(bytes, HyperLogLog.fromBytes(bytes).toBytes());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[10]));
+    }
+}
@@ -0,0 +1,34 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorTest {
+    @Test
+    void ensureEncodedKeysAreDecoded() {
+        String cursor = Cursor.encode(LocalDate.of(2024, 3, 1), "2024/12");
+        assertEquals(List.of("2024-03-01", "2024/12"), Cursor.decode(cursor, 2));
+    }
+
+    @Test
+    void ensureCursorWithWrongNumberOfKeysIsRejected() {
+        String cursor = Cursor.encode("O Inspetor Max", "9782826012092");
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode(cursor, 1));
+    }
+
+    @Test
+    void ensureMalformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("not a cursor!", 1));
+    }
+
+    @Test
+    void ensureNextCursorIsOnlyIssuedForFullPages() {
+        Page page = new Page(1, 2);
+        assertNull(Cursor.next(List.of("a"), page, s -> new Object[]{s}));
+        assertEquals(Cursor.encode("b"), Cursor.next(List.of("a", "b"), page, s -> new Object[]{s}));
+    }
+}
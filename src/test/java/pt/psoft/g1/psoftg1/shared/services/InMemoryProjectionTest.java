@@ -0,0 +1,50 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryProjectionTest {
+
+    @Test
+    void testIsEmptyUntilLoaded() {
+        final InMemoryProjection<List<String>> projection = new InMemoryProjection<>();
+        projection.apply("a", l -> l.add("a"));
+
+        assertEquals(Optional.empty(), projection.read(List::size));
+        projection.reload(loaded -> new ArrayList<>(List.of("b")));
+        assertEquals(Optional.of(List.of("b")), projection.read(List::copyOf));
+    }
+
+    @Test
+    void testStartsFromInitialState() {
+        final InMemoryProjection<List<String>> projection = new InMemoryProjection<>(new ArrayList<>());
+        projection.apply("a", l -> l.add("a"));
+
+        assertEquals(Optional.of(List.of("a")), projection.read(List::copyOf));
+    }
+
+    @Test
+    void testChangesReceivedDuringReloadAreReplayedUnlessLoaded() {
+        final InMemoryProjection<List<String>> projection = new InMemoryProjection<>(new ArrayList<>());
+
+        projection.reload(loaded -> {
+            projection.apply("a", l -> l.add("a"));
+            projection.apply("b", l -> l.add("b"));
+            projection.apply(l -> l.remove("c"));
+            // the reload read "a" and "c"
+            loaded.accept("a");
+            loaded.accept("c");
+            return new ArrayList<>(List.of("a", "c"));
+        });
+
+        assertEquals(Optional.of(List.of("a", "b")), projection.read(List::copyOf));
+        // no longer reloading
+        projection.apply("d", l -> l.add("d"));
+        assertEquals(Optional.of(List.of("a", "b", "d")), projection.read(List::copyOf));
+    }
+}
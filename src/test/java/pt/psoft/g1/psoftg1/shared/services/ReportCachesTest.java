@@ -0,0 +1,93 @@
+package pt.psoft.g1.psoftg1.shared.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import pt.psoft.g1.psoftg1.authormanagement.services.AuthorService;
+import pt.psoft.g1.psoftg1.bookmanagement.services.BookChangedEvent;
+import pt.psoft.g1.psoftg1.genremanagement.services.GenreService;
+import pt.psoft.g1.psoftg1.lendingmanagement.services.LendingCreatedEvent;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Caches are cleared by events published once a transaction is committed, so this test is not transactional.
+ * The events are made up and reach every other listener too, so the context is discarded afterwards.
+ */
+@SpringBootTest
+@DirtiesContext
+class ReportCachesTest {
+    @Autowired
+    private GenreService genreService;
+    @Autowired
+    private AuthorService authorService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        ReportCaches.ALL.forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void testReportsAreCached() {
+        final var topGenres = genreService.findTopGenreByBooks();
+
+        assertSame(topGenres, genreService.findTopGenreByBooks());
+        assertThat(meterRegistry.get("cache.gets")
+                .tag("cache", ReportCaches.TOP_GENRES_BY_BOOKS).tag("result", "hit")
+                .functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void testCommittedLendingsClearLendingReports() {
+        final var topGenres = genreService.findTopGenreByBooks();
+        final var topAuthors = authorService.findTopAuthorByLendings();
+
+        transactionTemplate.executeWithoutResult(status -> eventPublisher.publishEvent(new LendingCreatedEvent(
+                "2025/1", "9780262033848", "2025/1", LocalDate.now(), LocalDate.now().plusDays(15))));
+
+        assertSame(topGenres, genreService.findTopGenreByBooks());
+        assertNotSame(topAuthors, authorService.findTopAuthorByLendings());
+    }
+
+    @Test
+    void testRolledBackLendingsDoNotClearReports() {
+        final var topAuthors = authorService.findTopAuthorByLendings();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new LendingCreatedEvent(
+                    "2025/1", "9780262033848", "2025/1", LocalDate.now(), LocalDate.now().plusDays(15)));
+            status.setRollbackOnly();
+        });
+
+        assertSame(topAuthors, authorService.findTopAuthorByLendings());
+    }
+
+    @Test
+    void testBookChangesClearEveryReport() {
+        final var topGenres = genreService.findTopGenreByBooks();
+        final var topAuthors = authorService.findTopAuthorByLendings();
+
+        eventPublisher.publishEvent(new BookChangedEvent("9780262033848"));
+
+        assertNotSame(topGenres, genreService.findTopGenreByBooks());
+        assertNotSame(topAuthors, authorService.findTopAuthorByLendings());
+    }
+}
@@ -0,0 +1,54 @@
+package pt.psoft.g1.psoftg1.testutils;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the SQL statements prepared by Hibernate while some code runs, so tests can fail on N+1 selects.
+ * <p>
+ * Relies on the Hibernate statistics, enabled in the test {@code application.properties}. The statistics are
+ * global, so the counts are only meaningful while no other test runs concurrently.
+ */
+@Component
+public class QueryCountGuard {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * @return number of SQL statements prepared while running {@code action}
+     */
+    public long countStatements(final Runnable action) {
+        final Statistics statistics = statistics();
+        final long before = statistics.getPrepareStatementCount();
+        action.run();
+        return statistics.getPrepareStatementCount() - before;
+    }
+
+    /**
+     * Runs {@code action} and fails if it prepares more than {@code maxStatements} SQL statements.
+     * @return the result of {@code action}
+     */
+    public <T> T assertMaxStatements(final long maxStatements, final Callable<T> action) throws Exception {
+        final Statistics statistics = statistics();
+        final long before = statistics.getPrepareStatementCount();
+        final T result = action.call();
+        final long statements = statistics.getPrepareStatementCount() - before;
+        assertTrue(statements <= maxStatements,
+                "Expected at most " + maxStatements + " SQL statements, but " + statements + " were executed");
+        return result;
+    }
+
+    private Statistics statistics() {
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertTrue(statistics.isStatisticsEnabled(), "Hibernate statistics are disabled (hibernate.generate_statistics)");
+        return statistics;
+    }
+}